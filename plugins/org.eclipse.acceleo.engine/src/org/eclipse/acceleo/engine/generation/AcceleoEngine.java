@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,9 +23,11 @@ import org.eclipse.acceleo.engine.AcceleoEvaluationCancelledException;
 import org.eclipse.acceleo.engine.AcceleoEvaluationException;
 import org.eclipse.acceleo.engine.event.AcceleoTextGenerationEvent;
 import org.eclipse.acceleo.engine.event.IAcceleoTextGenerationListener;
+import org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache;
 import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
 import org.eclipse.acceleo.engine.internal.environment.AcceleoEnvironmentFactory;
 import org.eclipse.acceleo.engine.internal.environment.AcceleoPropertiesLookup;
+import org.eclipse.acceleo.engine.internal.environment.JavaServiceInvocationCache;
 import org.eclipse.acceleo.model.mtl.Module;
 import org.eclipse.acceleo.model.mtl.ModuleElement;
 import org.eclipse.acceleo.model.mtl.Query;
@@ -71,8 +73,14 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 	 */
 	protected boolean notifyOnGenerationEnd;
 
-	/** Holds a reference to the ocl instance. */
-	private OCL ocl;
+	/** Storage of the query results shared by all evaluations of this engine, if any. */
+	private IAcceleoQueryCache queryCache;
+
+	/** Java services resolved by the evaluations of this engine. */
+	private final JavaServiceInvocationCache serviceInvocations = new JavaServiceInvocationCache();
+
+	/** Options of the evaluations of this engine. <code>null</code> to follow the preferences. */
+	private GenerationOptions generationOptions;
 
 	/**
 	 * {@inheritDoc}
@@ -136,10 +144,11 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 		// We need to create an OCL instance for each generation since the environment factory is contextual
 		AbstractAcceleoEnvironmentFactory factory = createEnvironmentFactory(generationRoot, (Module)template
 				.eContainer(), strategy, monitor);
-		ocl = OCL.newInstance(factory);
+		prepareEnvironmentFactory(factory);
+		final OCL ocl = OCL.newInstance(factory);
 
 		try {
-			doEvaluate(template, arguments);
+			doEvaluate(ocl, template, arguments);
 		} catch (AcceleoEvaluationCancelledException e) {
 			// All necessary disposal should have been made
 		}
@@ -169,10 +178,11 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 		// We need to create an OCL instance for each generation since the environment factory is contextual
 		AbstractAcceleoEnvironmentFactory factory = createEnvironmentFactory(null, (Module)template
 				.eContainer(), strategy, monitor);
-		ocl = OCL.newInstance(factory);
+		prepareEnvironmentFactory(factory);
+		final OCL ocl = OCL.newInstance(factory);
 
 		try {
-			return doEvaluate(template, arguments);
+			return doEvaluate(ocl, template, arguments);
 		} catch (AcceleoEvaluationCancelledException e) {
 			// All necessary disposal should have been made
 		} finally {
@@ -197,10 +207,11 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 		// We need to create an OCL instance for each generation since the environment factory is contextual
 		AbstractAcceleoEnvironmentFactory factory = createEnvironmentFactory(null,
 				(Module)query.eContainer(), strategy, monitor);
-		ocl = OCL.newInstance(factory);
+		prepareEnvironmentFactory(factory);
+		final OCL ocl = OCL.newInstance(factory);
 
 		try {
-			return doEvaluate(query, arguments);
+			return doEvaluate(ocl, query, arguments);
 		} catch (AcceleoEvaluationCancelledException e) {
 			// All necessary disposal should have been made
 		} finally {
@@ -211,6 +222,59 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 		return null;
 	}
 
+	/**
+	 * Returns the options that will be used by the evaluations of this engine.
+	 * 
+	 * @return The options that will be used by the evaluations of this engine, <code>null</code> if they
+	 *         follow the preferences.
+	 * @since 3.5
+	 */
+	public GenerationOptions getGenerationOptions() {
+		return generationOptions;
+	}
+
+	/**
+	 * Sets the options that will be used by all subsequent evaluations of this engine. When no options are
+	 * set, a snapshot of the preferences is taken at the start of each evaluation.
+	 * 
+	 * @param options
+	 *            The options that will be used by the evaluations of this engine. <code>null</code> to
+	 *            follow the preferences.
+	 * @since 3.5
+	 */
+	public void setGenerationOptions(GenerationOptions options) {
+		this.generationOptions = options;
+	}
+
+	/**
+	 * Returns the storage of the query results shared by all evaluations of this engine.
+	 * 
+	 * @return The storage of the query results shared by all evaluations of this engine, <code>null</code>
+	 *         if each evaluation caches its own results.
+	 * @since 3.5
+	 */
+	public IAcceleoQueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Sets the storage in which the query results will be cached. The given cache will be shared by all
+	 * subsequent evaluations of this engine, and will never be cleared by the engine itself. Only the results
+	 * of the queries that depend solely on their arguments will be stored in it, the others are cached for a
+	 * single evaluation.
+	 * <p>
+	 * By default, each evaluation caches all of its query results in its own unbounded cache.
+	 * </p>
+	 * 
+	 * @param queryCache
+	 *            The storage in which the query results will be cached. <code>null</code> to revert to the
+	 *            default behavior.
+	 * @since 3.5
+	 */
+	public void setQueryCache(IAcceleoQueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -270,6 +334,25 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 				strategy, monitor);
 	}
 
+	/**
+	 * Hands the generation-independent settings of this engine over to the given environment factory.
+	 * 
+	 * @param factory
+	 *            The environment factory created for a new evaluation.
+	 */
+	private void prepareEnvironmentFactory(AbstractAcceleoEnvironmentFactory factory) {
+		if (factory instanceof AcceleoEnvironmentFactory) {
+			final AcceleoEnvironmentFactory acceleoFactory = (AcceleoEnvironmentFactory)factory;
+			GenerationOptions options = generationOptions;
+			if (options == null) {
+				options = GenerationOptions.fromPreferences();
+			}
+			acceleoFactory.setGenerationOptions(options);
+			acceleoFactory.getSession().setQueryCache(queryCache);
+			acceleoFactory.getSession().setServiceInvocations(serviceInvocations);
+		}
+	}
+
 	/**
 	 * This will be called internally by the engine to offer a chance of disposing anything that could have
 	 * been loaded during the generation.
@@ -300,13 +383,15 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 	 * This does the actual work of template evaluation. It will be called from the public API methods exposed
 	 * by the engine.
 	 * 
+	 * @param ocl
+	 *            The OCL instance created for this evaluation.
 	 * @param template
 	 *            The template which is to be evaluated.
 	 * @param arguments
 	 *            These will be passed as the template arguments.
 	 * @return The result of the evaluation of the template with the given arguments.
 	 */
-	private Object doEvaluate(Template template, List<? extends Object> arguments) {
+	private Object doEvaluate(OCL ocl, Template template, List<? extends Object> arguments) {
 		// Guard Evaluation
 		boolean guardValue = true;
 		if (template.getGuard() != null) {
@@ -382,13 +467,15 @@ public class AcceleoEngine implements IAcceleoEngine2 {
 	 * This does the actual work of query evaluation. It will be called from the public API methods exposed by
 	 * the engine.
 	 * 
+	 * @param ocl
+	 *            The OCL instance created for this evaluation.
 	 * @param acceleoQuery
 	 *            The query which is to be evaluated.
 	 * @param arguments
 	 *            These will be passed as the query arguments.
 	 * @return The result of the evaluation of the query with the given arguments.
 	 */
-	private Object doEvaluate(Query acceleoQuery, List<? extends Object> arguments) {
+	private Object doEvaluate(OCL ocl, Query acceleoQuery, List<? extends Object> arguments) {
 		final OCL.Query query = ocl.createQuery(acceleoQuery.getExpression());
 
 		// Sets all needed variables for the query evaluation
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation;
+
+import org.eclipse.acceleo.common.preference.AcceleoPreferences;
+import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitor;
+
+/**
+ * Immutable set of the options governing a generation. A snapshot of these options is taken when a generation
+ * starts so that the evaluation does not need to look the preferences up for each template or query call.
+ * <p>
+ * {@link #fromPreferences()} returns the options as currently set in the Acceleo preferences. Stand alone
+ * clients can derive their own options from it through the <code>with*</code> methods and hand them to
+ * {@link AcceleoEngine#setGenerationOptions(GenerationOptions)} or
+ * {@link org.eclipse.acceleo.engine.service.AcceleoService#setGenerationOptions(GenerationOptions)} so as to
+ * configure a given generation without altering the global preferences.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public final class GenerationOptions {
+	/** Whether query results will be cached. */
+	private final boolean queryCacheEnabled;
+
+	/** Whether the traceability information will be recorded. */
+	private final boolean traceabilityEnabled;
+
+	/** Whether the registered profiler will record the generation. */
+	private final boolean profilerEnabled;
+
+	/** Whether debug messages will be logged. */
+	private final boolean debugMessagesEnabled;
+
+	/** Whether the protected areas of existing files will be indexed before the generation starts. */
+	private final boolean protectedAreaIndexEnabled;
+
+	/** Whether the generated regions of complete files will be moved out of the traceability model. */
+	private final boolean compactTraceabilityEnabled;
+
+	/** Whether files which content did not change will be left untouched. */
+	private final boolean skipUnchangedFilesEnabled;
+
+	/** Whether files will be written by a pool of I/O threads instead of the evaluation thread. */
+	private final boolean asynchronousWritesEnabled;
+
+	/**
+	 * Creates a set of options given the value of each of them.
+	 * 
+	 * @param queryCacheEnabled
+	 *            Whether query results will be cached.
+	 * @param traceabilityEnabled
+	 *            Whether the traceability information will be recorded.
+	 * @param profilerEnabled
+	 *            Whether the registered profiler will record the generation.
+	 * @param debugMessagesEnabled
+	 *            Whether debug messages will be logged.
+	 * @param protectedAreaIndexEnabled
+	 *            Whether the protected areas of existing files will be indexed before the generation starts.
+	 * @param compactTraceabilityEnabled
+	 *            Whether the generated regions of complete files will be moved out of the traceability model.
+	 * @param skipUnchangedFilesEnabled
+	 *            Whether files which content did not change will be left untouched.
+	 * @param asynchronousWritesEnabled
+	 *            Whether files will be written by a pool of I/O threads instead of the evaluation thread.
+	 */
+	private GenerationOptions(boolean queryCacheEnabled, boolean traceabilityEnabled, boolean profilerEnabled,
+			boolean debugMessagesEnabled, boolean protectedAreaIndexEnabled,
+			boolean compactTraceabilityEnabled, boolean skipUnchangedFilesEnabled,
+			boolean asynchronousWritesEnabled) {
+		this.queryCacheEnabled = queryCacheEnabled;
+		this.traceabilityEnabled = traceabilityEnabled;
+		this.profilerEnabled = profilerEnabled;
+		this.debugMessagesEnabled = debugMessagesEnabled;
+		this.protectedAreaIndexEnabled = protectedAreaIndexEnabled;
+		this.compactTraceabilityEnabled = compactTraceabilityEnabled;
+		this.skipUnchangedFilesEnabled = skipUnchangedFilesEnabled;
+		this.asynchronousWritesEnabled = asynchronousWritesEnabled;
+	}
+
+	/**
+	 * Returns the options as they are currently set in the Acceleo preferences. The protected areas index,
+	 * the compact traceability, the skipping of unchanged files and the asynchronous writes, which have no
+	 * preference, are disabled. The profiler will be
+	 * considered enabled if either its preference is set or a profiler has been registered through
+	 * {@link org.eclipse.acceleo.engine.utils.AcceleoEngineUtils#setProfiler(org.eclipse.acceleo.profiler.Profiler)}
+	 * .
+	 * 
+	 * @return The options as they are currently set in the Acceleo preferences.
+	 */
+	public static GenerationOptions fromPreferences() {
+		final boolean profiler = AcceleoPreferences.isProfilerEnabled()
+				|| AcceleoEvaluationVisitor.getProfiler() != null;
+		return new GenerationOptions(AcceleoPreferences.isQueryCacheEnabled(), AcceleoPreferences
+				.isTraceabilityEnabled(), profiler, AcceleoPreferences.isDebugMessagesEnabled(), false,
+				false, false, false);
+	}
+
+	/**
+	 * Returns whether query results will be cached.
+	 * 
+	 * @return <code>true</code> if query results will be cached, <code>false</code> otherwise.
+	 */
+	public boolean isQueryCacheEnabled() {
+		return queryCacheEnabled;
+	}
+
+	/**
+	 * Returns whether the traceability information will be recorded. Note that this can only disable the
+	 * traceability : a generation will only be traced if the traceability engine is available.
+	 * 
+	 * @return <code>true</code> if the traceability information will be recorded, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isTraceabilityEnabled() {
+		return traceabilityEnabled;
+	}
+
+	/**
+	 * Returns whether the registered profiler will record the generation.
+	 * 
+	 * @return <code>true</code> if the registered profiler will record the generation, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isProfilerEnabled() {
+		return profilerEnabled;
+	}
+
+	/**
+	 * Returns whether debug messages will be logged.
+	 * 
+	 * @return <code>true</code> if debug messages will be logged, <code>false</code> otherwise.
+	 */
+	public boolean isDebugMessagesEnabled() {
+		return debugMessagesEnabled;
+	}
+
+	/**
+	 * Returns whether the protected areas of all the files present under the generation root will be read in
+	 * parallel before the generation starts, instead of reading each file right before it is overwritten.
+	 * 
+	 * @return <code>true</code> if the protected areas of existing files will be indexed, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isProtectedAreaIndexEnabled() {
+		return protectedAreaIndexEnabled;
+	}
+
+	/**
+	 * Returns whether the generated regions of each file will be moved out of the traceability model as soon
+	 * as this file has been generated. They are loaded back into the model once the generation ends.
+	 * 
+	 * @return <code>true</code> if the generated regions of complete files will be stored in a compact
+	 *         form, <code>false</code> otherwise.
+	 */
+	public boolean isCompactTraceabilityEnabled() {
+		return compactTraceabilityEnabled;
+	}
+
+	/**
+	 * Returns whether the content of each generated file will be compared with that of the existing file, so
+	 * that files which content did not change are left untouched. This is only considered by the
+	 * {@link org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy default strategy} created when a
+	 * generation is launched without an explicit strategy.
+	 * 
+	 * @return <code>true</code> if files which content did not change will be left untouched,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isSkipUnchangedFilesEnabled() {
+		return skipUnchangedFilesEnabled;
+	}
+
+	/**
+	 * Returns whether generated files will be buffered in memory and written by a pool of I/O threads instead
+	 * of the evaluation thread. As for {@link #isSkipUnchangedFilesEnabled()}, this is only considered by the
+	 * {@link org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy default strategy}.
+	 * 
+	 * @return <code>true</code> if files will be written asynchronously, <code>false</code> otherwise.
+	 */
+	public boolean isAsynchronousWritesEnabled() {
+		return asynchronousWritesEnabled;
+	}
+
+	/**
+	 * Returns a copy of these options with the given query cache state.
+	 * 
+	 * @param enabled
+	 *            Whether query results will be cached.
+	 * @return A copy of these options with the given query cache state.
+	 */
+	public GenerationOptions withQueryCache(boolean enabled) {
+		return new GenerationOptions(enabled, traceabilityEnabled, profilerEnabled, debugMessagesEnabled,
+				protectedAreaIndexEnabled, compactTraceabilityEnabled, skipUnchangedFilesEnabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given traceability state.
+	 * 
+	 * @param enabled
+	 *            Whether the traceability information will be recorded.
+	 * @return A copy of these options with the given traceability state.
+	 */
+	public GenerationOptions withTraceability(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, enabled, profilerEnabled, debugMessagesEnabled,
+				protectedAreaIndexEnabled, compactTraceabilityEnabled, skipUnchangedFilesEnabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given profiler state.
+	 * 
+	 * @param enabled
+	 *            Whether the registered profiler will record the generation.
+	 * @return A copy of these options with the given profiler state.
+	 */
+	public GenerationOptions withProfiler(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, traceabilityEnabled, enabled, debugMessagesEnabled,
+				protectedAreaIndexEnabled, compactTraceabilityEnabled, skipUnchangedFilesEnabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given debug messages state.
+	 * 
+	 * @param enabled
+	 *            Whether debug messages will be logged.
+	 * @return A copy of these options with the given debug messages state.
+	 */
+	public GenerationOptions withDebugMessages(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, traceabilityEnabled, profilerEnabled, enabled,
+				protectedAreaIndexEnabled, compactTraceabilityEnabled, skipUnchangedFilesEnabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given protected areas index state.
+	 * 
+	 * @param enabled
+	 *            Whether the protected areas of existing files will be indexed before the generation starts.
+	 * @return A copy of these options with the given protected areas index state.
+	 */
+	public GenerationOptions withProtectedAreaIndex(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, traceabilityEnabled, profilerEnabled,
+				debugMessagesEnabled, enabled, compactTraceabilityEnabled, skipUnchangedFilesEnabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given compact traceability state.
+	 * 
+	 * @param enabled
+	 *            Whether the generated regions of complete files will be moved out of the traceability model.
+	 * @return A copy of these options with the given compact traceability state.
+	 */
+	public GenerationOptions withCompactTraceability(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, traceabilityEnabled, profilerEnabled,
+				debugMessagesEnabled, protectedAreaIndexEnabled, enabled, skipUnchangedFilesEnabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given state for the skipping of unchanged files.
+	 * 
+	 * @param enabled
+	 *            Whether files which content did not change will be left untouched.
+	 * @return A copy of these options with the given state for the skipping of unchanged files.
+	 */
+	public GenerationOptions withSkipUnchangedFiles(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, traceabilityEnabled, profilerEnabled,
+				debugMessagesEnabled, protectedAreaIndexEnabled, compactTraceabilityEnabled, enabled,
+				asynchronousWritesEnabled);
+	}
+
+	/**
+	 * Returns a copy of these options with the given asynchronous writes state.
+	 * 
+	 * @param enabled
+	 *            Whether files will be written by a pool of I/O threads instead of the evaluation thread.
+	 * @return A copy of these options with the given asynchronous writes state.
+	 */
+	public GenerationOptions withAsynchronousWrites(boolean enabled) {
+		return new GenerationOptions(queryCacheEnabled, traceabilityEnabled, profilerEnabled,
+				debugMessagesEnabled, protectedAreaIndexEnabled, compactTraceabilityEnabled,
+				skipUnchangedFilesEnabled, enabled);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "queryCache=" + queryCacheEnabled + ", traceability=" + traceabilityEnabled + ", profiler=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ profilerEnabled + ", debugMessages=" + debugMessagesEnabled + ", protectedAreaIndex=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ protectedAreaIndexEnabled + ", compactTraceability=" //$NON-NLS-1$
+				+ compactTraceabilityEnabled + ", skipUnchangedFiles=" //$NON-NLS-1$
+				+ skipUnchangedFilesEnabled + ", asynchronousWrites=" //$NON-NLS-1$
+				+ asynchronousWritesEnabled;
+	}
+}
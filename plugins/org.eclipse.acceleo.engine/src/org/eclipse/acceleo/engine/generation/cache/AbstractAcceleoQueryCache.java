@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.acceleo.model.mtl.Query;
+
+/**
+ * Base implementation of a query cache. This will maintain the statistics of each query if asked to.
+ * <p>
+ * Accesses to the cache are not serialized : the cache may be used by concurrent generations, and
+ * subclasses are responsible for the thread safety of {@link #doClear()}, {@link #doGet(Query, Object)}
+ * and {@link #doPut(Query, Object, Object)}. Statistics are counted without locking.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public abstract class AbstractAcceleoQueryCache implements IAcceleoQueryCache {
+	/** Index of the hit counter of a query. */
+	private static final int HITS = 0;
+
+	/** Index of the miss counter of a query. */
+	private static final int MISSES = 1;
+
+	/** Index of the eviction counter of a query. */
+	private static final int EVICTIONS = 2;
+
+	/** Counters of each query that has been looked up in this cache, <code>null</code> if not recording. */
+	private final ConcurrentMap<Query, AtomicLong[]> statistics;
+
+	/**
+	 * Creates a cache recording the statistics of each query.
+	 */
+	protected AbstractAcceleoQueryCache() {
+		this(true);
+	}
+
+	/**
+	 * Creates a cache recording the statistics of each query only if asked to.
+	 * 
+	 * @param recordStatistics
+	 *            <code>true</code> if this cache should count the hits, misses and evictions of each query.
+	 */
+	protected AbstractAcceleoQueryCache(boolean recordStatistics) {
+		if (recordStatistics) {
+			statistics = new ConcurrentHashMap<Query, AtomicLong[]>();
+		} else {
+			statistics = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache#clear()
+	 */
+	public final void clear() {
+		doClear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache#get(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object)
+	 */
+	public final Object get(Query query, Object arguments) {
+		final Object result = doGet(query, arguments);
+		if (statistics != null) {
+			if (result != null) {
+				getCounters(query)[HITS].incrementAndGet();
+			} else {
+				getCounters(query)[MISSES].incrementAndGet();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache#getStatistics()
+	 */
+	public final Map<Query, QueryCacheStatistics> getStatistics() {
+		final Map<Query, QueryCacheStatistics> snapshot = new HashMap<Query, QueryCacheStatistics>();
+		if (statistics != null) {
+			for (Map.Entry<Query, AtomicLong[]> entry : statistics.entrySet()) {
+				final AtomicLong[] counters = entry.getValue();
+				snapshot.put(entry.getKey(), new QueryCacheStatistics(counters[HITS].get(), counters[MISSES]
+						.get(), counters[EVICTIONS].get()));
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Tells whether this cache counts the hits, misses and evictions of each query.
+	 * 
+	 * @return <code>true</code> if this cache records statistics, <code>false</code> if
+	 *         {@link #getStatistics()} will always be empty.
+	 */
+	public final boolean isRecordingStatistics() {
+		return statistics != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache#put(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object, java.lang.Object)
+	 */
+	public final void put(Query query, Object arguments, Object result) {
+		doPut(query, arguments, result);
+	}
+
+	/**
+	 * Subclasses should call this whenever they drop an entry from the cache for any reason other than
+	 * {@link #clear()}.
+	 * 
+	 * @param query
+	 *            Query which cached result has been dropped.
+	 */
+	protected final void recordEviction(Query query) {
+		if (statistics != null) {
+			getCounters(query)[EVICTIONS].incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	protected abstract void doClear();
+
+	/**
+	 * Returns the cached result of the given invocation.
+	 * 
+	 * @param query
+	 *            The invoked query.
+	 * @param arguments
+	 *            Key identifying the arguments of the invocation.
+	 * @return The cached result of the given invocation, <code>null</code> if there is none.
+	 */
+	protected abstract Object doGet(Query query, Object arguments);
+
+	/**
+	 * Caches the result of the given invocation.
+	 * 
+	 * @param query
+	 *            The invoked query.
+	 * @param arguments
+	 *            Key identifying the arguments of the invocation.
+	 * @param result
+	 *            Result of the invocation.
+	 */
+	protected abstract void doPut(Query query, Object arguments, Object result);
+
+	/**
+	 * Returns the counters of the given query, creating them if needed.
+	 * 
+	 * @param query
+	 *            The query which counters we need.
+	 * @return The counters of the given query, indexed by {@link #HITS}, {@link #MISSES} and
+	 *         {@link #EVICTIONS}.
+	 */
+	private AtomicLong[] getCounters(Query query) {
+		AtomicLong[] counters = statistics.get(query);
+		if (counters == null) {
+			final AtomicLong[] created = {new AtomicLong(), new AtomicLong(), new AtomicLong(), };
+			counters = statistics.putIfAbsent(query, created);
+			if (counters == null) {
+				counters = created;
+			}
+		}
+		return counters;
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.cache;
+
+import java.util.Map;
+
+import org.eclipse.acceleo.model.mtl.Query;
+
+/**
+ * Implementations of this can be used to store the results of query invocations so that invoking the same
+ * query with the same arguments multiple times will only evaluate it once.
+ * <p>
+ * The engine will never hand <code>null</code> keys or values over to the cache : <code>null</code> and
+ * <code>invalid</code> results are replaced by place holders beforehand. Caches may drop any of their entries
+ * at any time, in which case the query will simply be evaluated anew. A single cache may be used by
+ * concurrent generations, implementations must then be thread safe.
+ * </p>
+ * <p>
+ * Clients may extend {@link AbstractAcceleoQueryCache} or one of the default implementations instead of
+ * implementing the whole interface.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public interface IAcceleoQueryCache {
+	/**
+	 * Removes all entries from this cache. Statistics are kept.
+	 */
+	void clear();
+
+	/**
+	 * Returns the cached result of the given invocation.
+	 * 
+	 * @param query
+	 *            The invoked query.
+	 * @param arguments
+	 *            Key identifying the arguments of the invocation.
+	 * @return The cached result of the given invocation, <code>null</code> if there is none.
+	 */
+	Object get(Query query, Object arguments);
+
+	/**
+	 * Returns the statistics this cache has gathered for each of the queries it has been asked about.
+	 * 
+	 * @return A snapshot of the statistics of this cache, mapped to their query.
+	 */
+	Map<Query, QueryCacheStatistics> getStatistics();
+
+	/**
+	 * Caches the result of the given invocation.
+	 * 
+	 * @param query
+	 *            The invoked query.
+	 * @param arguments
+	 *            Key identifying the arguments of the invocation.
+	 * @param result
+	 *            Result of the invocation.
+	 */
+	void put(Query query, Object arguments, Object result);
+}
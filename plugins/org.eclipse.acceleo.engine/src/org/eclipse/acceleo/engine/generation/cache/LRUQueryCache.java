@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.acceleo.model.mtl.Query;
+
+/**
+ * This cache will hold at most a given number of results, all queries included. When full, the least
+ * recently used result will be evicted to make room for the new one. Accesses to this cache are serialized,
+ * lookups included since they update the access order.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class LRUQueryCache extends AbstractAcceleoQueryCache {
+	/** Load factor of the map backing this cache. */
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/** Maximum number of results this cache will hold. */
+	private final int maximumSize;
+
+	/** The actual Map backing this cache, in access order. */
+	private final Map<InvocationKey, Object> entries;
+
+	/**
+	 * Creates a cache that will hold at most <code>maximumSize</code> results.
+	 * 
+	 * @param maximumSize
+	 *            Maximum number of results this cache will hold. Must be strictly positive.
+	 */
+	public LRUQueryCache(int maximumSize) {
+		this(maximumSize, true);
+	}
+
+	/**
+	 * Creates a cache that will hold at most <code>maximumSize</code> results, recording the statistics of
+	 * each query only if asked to.
+	 * 
+	 * @param maximumSize
+	 *            Maximum number of results this cache will hold. Must be strictly positive.
+	 * @param recordStatistics
+	 *            <code>true</code> if this cache should count the hits, misses and evictions of each query.
+	 */
+	public LRUQueryCache(int maximumSize, boolean recordStatistics) {
+		super(recordStatistics);
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException(String.valueOf(maximumSize));
+		}
+		this.maximumSize = maximumSize;
+		this.entries = new LinkedHashMap<InvocationKey, Object>(16, LOAD_FACTOR, true) {
+			/** Default SUID. */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<InvocationKey, Object> eldest) {
+				final boolean evict = size() > LRUQueryCache.this.maximumSize;
+				if (evict) {
+					recordEviction(eldest.getKey().query);
+				}
+				return evict;
+			}
+		};
+	}
+
+	/**
+	 * Returns the maximum number of results this cache will hold.
+	 * 
+	 * @return The maximum number of results this cache will hold.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doClear()
+	 */
+	@Override
+	protected synchronized void doClear() {
+		entries.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doGet(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object)
+	 */
+	@Override
+	protected synchronized Object doGet(Query query, Object arguments) {
+		return entries.get(new InvocationKey(query, arguments));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doPut(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	protected synchronized void doPut(Query query, Object arguments, Object result) {
+		entries.put(new InvocationKey(query, arguments), result);
+	}
+
+	/**
+	 * Identifies a query invocation by the query and its arguments.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	static final class InvocationKey {
+		/** The invoked query. */
+		final Query query;
+
+		/** Arguments of the invocation. */
+		final Object arguments;
+
+		/** Hash code of this key, computed once since it will be used for each lookup. */
+		private final int hash;
+
+		/**
+		 * Creates a key for the given invocation.
+		 * 
+		 * @param query
+		 *            The invoked query.
+		 * @param arguments
+		 *            Arguments of the invocation.
+		 */
+		InvocationKey(Query query, Object arguments) {
+			this.query = query;
+			this.arguments = arguments;
+			final int prime = 31;
+			this.hash = prime * System.identityHashCode(query) + arguments.hashCode();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof InvocationKey)) {
+				return false;
+			}
+			final InvocationKey other = (InvocationKey)obj;
+			return hash == other.hash && query == other.query && arguments.equals(other.arguments);
+		}
+	}
+}
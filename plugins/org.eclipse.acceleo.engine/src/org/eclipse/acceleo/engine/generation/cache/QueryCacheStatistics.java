@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.cache;
+
+/**
+ * Counters gathered by a query cache for a given query. Instances are snapshots and will not change as the
+ * cache is used.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public final class QueryCacheStatistics {
+	/** Number of lookups that found a cached result. */
+	private final long hitCount;
+
+	/** Number of lookups that did not find a cached result. */
+	private final long missCount;
+
+	/** Number of entries that have been dropped from the cache before it was cleared. */
+	private final long evictionCount;
+
+	/**
+	 * Creates a set of statistics given its initial values.
+	 * 
+	 * @param hitCount
+	 *            Number of lookups that found a cached result.
+	 * @param missCount
+	 *            Number of lookups that did not find a cached result.
+	 * @param evictionCount
+	 *            Number of entries that have been dropped from the cache.
+	 */
+	public QueryCacheStatistics(long hitCount, long missCount, long evictionCount) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+	}
+
+	/**
+	 * Returns the number of lookups that found a cached result.
+	 * 
+	 * @return The number of lookups that found a cached result.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a cached result.
+	 * 
+	 * @return The number of lookups that did not find a cached result.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of entries that have been dropped from the cache before it was cleared.
+	 * 
+	 * @return The number of entries that have been dropped from the cache.
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Returns the ratio of lookups that found a cached result.
+	 * 
+	 * @return The ratio of lookups that found a cached result, <code>0</code> if there has been no lookup.
+	 */
+	public double getHitRate() {
+		final long requestCount = hitCount + missCount;
+		if (requestCount == 0) {
+			return 0d;
+		}
+		return (double)hitCount / requestCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
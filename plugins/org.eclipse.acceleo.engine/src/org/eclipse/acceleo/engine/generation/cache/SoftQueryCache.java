@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.acceleo.engine.generation.cache.LRUQueryCache.InvocationKey;
+import org.eclipse.acceleo.model.mtl.Query;
+
+/**
+ * This cache only holds soft references to the results it is given : the garbage collector is free to
+ * reclaim them when memory runs low, in which case the affected invocations will simply be evaluated anew.
+ * Accesses to this cache are serialized.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class SoftQueryCache extends AbstractAcceleoQueryCache {
+	/** The actual Map backing this cache. */
+	private final Map<InvocationKey, ResultReference> entries = new HashMap<InvocationKey, ResultReference>();
+
+	/** The garbage collector will enqueue our references here once it has reclaimed their result. */
+	private final ReferenceQueue<Object> reclaimed = new ReferenceQueue<Object>();
+
+	/**
+	 * Creates a cache recording the statistics of each query.
+	 */
+	public SoftQueryCache() {
+		super();
+	}
+
+	/**
+	 * Creates a cache recording the statistics of each query only if asked to.
+	 * 
+	 * @param recordStatistics
+	 *            <code>true</code> if this cache should count the hits, misses and evictions of each query.
+	 */
+	public SoftQueryCache(boolean recordStatistics) {
+		super(recordStatistics);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doClear()
+	 */
+	@Override
+	protected synchronized void doClear() {
+		entries.clear();
+		while (reclaimed.poll() != null) {
+			// Empty the queue : these entries are gone already
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doGet(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object)
+	 */
+	@Override
+	protected synchronized Object doGet(Query query, Object arguments) {
+		expungeReclaimedEntries();
+		final ResultReference reference = entries.get(new InvocationKey(query, arguments));
+		if (reference == null) {
+			return null;
+		}
+		return reference.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doPut(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	protected synchronized void doPut(Query query, Object arguments, Object result) {
+		expungeReclaimedEntries();
+		final InvocationKey key = new InvocationKey(query, arguments);
+		entries.put(key, new ResultReference(key, result, reclaimed));
+	}
+
+	/**
+	 * Removes all entries which result has been reclaimed by the garbage collector.
+	 */
+	private void expungeReclaimedEntries() {
+		Reference<? extends Object> reference = reclaimed.poll();
+		while (reference != null) {
+			final InvocationKey key = ((ResultReference)reference).key;
+			// The entry may have been replaced since
+			if (entries.get(key) == reference) {
+				entries.remove(key);
+				recordEviction(key.query);
+			}
+			reference = reclaimed.poll();
+		}
+	}
+
+	/**
+	 * Soft reference to a query result that remembers its key in the cache.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class ResultReference extends SoftReference<Object> {
+		/** Key of this result in the cache. */
+		final InvocationKey key;
+
+		/**
+		 * Creates a reference to the given result.
+		 * 
+		 * @param key
+		 *            Key of this result in the cache.
+		 * @param result
+		 *            The referenced result.
+		 * @param queue
+		 *            Queue in which this reference is to be enqueued once reclaimed.
+		 */
+		ResultReference(InvocationKey key, Object result, ReferenceQueue<Object> queue) {
+			super(result, queue);
+			this.key = key;
+		}
+	}
+}
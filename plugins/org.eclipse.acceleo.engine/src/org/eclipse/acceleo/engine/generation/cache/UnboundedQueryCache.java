@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.acceleo.model.mtl.Query;
+
+/**
+ * This cache keeps every result it is given until it is cleared. This is the fastest of the caches, and the
+ * one used by default, but memory consumption will grow with the number of distinct invocations. Lookups do
+ * not lock the cache.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class UnboundedQueryCache extends AbstractAcceleoQueryCache {
+	/** The actual Map backing this cache. */
+	private final ConcurrentMap<Query, Map<Object, Object>> queryResults =
+			new ConcurrentHashMap<Query, Map<Object, Object>>();
+
+	/**
+	 * Creates a cache recording the statistics of each query.
+	 */
+	public UnboundedQueryCache() {
+		super();
+	}
+
+	/**
+	 * Creates a cache recording the statistics of each query only if asked to.
+	 * 
+	 * @param recordStatistics
+	 *            <code>true</code> if this cache should count the hits and misses of each query.
+	 */
+	public UnboundedQueryCache(boolean recordStatistics) {
+		super(recordStatistics);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doClear()
+	 */
+	@Override
+	protected void doClear() {
+		queryResults.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doGet(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object)
+	 */
+	@Override
+	protected Object doGet(Query query, Object arguments) {
+		final Map<Object, Object> cache = queryResults.get(query);
+		if (cache == null) {
+			return null;
+		}
+		return cache.get(arguments);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache#doPut(org.eclipse.acceleo.model.mtl.Query,
+	 *      java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	protected void doPut(Query query, Object arguments, Object result) {
+		Map<Object, Object> cache = queryResults.get(query);
+		if (cache == null) {
+			final Map<Object, Object> created = new ConcurrentHashMap<Object, Object>();
+			cache = queryResults.putIfAbsent(query, created);
+			if (cache == null) {
+				cache = created;
+			}
+		}
+		if (result != null) {
+			cache.put(arguments, result);
+		} else {
+			// A null result cannot be told apart from a missing one
+			cache.remove(arguments);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,21 @@ public abstract class AbstractGenerationStrategy implements IAcceleoGenerationSt
 		// Empty implementation
 	}
 
+	/**
+	 * Waits for the pending writes of the given file, if any, to complete. This will be called before the
+	 * content of a file that has already been generated is read again. Strategies writing their files
+	 * asynchronously need to override this.
+	 * 
+	 * @param file
+	 *            The file which pending writes are to be awaited.
+	 * @throws InterruptedException
+	 *             Thrown if we are interrupted while waiting for the writes to complete.
+	 * @since 3.5
+	 */
+	public void awaitCompletion(File file) throws InterruptedException {
+		// Empty implementation
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
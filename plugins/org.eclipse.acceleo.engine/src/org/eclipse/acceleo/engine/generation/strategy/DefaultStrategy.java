@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,17 +21,27 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.AcceleoEnginePlugin;
 import org.eclipse.acceleo.engine.AcceleoEvaluationException;
 import org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter;
+import org.eclipse.acceleo.engine.generation.writers.AcceleoBufferedFileWriter;
+import org.eclipse.acceleo.engine.generation.writers.AcceleoComparingFileWriter;
 import org.eclipse.acceleo.engine.generation.writers.AcceleoFileWriter;
 
 /**
@@ -39,11 +49,31 @@ import org.eclipse.acceleo.engine.generation.writers.AcceleoFileWriter;
  * {@link java.io.BufferedWriter}s so that files are written to disk whenever needed. This is the least
  * memory-expansive strategy; however it is not aware of VCSs as it does not check for write access before
  * writing the files. This is not to be used with a project under clearcase for example.
+ * <p>
+ * This strategy can be told to skip unchanged files : the content of each generated file will then be
+ * compared with that of the existing file, and the file will only be written if they differ. Files that
+ * haven't changed will keep their time stamp, sparing incremental builds downstream of the generation.
+ * </p>
+ * <p>
+ * This strategy can also be told to write files asynchronously : the content of each file will then be
+ * buffered in memory, and handed to a bounded pool of I/O threads when the file block ends. Successive
+ * writes of the same file are done in order. Errors raised by these writes will be thrown by
+ * {@link #awaitCompletion()}.
+ * </p>
  * 
  * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
  * @since 3.0
  */
 public class DefaultStrategy extends AbstractGenerationStrategy {
+	/** Number of threads that will write files when writes are asynchronous. */
+	private static final int FLUSH_THREAD_COUNT = 2;
+
+	/**
+	 * Number of files that can await their write. Past this, the evaluation thread will write the files it
+	 * generates itself, so that unwritten files do not pile up in memory.
+	 */
+	private static final int FLUSH_QUEUE_CAPACITY = 64;
+
 	/** This will be populated with the list of tasks currently executing fot the creation of lost files. */
 	protected final List<Future<Object>> lostCreationTasks = new ArrayList<Future<Object>>();
 
@@ -51,6 +81,66 @@ public class DefaultStrategy extends AbstractGenerationStrategy {
 	protected final ExecutorService lostCreatorsPool = Executors.newFixedThreadPool(Runtime.getRuntime()
 			.availableProcessors());
 
+	/** Tells whether files which content did not change should be left untouched. */
+	private final boolean skipUnchangedFiles;
+
+	/** Tells whether files should be written by the {@link #flushPool}. */
+	private final boolean asynchronousWrites;
+
+	/** This pool will be used to write files when writes are asynchronous. Created when first needed. */
+	private ExecutorService flushPool;
+
+	/**
+	 * Maps the absolute path of the files being written asynchronously to their last pending write. Writes
+	 * remove themselves from this map once complete so that the content of their writer can be reclaimed.
+	 */
+	private final Map<String, Future<Object>> pendingFlushes = new ConcurrentHashMap<String,
+			Future<Object>>();
+
+	/** First error raised by an asynchronous write since the last call to {@link #awaitCompletion()}. */
+	private final AtomicReference<AcceleoEvaluationException> flushError;
+
+	/** Number of files this strategy has written. */
+	private final AtomicInteger writtenFileCount = new AtomicInteger();
+
+	/** Number of files this strategy has left untouched since their content did not change. */
+	private final AtomicInteger skippedFileCount = new AtomicInteger();
+
+	/**
+	 * Creates a strategy that will write all generated files.
+	 */
+	public DefaultStrategy() {
+		this(false, false);
+	}
+
+	/**
+	 * Creates a strategy that will either write all generated files or only those which content changed.
+	 * 
+	 * @param skipUnchangedFiles
+	 *            <code>true</code> if files which content did not change should be left untouched.
+	 * @since 3.5
+	 */
+	public DefaultStrategy(boolean skipUnchangedFiles) {
+		this(skipUnchangedFiles, false);
+	}
+
+	/**
+	 * Creates a strategy that will either write all generated files or only those which content changed,
+	 * either as soon as they are generated or asynchronously.
+	 * 
+	 * @param skipUnchangedFiles
+	 *            <code>true</code> if files which content did not change should be left untouched.
+	 * @param asynchronousWrites
+	 *            <code>true</code> if files should be written by a pool of I/O threads instead of the
+	 *            evaluation thread.
+	 * @since 3.5
+	 */
+	public DefaultStrategy(boolean skipUnchangedFiles, boolean asynchronousWrites) {
+		this.skipUnchangedFiles = skipUnchangedFiles;
+		this.asynchronousWrites = asynchronousWrites;
+		this.flushError = new AtomicReference<AcceleoEvaluationException>();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -58,6 +148,10 @@ public class DefaultStrategy extends AbstractGenerationStrategy {
 	 */
 	@Override
 	public void awaitCompletion() throws InterruptedException {
+		for (Map.Entry<String, Future<Object>> pendingFlush : pendingFlushes.entrySet()) {
+			awaitFlush(pendingFlush.getValue());
+			pendingFlushes.remove(pendingFlush.getKey(), pendingFlush.getValue());
+		}
 		for (Future<Object> task : new ArrayList<Future<Object>>(lostCreationTasks)) {
 			while (!task.isDone() && !task.isCancelled()) {
 				try {
@@ -71,6 +165,23 @@ public class DefaultStrategy extends AbstractGenerationStrategy {
 		}
 		lostCreatorsPool.shutdown();
 		super.awaitCompletion();
+		final AcceleoEvaluationException error = flushError.getAndSet(null);
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#awaitCompletion(java.io.File)
+	 */
+	@Override
+	public void awaitCompletion(File file) throws InterruptedException {
+		final Future<Object> pendingFlush = pendingFlushes.get(file.getAbsolutePath());
+		if (pendingFlush != null) {
+			awaitFlush(pendingFlush);
+		}
 	}
 
 	/**
@@ -123,7 +234,20 @@ public class DefaultStrategy extends AbstractGenerationStrategy {
 
 		boolean fileExisted = file.exists();
 
-		if (!hasJMergeTags || appendMode) {
+		if ((skipUnchangedFiles || asynchronousWrites) && !hasJMergeTags && !appendMode) {
+			String actualCharset = charset;
+			if (charset != null && !Charset.isSupported(charset)) {
+				final String message = AcceleoEngineMessages.getString(
+						"AcceleoGenerationStrategy.UnsupportedCharset", charset); //$NON-NLS-1$
+				AcceleoEnginePlugin.log(message, false);
+				actualCharset = null;
+			}
+			if (skipUnchangedFiles) {
+				writer = new AcceleoComparingFileWriter(file, actualCharset);
+			} else {
+				writer = new AcceleoBufferedFileWriter(file, actualCharset);
+			}
+		} else if (!hasJMergeTags || appendMode) {
 			if (charset != null) {
 				if (Charset.isSupported(charset)) {
 					writer = new AcceleoFileWriter(file, appendMode, charset);
@@ -167,8 +291,16 @@ public class DefaultStrategy extends AbstractGenerationStrategy {
 			awaitCompletion();
 		} catch (InterruptedException e) {
 			// discard : we're disposing of everything
+		} catch (AcceleoEvaluationException e) {
+			AcceleoEnginePlugin.log(e, false);
 		}
 		lostCreationTasks.clear();
+		synchronized(this) {
+			if (flushPool != null) {
+				flushPool.shutdown();
+				flushPool = null;
+			}
+		}
 		super.dispose();
 	}
 
@@ -180,7 +312,219 @@ public class DefaultStrategy extends AbstractGenerationStrategy {
 	 */
 	@Override
 	public void flushWriter(String filePath, Writer writer) throws IOException {
-		writer.close();
+		if (asynchronousWrites && writer instanceof AcceleoBufferedFileWriter) {
+			final AcceleoBufferedFileWriter bufferedWriter = (AcceleoBufferedFileWriter)writer;
+			/*
+			 * Registered before it is executed so that it cannot complete before being mapped. If the file is
+			 * still being written, this write will wait for the previous one so that the last content wins.
+			 */
+			final PendingFlush flush = new PendingFlush(bufferedWriter, pendingFlushes.get(bufferedWriter
+					.getTargetPath()));
+			pendingFlushes.put(flush.getTargetPath(), flush);
+			getFlushPool().execute(flush);
+		} else {
+			writer.close();
+			countFlushedFile(writer);
+		}
+	}
+
+	/**
+	 * Returns the number of files this strategy has written.
+	 * 
+	 * @return The number of files this strategy has written.
+	 * @since 3.5
+	 */
+	public int getWrittenFileCount() {
+		return writtenFileCount.get();
+	}
+
+	/**
+	 * Returns the number of files this strategy has left untouched since their content did not change. This
+	 * will always be zero unless this strategy has been told to skip unchanged files.
+	 * 
+	 * @return The number of files this strategy has left untouched.
+	 * @since 3.5
+	 */
+	public int getSkippedFileCount() {
+		return skippedFileCount.get();
+	}
+
+	/**
+	 * Tells whether this strategy leaves files which content did not change untouched.
+	 * 
+	 * @return <code>true</code> if this strategy leaves files which content did not change untouched.
+	 * @since 3.5
+	 */
+	public boolean isSkippingUnchangedFiles() {
+		return skipUnchangedFiles;
+	}
+
+	/**
+	 * Tells whether this strategy writes files asynchronously.
+	 * 
+	 * @return <code>true</code> if this strategy writes files asynchronously.
+	 * @since 3.5
+	 */
+	public boolean isWritingAsynchronously() {
+		return asynchronousWrites;
+	}
+
+	/**
+	 * Waits for the given file write to complete.
+	 * 
+	 * @param pendingFlush
+	 *            The file write to await.
+	 * @throws InterruptedException
+	 *             Thrown if we are interrupted while waiting for the write to complete.
+	 */
+	private void awaitFlush(Future<Object> pendingFlush) throws InterruptedException {
+		try {
+			pendingFlush.get();
+		} catch (ExecutionException e) {
+			// FileFlushers record their I/O errors, this can only be an unexpected one
+			flushError.compareAndSet(null, new AcceleoEvaluationException(e.getCause().getMessage(), e
+					.getCause()));
+		}
+	}
+
+	/**
+	 * Updates the count of written or skipped files after the given writer has been closed.
+	 * 
+	 * @param writer
+	 *            The writer that has been closed.
+	 */
+	private void countFlushedFile(Writer writer) {
+		if (writer instanceof AcceleoBufferedFileWriter
+				&& !((AcceleoBufferedFileWriter)writer).hasWritten()) {
+			skippedFileCount.incrementAndGet();
+		} else {
+			writtenFileCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the pool that writes files, creating it if needed. Its threads are daemons so that an
+	 * undisposed strategy cannot prevent the VM from exiting; {@link #awaitCompletion()} has to be called in
+	 * order to make sure all files have been written.
+	 * 
+	 * @return The pool that writes files.
+	 */
+	private synchronized ExecutorService getFlushPool() {
+		if (flushPool == null) {
+			final ThreadFactory daemonFactory = new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Acceleo file writer"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+			flushPool = new ThreadPoolExecutor(FLUSH_THREAD_COUNT, FLUSH_THREAD_COUNT, 0L,
+					TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(FLUSH_QUEUE_CAPACITY),
+					daemonFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return flushPool;
+	}
+
+	/**
+	 * This will be used to write files asynchronously.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private final class FileFlusher implements Callable<Object> {
+		/** The writer that is to be closed. */
+		private final AcceleoBufferedFileWriter writer;
+
+		/** The previous write of the same file if it was still pending, <code>null</code> otherwise. */
+		private final Future<Object> previousFlush;
+
+		/**
+		 * Instantiates a flusher for the given writer.
+		 * 
+		 * @param writer
+		 *            The writer that is to be closed.
+		 * @param previousFlush
+		 *            The previous write of the same file, which has to complete before this one. May be
+		 *            <code>null</code>.
+		 */
+		FileFlusher(AcceleoBufferedFileWriter writer, Future<Object> previousFlush) {
+			this.writer = writer;
+			this.previousFlush = previousFlush;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call() throws InterruptedException {
+			if (previousFlush != null) {
+				try {
+					previousFlush.get();
+				} catch (ExecutionException e) {
+					// The previous write has recorded its own error
+				}
+			}
+			try {
+				writer.close();
+				countFlushedFile(writer);
+			} catch (IOException e) {
+				flushError.compareAndSet(null, new AcceleoEvaluationException(AcceleoEngineMessages.getString(
+						"AcceleoGenerationStrategy.FlushError", writer.getTargetPath()), e)); //$NON-NLS-1$
+			}
+			// This has no explicit result. Only used to await termination
+			return null;
+		}
+	}
+
+	/**
+	 * An asynchronous file write that removes itself from the {@link #pendingFlushes} once complete.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private final class PendingFlush extends FutureTask<Object> {
+		/** Absolute path of the file this writes. */
+		private final String targetPath;
+
+		/**
+		 * Instantiates a pending write for the given writer.
+		 * 
+		 * @param writer
+		 *            The writer that is to be closed.
+		 * @param previousFlush
+		 *            The previous write of the same file, which has to complete before this one. May be
+		 *            <code>null</code>.
+		 */
+		PendingFlush(AcceleoBufferedFileWriter writer, Future<Object> previousFlush) {
+			super(new FileFlusher(writer, previousFlush));
+			this.targetPath = writer.getTargetPath();
+		}
+
+		/**
+		 * Returns the absolute path of the file this writes.
+		 * 
+		 * @return The absolute path of the file this writes.
+		 */
+		public String getTargetPath() {
+			return targetPath;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.concurrent.FutureTask#done()
+		 */
+		@Override
+		protected void done() {
+			pendingFlushes.remove(targetPath, this);
+			if (!isCancelled()) {
+				try {
+					awaitFlush(this);
+				} catch (InterruptedException e) {
+					// Cannot happen, this task is complete
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
 	}
 
 	/**
@@ -55,6 +55,16 @@ public class DoNotGenerateGenerationStrategy extends AbstractGenerationStrategy
 		this.delegate = generationStrategy;
 	}
 
+	/**
+	 * Returns the generation strategy to which most of the behavior is delegated.
+	 * 
+	 * @return The generation strategy to which most of the behavior is delegated.
+	 * @since 3.5
+	 */
+	public IAcceleoGenerationStrategy getDelegate() {
+		return delegate;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -137,6 +147,18 @@ public class DoNotGenerateGenerationStrategy extends AbstractGenerationStrategy
 		delegate.awaitCompletion();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#awaitCompletion(java.io.File)
+	 */
+	@Override
+	public void awaitCompletion(File file) throws InterruptedException {
+		if (delegate instanceof AbstractGenerationStrategy) {
+			((AbstractGenerationStrategy)delegate).awaitCompletion(file);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
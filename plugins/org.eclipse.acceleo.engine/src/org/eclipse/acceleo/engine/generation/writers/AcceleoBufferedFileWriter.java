@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.writers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Buffers the whole content of a generated file in memory, and only writes it to disk when closed. The
+ * content is then encoded at once and written through a {@link FileChannel}. Since nothing is written before
+ * it is closed, such a writer can be handed to another thread to be closed.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class AcceleoBufferedFileWriter extends AbstractAcceleoWriter {
+	/** Encoding of the target file, <code>null</code> for the System default. */
+	private final String charset;
+
+	/** The file in which this writer will write its content. */
+	private final File target;
+
+	/** Set to <code>true</code> once this writer has been closed. */
+	private boolean closed;
+
+	/** Tells whether closing this writer modified the target file. */
+	private boolean written;
+
+	/**
+	 * Constructs a writer for the given file. Nothing will be written to the file before this writer is
+	 * closed.
+	 * 
+	 * @param target
+	 *            File in which this writer will write its content.
+	 * @param charset
+	 *            Encoding that should be used to create the target file, <code>null</code> for the System
+	 *            default.
+	 */
+	public AcceleoBufferedFileWriter(File target, String charset) {
+		super();
+		this.target = target;
+		this.charset = charset;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter#close()
+	 */
+	@Override
+	public final void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		final Charset encoding;
+		if (charset != null) {
+			encoding = Charset.forName(charset);
+		} else {
+			encoding = Charset.defaultCharset();
+		}
+		final ByteBuffer content = encoding.encode(CharBuffer.wrap(toString()));
+		if (shouldWrite(content)) {
+			final FileOutputStream output = new FileOutputStream(target);
+			try {
+				final FileChannel channel = output.getChannel();
+				while (content.hasRemaining()) {
+					channel.write(content);
+				}
+			} finally {
+				output.close();
+			}
+			written = true;
+		}
+	}
+
+	/**
+	 * Returns the file in which this writer will write its content.
+	 * 
+	 * @return The file in which this writer will write its content.
+	 */
+	public File getTarget() {
+		return target;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter#getTargetPath()
+	 */
+	@Override
+	public String getTargetPath() {
+		return target.getAbsolutePath();
+	}
+
+	/**
+	 * Tells whether closing this writer modified the target file. This will return <code>false</code> if
+	 * the file did not need to be written, or if this writer hasn't been closed yet.
+	 * 
+	 * @return <code>true</code> if closing this writer modified the target file, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean hasWritten() {
+		return written;
+	}
+
+	/**
+	 * Tells whether the given content should be written to the target file. This default implementation
+	 * always returns <code>true</code>.
+	 * 
+	 * @param content
+	 *            The encoded content of the file. Implementations must not change its position.
+	 * @return <code>true</code> if <code>content</code> should be written to the target file,
+	 *         <code>false</code> otherwise.
+	 * @throws IOException
+	 *             Thrown if the target file cannot be read.
+	 */
+	protected boolean shouldWrite(ByteBuffer content) throws IOException {
+		return true;
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.generation.writers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffers the content of a generated file, then only writes it to disk if it differs from the content the
+ * file already has. Files which content did not change thus keep their time stamp.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public final class AcceleoComparingFileWriter extends AcceleoBufferedFileWriter {
+	/** Size of the buffer used to read the former content of the target file. */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/**
+	 * Constructs a writer for the given file. Nothing will be written to the file before this writer is
+	 * closed.
+	 * 
+	 * @param target
+	 *            File in which this writer will write its content.
+	 * @param charset
+	 *            Encoding that should be used to create the target file, <code>null</code> for the System
+	 *            default.
+	 */
+	public AcceleoComparingFileWriter(File target, String charset) {
+		super(target, charset);
+	}
+
+	/**
+	 * {@inheritDoc} The target file will only be written if its current content differs from the given
+	 * bytes. The file is only read if it has the expected length, and only up to its first difference.
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.writers.AcceleoBufferedFileWriter#shouldWrite(java.nio.ByteBuffer)
+	 */
+	@Override
+	protected boolean shouldWrite(ByteBuffer content) throws IOException {
+		final File target = getTarget();
+		final int length = content.remaining();
+		if (!target.isFile() || target.length() != length) {
+			return true;
+		}
+		final int start = content.position();
+		final InputStream input = new FileInputStream(target);
+		try {
+			final byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int offset = 0;
+			int read = input.read(buffer);
+			while (read != -1) {
+				if (offset + read > length) {
+					return true;
+				}
+				for (int i = 0; i < read; i++) {
+					if (buffer[i] != content.get(start + offset + i)) {
+						return true;
+					}
+				}
+				offset += read;
+				read = input.read(buffer);
+			}
+			return offset != length;
+		} finally {
+			input.close();
+		}
+	}
+}
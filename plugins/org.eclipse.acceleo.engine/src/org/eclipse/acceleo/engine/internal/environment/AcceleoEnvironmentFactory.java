@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import org.eclipse.acceleo.common.internal.utils.AcceleoPackageRegistry;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.event.IAcceleoTextGenerationListener;
 import org.eclipse.acceleo.engine.generation.AbstractAcceleoEnvironmentFactory;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
 import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationContext;
 import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitor;
@@ -57,6 +58,9 @@ public class AcceleoEnvironmentFactory extends AbstractAcceleoEnvironmentFactory
 	/** This will hold a reference to the class allowing for properties lookup. */
 	private AcceleoPropertiesLookup propertiesLookup;
 
+	/** Holds the state of the generation this factory has been created for. */
+	private final AcceleoGenerationSession session;
+
 	/**
 	 * Default constructor. Packages will be looked up into the global EMF registry.
 	 * 
@@ -80,6 +84,8 @@ public class AcceleoEnvironmentFactory extends AbstractAcceleoEnvironmentFactory
 		context = new AcceleoEvaluationContext<EClassifier>(generationRoot, listeners, strategy, monitor);
 		propertiesLookup = properties;
 		this.module = module;
+		session = new AcceleoGenerationSession(AcceleoEvaluationVisitor.getDebug(), AcceleoEvaluationVisitor
+				.getProfiler());
 	}
 
 	/**
@@ -121,7 +127,7 @@ public class AcceleoEnvironmentFactory extends AbstractAcceleoEnvironmentFactory
 	 */
 	@Override
 	public EvaluationEnvironment<EClassifier, EOperation, EStructuralFeature, EClass, EObject> createEvaluationEnvironment() {
-		return new AcceleoEvaluationEnvironment(module, propertiesLookup);
+		return new AcceleoEvaluationEnvironment(module, propertiesLookup, session);
 	}
 
 	/**
@@ -132,7 +138,7 @@ public class AcceleoEnvironmentFactory extends AbstractAcceleoEnvironmentFactory
 	@Override
 	public EvaluationEnvironment<EClassifier, EOperation, EStructuralFeature, EClass, EObject> createEvaluationEnvironment(
 			EvaluationEnvironment<EClassifier, EOperation, EStructuralFeature, EClass, EObject> parent) {
-		return new AcceleoEvaluationEnvironment(parent, module, propertiesLookup);
+		return new AcceleoEvaluationEnvironment(parent, module, propertiesLookup, session);
 	}
 
 	/**
@@ -159,7 +165,33 @@ public class AcceleoEnvironmentFactory extends AbstractAcceleoEnvironmentFactory
 	public void dispose() {
 		context.dispose();
 		propertiesLookup = null;
-		AcceleoLibraryOperationVisitor.dispose();
+		session.dispose();
+	}
+
+	/**
+	 * Sets the options of the generation this factory has been created for. This must be called before any
+	 * evaluation environment is created by this factory.
+	 * 
+	 * @param options
+	 *            The options of this factory's generation. <code>null</code> to use the current preferences.
+	 * @since 3.5
+	 */
+	public void setGenerationOptions(GenerationOptions options) {
+		session.setOptions(options);
+		context.setDebugMessagesEnabled(session.getOptions().isDebugMessagesEnabled());
+		if (session.getOptions().isProtectedAreaIndexEnabled()) {
+			context.indexProtectedAreas();
+		}
+	}
+
+	/**
+	 * Returns the session holding the state of the generation this factory has been created for.
+	 * 
+	 * @return The session of this factory's generation.
+	 * @since 3.5
+	 */
+	public AcceleoGenerationSession getSession() {
+		return session;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -91,8 +91,8 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	/** Holds the prefix we'll use for the temporary context variables created to hold context values. */
 	private static final String TEMPORARY_CONTEXT_VAR_PREFIX = "context$"; //$NON-NLS-1$
 
-	/** Holds the prefix we'll use for the temporary variables created to hold argument values. */
-	private static final String TEMPORARY_INVOCATION_ARG_PREFIX = "temporaryInvocationVariable$"; //$NON-NLS-1$
+	/** Holds the state of the generation this environment has been created for. */
+	private final AcceleoGenerationSession session;
 
 	/** This will allow the environment to know of the modules currently in the generation context. */
 	private final Set<Module> currentModules = new CompactHashSet<Module>();
@@ -105,6 +105,9 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	private final SetMultimap<Template, Template> overridingTemplates = AcceleoCollections
 			.newCompactLinkedHashSetMultimap();
 
+	/** Remembers the resolution of all template calls evaluated through this environment. */
+	private final TemplateDispatchCache dispatchCache = new TemplateDispatchCache();
+
 	/** This will hold a reference to the class allowing for properties lookup. */
 	private AcceleoPropertiesLookup propertiesLookup;
 
@@ -138,7 +141,28 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	public AcceleoEvaluationEnvironment(
 			EvaluationEnvironment<EClassifier, EOperation, EStructuralFeature, EClass, EObject> parent,
 			Module module, AcceleoPropertiesLookup properties) {
+		this(parent, module, properties, getParentSession(parent));
+	}
+
+	/**
+	 * This constructor is needed by the factory.
+	 * 
+	 * @param parent
+	 *            Parent evaluation environment.
+	 * @param module
+	 *            We will resolve dependencies for this module and keep references to all accessible
+	 *            templates.
+	 * @param properties
+	 *            The class allowing for properties lookup for this generation.
+	 * @param session
+	 *            Holds the state of the generation this environment is created for.
+	 * @since 3.5
+	 */
+	public AcceleoEvaluationEnvironment(
+			EvaluationEnvironment<EClassifier, EOperation, EStructuralFeature, EClass, EObject> parent,
+			Module module, AcceleoPropertiesLookup properties, AcceleoGenerationSession session) {
 		super(parent);
+		this.session = session;
 		scopedVariableMap.add(AcceleoCollections.<String, Object> newCircularArrayDequeMultimap());
 		mapAllTemplates(module);
 
@@ -162,7 +186,25 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	 *            The class allowing for properties lookup for this generation.
 	 */
 	public AcceleoEvaluationEnvironment(Module module, AcceleoPropertiesLookup properties) {
+		this(module, properties, new AcceleoGenerationSession());
+	}
+
+	/**
+	 * This constructor will create our environment given the module from which to resolve dependencies.
+	 * 
+	 * @param module
+	 *            We will resolve dependencies for this module and keep references to all accessible
+	 *            templates.
+	 * @param properties
+	 *            The class allowing for properties lookup for this generation.
+	 * @param session
+	 *            Holds the state of the generation this environment is created for.
+	 * @since 3.5
+	 */
+	public AcceleoEvaluationEnvironment(Module module, AcceleoPropertiesLookup properties,
+			AcceleoGenerationSession session) {
 		super();
+		this.session = session;
 		scopedVariableMap.add(AcceleoCollections.<String, Object> newCircularArrayDequeMultimap());
 		mapAllTemplates(module);
 
@@ -176,6 +218,22 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 		propertiesLookup = properties;
 	}
 
+	/**
+	 * Returns the session of the given parent environment if it is an Acceleo environment, a new session
+	 * otherwise.
+	 * 
+	 * @param parent
+	 *            Parent evaluation environment.
+	 * @return The session to use for a child of <code>parent</code>.
+	 */
+	private static AcceleoGenerationSession getParentSession(
+			EvaluationEnvironment<EClassifier, EOperation, EStructuralFeature, EClass, EObject> parent) {
+		if (parent instanceof AcceleoEvaluationEnvironment) {
+			return ((AcceleoEvaluationEnvironment)parent).getSession();
+		}
+		return new AcceleoGenerationSession();
+	}
+
 	/**
 	 * Returns the last value of the given list.
 	 * <p>
@@ -220,7 +278,7 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	@Override
 	public void add(String name, Object value) {
 		ListMultimap<String, Object> variableMap;
-		if (name.startsWith(TEMPORARY_CONTEXT_VAR_PREFIX) || name.startsWith(TEMPORARY_INVOCATION_ARG_PREFIX)) {
+		if (name.startsWith(TEMPORARY_CONTEXT_VAR_PREFIX)) {
 			variableMap = globalVariableMap;
 		} else {
 			variableMap = scopedVariableMap.getLast();
@@ -344,29 +402,36 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	 * @return The set of all applicable templates for these arguments
 	 */
 	public List<Template> getAllCandidates(Module origin, Template call, Object[] arguments) {
-		final List<Object> argumentTypes = new ArrayList<Object>(arguments.length);
-		for (int i = 0; i < arguments.length; i++) {
-			if (arguments[i] instanceof EObject) {
-				argumentTypes.add(((EObject)arguments[i]).eClass());
-			} else if (arguments[i] != null) {
-				argumentTypes.add(arguments[i].getClass());
-			} else {
-				argumentTypes.add(NULL_ARGUMENT);
-			}
-		}
+		return new ArrayList<Template>(getDispatchTarget(origin, call, arguments).getCandidates());
+	}
 
-		/*
-		 * NOTE : we depend on the ordering offered by List types. Do not change implementation without
-		 * testing.
-		 */
-		final List<Template> orderedNamesakes = reorderCandidatesPriority(origin, getAllCandidateNamesakes(
-				origin, call, argumentTypes));
-		final List<Template> dynamicOverriding = reorderDynamicOverrides(getAllDynamicCandidateOverriding(
-				orderedNamesakes, argumentTypes));
-		final List<Template> overriding = getAllCandidateOverriding(origin, orderedNamesakes, argumentTypes);
-
-		// overriding templates come first, then namesakes
-		return Lists.newArrayList(Iterables.concat(dynamicOverriding, overriding, orderedNamesakes));
+	/**
+	 * Returns the template that will actually be called for the given template call with the given arguments
+	 * if this can be determined without evaluating guards. This is equivalent to calling
+	 * {@link #getMostSpecificTemplate(Iterable, Object[])} on the result of
+	 * {@link #getAllCandidates(Module, Template, Object[])}, though the result will be cached for all
+	 * subsequent calls with the same argument types.
+	 * 
+	 * @param origin
+	 *            Origin of the template call.
+	 * @param call
+	 *            The called element.
+	 * @param arguments
+	 *            Arguments of the call.
+	 * @return The most specific template for these arguments, <code>null</code> if there are no applicable
+	 *         candidates or if one of them has a guard.
+	 */
+	public Template getUnguardedMostSpecificTemplate(Module origin, Template call, Object[] arguments) {
+		final TemplateDispatchCache.DispatchTarget target = getDispatchTarget(origin, call, arguments);
+		if (target.isGuarded() || target.getCandidates().isEmpty()) {
+			return null;
+		}
+		Template mostSpecific = target.getMostSpecific();
+		if (mostSpecific == null) {
+			mostSpecific = getMostSpecificTemplate(target.getCandidates(), arguments);
+			target.setMostSpecific(mostSpecific);
+		}
+		return mostSpecific;
 	}
 
 	/**
@@ -427,6 +492,16 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 		return super.getInvalidResult();
 	}
 
+	/**
+	 * Returns the session holding the state of the generation this environment has been created for.
+	 * 
+	 * @return The session of the current generation.
+	 * @since 3.5
+	 */
+	public AcceleoGenerationSession getSession() {
+		return session;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -480,7 +555,7 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	@Override
 	public void replace(String name, Object value) {
 		ListMultimap<String, Object> variableMap;
-		if (name.startsWith(TEMPORARY_CONTEXT_VAR_PREFIX) || name.startsWith(TEMPORARY_INVOCATION_ARG_PREFIX)) {
+		if (name.startsWith(TEMPORARY_CONTEXT_VAR_PREFIX)) {
 			variableMap = globalVariableMap;
 		} else {
 			variableMap = scopedVariableMap.getLast();
@@ -503,6 +578,55 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 		return variableMap.toString();
 	}
 
+	/**
+	 * Returns the resolution of the given template call, computing it if it isn't in the
+	 * {@link #dispatchCache} yet. Candidates will be ordered as described on
+	 * {@link #reorderCandidatesPriority(Module, Set)}.
+	 * 
+	 * @param origin
+	 *            Origin of the template call.
+	 * @param call
+	 *            The called element.
+	 * @param arguments
+	 *            Arguments of the call.
+	 * @return The resolution of the given call.
+	 */
+	private TemplateDispatchCache.DispatchTarget getDispatchTarget(Module origin, Template call,
+			Object[] arguments) {
+		final Object[] argumentTypes = new Object[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			if (arguments[i] instanceof EObject) {
+				argumentTypes[i] = ((EObject)arguments[i]).eClass();
+			} else if (arguments[i] != null) {
+				argumentTypes[i] = arguments[i].getClass();
+			} else {
+				argumentTypes[i] = NULL_ARGUMENT;
+			}
+		}
+
+		final TemplateDispatchCache.DispatchKey key = new TemplateDispatchCache.DispatchKey(origin, call,
+				argumentTypes);
+		TemplateDispatchCache.DispatchTarget target = dispatchCache.get(key);
+		if (target == null) {
+			final List<Object> argumentTypeList = Arrays.asList(argumentTypes);
+			/*
+			 * NOTE : we depend on the ordering offered by List types. Do not change implementation without
+			 * testing.
+			 */
+			final List<Template> orderedNamesakes = reorderCandidatesPriority(origin,
+					getAllCandidateNamesakes(origin, call, argumentTypeList));
+			final List<Template> dynamicOverriding = reorderDynamicOverrides(getAllDynamicCandidateOverriding(
+					orderedNamesakes, argumentTypeList));
+			final List<Template> overriding = getAllCandidateOverriding(origin, orderedNamesakes,
+					argumentTypeList);
+
+			// overriding templates come first, then namesakes
+			target = dispatchCache.put(key, Lists.newArrayList(Iterables.concat(dynamicOverriding,
+					overriding, orderedNamesakes)));
+		}
+		return target;
+	}
+
 	/**
 	 * Filters non-applicable templates out of the candidates list.
 	 * 
@@ -771,8 +895,6 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 	 * @return The set of loaded modules.
 	 */
 	private Set<Module> loadDynamicModules() {
-		final Set<File> dynamicModuleFiles = new CompactLinkedHashSet<File>();
-		final Set<Module> dynamicModules = new CompactLinkedHashSet<Module>();
 		// shortcut
 		ResourceSet resourceSet = null;
 		for (Module module : currentModules) {
@@ -786,8 +908,24 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 			// set as a blocker so that it is logged as an error
 			AcceleoEnginePlugin.log(AcceleoEngineMessages
 					.getString("AcceleoEvaluationEnvironment.DynamicModulesLoadingFailure"), true); //$NON-NLS-1$
-			return dynamicModules;
+			return new CompactLinkedHashSet<Module>();
+		}
+		// The resource set may be shared by concurrent generations of the same modules
+		synchronized(resourceSet) {
+			return loadDynamicModules(resourceSet);
 		}
+	}
+
+	/**
+	 * This will load all dynamic modules in the given {@link ResourceSet}.
+	 * 
+	 * @param resourceSet
+	 *            The resource set in which to load the dynamic modules.
+	 * @return The set of loaded modules.
+	 */
+	private Set<Module> loadDynamicModules(ResourceSet resourceSet) {
+		final Set<File> dynamicModuleFiles = new CompactLinkedHashSet<File>();
+		final Set<Module> dynamicModules = new CompactLinkedHashSet<Module>();
 		if (!(resourceSet.getURIConverter() instanceof DynamicModulesURIConverter)) {
 			resourceSet.setURIConverter(new DynamicModulesURIConverter(resourceSet.getURIConverter(), this));
 		}
@@ -852,6 +990,7 @@ public class AcceleoEvaluationEnvironment extends EcoreEvaluationEnvironment {
 			return;
 		}
 		currentModules.add(module);
+		AcceleoPatternCache.precompile(module);
 
 		for (final ModuleElement elem : module.getOwnedModuleElement()) {
 			if (elem instanceof Template) {
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.environment;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
+import org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache;
+import org.eclipse.acceleo.engine.internal.debug.IDebugAST;
+import org.eclipse.acceleo.profiler.Profiler;
+
+/**
+ * Holds all of the state that is specific to a single generation run. Compiled modules are never modified
+ * by the evaluation : anything that needs to be remembered during a generation is kept here so that a single
+ * loaded module can be shared by any number of concurrent generations.
+ * <p>
+ * A session is created by the environment factory of each generation and shared by all of the evaluation
+ * environments and visitors this factory creates. Sessions are not thread safe : a single generation is
+ * expected to be evaluated from a single thread at a time.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AcceleoGenerationSession {
+	/**
+	 * Maps a source String to its StringTokenizer. Needed for the implementation of the standard operation
+	 * "strtok(String, Integer)" as currently specified.
+	 */
+	private final Map<String, StringTokenizer> tokenizers = new HashMap<String, StringTokenizer>();
+
+	/** Index of the inverse references used by the eInverse() non standard operation, if any. */
+	private EInverseIndex inverseIndex;
+
+	/** Debugger that is to be notified of this generation's evaluation, if any. */
+	private final IDebugAST debug;
+
+	/** Profiler that is to record this generation's evaluation, if any. */
+	private final Profiler profiler;
+
+	/** Storage of the query results that may be shared with other generations, if any. */
+	private IAcceleoQueryCache queryCache;
+
+	/** Java services resolved by the "invoke" operation, shared with the other generations of the engine. */
+	private JavaServiceInvocationCache serviceInvocations;
+
+	/** Options of this generation. Resolved from the preferences on first access if not set explicitly. */
+	private GenerationOptions options;
+
+	/**
+	 * Creates a session that will neither be debugged nor profiled.
+	 */
+	public AcceleoGenerationSession() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a session given the debugger and profiler that are to be used for this generation.
+	 * 
+	 * @param debug
+	 *            Debugger that is to be notified of this generation's evaluation. Can be <code>null</code>.
+	 * @param profiler
+	 *            Profiler that is to record this generation's evaluation. Can be <code>null</code>.
+	 */
+	public AcceleoGenerationSession(IDebugAST debug, Profiler profiler) {
+		this.debug = debug;
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Returns the debugger that is to be notified of this generation's evaluation.
+	 * 
+	 * @return The debugger of this generation, <code>null</code> if none.
+	 */
+	public IDebugAST getDebug() {
+		return debug;
+	}
+
+	/**
+	 * Returns the profiler that is to record this generation's evaluation.
+	 * 
+	 * @return The profiler of this generation, <code>null</code> if none or if the profiler has been disabled
+	 *         by the options of this generation.
+	 */
+	public Profiler getProfiler() {
+		if (profiler != null && getOptions().isProfilerEnabled()) {
+			return profiler;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the cache of the Java services resolved by the "invoke" operation.
+	 * 
+	 * @return The cache of the Java services resolved by the "invoke" operation.
+	 */
+	public JavaServiceInvocationCache getServiceInvocations() {
+		if (serviceInvocations == null) {
+			serviceInvocations = new JavaServiceInvocationCache();
+		}
+		return serviceInvocations;
+	}
+
+	/**
+	 * Sets the cache of the Java services resolved by the "invoke" operation. This allows the services to be
+	 * resolved only once for all of the generations of a given engine.
+	 * 
+	 * @param serviceInvocations
+	 *            The cache of the Java services resolved by the "invoke" operation.
+	 */
+	public void setServiceInvocations(JavaServiceInvocationCache serviceInvocations) {
+		this.serviceInvocations = serviceInvocations;
+	}
+
+	/**
+	 * Returns the options of this generation.
+	 * 
+	 * @return The options of this generation.
+	 */
+	public GenerationOptions getOptions() {
+		if (options == null) {
+			options = GenerationOptions.fromPreferences();
+		}
+		return options;
+	}
+
+	/**
+	 * Sets the options of this generation. This must be called before the first evaluation environment of
+	 * this generation is created.
+	 * 
+	 * @param options
+	 *            The options of this generation. <code>null</code> to use the current preferences.
+	 */
+	public void setOptions(GenerationOptions options) {
+		this.options = options;
+	}
+
+	/**
+	 * Returns the storage of the query results that may be shared with other generations.
+	 * 
+	 * @return The storage of the query results that may be shared with other generations, <code>null</code>
+	 *         if results are not to be shared.
+	 */
+	public IAcceleoQueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Sets the storage of the query results that may be shared with other generations.
+	 * 
+	 * @param queryCache
+	 *            The storage of the query results that may be shared with other generations,
+	 *            <code>null</code> if results are not to be shared.
+	 */
+	public void setQueryCache(IAcceleoQueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/**
+	 * Returns the tokenizer that has last been created for the given source String.
+	 * 
+	 * @param source
+	 *            The source String.
+	 * @return The tokenizer that has last been created for the given source String, <code>null</code> if
+	 *         none.
+	 */
+	StringTokenizer getTokenizer(String source) {
+		return tokenizers.get(source);
+	}
+
+	/**
+	 * Remembers the tokenizer of the given source String.
+	 * 
+	 * @param source
+	 *            The source String.
+	 * @param tokenizer
+	 *            The tokenizer created for <code>source</code>.
+	 */
+	void putTokenizer(String source, StringTokenizer tokenizer) {
+		tokenizers.put(source, tokenizer);
+	}
+
+	/**
+	 * Returns the index of the inverse references used by the eInverse() operation. The index is created on
+	 * first access, and will only index the model once inverse references are asked of it.
+	 * 
+	 * @return The index of the inverse references of this generation.
+	 */
+	EInverseIndex getInverseIndex() {
+		if (inverseIndex == null) {
+			inverseIndex = new EInverseIndex();
+		}
+		return inverseIndex;
+	}
+
+	/**
+	 * Clears all state that could have been memorized during this generation.
+	 */
+	public void dispose() {
+		tokenizers.clear();
+		if (inverseIndex != null) {
+			inverseIndex.clear();
+			inverseIndex = null;
+		}
+	}
+}
@@ -13,7 +13,6 @@ package org.eclipse.acceleo.engine.internal.environment;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -28,21 +27,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.eclipse.acceleo.common.AcceleoServicesRegistry;
-import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.common.preference.AcceleoPreferences;
-import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
-import org.eclipse.acceleo.common.utils.AcceleoStandardLibrary;
 import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
 import org.eclipse.acceleo.common.utils.IAcceleoCrossReferenceProvider;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.AcceleoEnginePlugin;
 import org.eclipse.acceleo.engine.AcceleoEvaluationException;
+import org.eclipse.acceleo.engine.internal.environment.JavaServiceInvocationCache.JavaServiceInvocation;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.emf.common.EMFPlugin;
-import org.eclipse.emf.common.notify.Notifier;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EClassifier;
@@ -50,12 +45,8 @@ import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EOperation;
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.EStructuralFeature;
-import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.util.EcoreUtil;
-import org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer;
 import org.eclipse.ocl.util.Bag;
 import org.eclipse.ocl.util.CollectionUtil;
 
@@ -75,18 +66,6 @@ public final class AcceleoLibraryOperationVisitor {
 	/** Holds the prefix we'll use for the temporary context variables created to hold context values. */
 	private static final String TEMPORARY_CONTEXT_VAR_PREFIX = "context$"; //$NON-NLS-1$
 
-	/**
-	 * Maps a source String to its StringTokenizer. Needed for the implementation of the standard operation
-	 * "strtok(String, Integer)" as currently specified.
-	 */
-	private static final Map<String, StringTokenizer> TOKENIZERS = new HashMap<String, StringTokenizer>();
-
-	/**
-	 * Keeps track of the cross referencer that's been created for this evaluation, if any. This is used and
-	 * will be instantiated by the eInverse() non standard operation.
-	 */
-	private static CrossReferencer referencer;
-
 	static {
 		PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
 		PRIMITIVE_TYPES.put("boolean", boolean.class); //$NON-NLS-1$
@@ -122,48 +101,57 @@ public final class AcceleoLibraryOperationVisitor {
 	public static Object callNonStandardOperation(AcceleoEvaluationEnvironment env, EOperation operation,
 			Object source, Object... args) {
 		Object result = OPERATION_CALL_FAILED;
-		final String operationName = operation.getName();
-		if (AcceleoNonStandardLibrary.OPERATION_OCLANY_PLUS.equals(operationName)) {
-			// We'll only be here for two operations : OclAny::+(String) and String::+(OclAny)
-			assert source instanceof String || args[0] instanceof String;
-			result = toString(source) + toString(args[0]);
-		} else if (AcceleoNonStandardLibrary.OPERATION_OCLANY_TOSTRING.equals(operationName)) {
-			result = toString(source);
-		} else if (AcceleoNonStandardLibrary.OPERATION_OCLANY_INVOKE.equals(operationName)) {
-			if (args.length == 3) {
-				URI uri = operation.eResource().getURI();
-				uri = URI.createURI(URI.decode(uri.toString()));
-				result = invoke(uri, source, args);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_OCLANY_CURRENT.equals(operationName)) {
-			if (args.length == 1) {
-				result = getContext(env, args);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_OCLANY_GETPROPERTY.equals(operationName)) {
-			if (args.length == 1) {
-				result = getProperty(env, (String)args[0]);
-			} else if (args.length == 2 && args[1] instanceof String) {
-				result = getProperty(env, (String)args[0], (String)args[1]);
-			} else if (args.length == 2) {
-				result = getProperty(env, (String)args[0], ((List<Object>)args[1]).toArray());
-			} else if (args.length == 3) {
-				result = getProperty(env, (String)args[0], (String)args[1], ((List<Object>)args[2]).toArray());
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_OCLANY_LINE_SEPARATOR.equals(operationName)) {
-			if (EMFPlugin.IS_ECLIPSE_RUNNING) {
-				result = AcceleoPreferences.getLineSeparator();
-			} else {
-				result = System.getProperty("line.separator"); //$NON-NLS-1$
-			}
-		} else if (source instanceof String) {
-			result = callNonStandardStringOperation(operation, (String)source, args);
-		} else if (source instanceof EObject) {
-			result = callNonStandardEObjectOperation(operation, (EObject)source, args);
-		} else if (source instanceof Collection<?>) {
-			result = callNonStandardCollectionOperation(operation, (Collection<?>)source, args);
+		final LibraryOperation opcode = LibraryOperation.forName(operation.getName());
+		switch (opcode) {
+			case PLUS:
+				// We'll only be here for two operations : OclAny::+(String) and String::+(OclAny)
+				assert source instanceof String || args[0] instanceof String;
+				result = toString(source) + toString(args[0]);
+				break;
+			case TO_STRING:
+				result = toString(source);
+				break;
+			case INVOKE:
+				if (args.length == 3) {
+					result = invoke(env, operation.eResource().getURI(), source, args);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case CURRENT:
+				if (args.length == 1) {
+					result = getContext(env, args);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case GET_PROPERTY:
+				if (args.length == 1) {
+					result = getProperty(env, (String)args[0]);
+				} else if (args.length == 2 && args[1] instanceof String) {
+					result = getProperty(env, (String)args[0], (String)args[1]);
+				} else if (args.length == 2) {
+					result = getProperty(env, (String)args[0], ((List<Object>)args[1]).toArray());
+				} else if (args.length == 3) {
+					result = getProperty(env, (String)args[0], (String)args[1], ((List<Object>)args[2])
+							.toArray());
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case LINE_SEPARATOR:
+				if (EMFPlugin.IS_ECLIPSE_RUNNING) {
+					result = AcceleoPreferences.getLineSeparator();
+				} else {
+					result = System.getProperty("line.separator"); //$NON-NLS-1$
+				}
+				break;
+			default:
+				if (source instanceof String) {
+					result = callNonStandardStringOperation(opcode, (String)source, args);
+				} else if (source instanceof EObject) {
+					result = callNonStandardEObjectOperation(env, opcode, (EObject)source, args);
+				} else if (source instanceof Collection<?>) {
+					result = callNonStandardCollectionOperation(opcode, (Collection<?>)source, args);
+				}
+				break;
 		}
 
 		if (result != OPERATION_CALL_FAILED) {
@@ -191,70 +179,87 @@ public final class AcceleoLibraryOperationVisitor {
 	public static Object callStandardOperation(AcceleoEvaluationEnvironment env, EOperation operation,
 			Object source, Object... args) {
 		Object result = OPERATION_CALL_FAILED;
+		final LibraryOperation opcode = LibraryOperation.forName(operation.getName());
 		// Specifications of each standard operation can be found as comments of
 		// AcceleoStandardLibrary#OPERATION_*.
 		if (source instanceof String) {
 			final String sourceValue = (String)source;
 
-			if (AcceleoStandardLibrary.OPERATION_STRING_SUBSTITUTE.equals(operation.getName())) {
-				result = substitute(sourceValue, (String)args[0], (String)args[1], false);
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_INDEX.equals(operation.getName())) {
-				// Increment java index value by 1 for OCL
-				result = Integer.valueOf(sourceValue.indexOf((String)args[0]) + 1);
-				if (result.equals(Integer.valueOf(0))) {
-					result = Integer.valueOf(-1);
-				}
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_FIRST.equals(operation.getName())) {
-				int endIndex = ((Integer)args[0]).intValue();
-				if (endIndex < 0) {
-					result = env.getInvalidResult();
-				} else if (endIndex > sourceValue.length()) {
-					result = sourceValue;
-				} else {
-					result = sourceValue.substring(0, endIndex);
-				}
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_LAST.equals(operation.getName())) {
-				int charCount = ((Integer)args[0]).intValue();
-				if (charCount < 0) {
-					result = env.getInvalidResult();
-				} else if (charCount > sourceValue.length()) {
-					result = sourceValue;
-				} else {
-					result = sourceValue.substring(sourceValue.length() - charCount, sourceValue.length());
-				}
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_STRSTR.equals(operation.getName())) {
-				result = Boolean.valueOf(sourceValue.contains((String)args[0]));
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_STRTOK.equals(operation.getName())) {
-				result = strtok(sourceValue, (String)args[0], (Integer)args[1]);
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_STRCMP.equals(operation.getName())) {
-				result = Integer.valueOf(sourceValue.compareTo((String)args[0]));
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_ISALPHA.equals(operation.getName())) {
-				result = Boolean.valueOf(isAlpha(sourceValue));
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_ISALPHANUM.equals(operation.getName())) {
-				result = Boolean.valueOf(isAlphanumeric(sourceValue));
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_TOUPPERFIRST.equals(operation.getName())) {
-				if (sourceValue.length() == 0) {
-					result = sourceValue;
-				} else if (sourceValue.length() == 1) {
-					result = sourceValue.toUpperCase();
-				} else {
-					result = Character.toUpperCase(sourceValue.charAt(0)) + sourceValue.substring(1);
-				}
-			} else if (AcceleoStandardLibrary.OPERATION_STRING_TOLOWERFIRST.equals(operation.getName())) {
-				if (sourceValue.length() == 0) {
-					result = sourceValue;
-				} else if (sourceValue.length() == 1) {
-					result = sourceValue.toLowerCase();
-				} else {
-					result = Character.toLowerCase(sourceValue.charAt(0)) + sourceValue.substring(1);
-				}
+			switch (opcode) {
+				case SUBSTITUTE:
+					result = substitute(sourceValue, (String)args[0], (String)args[1], false);
+					break;
+				case INDEX:
+					// Increment java index value by 1 for OCL
+					result = Integer.valueOf(sourceValue.indexOf((String)args[0]) + 1);
+					if (result.equals(Integer.valueOf(0))) {
+						result = Integer.valueOf(-1);
+					}
+					break;
+				case FIRST:
+					int endIndex = ((Integer)args[0]).intValue();
+					if (endIndex < 0) {
+						result = env.getInvalidResult();
+					} else if (endIndex > sourceValue.length()) {
+						result = sourceValue;
+					} else {
+						result = sourceValue.substring(0, endIndex);
+					}
+					break;
+				case LAST:
+					int charCount = ((Integer)args[0]).intValue();
+					if (charCount < 0) {
+						result = env.getInvalidResult();
+					} else if (charCount > sourceValue.length()) {
+						result = sourceValue;
+					} else {
+						result = sourceValue.substring(sourceValue.length() - charCount, sourceValue
+								.length());
+					}
+					break;
+				case STRSTR:
+					result = Boolean.valueOf(sourceValue.contains((String)args[0]));
+					break;
+				case STRTOK:
+					result = strtok(env.getSession(), sourceValue, (String)args[0], (Integer)args[1]);
+					break;
+				case STRCMP:
+					result = Integer.valueOf(sourceValue.compareTo((String)args[0]));
+					break;
+				case IS_ALPHA:
+					result = Boolean.valueOf(isAlpha(sourceValue));
+					break;
+				case IS_ALPHANUM:
+					result = Boolean.valueOf(isAlphanumeric(sourceValue));
+					break;
+				case TO_UPPER_FIRST:
+					if (sourceValue.length() == 0) {
+						result = sourceValue;
+					} else if (sourceValue.length() == 1) {
+						result = sourceValue.toUpperCase();
+					} else {
+						result = Character.toUpperCase(sourceValue.charAt(0)) + sourceValue.substring(1);
+					}
+					break;
+				case TO_LOWER_FIRST:
+					if (sourceValue.length() == 0) {
+						result = sourceValue;
+					} else if (sourceValue.length() == 1) {
+						result = sourceValue.toLowerCase();
+					} else {
+						result = Character.toLowerCase(sourceValue.charAt(0)) + sourceValue.substring(1);
+					}
+					break;
+				default:
+					// Not one of the operations handled here
+					break;
 			}
 		} else if (source instanceof Integer || source instanceof Long) {
-			if (AcceleoStandardLibrary.OPERATION_INTEGER_TOSTRING.equals(operation.getName())) {
+			if (opcode == LibraryOperation.TO_STRING) {
 				result = source.toString();
 			}
 		} else if (source instanceof Double || source instanceof Float) {
-			if (AcceleoStandardLibrary.OPERATION_REAL_TOSTRING.equals(operation.getName())) {
+			if (opcode == LibraryOperation.TO_STRING) {
 				result = source.toString();
 			}
 		}
@@ -267,144 +272,170 @@ public final class AcceleoLibraryOperationVisitor {
 		throw getExceptionOperationCallFailed(operation, source, args);
 	}
 
-	/**
-	 * Clears all state that could have been memorized by this utility.
-	 */
-	public static void dispose() {
-		TOKENIZERS.clear();
-		if (referencer != null) {
-			referencer.clear();
-			referencer = null;
-		}
-	}
-
 	/**
 	 * The environment will delegate operation calls to this method if it needs to evaluate non-standard
 	 * EObject operations.
 	 * 
-	 * @param operation
-	 *            Operation which is to be evaluated.
+	 * @param opcode
+	 *            Opcode of the operation which is to be evaluated.
 	 * @param source
 	 *            Source on which the operations is evaluated.
 	 * @param args
 	 *            Arguments of the call.
 	 * @return Result of the operation call.
 	 */
-	private static Object callNonStandardCollectionOperation(EOperation operation, Collection<?> source,
-			Object... args) {
+	private static Object callNonStandardCollectionOperation(LibraryOperation opcode,
+			Collection<?> source, Object... args) {
 		Object result = OPERATION_CALL_FAILED;
-		final String operationName = operation.getName();
-
-		if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_SEP.equals(operationName)) {
-			result = sep(source, args);
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_FILTER.equals(operationName)) {
-			final Collection<Object> temp;
-
-			// Determine return type
-			if (source instanceof Bag) {
-				temp = CollectionUtil.createNewBag();
-			} else if (source instanceof HashSet && !(source instanceof LinkedHashSet)) {
-				temp = CollectionUtil.createNewSet();
-			} else if (source instanceof Set) {
-				temp = CollectionUtil.createNewOrderedSet();
-			} else {
-				temp = CollectionUtil.createNewSequence();
-			}
 
-			final Iterator<?> sourceIterator = source.iterator();
-			while (sourceIterator.hasNext()) {
-				final Object next = sourceIterator.next();
-				if (((EClassifier)args[0]).isInstance(next)) {
-					temp.add(next);
+		switch (opcode) {
+			case SEP:
+				result = sep(source, args);
+				break;
+			case FILTER:
+				result = filter(source, (EClassifier)args[0]);
+				break;
+			case REVERSE:
+				result = reverse(source);
+				break;
+			case LAST_INDEX_OF:
+				result = Integer.valueOf(new ArrayList<Object>(source).lastIndexOf(args[0]) + 1);
+				if (result.equals(Integer.valueOf(0))) {
+					result = Integer.valueOf(-1);
 				}
-			}
-			result = temp;
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_REVERSE.equals(operationName)) {
-			final List<Object> temp = new ArrayList<Object>(source);
-			Collections.reverse(temp);
-			if (source instanceof LinkedHashSet<?>) {
-				final Set<Object> reversedSet = new CompactLinkedHashSet<Object>(temp);
-				result = reversedSet;
-			} else {
-				result = temp;
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_LASTINDEXOF.equals(operationName)) {
-			final List<Object> temp = new ArrayList<Object>(source);
-			result = Integer.valueOf(temp.lastIndexOf(args[0]) + 1);
-			if (result.equals(Integer.valueOf(0))) {
-				result = Integer.valueOf(-1);
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_ADD_ALL.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Collection<?>) {
-				result = addAll(source, (Collection<?>)args[0]);
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_REMOVE_ALL.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Collection<?>) {
-				result = removeAll(source, (Collection<?>)args[0]);
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_DROP.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Integer) {
-				final List<Object> temp = new ArrayList<Object>(source);
-				int index = ((Integer)args[0]).intValue();
-				if (index <= temp.size()) {
-					result = temp.subList(index, temp.size());
+				break;
+			case ADD_ALL:
+				if (args.length == 1 && args[0] instanceof Collection<?>) {
+					result = addAll(source, (Collection<?>)args[0]);
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_DROP_RIGHT.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Integer) {
-				final List<Object> temp = new ArrayList<Object>(source);
-				int index = ((Integer)args[0]).intValue();
-				if (index <= temp.size()) {
-					result = temp.subList(0, temp.size() - index);
+				break;
+			case REMOVE_ALL:
+				if (args.length == 1 && args[0] instanceof Collection<?>) {
+					result = removeAll(source, (Collection<?>)args[0]);
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_STARTS_WITH.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Collection<?>) {
-				final List<Object> temp = new ArrayList<Object>(source);
-				List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
-
-				result = Boolean.FALSE;
-				if (temp.size() >= arg.size()) {
-					List<Object> subTemp = temp.subList(0, arg.size());
-					result = Boolean.valueOf(subTemp.equals(arg));
+				break;
+			case DROP:
+				if (args.length == 1 && args[0] instanceof Integer) {
+					final List<Object> temp = new ArrayList<Object>(source);
+					int index = ((Integer)args[0]).intValue();
+					if (index <= temp.size()) {
+						result = temp.subList(index, temp.size());
+					}
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_ENDS_WITH.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Collection<?>) {
-				final List<Object> temp = new ArrayList<Object>(source);
-				List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
-
-				result = Boolean.FALSE;
-				if (temp.size() >= arg.size()) {
-					List<Object> subTemp = temp.subList(temp.size() - arg.size(), temp.size());
-					result = Boolean.valueOf(subTemp.equals(arg));
+				break;
+			case DROP_RIGHT:
+				if (args.length == 1 && args[0] instanceof Integer) {
+					final List<Object> temp = new ArrayList<Object>(source);
+					int index = ((Integer)args[0]).intValue();
+					if (index <= temp.size()) {
+						result = temp.subList(0, temp.size() - index);
+					}
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_INDEX_OF_SLICE.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Collection<?>) {
-				final List<Object> temp = new ArrayList<Object>(source);
-				List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
-				int indexOfSubList = Collections.indexOfSubList(temp, arg);
-				result = Integer.valueOf(indexOfSubList + 1);
-				if (result.equals(Integer.valueOf(0))) {
-					result = Integer.valueOf(-1);
+				break;
+			case STARTS_WITH:
+				if (args.length == 1 && args[0] instanceof Collection<?>) {
+					final List<Object> temp = new ArrayList<Object>(source);
+					List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
+
+					result = Boolean.FALSE;
+					if (temp.size() >= arg.size()) {
+						List<Object> subTemp = temp.subList(0, arg.size());
+						result = Boolean.valueOf(subTemp.equals(arg));
+					}
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_COLLECTION_LAST_INDEX_OF_SLICE.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof Collection<?>) {
-				final List<Object> temp = new ArrayList<Object>(source);
-				List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
-				int indexOfSubList = Collections.lastIndexOfSubList(temp, arg);
-				result = Integer.valueOf(indexOfSubList + 1);
-				if (result.equals(Integer.valueOf(0))) {
-					result = Integer.valueOf(-1);
+				break;
+			case ENDS_WITH:
+				if (args.length == 1 && args[0] instanceof Collection<?>) {
+					final List<Object> temp = new ArrayList<Object>(source);
+					List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
+
+					result = Boolean.FALSE;
+					if (temp.size() >= arg.size()) {
+						List<Object> subTemp = temp.subList(temp.size() - arg.size(), temp.size());
+						result = Boolean.valueOf(subTemp.equals(arg));
+					}
 				}
-			}
+				break;
+			case INDEX_OF_SLICE:
+				if (args.length == 1 && args[0] instanceof Collection<?>) {
+					final List<Object> temp = new ArrayList<Object>(source);
+					List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
+					int indexOfSubList = Collections.indexOfSubList(temp, arg);
+					result = Integer.valueOf(indexOfSubList + 1);
+					if (result.equals(Integer.valueOf(0))) {
+						result = Integer.valueOf(-1);
+					}
+				}
+				break;
+			case LAST_INDEX_OF_SLICE:
+				if (args.length == 1 && args[0] instanceof Collection<?>) {
+					final List<Object> temp = new ArrayList<Object>(source);
+					List<Object> arg = new ArrayList<Object>((Collection<?>)args[0]);
+					int indexOfSubList = Collections.lastIndexOfSubList(temp, arg);
+					result = Integer.valueOf(indexOfSubList + 1);
+					if (result.equals(Integer.valueOf(0))) {
+						result = Integer.valueOf(-1);
+					}
+				}
+				break;
+			default:
+				// Not one of the operations handled here
+				break;
 		}
 
 		return result;
 	}
 
+	/**
+	 * Returns the elements of the source collection that are instances of the given type, in a collection of
+	 * the same kind as the source.
+	 * 
+	 * @param source
+	 *            The source collection.
+	 * @param type
+	 *            Type of the elements we seek to retrieve.
+	 * @return The elements of the source collection that are instances of the given type.
+	 */
+	private static Collection<Object> filter(Collection<?> source, EClassifier type) {
+		final Collection<Object> temp;
+
+		// Determine return type
+		if (source instanceof Bag) {
+			temp = CollectionUtil.createNewBag();
+		} else if (source instanceof HashSet && !(source instanceof LinkedHashSet)) {
+			temp = CollectionUtil.createNewSet();
+		} else if (source instanceof Set) {
+			temp = CollectionUtil.createNewOrderedSet();
+		} else {
+			temp = CollectionUtil.createNewSequence();
+		}
+
+		final Iterator<?> sourceIterator = source.iterator();
+		while (sourceIterator.hasNext()) {
+			final Object next = sourceIterator.next();
+			if (type.isInstance(next)) {
+				temp.add(next);
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Returns the elements of the source collection in reverse order.
+	 * 
+	 * @param source
+	 *            The source collection.
+	 * @return The elements of the source collection in reverse order.
+	 */
+	private static Collection<Object> reverse(Collection<?> source) {
+		final List<Object> temp = new ArrayList<Object>(source);
+		Collections.reverse(temp);
+		if (source instanceof LinkedHashSet<?>) {
+			return new CompactLinkedHashSet<Object>(temp);
+		}
+		return temp;
+	}
+
 	/**
 	 * Execute the operation sep('separator') or separator('prefix', 'separator', 'suffix') on the given
 	 * source.
@@ -510,67 +541,81 @@ public final class AcceleoLibraryOperationVisitor {
 	 * The environment will delegate operation calls to this method if it needs to evaluate non-standard
 	 * EObject operations.
 	 * 
-	 * @param operation
-	 *            Operation which is to be evaluated.
+	 * @param env
+	 *            The environment that asked for this evaluation.
+	 * @param opcode
+	 *            Opcode of the operation which is to be evaluated.
 	 * @param source
 	 *            Source on which the operations is evaluated.
 	 * @param args
 	 *            Arguments of the call.
 	 * @return Result of the operation call.
 	 */
-	private static Object callNonStandardEObjectOperation(EOperation operation, EObject source,
-			Object... args) {
+	private static Object callNonStandardEObjectOperation(AcceleoEvaluationEnvironment env,
+			LibraryOperation opcode, EObject source, Object... args) {
 		Object result = OPERATION_CALL_FAILED;
-		final String operationName = operation.getName();
 
-		if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_EALLCONTENTS.equals(operationName)) {
-			if (args.length == 0) {
-				result = eAllContents(source, null);
-			} else if (args.length == 1 && args[0] instanceof EClassifier) {
-				result = eAllContents(source, (EClassifier)args[0]);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_ANCESTORS.equals(operationName)) {
-			if (args.length == 0) {
-				result = ancestors(source, null);
-			} else if (args.length == 1 && args[0] instanceof EClassifier) {
-				result = ancestors(source, (EClassifier)args[0]);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_SIBLINGS.equals(operationName)) {
-			if (args.length == 0) {
-				result = siblings(source, null);
-			} else if (args.length == 1 && args[0] instanceof EClassifier) {
-				result = siblings(source, (EClassifier)args[0]);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_PRECEDINGSIBLINGS.equals(operationName)) {
-			if (args.length == 0) {
-				result = siblings(source, null, true);
-			} else if (args.length == 1 && args[0] instanceof EClassifier) {
-				result = siblings(source, (EClassifier)args[0], true);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_FOLLOWINGSIBLINGS.equals(operationName)) {
-			if (args.length == 0) {
-				result = siblings(source, null, false);
-			} else if (args.length == 1 && args[0] instanceof EClassifier) {
-				result = siblings(source, (EClassifier)args[0], false);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_EINVERSE.equals(operationName)) {
-			if (args.length == 0) {
-				result = eInverse(source, null);
-			} else if (args.length == 1 && args[0] instanceof EClassifier) {
-				result = eInverse(source, (EClassifier)args[0]);
-			}
-			// fall through : let else fail in UnsupportedOperationException
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_EGET.equals(operationName)) {
-			result = eGet(source, (String)args[0]);
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_ECONTAINER.equals(operationName)) {
-			result = eContainer(source, (EClassifier)args[0]);
-		} else if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_ECONTENTS.equals(operationName)) {
-			result = eContents(source, (EClassifier)args[0]);
+		switch (opcode) {
+			case EALLCONTENTS:
+				if (args.length == 0) {
+					result = eAllContents(source, null);
+				} else if (args.length == 1 && args[0] instanceof EClassifier) {
+					result = eAllContents(source, (EClassifier)args[0]);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case ANCESTORS:
+				if (args.length == 0) {
+					result = ancestors(source, null);
+				} else if (args.length == 1 && args[0] instanceof EClassifier) {
+					result = ancestors(source, (EClassifier)args[0]);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case SIBLINGS:
+				if (args.length == 0) {
+					result = siblings(source, null);
+				} else if (args.length == 1 && args[0] instanceof EClassifier) {
+					result = siblings(source, (EClassifier)args[0]);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case PRECEDING_SIBLINGS:
+				if (args.length == 0) {
+					result = siblings(source, null, true);
+				} else if (args.length == 1 && args[0] instanceof EClassifier) {
+					result = siblings(source, (EClassifier)args[0], true);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case FOLLOWING_SIBLINGS:
+				if (args.length == 0) {
+					result = siblings(source, null, false);
+				} else if (args.length == 1 && args[0] instanceof EClassifier) {
+					result = siblings(source, (EClassifier)args[0], false);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case EINVERSE:
+				if (args.length == 0) {
+					result = eInverse(env.getSession(), source, null);
+				} else if (args.length == 1 && args[0] instanceof EClassifier) {
+					result = eInverse(env.getSession(), source, (EClassifier)args[0]);
+				}
+				// other calls are left to fail in UnsupportedOperationException
+				break;
+			case EGET:
+				result = eGet(source, (String)args[0]);
+				break;
+			case ECONTAINER:
+				result = eContainer(source, (EClassifier)args[0]);
+				break;
+			case ECONTENTS:
+				result = eContents(source, (EClassifier)args[0]);
+				break;
+			default:
+				// Not one of the operations handled here
+				break;
 		}
 
 		return result;
@@ -580,100 +625,123 @@ public final class AcceleoLibraryOperationVisitor {
 	 * The environment will delegate operation calls to this method if it needs to evaluate non-standard
 	 * String operations.
 	 * 
-	 * @param operation
-	 *            Operation which is to be evaluated.
+	 * @param opcode
+	 *            Opcode of the operation which is to be evaluated.
 	 * @param source
 	 *            Source on which the operations is evaluated.
 	 * @param args
 	 *            Arguments of the call.
 	 * @return Result of the operation call.
 	 */
-	private static Object callNonStandardStringOperation(EOperation operation, String source, Object... args) {
+	private static Object callNonStandardStringOperation(LibraryOperation opcode, String source,
+			Object... args) {
 		Object result = OPERATION_CALL_FAILED;
-		final String operationName = operation.getName();
 
 		/*
 		 * Note that because of OCL limitations, String::+(OclAny) will be handled before we even arrive here.
 		 * See #callOperation().
 		 */
-		if (AcceleoNonStandardLibrary.OPERATION_STRING_SUBSTITUTEALL.equals(operationName)) {
-			result = substitute(source, (String)args[0], (String)args[1], true);
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_REPLACE.equals(operationName)) {
-			result = source.replaceFirst((String)args[0], (String)args[1]);
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_REPLACEALL.equals(operationName)) {
-			result = source.replaceAll((String)args[0], (String)args[1]);
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_ENDSWITH.equals(operationName)) {
-			result = Boolean.valueOf(source.endsWith((String)args[0]));
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_EQUALSIGNORECASE.equals(operationName)) {
-			result = Boolean.valueOf(source.equalsIgnoreCase((String)args[0]));
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_STARTSWITH.equals(operationName)) {
-			result = Boolean.valueOf(source.startsWith((String)args[0]));
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_TRIM.equals(operationName)) {
-			result = source.trim();
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_TOKENIZE.equals(operationName)) {
-			if (args.length == 1) {
-				result = tokenize(source, (String)args[0]);
-			} else if (args.length == 0) {
-				result = tokenize(source);
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_CONTAINS.equals(operationName)) {
-			result = Boolean.valueOf(source.contains((String)args[0]));
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_MATCHES.equals(operationName)) {
-			result = Boolean.valueOf(source.matches((String)args[0]));
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_LASTINDEX.equals(operationName)) {
-			if (args.length == 1) {
-				// Increment java index value by 1 for OCL
-				result = Integer.valueOf(source.lastIndexOf((String)args[0]) + 1);
-				if (result.equals(Integer.valueOf(0))) {
-					result = Integer.valueOf(-1);
+		switch (opcode) {
+			case SUBSTITUTE_ALL:
+				result = substitute(source, (String)args[0], (String)args[1], true);
+				break;
+			case REPLACE:
+				result = AcceleoPatternCache.compile((String)args[0]).matcher(source).replaceFirst(
+						(String)args[1]);
+				break;
+			case REPLACE_ALL:
+				result = AcceleoPatternCache.compile((String)args[0]).matcher(source).replaceAll(
+						(String)args[1]);
+				break;
+			case ENDS_WITH:
+				result = Boolean.valueOf(source.endsWith((String)args[0]));
+				break;
+			case EQUALS_IGNORE_CASE:
+				result = Boolean.valueOf(source.equalsIgnoreCase((String)args[0]));
+				break;
+			case STARTS_WITH:
+				result = Boolean.valueOf(source.startsWith((String)args[0]));
+				break;
+			case TRIM:
+				result = source.trim();
+				break;
+			case TOKENIZE:
+				if (args.length == 1) {
+					result = tokenize(source, (String)args[0]);
+				} else if (args.length == 0) {
+					result = tokenize(source);
 				}
-			} else if (args.length == 2) {
-				// Increment java index value by 1 for OCL
-				result = Integer
-						.valueOf(source.lastIndexOf((String)args[0], ((Integer)args[1]).intValue()) + 1);
-				if (result.equals(Integer.valueOf(0))) {
-					result = Integer.valueOf(-1);
+				break;
+			case CONTAINS:
+				result = Boolean.valueOf(source.contains((String)args[0]));
+				break;
+			case MATCHES:
+				result = Boolean.valueOf(AcceleoPatternCache.compile((String)args[0]).matcher(source)
+						.matches());
+				break;
+			case LAST_INDEX:
+				if (args.length == 1) {
+					// Increment java index value by 1 for OCL
+					result = Integer.valueOf(source.lastIndexOf((String)args[0]) + 1);
+					if (result.equals(Integer.valueOf(0))) {
+						result = Integer.valueOf(-1);
+					}
+				} else if (args.length == 2) {
+					// Increment java index value by 1 for OCL
+					result = Integer
+							.valueOf(source.lastIndexOf((String)args[0], ((Integer)args[1]).intValue()) + 1);
+					if (result.equals(Integer.valueOf(0))) {
+						result = Integer.valueOf(-1);
+					}
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_SUBSTRING.equals(operationName)) {
-			try {
-				result = source.substring(((Integer)args[0]).intValue() - 1);
-			} catch (IndexOutOfBoundsException e) {
-				AcceleoEnginePlugin.log(new AcceleoEvaluationException(AcceleoEngineMessages.getString(
-						"AcceleoLibraryOperationVisitor.IndexOutOfBoundsSubstring", source, args[0]), e), //$NON-NLS-1$
-						true);
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_INDEX.equals(operationName)) {
-			// If we are here, it should be for index(String, Integer) not for index(String)
-			if (args.length == 2) {
-				// Increment java index value by 1 for OCL
-				result = Integer.valueOf(source.indexOf((String)args[0], ((Integer)args[1]).intValue()) + 1);
-				if (result.equals(Integer.valueOf(0))) {
-					result = Integer.valueOf(-1);
+				break;
+			case SUBSTRING:
+				try {
+					result = source.substring(((Integer)args[0]).intValue() - 1);
+				} catch (IndexOutOfBoundsException e) {
+					AcceleoEnginePlugin.log(new AcceleoEvaluationException(AcceleoEngineMessages.getString(
+							"AcceleoLibraryOperationVisitor.IndexOutOfBoundsSubstring", source, args[0]), //$NON-NLS-1$
+							e), true);
 				}
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_TOKENIZE_LINE.equals(operationName)) {
-			final String dos = "\r\n"; //$NON-NLS-1$
-			final String unix = "\n"; //$NON-NLS-1$
-			final String macOsClassic = "\r"; //$NON-NLS-1$
-
-			if (source.contains(dos)) {
-				result = tokenize(source, dos);
-			} else if (source.contains(unix)) {
-				result = tokenize(source, unix);
-			} else if (source.contains(macOsClassic)) {
-				result = tokenize(source, macOsClassic);
-			} else {
-				// One line only
-				List<String> temp = new ArrayList<String>();
-				temp.add(source);
-				result = temp;
-			}
-		} else if (AcceleoNonStandardLibrary.OPERATION_STRING_PREFIX.equals(operationName)) {
-			if (args.length == 1 && args[0] instanceof String) {
-				String prefix = (String)args[0];
-				result = prefix + source;
-			}
+				break;
+			case INDEX:
+				// If we are here, it should be for index(String, Integer) not for index(String)
+				if (args.length == 2) {
+					// Increment java index value by 1 for OCL
+					result = Integer.valueOf(source.indexOf((String)args[0], ((Integer)args[1]).intValue())
+							+ 1);
+					if (result.equals(Integer.valueOf(0))) {
+						result = Integer.valueOf(-1);
+					}
+				}
+				break;
+			case TOKENIZE_LINE:
+				final String dos = "\r\n"; //$NON-NLS-1$
+				final String unix = "\n"; //$NON-NLS-1$
+				final String macOsClassic = "\r"; //$NON-NLS-1$
+
+				if (source.contains(dos)) {
+					result = tokenize(source, dos);
+				} else if (source.contains(unix)) {
+					result = tokenize(source, unix);
+				} else if (source.contains(macOsClassic)) {
+					result = tokenize(source, macOsClassic);
+				} else {
+					// One line only
+					List<String> temp = new ArrayList<String>();
+					temp.add(source);
+					result = temp;
+				}
+				break;
+			case PREFIX:
+				if (args.length == 1 && args[0] instanceof String) {
+					String prefix = (String)args[0];
+					result = prefix + source;
+				}
+				break;
+			default:
+				// Not one of the operations handled here
+				break;
 		}
 
 		return result;
@@ -774,55 +842,39 @@ public final class AcceleoLibraryOperationVisitor {
 	 *            The EObject we seek to retrieve a feature value of.
 	 * @param featureName
 	 *            Name of the feature which value we need to retrieve.
-	 * @return Value of the given feature on the given object.
+	 * @return Value of the given feature on the given object, <code>null</code> if there is no such feature.
 	 */
 	private static Object eGet(EObject source, String featureName) {
-		Object result = null;
-
-		for (EStructuralFeature feature : source.eClass().getEAllStructuralFeatures()) {
-			if (feature.getName().equals(featureName)) {
-				result = source.eGet(feature);
-			}
+		// The EClass hashes its features by name once, and only does it again if they change
+		final EStructuralFeature feature = source.eClass().getEStructuralFeature(featureName);
+		if (feature != null) {
+			return source.eGet(feature);
 		}
-
-		return result;
+		return null;
 	}
 
 	/**
-	 * Returns a Sequence containing the full set of the inverse references on the receiver.
+	 * Returns an ordered set containing the full set of the inverse references on the receiver.
 	 * 
+	 * @param session
+	 *            Session of the current generation, holding the index of inverse references used when the
+	 *            target has no cross reference provider.
 	 * @param target
 	 *            The EObject we seek the inverse references of.
 	 * @param filter
 	 *            Types of the EObjects we seek to retrieve.
-	 * @return Sequence containing the full set of inverse references.
+	 * @return Ordered set containing the full set of inverse references.
 	 */
-	private static Set<EObject> eInverse(EObject target, EClassifier filter) {
-		final Set<EObject> result = new CompactLinkedHashSet<EObject>();
-
+	private static Set<EObject> eInverse(AcceleoGenerationSession session, EObject target,
+			EClassifier filter) {
 		final IAcceleoCrossReferenceProvider crossReferenceProvider = getCrossReferencerAdapter(target);
 		if (crossReferenceProvider != null) {
 			if (filter != null) {
-				result.addAll(crossReferenceProvider.getInverseReferences(target, filter));
-			} else {
-				result.addAll(crossReferenceProvider.getInverseReferences(target));
-			}
-		} else {
-			if (referencer == null) {
-				createEInverseCrossreferencer(target);
-			}
-			final Collection<EStructuralFeature.Setting> settings = referencer.get(target);
-			if (settings == null) {
-				return Collections.emptySet();
-			}
-			for (EStructuralFeature.Setting setting : settings) {
-				if (filter == null || filter.isInstance(setting.getEObject())) {
-					result.add(setting.getEObject());
-				}
+				return crossReferenceProvider.getInverseReferences(target, filter);
 			}
+			return crossReferenceProvider.getInverseReferences(target);
 		}
-
-		return result;
+		return session.getInverseIndex().getInverseReferences(target, filter);
 	}
 
 	/**
@@ -898,73 +950,6 @@ public final class AcceleoLibraryOperationVisitor {
 		return method;
 	}
 
-	/**
-	 * This will create the cross referencer that's to be used by the "eInverse" library. It will attempt to
-	 * create the cross referencer on the target's resourceSet. If it is null, we'll then attempt to create
-	 * the cross referencer on the target's resource. When the resource too is null, we'll create the cross
-	 * referencer on the target's root container.
-	 * 
-	 * @param target
-	 *            Target of the cross referencing.
-	 */
-	private static void createEInverseCrossreferencer(EObject target) {
-		Resource res = null;
-		ResourceSet rs = null;
-		if (target.eResource() != null) {
-			res = target.eResource();
-		}
-		if (res != null && res.getResourceSet() != null) {
-			rs = res.getResourceSet();
-		}
-
-		if (rs != null) {
-			// Manually add the ecore.ecore resource in the list of cross referenced notifiers
-			final Resource ecoreResource = EcorePackage.eINSTANCE.getEClass().eResource();
-			final Collection<Notifier> notifiers = new ArrayList<Notifier>();
-			for (Resource crossReferenceResource : rs.getResources()) {
-				if (!IAcceleoConstants.EMTL_FILE_EXTENSION.equals(crossReferenceResource.getURI()
-						.fileExtension())) {
-					notifiers.add(crossReferenceResource);
-				}
-			}
-			notifiers.add(ecoreResource);
-
-			referencer = new CrossReferencer(notifiers) {
-				/** Default SUID. */
-				private static final long serialVersionUID = 1L;
-
-				// static initializer
-				{
-					crossReference();
-					done();
-				}
-			};
-		} else if (res != null) {
-			referencer = new CrossReferencer(res) {
-				/** Default SUID. */
-				private static final long serialVersionUID = 1L;
-
-				// static initializer
-				{
-					crossReference();
-					done();
-				}
-			};
-		} else {
-			EObject targetObject = EcoreUtil.getRootContainer(target);
-			referencer = new CrossReferencer(targetObject) {
-				/** Default SUID. */
-				private static final long serialVersionUID = 1L;
-
-				// static initializer
-				{
-					crossReference();
-					done();
-				}
-			};
-		}
-	}
-
 	/**
 	 * This will search the first context value corresponding to the given filter or index.
 	 * 
@@ -1070,7 +1055,7 @@ public final class AcceleoLibraryOperationVisitor {
 	 * @return The value of the property corresponding to the given key.
 	 */
 	private static String getProperty(AcceleoEvaluationEnvironment env, String key) {
-		String propertyValue = env.getPropertiesLookup().getProperty(key);
+		String propertyValue = env.getPropertiesLookup().getProperty(key, env.getSession().getOptions());
 		/*
 		 * Pass through MessageFormat so that we're consistent in the handling of special chars such as the
 		 * apostrophe.
@@ -1095,7 +1080,7 @@ public final class AcceleoLibraryOperationVisitor {
 	 * @return The value of the property corresponding to the given key.
 	 */
 	private static String getProperty(AcceleoEvaluationEnvironment env, String key, Object[] arguments) {
-		String propertyValue = env.getPropertiesLookup().getProperty(key);
+		String propertyValue = env.getPropertiesLookup().getProperty(key, env.getSession().getOptions());
 		if (propertyValue != null) {
 			propertyValue = MessageFormat.format(propertyValue, arguments);
 		}
@@ -1116,7 +1101,8 @@ public final class AcceleoLibraryOperationVisitor {
 	 * @return The value of the property corresponding to the given key.
 	 */
 	private static String getProperty(AcceleoEvaluationEnvironment env, String propertiesFileName, String key) {
-		String propertyValue = env.getPropertiesLookup().getProperty(propertiesFileName, key);
+		String propertyValue = env.getPropertiesLookup().getProperty(propertiesFileName, key,
+				env.getSession().getOptions());
 		/*
 		 * Pass through MessageFormat so that we're consistent in the handling of special chars such as the
 		 * apostrophe.
@@ -1145,7 +1131,8 @@ public final class AcceleoLibraryOperationVisitor {
 	 */
 	private static String getProperty(AcceleoEvaluationEnvironment env, String propertiesFileName,
 			String key, Object[] arguments) {
-		String propertyValue = env.getPropertiesLookup().getProperty(propertiesFileName, key);
+		String propertyValue = env.getPropertiesLookup().getProperty(propertiesFileName, key,
+				env.getSession().getOptions());
 		if (propertyValue != null) {
 			propertyValue = MessageFormat.format(propertyValue, arguments);
 		}
@@ -1153,10 +1140,13 @@ public final class AcceleoLibraryOperationVisitor {
 	}
 
 	/**
-	 * Handles the invocation of a service.
+	 * Handles the invocation of a service. The service method is resolved on the first invocation of a given
+	 * (module, class, signature) triple, subsequent invocations will reuse it.
 	 * 
-	 * @param moduleURI
-	 *            URI of the module which is currently being evaluated.
+	 * @param env
+	 *            The environment that calls for this evaluation.
+	 * @param resourceURI
+	 *            URI of the resource containing the invoke operation.
 	 * @param source
 	 *            Receiver of the invocation. It will be passed as the first argument of the service
 	 *            invocation.
@@ -1166,54 +1156,19 @@ public final class AcceleoLibraryOperationVisitor {
 	 * @return Result of the invocation.
 	 */
 	@SuppressWarnings("unchecked")
-	private static Object invoke(URI moduleURI, Object source, Object[] args) {
-		Object result = null;
-		final Class<?> serviceClass = AcceleoServicesRegistry.INSTANCE.addServiceClass(moduleURI,
-				(String)args[0]);
-		if (serviceClass == null) {
-			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
-					"AcceleoEvaluationEnvironment.ClassNotFound", args[0], moduleURI.lastSegment())); //$NON-NLS-1$
-		}
+	private static Object invoke(AcceleoEvaluationEnvironment env, URI resourceURI, Object source,
+			Object[] args) {
+		final String className = (String)args[0];
 		final String methodSignature = (String)args[1];
+		final JavaServiceInvocationCache cache = env.getSession().getServiceInvocations();
+		JavaServiceInvocation invocation = cache.get(resourceURI, className, methodSignature);
+		if (invocation == null) {
+			invocation = resolveInvocation(resourceURI, className, methodSignature);
+			cache.put(resourceURI, className, methodSignature, invocation);
+		}
+
 		try {
-			final Method method = findInvokeMethod(serviceClass, methodSignature);
-			// method cannot be null at this point. findInvokeMethod has thrown an exception in such cases
-
-			final List<Object> invocationArguments = (List<Object>)args[2];
-			if (method.getParameterTypes().length == 0) {
-				// If we can use the method from the Java service on the current EObject we do it
-				if (Modifier.isStatic(method.getModifiers())) {
-					result = method.invoke(null);
-				} else if (serviceClass.isInstance(source) && invocationArguments.size() == 0) {
-					result = method.invoke(source);
-				} else if (invocationArguments.size() == 1
-						&& serviceClass.isInstance(invocationArguments.get(0))) {
-					result = method.invoke(invocationArguments.get(0));
-				} else {
-					result = method.invoke(AcceleoServicesRegistry.INSTANCE.getServiceInstance(serviceClass));
-				}
-			} else {
-				if (Modifier.isStatic(method.getModifiers())) {
-					result = method.invoke(null, invocationArguments.toArray(new Object[invocationArguments
-							.size()]));
-				} else if (method.getParameterTypes().length == invocationArguments.size()
-						&& serviceClass.isInstance(source)) {
-					result = method.invoke(source, invocationArguments.toArray(new Object[invocationArguments
-							.size()]));
-				} else if (invocationArguments.size() > 0
-						&& (invocationArguments.size() - method.getParameterTypes().length > 0)
-						&& serviceClass.isInstance(invocationArguments.get(0))) {
-					Object newSource = invocationArguments.remove(0);
-					result = method.invoke(newSource, invocationArguments
-							.toArray(new Object[invocationArguments.size()]));
-				} else {
-					result = method.invoke(AcceleoServicesRegistry.INSTANCE.getServiceInstance(serviceClass),
-							invocationArguments.toArray(new Object[invocationArguments.size()]));
-				}
-			}
-		} catch (NoSuchMethodException e) {
-			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
-					"AcceleoEvaluationEnvironment.NoSuchMethod", methodSignature, args[0]), e); //$NON-NLS-1$
+			return invocation.invoke(source, (List<Object>)args[2]);
 		} catch (IllegalArgumentException e) {
 			throw new AcceleoEvaluationException(e.getMessage(), e);
 		} catch (IllegalAccessException e) {
@@ -1222,14 +1177,41 @@ public final class AcceleoLibraryOperationVisitor {
 			 * members.
 			 */
 			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
-					"AcceleoEvaluationEnvironment.RestrictedMethod", methodSignature, args[0]), e); //$NON-NLS-1$
+					"AcceleoEvaluationEnvironment.RestrictedMethod", methodSignature, className), e); //$NON-NLS-1$
 		} catch (InvocationTargetException e) {
 			throw new AcceleoEvaluationException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Looks up the service class and method corresponding to the given invocation.
+	 * 
+	 * @param resourceURI
+	 *            URI of the resource containing the invoke operation.
+	 * @param className
+	 *            Qualified name of the service class.
+	 * @param methodSignature
+	 *            Signature of the service method.
+	 * @return The resolved service method. Will throw exceptions if it cannot be found.
+	 */
+	private static JavaServiceInvocation resolveInvocation(URI resourceURI, String className,
+			String methodSignature) {
+		final URI moduleURI = URI.createURI(URI.decode(resourceURI.toString()));
+		final Class<?> serviceClass = AcceleoServicesRegistry.INSTANCE.addServiceClass(moduleURI, className);
+		if (serviceClass == null) {
+			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
+					"AcceleoEvaluationEnvironment.ClassNotFound", className, moduleURI.lastSegment())); //$NON-NLS-1$
+		}
+		try {
+			// method cannot be null. findInvokeMethod throws an exception in such cases
+			return new JavaServiceInvocation(serviceClass, findInvokeMethod(serviceClass, methodSignature));
+		} catch (NoSuchMethodException e) {
+			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
+					"AcceleoEvaluationEnvironment.NoSuchMethod", methodSignature, className), e); //$NON-NLS-1$
 		} catch (ClassNotFoundException e) {
 			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
-					"AcceleoEvaluationEnvironment.ParameterClassNotFound", methodSignature, args[0]), e); //$NON-NLS-1$
+					"AcceleoEvaluationEnvironment.ParameterClassNotFound", methodSignature, className), e); //$NON-NLS-1$
 		}
-		return result;
 	}
 
 	/**
@@ -1337,6 +1319,8 @@ public final class AcceleoLibraryOperationVisitor {
 	 * Acceleo specification, we'll return the empty String instead.
 	 * </p>
 	 * 
+	 * @param session
+	 *            Session of the current generation, holding the tokenizers created so far.
 	 * @param source
 	 *            Source String in which tokenization has to take place.
 	 * @param delimiters
@@ -1348,7 +1332,8 @@ public final class AcceleoLibraryOperationVisitor {
 	 * @return The first of all tokens if <code>flag</code> is <code>0</code>, the next token if
 	 *         <code>flag</code> is <code>1</code>. Fails in {@link AcceleoEvaluationException} otherwise.
 	 */
-	private static String strtok(String source, String delimiters, Integer flag) {
+	private static String strtok(AcceleoGenerationSession session, String source, String delimiters,
+			Integer flag) {
 		// flag == 0, create a tokenizer, cache it then return its first element.
 		/*
 		 * flag == 1, create the tokenizer if none exists for this source, retrieve the existing one
@@ -1356,13 +1341,13 @@ public final class AcceleoLibraryOperationVisitor {
 		 */
 		if (flag.intValue() == 0) {
 			final StringTokenizer tokenizer = new StringTokenizer(source, delimiters);
-			TOKENIZERS.put(source, tokenizer);
+			session.putTokenizer(source, tokenizer);
 			return tokenizer.nextToken();
 		} else if (flag.intValue() == 1) {
-			StringTokenizer tokenizer = TOKENIZERS.get(source);
+			StringTokenizer tokenizer = session.getTokenizer(source);
 			if (tokenizer == null) {
 				tokenizer = new StringTokenizer(source, delimiters);
-				TOKENIZERS.put(source, tokenizer);
+				session.putTokenizer(source, tokenizer);
 			}
 			String token = ""; //$NON-NLS-1$
 			if (tokenizer.hasMoreTokens()) {
@@ -1399,10 +1384,10 @@ public final class AcceleoLibraryOperationVisitor {
 		}
 
 		if (substituteAll) {
-			return Pattern.compile(substring, Pattern.LITERAL).matcher(source).replaceAll(
+			return AcceleoPatternCache.compileLiteral(substring).matcher(source).replaceAll(
 					Matcher.quoteReplacement(replacement));
 		}
-		return Pattern.compile(substring, Pattern.LITERAL).matcher(source).replaceFirst(
+		return AcceleoPatternCache.compileLiteral(substring).matcher(source).replaceFirst(
 				Matcher.quoteReplacement(replacement));
 	}
 
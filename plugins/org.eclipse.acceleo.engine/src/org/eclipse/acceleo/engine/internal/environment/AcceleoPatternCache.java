@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.environment;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.acceleo.model.mtl.Module;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.ocl.expressions.OCLExpression;
+import org.eclipse.ocl.expressions.OperationCallExp;
+import org.eclipse.ocl.expressions.StringLiteralExp;
+
+/**
+ * Bounded cache of the regular expressions compiled for the Acceleo string operations. The "replace",
+ * "replaceAll" and "matches" operations would otherwise compile their pattern anew on each call, as would
+ * "substitute" and "substituteAll" for their literal pattern.
+ * <p>
+ * This cache is shared by all generations, possibly from several threads at once. It holds at most
+ * {@link #MAXIMUM_SIZE} patterns, evicting the least recently used first. Patterns given as String literals
+ * in a module are compiled once when that module is first mapped by an evaluation environment (see
+ * {@link #precompile(Module)}).
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AcceleoPatternCache {
+	/** Maximum number of patterns this cache will hold. */
+	public static final int MAXIMUM_SIZE = 512;
+
+	/** Source of the annotation placed on non-standard library operations. */
+	private static final String NON_STANDARD_ANNOTATION = "MTL non-standard"; //$NON-NLS-1$
+
+	/** Source of the annotation placed on standard library operations. */
+	private static final String STANDARD_ANNOTATION = "MTL"; //$NON-NLS-1$
+
+	/** The compiled patterns, in access order. */
+	private static final Map<PatternKey, Pattern> PATTERNS = new LinkedHashMap<PatternKey, Pattern>(16,
+			0.75f, true) {
+		/** Generated SUID. */
+		private static final long serialVersionUID = -5293734851357744536L;
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PatternKey, Pattern> eldest) {
+			return size() > MAXIMUM_SIZE;
+		}
+	};
+
+	/** Modules which literal patterns have already been compiled. Keys are weak so as not to leak modules. */
+	private static final Map<Module, Boolean> PRECOMPILED_MODULES = new WeakHashMap<Module, Boolean>();
+
+	/** Utility classes don't need to (and shouldn't be) instantiated. */
+	private AcceleoPatternCache() {
+		// Hides default constructor
+	}
+
+	/**
+	 * Returns the compiled form of the given regular expression.
+	 * 
+	 * @param regex
+	 *            The regular expression to compile.
+	 * @return The compiled form of the given regular expression.
+	 * @throws PatternSyntaxException
+	 *             Thrown if <code>regex</code> is not a valid regular expression.
+	 */
+	public static Pattern compile(String regex) {
+		return compile(regex, 0);
+	}
+
+	/**
+	 * Returns the compiled form of a pattern matching the given String literally.
+	 * 
+	 * @param literal
+	 *            The String that is to be matched literally.
+	 * @return The compiled form of a pattern matching the given String literally.
+	 */
+	public static Pattern compileLiteral(String literal) {
+		return compile(literal, Pattern.LITERAL);
+	}
+
+	/**
+	 * Returns the compiled form of the given regular expression with the given flags.
+	 * 
+	 * @param regex
+	 *            The regular expression to compile.
+	 * @param flags
+	 *            Match flags, as expected by {@link Pattern#compile(String, int)}.
+	 * @return The compiled form of the given regular expression.
+	 * @throws PatternSyntaxException
+	 *             Thrown if <code>regex</code> is not a valid regular expression.
+	 */
+	private static Pattern compile(String regex, int flags) {
+		final PatternKey key = new PatternKey(regex, flags);
+		Pattern pattern;
+		synchronized(PATTERNS) {
+			pattern = PATTERNS.get(key);
+		}
+		if (pattern == null) {
+			// Compile outside of the lock : we may compile twice the same pattern, but we'll never block on it
+			pattern = Pattern.compile(regex, flags);
+			synchronized(PATTERNS) {
+				PATTERNS.put(key, pattern);
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Compiles the patterns given as String literals to the library's regular expression operations in the
+	 * given module, unless it has been done already. Invalid patterns are ignored : they will fail when
+	 * evaluated.
+	 * 
+	 * @param module
+	 *            The module which literal patterns are to be compiled.
+	 */
+	public static void precompile(Module module) {
+		synchronized(PRECOMPILED_MODULES) {
+			if (PRECOMPILED_MODULES.put(module, Boolean.TRUE) != null) {
+				return;
+			}
+		}
+		final Iterator<EObject> contents = module.eAllContents();
+		while (contents.hasNext()) {
+			final EObject next = contents.next();
+			if (next instanceof OperationCallExp<?, ?>) {
+				precompile((OperationCallExp<?, ?>)next);
+			}
+		}
+	}
+
+	/**
+	 * Clears all compiled patterns from this cache.
+	 */
+	public static void clear() {
+		synchronized(PATTERNS) {
+			PATTERNS.clear();
+		}
+		synchronized(PRECOMPILED_MODULES) {
+			PRECOMPILED_MODULES.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of patterns currently held by this cache.
+	 * 
+	 * @return The number of patterns currently held by this cache.
+	 */
+	public static int size() {
+		synchronized(PATTERNS) {
+			return PATTERNS.size();
+		}
+	}
+
+	/**
+	 * Compiles the pattern of the given call if it is a call to one of the library's regular expression
+	 * operations with a String literal as its first argument.
+	 * 
+	 * @param call
+	 *            The operation call which pattern is to be compiled.
+	 */
+	private static void precompile(OperationCallExp<?, ?> call) {
+		if (!(call.getReferredOperation() instanceof EOperation) || call.getArgument().isEmpty()) {
+			return;
+		}
+		final EOperation operation = (EOperation)call.getReferredOperation();
+		if (operation.getEAnnotation(NON_STANDARD_ANNOTATION) == null
+				&& operation.getEAnnotation(STANDARD_ANNOTATION) == null) {
+			return;
+		}
+		final OCLExpression<?> firstArgument = call.getArgument().get(0);
+		if (!(firstArgument instanceof StringLiteralExp<?>)) {
+			return;
+		}
+		final String literal = ((StringLiteralExp<?>)firstArgument).getStringSymbol();
+		if (literal == null) {
+			return;
+		}
+		try {
+			switch (LibraryOperation.forName(operation.getName())) {
+				case REPLACE:
+				case REPLACE_ALL:
+				case MATCHES:
+					compile(literal);
+					break;
+				case SUBSTITUTE:
+				case SUBSTITUTE_ALL:
+					compileLiteral(literal);
+					break;
+				default:
+					// Not a regular expression operation
+					break;
+			}
+		} catch (PatternSyntaxException e) {
+			// The evaluation will report it
+		}
+	}
+
+	/**
+	 * Identifies a compiled pattern by its expression and flags.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class PatternKey {
+		/** The regular expression. */
+		private final String regex;
+
+		/** Match flags of the pattern. */
+		private final int flags;
+
+		/**
+		 * Creates a key for the given pattern.
+		 * 
+		 * @param regex
+		 *            The regular expression.
+		 * @param flags
+		 *            Match flags of the pattern.
+		 */
+		PatternKey(String regex, int flags) {
+			this.regex = regex;
+			this.flags = flags;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return regex.hashCode() * 31 + flags;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PatternKey)) {
+				return false;
+			}
+			final PatternKey other = (PatternKey)obj;
+			return flags == other.flags && regex.equals(other.regex);
+		}
+	}
+}
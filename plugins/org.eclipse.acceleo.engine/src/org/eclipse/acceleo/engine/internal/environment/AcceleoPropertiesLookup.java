@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2012 Obeo.
+ * Copyright (c) 2010, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -24,6 +24,7 @@ import org.eclipse.acceleo.common.internal.utils.workspace.AcceleoWorkspaceUtil;
 import org.eclipse.acceleo.common.preference.AcceleoPreferences;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.AcceleoEnginePlugin;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.emf.common.EMFPlugin;
 
 /**
@@ -115,6 +116,21 @@ public class AcceleoPropertiesLookup {
 	 * @return Value of the first key/value pair found in the registered properties.
 	 */
 	public String getProperty(String key) {
+		return getProperty(key, (GenerationOptions)null);
+	}
+
+	/**
+	 * Returns the value of the first key/value pair found in the registered properties.
+	 * 
+	 * @param key
+	 *            Key of the value we seek.
+	 * @param options
+	 *            Options of the generation asking for this property, telling whether missing properties
+	 *            should be logged. <code>null</code> to follow the preferences.
+	 * @return Value of the first key/value pair found in the registered properties.
+	 * @since 3.5
+	 */
+	public String getProperty(String key, GenerationOptions options) {
 		if (customProperties.containsKey(key)) {
 			return customProperties.getProperty(key);
 		}
@@ -133,10 +149,7 @@ public class AcceleoPropertiesLookup {
 		}
 
 		if (value == null) {
-			if (EMFPlugin.IS_ECLIPSE_RUNNING && AcceleoPreferences.isDebugMessagesEnabled()) {
-				AcceleoEnginePlugin.log(AcceleoEngineMessages.getString(
-						"AcceleoPropertiesLookup.PropertiesNotFound", key), false); //$NON-NLS-1$
-			}
+			logMissingProperty(key, options);
 
 			value = ""; //$NON-NLS-1$
 		}
@@ -154,6 +167,23 @@ public class AcceleoPropertiesLookup {
 	 * @return Value of the first key/value pair found in the registered properties.
 	 */
 	public String getProperty(String propertiesFileName, String key) {
+		return getProperty(propertiesFileName, key, null);
+	}
+
+	/**
+	 * Returns the value of the first key/value pair found in the registered properties of the given name.
+	 * 
+	 * @param propertiesFileName
+	 *            Name of the properties file in which to seek the property <code>key</code>.
+	 * @param key
+	 *            Key of the value we seek.
+	 * @param options
+	 *            Options of the generation asking for this property, telling whether missing properties
+	 *            should be logged. <code>null</code> to follow the preferences.
+	 * @return Value of the first key/value pair found in the registered properties.
+	 * @since 3.5
+	 */
+	public String getProperty(String propertiesFileName, String key, GenerationOptions options) {
 		if (customProperties.containsKey(key)) {
 			return customProperties.getProperty(key);
 		}
@@ -181,16 +211,37 @@ public class AcceleoPropertiesLookup {
 		}
 
 		if (value == null) {
-			if (EMFPlugin.IS_ECLIPSE_RUNNING && AcceleoPreferences.isDebugMessagesEnabled()) {
-				AcceleoEnginePlugin.log(AcceleoEngineMessages.getString(
-						"AcceleoPropertiesLookup.PropertiesNotFound", key), false); //$NON-NLS-1$
-			}
+			logMissingProperty(key, options);
 			value = ""; //$NON-NLS-1$
 		}
 
 		return value;
 	}
 
+	/**
+	 * Logs that the given property could not be found if debug messages are enabled.
+	 * 
+	 * @param key
+	 *            Key of the property that could not be found.
+	 * @param options
+	 *            Options of the generation asking for this property. <code>null</code> to follow the
+	 *            preferences.
+	 */
+	private static void logMissingProperty(String key, GenerationOptions options) {
+		if (EMFPlugin.IS_ECLIPSE_RUNNING) {
+			final boolean debugMessages;
+			if (options != null) {
+				debugMessages = options.isDebugMessagesEnabled();
+			} else {
+				debugMessages = AcceleoPreferences.isDebugMessagesEnabled();
+			}
+			if (debugMessages) {
+				AcceleoEnginePlugin.log(AcceleoEngineMessages.getString(
+						"AcceleoPropertiesLookup.PropertiesNotFound", key), false); //$NON-NLS-1$
+			}
+		}
+	}
+
 	/**
 	 * This will iterate over the keys of a given bundle (and its parents) and return <code>true</code> iff it
 	 * contains the given key.
@@ -0,0 +1,524 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.environment;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.acceleo.common.IAcceleoConstants;
+import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * This will index the inverse references of the model elements for the "eInverse" non-standard operation.
+ * The index is created empty, and the resources of the model are only indexed when their inverse references
+ * are first needed.
+ * <p>
+ * The scope of the index is the resource set of the first element we are asked the inverse references of,
+ * along with the Ecore metamodel. If this element is not in a resource set, the scope is its resource. If it
+ * is not in a resource either, the scope is its root container. Resources that are added to the resource set
+ * are indexed the next time we are asked for inverse references, and the references of the resources that
+ * are unloaded or removed from the resource set are forgotten at the same time. Changes made within an
+ * indexed resource are not reflected.
+ * </p>
+ * <p>
+ * When enough resources need to be indexed at once, they are indexed concurrently by a pool of threads
+ * that is kept until this index is cleared. Resources are only read while indexing them, the proxies they
+ * reference are resolved afterwards from the calling thread.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class EInverseIndex {
+	/** Minimum number of pending resources for them to be indexed concurrently. */
+	private static final int CONCURRENT_INDEXING_THRESHOLD = 4;
+
+	/** Inverse references of the indexed resources, or of the indexed root container. */
+	private final Map<Notifier, Map<EObject, List<EObject>>> indices = new LinkedHashMap<Notifier,
+			Map<EObject, List<EObject>>>();
+
+	/** Resource set in which we seek inverse references, <code>null</code> if it is not the scope. */
+	private ResourceSet resourceSet;
+
+	/** The notifier on which the scope of this index has been determined, <code>null</code> until then. */
+	private Notifier scope;
+
+	/** The pool indexing resources concurrently. Created when first needed, shut down on {@link #clear()}. */
+	private ExecutorService pool;
+
+	/** Number of threads in {@link #pool}. */
+	private int poolSize;
+
+	/**
+	 * Returns the inverse references towards the given element. Unless the model is already cross
+	 * referenced, the returned set is a read-only view which will filter the referencing elements on the fly
+	 * if need be.
+	 * 
+	 * @param target
+	 *            The element we seek the inverse references of.
+	 * @param filter
+	 *            Types of the referencing elements we seek to retrieve, <code>null</code> for all of them.
+	 * @return The elements that reference <code>target</code>, in the order in which they have been indexed.
+	 */
+	public Set<EObject> getInverseReferences(EObject target, EClassifier filter) {
+		final ECrossReferenceAdapter adapter = ECrossReferenceAdapter.getCrossReferenceAdapter(target);
+		if (adapter != null) {
+			// This model is already cross referenced, there is no need to index it again
+			final Set<EObject> result = new CompactLinkedHashSet<EObject>();
+			for (EStructuralFeature.Setting setting : adapter.getInverseReferences(target)) {
+				if (filter == null || filter.isInstance(setting.getEObject())) {
+					result.add(setting.getEObject());
+				}
+			}
+			return result;
+		}
+
+		if (scope == null) {
+			initializeScope(target);
+		}
+		update();
+
+		final List<List<EObject>> referencers = new ArrayList<List<EObject>>();
+		for (Map<EObject, List<EObject>> index : indices.values()) {
+			final List<EObject> resourceReferencers = index.get(target);
+			if (resourceReferencers != null) {
+				referencers.add(resourceReferencers);
+			}
+		}
+		if (referencers.isEmpty()) {
+			return Collections.emptySet();
+		}
+		return new InverseReferences(referencers, filter);
+	}
+
+	/**
+	 * Forgets about all the inverse references indexed so far, and shuts down the indexing threads.
+	 */
+	public void clear() {
+		indices.clear();
+		resourceSet = null;
+		scope = null;
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Determines the scope of this index from the first element we are asked the inverse references of.
+	 * 
+	 * @param target
+	 *            The first element we are asked the inverse references of.
+	 */
+	private void initializeScope(EObject target) {
+		final Resource resource = target.eResource();
+		if (resource != null && resource.getResourceSet() != null) {
+			resourceSet = resource.getResourceSet();
+			scope = resourceSet;
+		} else if (resource != null) {
+			scope = resource;
+		} else {
+			scope = EcoreUtil.getRootContainer(target);
+		}
+	}
+
+	/**
+	 * Indexes the resources that have been added to our scope since the last call, and forgets about the
+	 * resources that have been unloaded or removed from it.
+	 */
+	private void update() {
+		if (resourceSet == null) {
+			if (indices.isEmpty()) {
+				index(Collections.singletonList(scope));
+			}
+			return;
+		}
+
+		final Resource ecoreResource = EcorePackage.eINSTANCE.eResource();
+		final Iterator<Map.Entry<Notifier, Map<EObject, List<EObject>>>> indexedResources = indices
+				.entrySet().iterator();
+		while (indexedResources.hasNext()) {
+			final Resource resource = (Resource)indexedResources.next().getKey();
+			if (resource != ecoreResource
+					&& (!resource.isLoaded() || resource.getResourceSet() != resourceSet)) {
+				indexedResources.remove();
+			}
+		}
+
+		List<Notifier> pending = getPendingResources();
+		if (!indices.containsKey(ecoreResource)) {
+			pending.add(ecoreResource);
+		}
+		// Resolving the proxies of indexed resources can load new ones
+		while (!pending.isEmpty()) {
+			index(pending);
+			pending = getPendingResources();
+		}
+	}
+
+	/**
+	 * Returns the resources of our resource set that have not been indexed yet.
+	 * 
+	 * @return The resources of our resource set that have not been indexed yet.
+	 */
+	private List<Notifier> getPendingResources() {
+		final List<Notifier> pending = new ArrayList<Notifier>();
+		for (Resource resource : new ArrayList<Resource>(resourceSet.getResources())) {
+			if (!indices.containsKey(resource)
+					&& !IAcceleoConstants.EMTL_FILE_EXTENSION.equals(resource.getURI().fileExtension())) {
+				pending.add(resource);
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * Indexes the given resources or root containers, concurrently if there are enough of them.
+	 * 
+	 * @param notifiers
+	 *            The resources or root containers to index.
+	 */
+	private void index(List<Notifier> notifiers) {
+		final List<Map<EObject, List<EObject>>> results = new ArrayList<Map<EObject, List<EObject>>>(
+				Collections.<Map<EObject, List<EObject>>> nCopies(notifiers.size(), null));
+		if (notifiers.size() >= CONCURRENT_INDEXING_THRESHOLD && getPool() != null) {
+			final int threadCount = Math.min(notifiers.size(), poolSize);
+			final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threadCount);
+			for (int i = 0; i < threadCount; i++) {
+				tasks.add(new ResourceIndexer(notifiers, results, i, threadCount));
+			}
+			try {
+				pool.invokeAll(tasks);
+			} catch (InterruptedException e) {
+				// The remaining resources will be indexed from this thread
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		for (int i = 0; i < notifiers.size(); i++) {
+			Map<EObject, List<EObject>> index = results.get(i);
+			if (index == null) {
+				index = index(notifiers.get(i));
+			}
+			indices.put(notifiers.get(i), resolveProxies(index));
+		}
+	}
+
+	/**
+	 * Returns the pool indexing resources concurrently, creating it if needed. Its threads are daemons so
+	 * that an index that is never cleared cannot prevent the VM from exiting.
+	 * 
+	 * @return The pool indexing resources concurrently, <code>null</code> if there is a single processor.
+	 */
+	private ExecutorService getPool() {
+		if (pool == null) {
+			poolSize = Runtime.getRuntime().availableProcessors();
+			if (poolSize > 1) {
+				pool = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						final Thread thread = new Thread(runnable, "Acceleo eInverse indexer"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Indexes the inverse references of the elements contained by the given resource or root container.
+	 * Proxies are not resolved.
+	 * 
+	 * @param notifier
+	 *            The resource or root container to index.
+	 * @return The elements referencing each element referenced from <code>notifier</code>.
+	 */
+	private static Map<EObject, List<EObject>> index(Notifier notifier) {
+		final Map<EObject, List<EObject>> index = new HashMap<EObject, List<EObject>>();
+		final TreeIterator<EObject> contents;
+		if (notifier instanceof Resource) {
+			contents = EcoreUtil.getAllProperContents((Resource)notifier, false);
+		} else {
+			contents = EcoreUtil.getAllProperContents(Collections.singletonList((EObject)notifier), false);
+		}
+		while (contents.hasNext()) {
+			final EObject referencer = contents.next();
+			@SuppressWarnings("unchecked")
+			final Iterator<EObject> references = ((InternalEList<EObject>)referencer.eCrossReferences())
+					.basicIterator();
+			while (references.hasNext()) {
+				final EObject referenced = references.next();
+				List<EObject> referencers = index.get(referenced);
+				if (referencers == null) {
+					referencers = new ArrayList<EObject>(2);
+					index.put(referenced, referencers);
+				}
+				// All references of an element are iterated at once, it will be last if already there
+				if (referencers.isEmpty() || referencers.get(referencers.size() - 1) != referencer) {
+					referencers.add(referencer);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Resolves the proxies referenced from an index, so that their inverse references can be found from the
+	 * elements they resolve to.
+	 * 
+	 * @param index
+	 *            The index which proxies are to be resolved.
+	 * @return <code>index</code>, after its proxies have been resolved.
+	 */
+	private static Map<EObject, List<EObject>> resolveProxies(Map<EObject, List<EObject>> index) {
+		final List<EObject> proxies = new ArrayList<EObject>();
+		for (EObject referenced : index.keySet()) {
+			if (referenced.eIsProxy()) {
+				proxies.add(referenced);
+			}
+		}
+		for (EObject proxy : proxies) {
+			final List<EObject> referencers = index.get(proxy);
+			final EObject resolved = EcoreUtil.resolve(proxy, referencers.get(0));
+			if (resolved != proxy) {
+				index.remove(proxy);
+				final List<EObject> existing = index.get(resolved);
+				if (existing == null) {
+					index.put(resolved, referencers);
+				} else {
+					for (EObject referencer : referencers) {
+						if (!existing.contains(referencer)) {
+							existing.add(referencer);
+						}
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Indexes one out of every <em>stride</em> resources of a list, starting at a given index.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class ResourceIndexer implements Callable<Object> {
+		/** The resources to index. */
+		private final List<Notifier> notifiers;
+
+		/** The index of each resource will be set at the same position in this list. */
+		private final List<Map<EObject, List<EObject>>> results;
+
+		/** Index of the first resource this will read. */
+		private final int first;
+
+		/** Number of resources between two resources read by this indexer. */
+		private final int stride;
+
+		/**
+		 * Creates an indexer for a subset of the given resources.
+		 * 
+		 * @param notifiers
+		 *            The resources to index.
+		 * @param results
+		 *            The index of each resource will be set at the same position in this list.
+		 * @param first
+		 *            Index of the first resource this will read.
+		 * @param stride
+		 *            Number of resources between two resources read by this indexer.
+		 */
+		ResourceIndexer(List<Notifier> notifiers, List<Map<EObject, List<EObject>>> results, int first,
+				int stride) {
+			this.notifiers = notifiers;
+			this.results = results;
+			this.first = first;
+			this.stride = stride;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call() {
+			for (int i = first; i < notifiers.size() && !Thread.currentThread().isInterrupted();
+					i += stride) {
+				final Map<EObject, List<EObject>> index = index(notifiers.get(i));
+				synchronized(results) {
+					results.set(i, index);
+				}
+			}
+			// This has no explicit result. Only used to await termination
+			return null;
+		}
+	}
+
+	/**
+	 * Read-only view over the elements referencing a given element from a number of resources, filtered by
+	 * type if need be. The indexed lists hold each referencing element once and no element is indexed from
+	 * two resources, so that this view is a set without copying them.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class InverseReferences extends AbstractSet<EObject> {
+		/** Elements referencing our target from each resource. */
+		private final List<List<EObject>> referencers;
+
+		/** Types of the referencing elements we seek to retrieve, <code>null</code> for all of them. */
+		private final EClassifier filter;
+
+		/** Number of elements in this view, <code>-1</code> until computed. */
+		private int size = -1;
+
+		/**
+		 * Creates a view over the given referencing elements.
+		 * 
+		 * @param referencers
+		 *            Elements referencing our target from each resource.
+		 * @param filter
+		 *            Types of the referencing elements we seek to retrieve, <code>null</code> for all of
+		 *            them.
+		 */
+		InverseReferences(List<List<EObject>> referencers, EClassifier filter) {
+			this.referencers = referencers;
+			this.filter = filter;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.AbstractCollection#contains(java.lang.Object)
+		 */
+		@Override
+		public boolean contains(Object object) {
+			if (filter != null && !filter.isInstance(object)) {
+				return false;
+			}
+			for (List<EObject> list : referencers) {
+				if (list.contains(object)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.AbstractCollection#iterator()
+		 */
+		@Override
+		public Iterator<EObject> iterator() {
+			return new Iterator<EObject>() {
+				/** Index of the list we are currently iterating over. */
+				private int listIndex;
+
+				/** Index of the next element in the current list. */
+				private int elementIndex;
+
+				/** The next element to return, <code>null</code> if it has to be sought. */
+				private EObject next;
+
+				/**
+				 * {@inheritDoc}
+				 * 
+				 * @see java.util.Iterator#hasNext()
+				 */
+				public boolean hasNext() {
+					while (next == null && listIndex < referencers.size()) {
+						final List<EObject> list = referencers.get(listIndex);
+						if (elementIndex < list.size()) {
+							final EObject candidate = list.get(elementIndex++);
+							if (filter == null || filter.isInstance(candidate)) {
+								next = candidate;
+							}
+						} else {
+							listIndex++;
+							elementIndex = 0;
+						}
+					}
+					return next != null;
+				}
+
+				/**
+				 * {@inheritDoc}
+				 * 
+				 * @see java.util.Iterator#next()
+				 */
+				public EObject next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					final EObject result = next;
+					next = null;
+					return result;
+				}
+
+				/**
+				 * {@inheritDoc}
+				 * 
+				 * @see java.util.Iterator#remove()
+				 */
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			if (size == -1) {
+				int count = 0;
+				if (filter == null) {
+					for (List<EObject> list : referencers) {
+						count += list.size();
+					}
+				} else {
+					final Iterator<EObject> iterator = iterator();
+					while (iterator.hasNext()) {
+						iterator.next();
+						count++;
+					}
+				}
+				size = count;
+			}
+			return size;
+		}
+	}
+}
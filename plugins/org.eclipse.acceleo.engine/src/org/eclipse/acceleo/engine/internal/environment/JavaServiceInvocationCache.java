@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.environment;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.acceleo.common.AcceleoServicesRegistry;
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * This will be used by the {@link AcceleoLibraryOperationVisitor} to remember the Java service resolved for
+ * each (module URI, service class, method signature) triple so that the class lookup and signature parsing
+ * need only be done once for a given call of the "invoke" operation.
+ * <p>
+ * An instance of this cache is shared by all of the evaluations of a given engine, possibly from several
+ * threads at once. Service classes are not looked up again for the lifetime of the cache : a new engine is
+ * needed in order to take workspace changes to the service classes into account.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class JavaServiceInvocationCache {
+	/** Maps each known invocation to the service it resolved to. */
+	private final ConcurrentMap<InvocationKey, JavaServiceInvocation> invocations = new ConcurrentHashMap<InvocationKey, JavaServiceInvocation>();
+
+	/**
+	 * Returns the service that has been resolved for the given invocation.
+	 * 
+	 * @param moduleURI
+	 *            URI of the resource containing the invoke operation.
+	 * @param className
+	 *            Qualified name of the service class.
+	 * @param methodSignature
+	 *            Signature of the service method.
+	 * @return The service that has been resolved for the given invocation, <code>null</code> if none yet.
+	 */
+	public JavaServiceInvocation get(URI moduleURI, String className, String methodSignature) {
+		return invocations.get(new InvocationKey(moduleURI, className, methodSignature));
+	}
+
+	/**
+	 * Remembers the service resolved for the given invocation.
+	 * 
+	 * @param moduleURI
+	 *            URI of the resource containing the invoke operation.
+	 * @param className
+	 *            Qualified name of the service class.
+	 * @param methodSignature
+	 *            Signature of the service method.
+	 * @param invocation
+	 *            The service that has been resolved for this invocation.
+	 */
+	public void put(URI moduleURI, String className, String methodSignature, JavaServiceInvocation invocation) {
+		invocations.put(new InvocationKey(moduleURI, className, methodSignature), invocation);
+	}
+
+	/**
+	 * Clears all resolved services from this cache.
+	 */
+	public void clear() {
+		invocations.clear();
+	}
+
+	/**
+	 * A Java service method resolved from its class and signature. The dispatch that can be decided from the
+	 * method alone is computed once; what remains depends on the actual receiver and arguments.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	public static final class JavaServiceInvocation {
+		/** Arguments of a parameterless invocation. */
+		private static final Object[] NO_ARGUMENTS = new Object[0];
+
+		/** The service class. */
+		private final Class<?> serviceClass;
+
+		/** The service method. */
+		private final Method method;
+
+		/** Number of parameters of {@link #method}. */
+		private final int parameterCount;
+
+		/** Whether {@link #method} is static. */
+		private final boolean isStatic;
+
+		/**
+		 * Creates the invocation of the given service method.
+		 * 
+		 * @param serviceClass
+		 *            The service class.
+		 * @param method
+		 *            The service method.
+		 */
+		public JavaServiceInvocation(Class<?> serviceClass, Method method) {
+			this.serviceClass = serviceClass;
+			this.method = method;
+			this.parameterCount = method.getParameterTypes().length;
+			this.isStatic = Modifier.isStatic(method.getModifiers());
+			try {
+				// We only hold public methods : this only disables the access checks on each call
+				method.setAccessible(true);
+			} catch (SecurityException e) {
+				// Keep the checks then
+			}
+		}
+
+		/**
+		 * Returns the service method.
+		 * 
+		 * @return The service method.
+		 */
+		public Method getMethod() {
+			return method;
+		}
+
+		/**
+		 * Invokes the service method. The receiver of the call will be, in order of precedence : none if the
+		 * method is static, <code>source</code> if it is an instance of the service class and the arguments
+		 * match the method's parameters, the first argument if it is an instance of the service class and
+		 * is not needed as a parameter, and the service singleton otherwise.
+		 * 
+		 * @param source
+		 *            Source of the invocation.
+		 * @param arguments
+		 *            Arguments of the invocation.
+		 * @return Result of the invocation.
+		 * @throws IllegalAccessException
+		 *             Thrown if the method is inaccessible.
+		 * @throws InvocationTargetException
+		 *             Thrown if the service method throws an exception.
+		 */
+		public Object invoke(Object source, List<Object> arguments) throws IllegalAccessException,
+				InvocationTargetException {
+			final int argumentCount = arguments.size();
+			final Object result;
+			if (parameterCount == 0) {
+				if (isStatic) {
+					result = method.invoke(null, NO_ARGUMENTS);
+				} else if (argumentCount == 0 && serviceClass.isInstance(source)) {
+					result = method.invoke(source, NO_ARGUMENTS);
+				} else if (argumentCount == 1 && serviceClass.isInstance(arguments.get(0))) {
+					result = method.invoke(arguments.get(0), NO_ARGUMENTS);
+				} else {
+					result = method.invoke(AcceleoServicesRegistry.INSTANCE.getServiceInstance(serviceClass),
+							NO_ARGUMENTS);
+				}
+			} else if (isStatic) {
+				result = method.invoke(null, toArray(arguments, 0));
+			} else if (parameterCount == argumentCount && serviceClass.isInstance(source)) {
+				result = method.invoke(source, toArray(arguments, 0));
+			} else if (argumentCount > parameterCount && serviceClass.isInstance(arguments.get(0))) {
+				result = method.invoke(arguments.get(0), toArray(arguments, 1));
+			} else {
+				result = method.invoke(AcceleoServicesRegistry.INSTANCE.getServiceInstance(serviceClass),
+						toArray(arguments, 0));
+			}
+			return result;
+		}
+
+		/**
+		 * Copies the given arguments, starting at the given index, in a new array.
+		 * 
+		 * @param arguments
+		 *            The arguments to copy.
+		 * @param start
+		 *            Index of the first argument to copy.
+		 * @return The array containing the copied arguments.
+		 */
+		private static Object[] toArray(List<Object> arguments, int start) {
+			final Object[] array = new Object[arguments.size() - start];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = arguments.get(start + i);
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * Identifies an invocation by the URI of its module, the name of the service class and the signature of
+	 * the service method.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class InvocationKey {
+		/** URI of the resource containing the invoke operation. */
+		private final URI moduleURI;
+
+		/** Qualified name of the service class. */
+		private final String className;
+
+		/** Signature of the service method. */
+		private final String methodSignature;
+
+		/** Hash code of this key, computed once since it will be used for each lookup. */
+		private final int hash;
+
+		/**
+		 * Creates a key for the given invocation.
+		 * 
+		 * @param moduleURI
+		 *            URI of the resource containing the invoke operation.
+		 * @param className
+		 *            Qualified name of the service class.
+		 * @param methodSignature
+		 *            Signature of the service method.
+		 */
+		InvocationKey(URI moduleURI, String className, String methodSignature) {
+			this.moduleURI = moduleURI;
+			this.className = className;
+			this.methodSignature = methodSignature;
+			final int prime = 31;
+			int hashCode = prime + moduleURI.hashCode();
+			hashCode = prime * hashCode + className.hashCode();
+			this.hash = prime * hashCode + methodSignature.hashCode();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof InvocationKey)) {
+				return false;
+			}
+			final InvocationKey other = (InvocationKey)obj;
+			return hash == other.hash && moduleURI.equals(other.moduleURI)
+					&& className.equals(other.className) && methodSignature.equals(other.methodSignature);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.environment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
+import org.eclipse.acceleo.common.utils.AcceleoStandardLibrary;
+
+/**
+ * Opcodes of the Acceleo standard and non-standard library operations. The
+ * {@link AcceleoLibraryOperationVisitor} resolves the name of each called operation to its opcode through a
+ * single lookup, then dispatches to the implementation with a switch instead of comparing the name against
+ * each known operation in turn.
+ * <p>
+ * Operations that share a name (for example "startsWith" on Strings and Collections, or "toString" on
+ * Integers, Reals and OclAny) share an opcode : the visitor already distinguishes them through the type of
+ * their source.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public enum LibraryOperation {
+	/** Collection::addAll(Collection). */
+	ADD_ALL(AcceleoNonStandardLibrary.OPERATION_COLLECTION_ADD_ALL),
+
+	/** EObject::ancestors(). */
+	ANCESTORS(AcceleoNonStandardLibrary.OPERATION_EOBJECT_ANCESTORS),
+
+	/** String::contains(String). */
+	CONTAINS(AcceleoNonStandardLibrary.OPERATION_STRING_CONTAINS),
+
+	/** OclAny::current(). */
+	CURRENT(AcceleoNonStandardLibrary.OPERATION_OCLANY_CURRENT),
+
+	/** Collection::drop(Integer). */
+	DROP(AcceleoNonStandardLibrary.OPERATION_COLLECTION_DROP),
+
+	/** Collection::dropRight(Integer). */
+	DROP_RIGHT(AcceleoNonStandardLibrary.OPERATION_COLLECTION_DROP_RIGHT),
+
+	/** EObject::eAllContents(). */
+	EALLCONTENTS(AcceleoNonStandardLibrary.OPERATION_EOBJECT_EALLCONTENTS),
+
+	/** EObject::eContainer(OclType). */
+	ECONTAINER(AcceleoNonStandardLibrary.OPERATION_EOBJECT_ECONTAINER),
+
+	/** EObject::eContents(OclType). */
+	ECONTENTS(AcceleoNonStandardLibrary.OPERATION_EOBJECT_ECONTENTS),
+
+	/** EObject::eGet(String). */
+	EGET(AcceleoNonStandardLibrary.OPERATION_EOBJECT_EGET),
+
+	/** EObject::eInverse(). */
+	EINVERSE(AcceleoNonStandardLibrary.OPERATION_EOBJECT_EINVERSE),
+
+	/** String::endsWith(String) and Collection::endsWith(Collection). */
+	ENDS_WITH(AcceleoNonStandardLibrary.OPERATION_STRING_ENDSWITH),
+
+	/** String::equalsIgnoreCase(String). */
+	EQUALS_IGNORE_CASE(AcceleoNonStandardLibrary.OPERATION_STRING_EQUALSIGNORECASE),
+
+	/** Collection::filter(OclType). */
+	FILTER(AcceleoNonStandardLibrary.OPERATION_COLLECTION_FILTER),
+
+	/** String::first(Integer). */
+	FIRST(AcceleoStandardLibrary.OPERATION_STRING_FIRST),
+
+	/** EObject::followingSiblings(). */
+	FOLLOWING_SIBLINGS(AcceleoNonStandardLibrary.OPERATION_EOBJECT_FOLLOWINGSIBLINGS),
+
+	/** OclAny::getProperty(String). */
+	GET_PROPERTY(AcceleoNonStandardLibrary.OPERATION_OCLANY_GETPROPERTY),
+
+	/** String::index(String) and String::index(String, Integer). */
+	INDEX(AcceleoStandardLibrary.OPERATION_STRING_INDEX),
+
+	/** Collection::indexOfSlice(Collection). */
+	INDEX_OF_SLICE(AcceleoNonStandardLibrary.OPERATION_COLLECTION_INDEX_OF_SLICE),
+
+	/** OclAny::invoke(String, String, Sequence). */
+	INVOKE(AcceleoNonStandardLibrary.OPERATION_OCLANY_INVOKE),
+
+	/** String::isAlpha(). */
+	IS_ALPHA(AcceleoStandardLibrary.OPERATION_STRING_ISALPHA),
+
+	/** String::isAlphanum(). */
+	IS_ALPHANUM(AcceleoStandardLibrary.OPERATION_STRING_ISALPHANUM),
+
+	/** String::last(Integer). */
+	LAST(AcceleoStandardLibrary.OPERATION_STRING_LAST),
+
+	/** String::lastIndex(String). */
+	LAST_INDEX(AcceleoNonStandardLibrary.OPERATION_STRING_LASTINDEX),
+
+	/** Collection::lastIndexOf(OclAny). */
+	LAST_INDEX_OF(AcceleoNonStandardLibrary.OPERATION_COLLECTION_LASTINDEXOF),
+
+	/** Collection::lastIndexOfSlice(Collection). */
+	LAST_INDEX_OF_SLICE(AcceleoNonStandardLibrary.OPERATION_COLLECTION_LAST_INDEX_OF_SLICE),
+
+	/** OclAny::lineSeparator(). */
+	LINE_SEPARATOR(AcceleoNonStandardLibrary.OPERATION_OCLANY_LINE_SEPARATOR),
+
+	/** String::matches(String). */
+	MATCHES(AcceleoNonStandardLibrary.OPERATION_STRING_MATCHES),
+
+	/** OclAny::+(String) and String::+(OclAny). */
+	PLUS(AcceleoNonStandardLibrary.OPERATION_OCLANY_PLUS),
+
+	/** EObject::precedingSiblings(). */
+	PRECEDING_SIBLINGS(AcceleoNonStandardLibrary.OPERATION_EOBJECT_PRECEDINGSIBLINGS),
+
+	/** String::prefix(String). */
+	PREFIX(AcceleoNonStandardLibrary.OPERATION_STRING_PREFIX),
+
+	/** Collection::removeAll(Collection). */
+	REMOVE_ALL(AcceleoNonStandardLibrary.OPERATION_COLLECTION_REMOVE_ALL),
+
+	/** String::replace(String, String). */
+	REPLACE(AcceleoNonStandardLibrary.OPERATION_STRING_REPLACE),
+
+	/** String::replaceAll(String, String). */
+	REPLACE_ALL(AcceleoNonStandardLibrary.OPERATION_STRING_REPLACEALL),
+
+	/** Collection::reverse(). */
+	REVERSE(AcceleoNonStandardLibrary.OPERATION_COLLECTION_REVERSE),
+
+	/** Collection::sep(String). */
+	SEP(AcceleoNonStandardLibrary.OPERATION_COLLECTION_SEP),
+
+	/** EObject::siblings(). */
+	SIBLINGS(AcceleoNonStandardLibrary.OPERATION_EOBJECT_SIBLINGS),
+
+	/** String::startsWith(String) and Collection::startsWith(Collection). */
+	STARTS_WITH(AcceleoNonStandardLibrary.OPERATION_STRING_STARTSWITH),
+
+	/** String::strcmp(String). */
+	STRCMP(AcceleoStandardLibrary.OPERATION_STRING_STRCMP),
+
+	/** String::strstr(String). */
+	STRSTR(AcceleoStandardLibrary.OPERATION_STRING_STRSTR),
+
+	/** String::strtok(String, Integer). */
+	STRTOK(AcceleoStandardLibrary.OPERATION_STRING_STRTOK),
+
+	/** String::substitute(String, String). */
+	SUBSTITUTE(AcceleoStandardLibrary.OPERATION_STRING_SUBSTITUTE),
+
+	/** String::substituteAll(String, String). */
+	SUBSTITUTE_ALL(AcceleoNonStandardLibrary.OPERATION_STRING_SUBSTITUTEALL),
+
+	/** String::substring(Integer). */
+	SUBSTRING(AcceleoNonStandardLibrary.OPERATION_STRING_SUBSTRING),
+
+	/** String::tokenize(String). */
+	TOKENIZE(AcceleoNonStandardLibrary.OPERATION_STRING_TOKENIZE),
+
+	/** String::tokenizeLine(). */
+	TOKENIZE_LINE(AcceleoNonStandardLibrary.OPERATION_STRING_TOKENIZE_LINE),
+
+	/** String::toLowerFirst(). */
+	TO_LOWER_FIRST(AcceleoStandardLibrary.OPERATION_STRING_TOLOWERFIRST),
+
+	/** Integer::toString(), Real::toString() and OclAny::toString(). */
+	TO_STRING(AcceleoStandardLibrary.OPERATION_INTEGER_TOSTRING),
+
+	/** String::toUpperFirst(). */
+	TO_UPPER_FIRST(AcceleoStandardLibrary.OPERATION_STRING_TOUPPERFIRST),
+
+	/** String::trim(). */
+	TRIM(AcceleoNonStandardLibrary.OPERATION_STRING_TRIM),
+
+	/** Any operation that is not part of the Acceleo libraries. */
+	UNKNOWN(null);
+
+	/** Maps the name of each library operation to its opcode. */
+	private static final Map<String, LibraryOperation> OPCODES = new HashMap<String, LibraryOperation>();
+
+	static {
+		for (LibraryOperation operation : values()) {
+			if (operation.operationName != null) {
+				OPCODES.put(operation.operationName, operation);
+			}
+		}
+	}
+
+	/** Name of this operation in the Acceleo libraries. */
+	private final String operationName;
+
+	/**
+	 * Creates the opcode of the library operation named <code>operationName</code>.
+	 * 
+	 * @param operationName
+	 *            Name of this operation in the Acceleo libraries.
+	 */
+	private LibraryOperation(String operationName) {
+		this.operationName = operationName;
+	}
+
+	/**
+	 * Returns the opcode of the library operation with the given name.
+	 * 
+	 * @param operationName
+	 *            Name of the called operation.
+	 * @return The opcode of the library operation with the given name, {@link #UNKNOWN} if there is none.
+	 */
+	public static LibraryOperation forName(String operationName) {
+		final LibraryOperation operation = OPCODES.get(operationName);
+		if (operation == null) {
+			return UNKNOWN;
+		}
+		return operation;
+	}
+
+	/**
+	 * Returns the name of this operation in the Acceleo libraries.
+	 * 
+	 * @return The name of this operation in the Acceleo libraries, <code>null</code> for {@link #UNKNOWN}.
+	 */
+	public String getOperationName() {
+		return operationName;
+	}
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.environment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.acceleo.model.mtl.Module;
+import org.eclipse.acceleo.model.mtl.Template;
+
+/**
+ * This will be used by the {@link AcceleoEvaluationEnvironment} to remember the result of the template
+ * resolution for each call site so that the namesakes, overrides and dynamic overrides lookups need only be
+ * computed once for a given (origin module, called template, argument types) tuple.
+ * <p>
+ * All caches are flushed whenever the set of dynamic modules changes through
+ * {@link org.eclipse.acceleo.engine.service.AcceleoDynamicTemplatesRegistry}. Instances of this cache are
+ * not thread safe and are meant to be confined to the environment that created them.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class TemplateDispatchCache {
+	/** Incremented each time the dynamic modules registry is modified. */
+	private static final AtomicInteger REGISTRY_STAMP = new AtomicInteger();
+
+	/** Maps each known call to its resolved candidates. */
+	private final Map<DispatchKey, DispatchTarget> targets = new HashMap<DispatchKey, DispatchTarget>();
+
+	/** Value of {@link #REGISTRY_STAMP} at the time our entries were computed. */
+	private int stamp = REGISTRY_STAMP.get();
+
+	/**
+	 * Flushes all template dispatch caches. This is to be called whenever dynamic modules are registered
+	 * into or removed from the registry.
+	 */
+	public static void invalidateAll() {
+		REGISTRY_STAMP.incrementAndGet();
+	}
+
+	/**
+	 * Returns the cached resolution of the given call if any.
+	 * 
+	 * @param key
+	 *            Key of the call we seek the resolution of.
+	 * @return The cached resolution of the given call, <code>null</code> if none.
+	 */
+	DispatchTarget get(DispatchKey key) {
+		final int currentStamp = REGISTRY_STAMP.get();
+		if (currentStamp != stamp) {
+			targets.clear();
+			stamp = currentStamp;
+			return null;
+		}
+		return targets.get(key);
+	}
+
+	/**
+	 * Caches the resolution of the given call.
+	 * 
+	 * @param key
+	 *            Key of the call which resolution is to be cached.
+	 * @param candidates
+	 *            Ordered list of all applicable candidates for the call.
+	 * @return The cached resolution.
+	 */
+	DispatchTarget put(DispatchKey key, List<Template> candidates) {
+		final DispatchTarget target = new DispatchTarget(candidates);
+		targets.put(key, target);
+		return target;
+	}
+
+	/**
+	 * Identifies a template call by its origin, the called template and the runtime types of its arguments.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	static final class DispatchKey {
+		/** Module from which the call originates. */
+		private final Module origin;
+
+		/** The called template. */
+		private final Template call;
+
+		/** Runtime types of the arguments : EClasses, Classes or a placeholder for <code>null</code>. */
+		private final Object[] argumentTypes;
+
+		/** Hash code of this key, computed once since it will be used for each lookup. */
+		private final int hash;
+
+		/**
+		 * Creates a key for the given call.
+		 * 
+		 * @param origin
+		 *            Module from which the call originates.
+		 * @param call
+		 *            The called template.
+		 * @param argumentTypes
+		 *            Runtime types of the arguments.
+		 */
+		DispatchKey(Module origin, Template call, Object[] argumentTypes) {
+			this.origin = origin;
+			this.call = call;
+			this.argumentTypes = argumentTypes;
+			final int prime = 31;
+			int result = prime + System.identityHashCode(origin);
+			result = prime * result + System.identityHashCode(call);
+			result = prime * result + Arrays.hashCode(argumentTypes);
+			this.hash = result;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof DispatchKey)) {
+				return false;
+			}
+			final DispatchKey other = (DispatchKey)obj;
+			return hash == other.hash && origin == other.origin && call == other.call
+					&& Arrays.equals(argumentTypes, other.argumentTypes);
+		}
+	}
+
+	/**
+	 * Resolution of a template call.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	static final class DispatchTarget {
+		/** Ordered list of all applicable candidates. */
+		private final List<Template> candidates;
+
+		/** Tells us whether at least one of the candidates has a guard. */
+		private final boolean guarded;
+
+		/** Most specific of the candidates, only computed if none of them is guarded. */
+		private Template mostSpecific;
+
+		/**
+		 * Creates the resolution of a call given its candidates.
+		 * 
+		 * @param candidates
+		 *            Ordered list of all applicable candidates for the call.
+		 */
+		DispatchTarget(List<Template> candidates) {
+			this.candidates = Collections.unmodifiableList(candidates);
+			boolean hasGuard = false;
+			for (int i = 0; i < candidates.size() && !hasGuard; i++) {
+				hasGuard = candidates.get(i).getGuard() != null;
+			}
+			this.guarded = hasGuard;
+		}
+
+		/**
+		 * Returns the ordered list of all applicable candidates. This list cannot be modified.
+		 * 
+		 * @return The ordered list of all applicable candidates.
+		 */
+		List<Template> getCandidates() {
+			return candidates;
+		}
+
+		/**
+		 * Tells us whether the actual template to call depends on guard evaluation.
+		 * 
+		 * @return <code>true</code> if at least one of the candidates has a guard.
+		 */
+		boolean isGuarded() {
+			return guarded;
+		}
+
+		/**
+		 * Returns the most specific candidate if it has already been computed.
+		 * 
+		 * @return The most specific candidate, <code>null</code> if not computed yet.
+		 */
+		Template getMostSpecific() {
+			return mostSpecific;
+		}
+
+		/**
+		 * Remembers the most specific candidate of this call.
+		 * 
+		 * @param mostSpecific
+		 *            The most specific candidate.
+		 */
+		void setMostSpecific(Template mostSpecific) {
+			this.mostSpecific = mostSpecific;
+		}
+	}
+}
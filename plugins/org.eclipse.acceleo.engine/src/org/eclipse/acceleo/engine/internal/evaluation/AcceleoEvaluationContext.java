@@ -15,16 +15,12 @@ import com.google.common.collect.Maps;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -44,6 +40,7 @@ import org.eclipse.acceleo.engine.AcceleoEvaluationException;
 import org.eclipse.acceleo.engine.AcceleoRuntimeException;
 import org.eclipse.acceleo.engine.event.AcceleoTextGenerationEvent;
 import org.eclipse.acceleo.engine.event.IAcceleoTextGenerationListener;
+import org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy;
 import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
 import org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter;
 import org.eclipse.acceleo.engine.generation.writers.AcceleoFileWriter;
@@ -136,6 +133,12 @@ public class AcceleoEvaluationContext<C> {
 	 */
 	private Map<String, Integer> generateFiles = new HashMap<String, Integer>();
 
+	/** Whether debug messages should be logged. <code>null</code> to follow the preferences. */
+	private Boolean debugMessagesEnabled;
+
+	/** Protected areas of the files that existed before the generation. <code>null</code> if not indexed. */
+	private ProtectedAreaIndex protectedAreaIndex;
+
 	/**
 	 * Instantiates an evaluation context given the root of the to-be-generated files.
 	 * 
@@ -169,6 +172,47 @@ public class AcceleoEvaluationContext<C> {
 		notifyOnGenerationEnd = temp;
 	}
 
+	/**
+	 * Sets whether debug messages should be logged for this generation.
+	 * 
+	 * @param enabled
+	 *            <code>true</code> if debug messages should be logged, <code>false</code> otherwise.
+	 * @since 3.5
+	 */
+	public void setDebugMessagesEnabled(boolean enabled) {
+		debugMessagesEnabled = Boolean.valueOf(enabled);
+	}
+
+	/**
+	 * Reads the protected areas of the files that already exist under the generation root in parallel. The
+	 * files containing protected areas that are generated afterwards with the System default charset won't
+	 * need to be read before being overwritten. This must be called before the evaluation starts.
+	 * 
+	 * @since 3.5
+	 */
+	public void indexProtectedAreas() {
+		if (generationRoot != null && generationRoot.isDirectory()) {
+			try {
+				protectedAreaIndex = ProtectedAreaIndex.build(generationRoot, null);
+			} catch (InterruptedException e) {
+				// Files will be read as they are generated
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether debug messages should be logged for this generation.
+	 * 
+	 * @return <code>true</code> if debug messages should be logged, <code>false</code> otherwise.
+	 */
+	private boolean isDebugMessagesEnabled() {
+		if (debugMessagesEnabled == null) {
+			return AcceleoPreferences.isDebugMessagesEnabled();
+		}
+		return debugMessagesEnabled.booleanValue();
+	}
+
 	/**
 	 * Appends the given string to the last buffer of the context stack. This will notify all text generation
 	 * listeners along the way.
@@ -196,7 +240,7 @@ public class AcceleoEvaluationContext<C> {
 			} else {
 				final String message = AcceleoEngineMessages
 						.getString("AcceleoEvaluationVisitor.PossibleEmptyFileName"); //$NON-NLS-1$
-				if (!EMFPlugin.IS_ECLIPSE_RUNNING || AcceleoPreferences.isDebugMessagesEnabled()) {
+				if (!EMFPlugin.IS_ECLIPSE_RUNNING || isDebugMessagesEnabled()) {
 					AcceleoEnginePlugin.log(message, false);
 				}
 				if (defaultWriter == null) {
@@ -210,6 +254,35 @@ public class AcceleoEvaluationContext<C> {
 		}
 	}
 
+	/**
+	 * Appends the given text to the last buffer of the context stack. The text will only be referenced if
+	 * that buffer is a nested context; it will be written as a String otherwise. This will notify all text
+	 * generation listeners along the way.
+	 * 
+	 * @param text
+	 *            Text that is to be appended to the current buffer.
+	 * @param sourceBlock
+	 *            The block for which this text has been generated.
+	 * @param source
+	 *            The Object for which was generated this text.
+	 * @param fireEvent
+	 *            Tells us whether we should fire generation events.
+	 * @throws AcceleoEvaluationException
+	 *             Thrown if we cannot append to the current buffer.
+	 * @since 3.5
+	 */
+	public void append(AcceleoGeneratedText text, Block sourceBlock, EObject source, boolean fireEvent)
+			throws AcceleoEvaluationException {
+		if (!writers.isEmpty() && writers.getLast() instanceof GeneratedTextWriter) {
+			((GeneratedTextWriter)writers.getLast()).getText().append(text);
+			if (fireEvent && text.length() > 0) {
+				fireTextGenerated(new AcceleoTextGenerationEvent(text.toString(), sourceBlock, source));
+			}
+		} else {
+			append(text.toString(), sourceBlock, source, fireEvent);
+		}
+	}
+
 	/**
 	 * Adds the given expression at the end of the expression stack.
 	 * 
@@ -359,7 +432,7 @@ public class AcceleoEvaluationContext<C> {
 	}
 
 	/**
-	 * Closes the last writer of the stack and returns its result if it was a StringWriter. This is a
+	 * Closes the last writer of the stack and returns its result if it was a nested context. This is a
 	 * convenience methode to close contexts that were opened for other than file blocks.
 	 * 
 	 * @return Result held by the last writer of the stack.
@@ -371,7 +444,7 @@ public class AcceleoEvaluationContext<C> {
 	}
 
 	/**
-	 * Closes the last writer of the stack and returns its result if it was a StringWriter. The empty String
+	 * Closes the last writer of the stack and returns its result if it was a nested context. The empty String
 	 * will be returned for FileWriters.
 	 * 
 	 * @param sourceBlock
@@ -386,7 +459,7 @@ public class AcceleoEvaluationContext<C> {
 		if (writers.isEmpty()) {
 			final String message = AcceleoEngineMessages
 					.getString("AcceleoEvaluationVisitor.PossibleEmptyFileName"); //$NON-NLS-1$
-			if (!EMFPlugin.IS_ECLIPSE_RUNNING && AcceleoPreferences.isDebugMessagesEnabled()) {
+			if (!EMFPlugin.IS_ECLIPSE_RUNNING && isDebugMessagesEnabled()) {
 				AcceleoEnginePlugin.log(message, false);
 			}
 			return ""; //$NON-NLS-1$
@@ -413,7 +486,7 @@ public class AcceleoEvaluationContext<C> {
 				last.close();
 				result = ""; //$NON-NLS-1$
 			} else {
-				// others are plain StringWriters. Close has no effect on those.
+				// others are GeneratedTextWriters. Close has no effect on those.
 				// Note that we'll never be here for file blocks : these always are AcceleoWriterDecorators
 				result = last.toString();
 			}
@@ -424,6 +497,24 @@ public class AcceleoEvaluationContext<C> {
 		}
 	}
 
+	/**
+	 * Closes the last writer of the stack, which should be a nested context, and returns the text it holds
+	 * without converting it to a String.
+	 * 
+	 * @return Text held by the last writer of the stack.
+	 * @throws AcceleoEvaluationException
+	 *             This will be thrown if the last writer of the stack cannot be flushed and closed.
+	 * @since 3.5
+	 */
+	public AcceleoGeneratedText closeGeneratedText() throws AcceleoEvaluationException {
+		if (!writers.isEmpty() && writers.getLast() instanceof GeneratedTextWriter) {
+			return ((GeneratedTextWriter)writers.removeLast()).getText();
+		}
+		final AcceleoGeneratedText text = new AcceleoGeneratedText();
+		text.append(closeContext());
+		return text;
+	}
+
 	/**
 	 * This will be used to dispose of all created buffers and caches.
 	 * 
@@ -453,6 +544,7 @@ public class AcceleoEvaluationContext<C> {
 			userCodeBlocks.clear();
 			writers.clear();
 			expressionStack.clear();
+			protectedAreaIndex = null;
 		}
 		if (exception != null) {
 			throw exception;
@@ -529,8 +621,10 @@ public class AcceleoEvaluationContext<C> {
 			Writer writer = writers.getLast();
 			if (writer instanceof AbstractAcceleoWriter) {
 				return ((AbstractAcceleoWriter)writer).getCurrentLineIndentation();
+			} else if (writer instanceof GeneratedTextWriter) {
+				return ((GeneratedTextWriter)writer).getText().getLastLineIndentation();
 			}
-			// Only String writers remain
+			// Other writers are left to their String representation
 			String content = writer.toString();
 			int newLineIndex = -1;
 			if (content.contains(DOS_LINE_SEPARATOR)) {
@@ -683,7 +777,7 @@ public class AcceleoEvaluationContext<C> {
 			throw new AcceleoEvaluationException(AcceleoEngineMessages
 					.getString("AcceleoEvaluationContext.FlushError"), e); //$NON-NLS-1$
 		}
-		writers.add(new StringWriter(DEFAULT_BUFFER_SIZE));
+		writers.add(new GeneratedTextWriter());
 	}
 
 	/**
@@ -713,6 +807,10 @@ public class AcceleoEvaluationContext<C> {
 			if (!writers.isEmpty()) {
 				writers.getLast().flush();
 			}
+			// The strategy may still be writing this file if it has already been generated
+			if (strategy instanceof AbstractGenerationStrategy) {
+				((AbstractGenerationStrategy)strategy).awaitCompletion(generatedFile);
+			}
 			final Map<String, String> savedCodeBlocks = new HashMap<String, String>();
 			if (generatedFile.exists()) {
 				savedCodeBlocks.putAll(saveProtectedAreas(generatedFile, charset));
@@ -739,6 +837,9 @@ public class AcceleoEvaluationContext<C> {
 		} catch (final IOException e) {
 			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
 					"AcceleoEvaluationContext.FileCreationError", generatedFile.getPath()), e); //$NON-NLS-1$
+		} catch (final InterruptedException e) {
+			throw new AcceleoEvaluationException(AcceleoEngineMessages.getString(
+					"AcceleoEvaluationContext.FileCreationError", generatedFile.getPath()), e); //$NON-NLS-1$
 		}
 	}
 
@@ -835,67 +936,10 @@ public class AcceleoEvaluationContext<C> {
 		}
 	}
 
-	/**
-	 * This will return the list of protected areas the given file contains.
-	 * 
-	 * @param reader
-	 *            Reader which content is to be searched through for protected areas.
-	 * @return The list of saved protected areas.
-	 * @throws IOException
-	 *             Thrown if we cannot read through the provided reader.
-	 */
-	private Map<String, String> internalSaveProtectedAreas(LineReader reader) throws IOException {
-		final Map<String, String> protectedAreas = new HashMap<String, String>();
-		final String usercodeStart = AcceleoEngineMessages.getString("usercode.start"); //$NON-NLS-1$
-		final String usercodeEnd = AcceleoEngineMessages.getString("usercode.end"); //$NON-NLS-1$
-		String line = reader.readLine();
-		while (line != null) {
-			if (!hasJMergeTag && line.contains(JMERGE_TAG)) {
-				hasJMergeTag = true;
-			}
-			if (line.contains(usercodeStart)) {
-				final String marker = line.substring(line.indexOf(usercodeStart) + usercodeStart.length())
-						.trim();
-				final StringBuffer areaContent = new StringBuffer(DEFAULT_BUFFER_SIZE);
-				final int start = line.indexOf(usercodeStart);
-				// Everything preceding the start of user code doesn't need to be saved
-				areaContent.append(line.substring(start));
-
-				/*
-				 * TODO If there is no "end of user code", or if the protected content is too large, this will
-				 * fail in OutOfMemoryErrors. Could we use a temp File (java.nio?) instead of a StringBuffer?
-				 */
-				String lastEOF = reader.getLastEOLSequence();
-				areaContent.append(lastEOF);
-
-				line = reader.readLine();
-				lastEOF = reader.getLastEOLSequence();
-				while (line != null) {
-					if (!hasJMergeTag && line.contains(JMERGE_TAG)) {
-						hasJMergeTag = true;
-					}
-					// Everything following the end of user code marker doesn't need to be saved
-					if (line.contains(usercodeEnd)) {
-						final int endOffset = line.indexOf(usercodeEnd) + usercodeEnd.length();
-						areaContent.append(line.substring(0, endOffset));
-						break;
-					}
-					areaContent.append(line);
-					areaContent.append(lastEOF);
-
-					line = reader.readLine();
-					lastEOF = reader.getLastEOLSequence();
-				}
-				protectedAreas.put(marker, areaContent.toString());
-			}
-			line = reader.readLine();
-		}
-		return protectedAreas;
-	}
-
 	/**
 	 * This will return the list of protected areas the given file contains. <b>Note</b> that we will use this
-	 * occasion to look for {@value #JMERGE_TAG} throughout the file.
+	 * occasion to look for {@value #JMERGE_TAG} throughout the file. If the protected areas of the existing
+	 * files have been indexed, the index will be used instead of reading the file.
 	 * 
 	 * @param file
 	 *            File which protected areas are to be saved.
@@ -906,24 +950,23 @@ public class AcceleoEvaluationContext<C> {
 	 *             Thrown if we cannot read through <tt>file</tt>.
 	 */
 	private Map<String, String> saveProtectedAreas(File file, String charset) throws IOException {
-		Map<String, String> protectedAreas = new HashMap<String, String>();
-		LineReader reader = null;
+		ProtectedAreas protectedAreas = null;
+		if (protectedAreaIndex != null) {
+			protectedAreas = protectedAreaIndex.take(file, charset);
+		}
 		try {
-			if (charset == null) {
-				reader = new LineReader(new FileReader(file));
-			} else {
-				reader = new LineReader(new InputStreamReader(new FileInputStream(file), charset));
+			if (protectedAreas == null) {
+				protectedAreas = ProtectedAreas.read(file, charset);
 			}
-			protectedAreas = internalSaveProtectedAreas(reader);
 		} catch (final FileNotFoundException e) {
 			// cannot be thrown here, we were called after testing that the file indeed existed.
 			AcceleoEnginePlugin.log(e, true);
-		} finally {
-			if (reader != null) {
-				reader.close();
-			}
+			return new HashMap<String, String>();
+		}
+		if (protectedAreas.hasJMergeTag()) {
+			hasJMergeTag = true;
 		}
-		return protectedAreas;
+		return protectedAreas.getAreas();
 	}
 
 	/**
@@ -935,25 +978,116 @@ public class AcceleoEvaluationContext<C> {
 	 * @return The list of saved protected areas.
 	 */
 	private Map<String, String> saveProtectedAreas(String buffer) {
-		Map<String, String> protectedAreas = new HashMap<String, String>();
-		LineReader reader = null;
-		try {
-			reader = new LineReader(new StringReader(buffer));
-			protectedAreas = internalSaveProtectedAreas(reader);
-		} catch (IOException e) {
-			// Cannot happen here
-			AcceleoEnginePlugin.log(e, true);
-		} finally {
-			if (reader != null) {
-				try {
-					reader.close();
-				} catch (IOException e) {
-					// This should never happen with a String Reader
-					AcceleoEnginePlugin.log(e, true);
-				}
+		final ProtectedAreas protectedAreas = ProtectedAreas.parse(buffer);
+		if (protectedAreas.hasJMergeTag()) {
+			hasJMergeTag = true;
+		}
+		return protectedAreas.getAreas();
+	}
+
+	/**
+	 * The writer of nested contexts. Appended Strings and texts are only referenced by the underlying
+	 * {@link AcceleoGeneratedText}, which will be copied when it is finally converted to a String.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class GeneratedTextWriter extends Writer {
+		/** The text appended to this writer. */
+		private final AcceleoGeneratedText text = new AcceleoGeneratedText();
+
+		/**
+		 * Returns the text appended to this writer.
+		 * 
+		 * @return The text appended to this writer.
+		 */
+		public AcceleoGeneratedText getText() {
+			return text;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#append(java.lang.CharSequence)
+		 */
+		@Override
+		public Writer append(CharSequence csq) {
+			if (csq instanceof AcceleoGeneratedText) {
+				text.append((AcceleoGeneratedText)csq);
+			} else {
+				text.append(String.valueOf(csq));
 			}
+			return this;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#write(java.lang.String)
+		 */
+		@Override
+		public void write(String str) {
+			text.append(str);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#write(java.lang.String, int, int)
+		 */
+		@Override
+		public void write(String str, int off, int len) {
+			text.append(str.substring(off, off + len));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#write(char[], int, int)
+		 */
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			text.append(new String(cbuf, off, len));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#write(int)
+		 */
+		@Override
+		public void write(int c) {
+			text.append(String.valueOf((char)c));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#flush()
+		 */
+		@Override
+		public void flush() {
+			// Nothing to flush
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.Writer#close()
+		 */
+		@Override
+		public void close() {
+			// Nothing to close
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return text.toString();
 		}
-		return protectedAreas;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,7 +20,6 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.eclipse.acceleo.common.preference.AcceleoPreferences;
 import org.eclipse.acceleo.common.utils.AcceleoASTNodeAdapter;
 import org.eclipse.acceleo.common.utils.Deque;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
@@ -28,12 +27,13 @@ import org.eclipse.acceleo.engine.AcceleoEnginePlugin;
 import org.eclipse.acceleo.engine.AcceleoEvaluationCancelledException;
 import org.eclipse.acceleo.engine.AcceleoEvaluationException;
 import org.eclipse.acceleo.engine.AcceleoRuntimeException;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.acceleo.engine.internal.debug.ASTFragment;
 import org.eclipse.acceleo.engine.internal.debug.IDebugAST;
 import org.eclipse.acceleo.engine.internal.environment.AcceleoEnvironment;
 import org.eclipse.acceleo.engine.internal.environment.AcceleoEvaluationEnvironment;
+import org.eclipse.acceleo.engine.internal.environment.AcceleoGenerationSession;
 import org.eclipse.acceleo.engine.internal.environment.AcceleoLibraryOperationVisitor;
-import org.eclipse.acceleo.engine.internal.utils.AcceleoOverrideAdapter;
 import org.eclipse.acceleo.model.mtl.Block;
 import org.eclipse.acceleo.model.mtl.FileBlock;
 import org.eclipse.acceleo.model.mtl.ForBlock;
@@ -60,13 +60,14 @@ import org.eclipse.emf.ecore.EOperation;
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.ocl.EvaluationHaltedException;
 import org.eclipse.ocl.EvaluationVisitor;
 import org.eclipse.ocl.EvaluationVisitorDecorator;
+import org.eclipse.ocl.EvaluationVisitorImpl;
 import org.eclipse.ocl.ecore.EcoreFactory;
 import org.eclipse.ocl.ecore.StringLiteralExp;
 import org.eclipse.ocl.ecore.Variable;
 import org.eclipse.ocl.ecore.VariableExp;
-import org.eclipse.ocl.ecore.impl.OCLExpressionImpl;
 import org.eclipse.ocl.expressions.OCLExpression;
 import org.eclipse.ocl.expressions.OperationCallExp;
 import org.eclipse.ocl.expressions.PropertyCallExp;
@@ -106,14 +107,30 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	/** The marker of the lines generated inside of the protected area. */
 	public static final String PROTECTED_AREA_MARKER = "ACCELEO_PROTECTED_AREA_MARKER_FIT_INDENTATION"; //$NON-NLS-1$
 
-	/** This will be set by launch configs to debug AST evaluations. */
-	private static IDebugAST debug;
+	/** Matches any line terminator. Compiled once since it is used for each indented template call. */
+	private static final Pattern LINE_TERMINATOR_PATTERN = Pattern.compile("\r\n|\r|\n"); //$NON-NLS-1$
+
+	/** Matches the protected area markers, capturing the initials of the line terminator they replace. */
+	private static final Pattern PROTECTED_AREA_MARKER_PATTERN = Pattern.compile(PROTECTED_AREA_MARKER
+			+ "\\{(.)(.)?\\}"); //$NON-NLS-1$
+
+	/**
+	 * This will be set by launch configs to debug AST evaluations. Each generation only considers the value
+	 * this had when it started.
+	 */
+	private static volatile IDebugAST defaultDebug;
+
+	/** Name of the variable holding the dividend of the divisions evaluated by OCL on our behalf. */
+	private static final String DIVIDEND_VARIABLE_NAME = "divide$dividend"; //$NON-NLS-1$
+
+	/** Name of the variable holding the divisor of the divisions evaluated by OCL on our behalf. */
+	private static final String DIVISOR_VARIABLE_NAME = "divide$divisor"; //$NON-NLS-1$
 
 	/** We'll use this to store the value of the iteration count. */
 	private static final String ITERATION_COUNT_VARIABLE_NAME = "i"; //$NON-NLS-1$
 
-	/** To profile an AST evaluation. */
-	private static Profiler profile;
+	/** To profile an AST evaluation. Each generation only considers the value this had when it started. */
+	private static volatile Profiler defaultProfile;
 
 	/** Externalized name of the "self" OCL variable to avoid too many distinct uses. */
 	private static final String SELF_VARIABLE_NAME = "self"; //$NON-NLS-1$
@@ -121,9 +138,6 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	/** Holds the prefix we'll use for the temporary context variables created to hold context values. */
 	private static final String TEMPORARY_CONTEXT_VAR_PREFIX = "context$"; //$NON-NLS-1$
 
-	/** Holds the prefix we'll use for the temporary variables created to hold argument values. */
-	private static final String TEMPORARY_INVOCATION_ARG_PREFIX = "temporaryInvocationVariable$"; //$NON-NLS-1$
-
 	/** Key of the "undefined guard" error message in acceleoenginemessages.properties. */
 	private static final String UNDEFINED_GUARD_MESSAGE_KEY = "AcceleoEvaluationVisitor.UndefinedGuard"; //$NON-NLS-1$
 
@@ -136,6 +150,18 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	 */
 	private int currentContextIndex;
 
+	/** Debugger of the current generation, if any. */
+	private IDebugAST debug;
+
+	/**
+	 * Division of {@link #DIVIDEND_VARIABLE_NAME} by {@link #DIVISOR_VARIABLE_NAME}. This is never contained
+	 * by a module, it allows OCL to evaluate the divisions of the modules without altering them.
+	 */
+	private OperationCallExp<C, O> division;
+
+	/** Plain OCL visitor evaluating {@link #division}. */
+	private EvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS, E> divisionVisitor;
+
 	/** This flag will be set to <code>true</code> whenever we start evaluation of init section's variables. */
 	private boolean evaluatingInitSection;
 
@@ -165,12 +191,23 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	/** Keeps track of the result of the last source expression. */
 	private Object lastSourceExpressionResult;
 
+	/**
+	 * The template which text is to be returned as an {@link AcceleoGeneratedText} by its next evaluation
+	 * instead of a String. Set by template invocations which result is directly generated.
+	 */
+	private Template streamedTemplate;
+
 	/**
 	 * A query returns the same result each time it is called with the same arguments. This map will allow us
 	 * to keep the result in cache for faster subsequent calls.
 	 */
-	private QueryCache queryCache = new QueryCache(getAcceleoEnvironment().getOCLStandardLibraryReflection()
-			.getInvalid());
+	private final QueryCache queryCache;
+
+	/** Options of the generation this visitor evaluates. */
+	private final GenerationOptions options;
+
+	/** Profiler of the current generation, if any. */
+	private final Profiler profile;
 
 	/** My decorating visitor. */
 	private EvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS, E> visitor;
@@ -188,48 +225,71 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			AcceleoEvaluationContext<C> context) {
 		super(decoratedVisitor);
 		this.context = context;
+		if (getEvaluationEnvironment() instanceof AcceleoEvaluationEnvironment) {
+			final AcceleoGenerationSession session = ((AcceleoEvaluationEnvironment)getEvaluationEnvironment())
+					.getSession();
+			options = session.getOptions();
+			debug = session.getDebug();
+			profile = session.getProfiler();
+			queryCache = new QueryCache(invalid, options.isQueryCacheEnabled(), session.getQueryCache());
+		} else {
+			options = GenerationOptions.fromPreferences();
+			debug = defaultDebug;
+			profile = defaultProfile;
+			queryCache = new QueryCache(invalid, options.isQueryCacheEnabled(), null);
+		}
 		// assumes I have no decorator if not set explicitly
 		visitor = this;
 	}
 
 	/**
-	 * To debug an AST evaluation.
+	 * Returns the options of the generation this visitor evaluates.
+	 * 
+	 * @return The options of the generation this visitor evaluates.
+	 * @since 3.5
+	 */
+	public GenerationOptions getGenerationOptions() {
+		return options;
+	}
+
+	/**
+	 * To debug an AST evaluation. This will only be considered by the generations started after this call.
 	 * 
 	 * @param acceleoDebug
 	 *            is the new debugger to consider
 	 */
 	public static void setDebug(IDebugAST acceleoDebug) {
-		debug = acceleoDebug;
+		defaultDebug = acceleoDebug;
 	}
 
 	/**
-	 * Returns the current debugger.
+	 * Returns the debugger that will be used by the generations started from now on.
 	 * 
 	 * @return The current debugger.
 	 */
 	public static IDebugAST getDebug() {
-		return debug;
+		return defaultDebug;
 	}
 
 	/**
-	 * To profile an AST evaluation.
+	 * To profile an AST evaluation. This will only be considered by the generations started after this call.
 	 * 
 	 * @param acceleoProfile
 	 *            is the new debugger to consider
 	 * @since 3.0
 	 */
 	public static void setProfile(Profiler acceleoProfile) {
-		profile = acceleoProfile;
+		defaultProfile = acceleoProfile;
 	}
 
 	/**
-	 * Returns the profiler.
+	 * Returns the profiler that will be used by the generations started from now on.
 	 * 
 	 * @return The profiler.
 	 * @since 3.0
 	 */
 	public static Profiler getProfiler() {
-		return profile;
+		return defaultProfile;
 	}
 
 	/**
@@ -249,6 +309,22 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		getContext().append(string, sourceBlock, source, fireEvent);
 	}
 
+	/**
+	 * Binds the value of an invocation's argument to the corresponding parameter of the called template or
+	 * query in the current variable scope.
+	 * 
+	 * @param parameter
+	 *            The parameter of the called template or query.
+	 * @param index
+	 *            Index of the argument in the invocation.
+	 * @param value
+	 *            Value of the argument, as returned by
+	 *            {@link #visitAcceleoInvocationArgument(OCLExpression, int)}.
+	 */
+	public void bindInvocationParameter(Variable parameter, int index, Object value) {
+		getEvaluationEnvironment().add(parameter.getName(), value);
+	}
+
 	/**
 	 * Caches the result of the given invocation.
 	 * 
@@ -299,10 +375,9 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	 */
 	public String fitIndentationTo(String source, String indentation) {
 		// Do not alter the very first line (^)
-		String regex = "\r\n|\r|\n"; //$NON-NLS-1$
 		String replacement = "$0" + indentation; //$NON-NLS-1$
 
-		Matcher sourceMatcher = Pattern.compile(regex).matcher(source);
+		Matcher sourceMatcher = LINE_TERMINATOR_PATTERN.matcher(source);
 		StringBuffer result = new StringBuffer();
 		boolean hasMatch = sourceMatcher.find();
 		while (hasMatch) {
@@ -335,6 +410,26 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		return context;
 	}
 
+	/**
+	 * Tells whether the given file is already up to date on disk, in which case its file block will not be
+	 * evaluated. The default visitor has no knowledge of previous generations and always returns
+	 * <code>false</code>.
+	 * 
+	 * @param generatedFile
+	 *            File that is about to be generated.
+	 * @param fileBlock
+	 *            The file block which is to generate this file.
+	 * @param source
+	 *            The source EObject for this file block.
+	 * @param appendMode
+	 *            If <code>false</code>, the file would be replaced by a new one.
+	 * @return <code>true</code> if the file need not be generated again.
+	 * @since 3.5
+	 */
+	public boolean isUpToDate(File generatedFile, Block fileBlock, EObject source, boolean appendMode) {
+		return false;
+	}
+
 	/**
 	 * Handles the evaluation of an Acceleo {@link Block}.
 	 * 
@@ -410,6 +505,13 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			source = lastEObjectSelfValue;
 		}
 
+		if (!"stdout".equals(filePath) //$NON-NLS-1$
+				&& delegateIsUpToDate(filePath, fileBlock, source, appendMode)) {
+			// This file need not be generated again, leave it untouched
+			getContext().getProgressMonitor().worked(1);
+			return;
+		}
+
 		getContext().getProgressMonitor().subTask(
 				AcceleoEngineMessages.getString("AcceleoEvaluationVisitor.Generatingfile", filePath)); //$NON-NLS-1$
 		if ("stdout".equals(filePath)) { //$NON-NLS-1$
@@ -645,6 +747,30 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		fireGenerationEvent = fireEvents;
 	}
 
+	/**
+	 * Evaluates the given argument of a template or query invocation. Any runtime exception thrown during
+	 * this evaluation will be considered as an invalid value for this argument.
+	 * 
+	 * @param argument
+	 *            The argument expression that is to be evaluated.
+	 * @param index
+	 *            Index of the argument in the invocation.
+	 * @return Value of the argument.
+	 */
+	public Object visitAcceleoInvocationArgument(OCLExpression<C> argument, int index) {
+		Object value;
+		try {
+			value = argument.accept(getVisitor());
+		} catch (EvaluationHaltedException e) {
+			throw e;
+			// CHECKSTYLE:OFF
+		} catch (RuntimeException e) {
+			// CHECKSTYLE:ON
+			value = invalid;
+		}
+		return value;
+	}
+
 	/**
 	 * Handles the evaluation of an Acceleo {@link LetBlock}.
 	 * 
@@ -747,9 +873,7 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			} else {
 				// the content of the protected area has its own indentation. Do not touch it.
 				// Replace with different markers according to the current line separator
-				String actualContent = areaContent.replaceAll("\r\n", PROTECTED_AREA_MARKER + "{rn}"); //$NON-NLS-1$ //$NON-NLS-2$
-				actualContent = actualContent.replaceAll("\r", PROTECTED_AREA_MARKER + "{r}"); //$NON-NLS-1$ //$NON-NLS-2$
-				actualContent = actualContent.replaceAll("\n", PROTECTED_AREA_MARKER + "{n}"); //$NON-NLS-1$ //$NON-NLS-2$
+				final String actualContent = addProtectedMarkers(areaContent);
 				delegateAppend(actualContent, protectedArea, lastEObjectSelfValue, fireGenerationEvent);
 			}
 		} else {
@@ -772,6 +896,37 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		}
 	}
 
+	/**
+	 * This will be used to replace all line terminators of a protected area's content with markers so that
+	 * they are not indented along with the surrounding text. This is the reverse of
+	 * {@link #removeProtectedMarkers(String)}.
+	 * 
+	 * @param content
+	 *            The protected area content in which line terminators are to be replaced.
+	 * @return The protected content with all line terminators replaced by markers.
+	 */
+	private static String addProtectedMarkers(String content) {
+		final Matcher matcher = LINE_TERMINATOR_PATTERN.matcher(content);
+		if (matcher.find()) {
+			final StringBuffer buffer = new StringBuffer();
+			do {
+				final String terminator = matcher.group();
+				final String replacement;
+				if (terminator.length() == 2) {
+					replacement = PROTECTED_AREA_MARKER + "{rn}"; //$NON-NLS-1$
+				} else if (terminator.charAt(0) == '\r') {
+					replacement = PROTECTED_AREA_MARKER + "{r}"; //$NON-NLS-1$
+				} else {
+					replacement = PROTECTED_AREA_MARKER + "{n}"; //$NON-NLS-1$
+				}
+				matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+			} while (matcher.find());
+			matcher.appendTail(buffer);
+			return buffer.toString();
+		}
+		return content;
+	}
+
 	/**
 	 * This will be used to remove all protected area indentation markers and replace them with the line
 	 * terminator that was previously in their place.
@@ -781,7 +936,7 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	 * @return The protected content without any indentation marker.
 	 */
 	public static String removeProtectedMarkers(String string) {
-		final Matcher matcher = Pattern.compile(PROTECTED_AREA_MARKER + "\\{(.)(.)?\\}").matcher(string); //$NON-NLS-1$
+		final Matcher matcher = PROTECTED_AREA_MARKER_PATTERN.matcher(string);
 		if (matcher.find()) {
 			final StringBuffer buffer = new StringBuffer();
 			do {
@@ -816,28 +971,24 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		final Query query = invocation.getDefinition();
 		String implicitContextVariableName = null;
 
-		final List<Object> arguments = new ArrayList<Object>();
+		final List<Object> arguments = new ArrayList<Object>(query.getParameter().size());
 		boolean fireEvents = fireGenerationEvent;
 		fireGenerationEvent = false;
 		for (int i = 0; i < query.getParameter().size(); i++) {
-			final Variable var = query.getParameter().get(i);
-			var.setInitExpression(new ParameterInitExpression((OCLExpression<C>)invocation.getArgument().get(
-					i)));
-			getVisitor().visitVariable((org.eclipse.ocl.expressions.Variable<C, PM>)var);
-			final Object argValue = getEvaluationEnvironment().getValueOf(var.getName());
+			final OCLExpression<C> argument = (OCLExpression<C>)invocation.getArgument().get(i);
+			final Object argValue = delegateVisitInvocationArgument(argument, i);
 			if (isInvalid(argValue)) {
-				final OCLExpression<C> failingExpression = (OCLExpression<C>)invocation.getArgument().get(i);
 				final Object currentSelf = getEvaluationEnvironment().getValueOf(SELF_VARIABLE_NAME);
 				final AcceleoEvaluationException exception = getContext().createAcceleoException(invocation,
-						failingExpression, "AcceleoEvaluationVisitor.UndefinedArgument", currentSelf); //$NON-NLS-1$
-				// Evaluation of this query failed. Remove all previously created variables
-				for (int j = 0; j <= i; j++) {
+						argument, "AcceleoEvaluationVisitor.UndefinedArgument", currentSelf); //$NON-NLS-1$
+				// Evaluation of this query failed. Remove all previously bound parameters
+				for (int j = 0; j < i; j++) {
 					getEvaluationEnvironment().remove(query.getParameter().get(j).getName());
 				}
 				throw exception;
 			}
+			delegateBindInvocationParameter(query.getParameter().get(i), i, argValue);
 			arguments.add(argValue);
-			var.setInitExpression(null);
 		}
 		fireGenerationEvent = fireEvents;
 
@@ -848,7 +999,7 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			for (Variable var : query.getParameter()) {
 				getEvaluationEnvironment().remove(var.getName());
 			}
-			if (QueryCache.isInvalid(cachedResult) && AcceleoPreferences.isDebugMessagesEnabled()) {
+			if (QueryCache.isInvalid(cachedResult) && options.isDebugMessagesEnabled()) {
 				final Object currentSelf = getEvaluationEnvironment().getValueOf(SELF_VARIABLE_NAME);
 				final AcceleoEvaluationException exception = getContext().createAcceleoException(query,
 						(OCLExpression<C>)query.getExpression(), "AcceleoEvaluationVisitor.InvalidQuery", //$NON-NLS-1$
@@ -885,7 +1036,7 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 
 		// Store result of the query invocation
 		delegateCacheResult(query, arguments, result);
-		if (isInvalid(result) && AcceleoPreferences.isDebugMessagesEnabled()) {
+		if (isInvalid(result) && options.isDebugMessagesEnabled()) {
 			final Object currentSelf = getEvaluationEnvironment().getValueOf(SELF_VARIABLE_NAME);
 			final AcceleoEvaluationException exception = getContext().createAcceleoException(query,
 					(OCLExpression<C>)query.getExpression(), "AcceleoEvaluationVisitor.InvalidQuery", //$NON-NLS-1$
@@ -904,15 +1055,7 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	 */
 	@SuppressWarnings("unchecked")
 	public String visitAcceleoTemplate(Template template) {
-		getContext().openNested();
-		/*
-		 * Variables have been positioned by either the AcceleoEngine (first template) or this visitor
-		 * (template invocation).
-		 */
-		List<org.eclipse.ocl.ecore.OCLExpression> nestedExpressions = template.getBody();
-		for (int i = 0; i < nestedExpressions.size(); i++) {
-			getVisitor().visitExpression((OCLExpression<C>)nestedExpressions.get(i));
-		}
+		evaluateTemplateBody(template);
 		String result = getContext().closeContext();
 		if (template.getPost() != null) {
 			getEvaluationEnvironment().add(SELF_VARIABLE_NAME, result);
@@ -932,6 +1075,41 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		return result;
 	}
 
+	/**
+	 * Evaluates the given template as {@link #visitAcceleoTemplate(Template)} would, but returns its text
+	 * without converting it to a String. Templates with a post condition are evaluated as usual.
+	 * 
+	 * @param template
+	 *            The Acceleo Template that is to be evaluated.
+	 * @return Result of the template evaluation.
+	 */
+	private Object visitStreamedTemplate(Template template) {
+		if (template.getPost() != null) {
+			return visitAcceleoTemplate(template);
+		}
+		evaluateTemplateBody(template);
+		return getContext().closeGeneratedText();
+	}
+
+	/**
+	 * Opens a new context for the given template and evaluates its body in it.
+	 * 
+	 * @param template
+	 *            The Acceleo Template which body is to be evaluated.
+	 */
+	@SuppressWarnings("unchecked")
+	private void evaluateTemplateBody(Template template) {
+		getContext().openNested();
+		/*
+		 * Variables have been positioned by either the AcceleoEngine (first template) or this visitor
+		 * (template invocation).
+		 */
+		List<org.eclipse.ocl.ecore.OCLExpression> nestedExpressions = template.getBody();
+		for (int i = 0; i < nestedExpressions.size(); i++) {
+			getVisitor().visitExpression((OCLExpression<C>)nestedExpressions.get(i));
+		}
+	}
+
 	/**
 	 * Handles the evaluation of an Acceleo {@link TemplateInvocation}.
 	 * 
@@ -942,6 +1120,7 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	@SuppressWarnings("unchecked")
 	public Object visitAcceleoTemplateInvocation(TemplateInvocation invocation) {
 		String implicitContextVariableName = null;
+		final boolean streamText = canStreamText(invocation);
 
 		// FIXME handle multiple invocations and "each"
 		final Template actualTemplate = prepareInvocation(invocation);
@@ -962,15 +1141,21 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			lastEObjectSelfValue = (EObject)source;
 		}
 		try {
+			if (streamText) {
+				streamedTemplate = actualTemplate;
+			}
 			final Object result = getVisitor().visitExpression((OCLExpression<C>)actualTemplate);
-			delegateAppend(toString(result), actualTemplate, lastEObjectSelfValue, false);
+			if (result instanceof AcceleoGeneratedText) {
+				getContext().append((AcceleoGeneratedText)result, actualTemplate, lastEObjectSelfValue,
+						false);
+			} else {
+				delegateAppend(toString(result), actualTemplate, lastEObjectSelfValue, false);
+			}
 		} finally {
+			streamedTemplate = null;
 			// restore parameters as they were prior to the call
 			for (int i = 0; i < actualTemplate.getParameter().size(); i++) {
-				final Variable param = actualTemplate.getParameter().get(i);
-				param.setInitExpression(null);
-				getEvaluationEnvironment().remove(param.getName());
-				getEvaluationEnvironment().remove(TEMPORARY_INVOCATION_ARG_PREFIX + i);
+				getEvaluationEnvironment().remove(actualTemplate.getParameter().get(i).getName());
 			}
 			// [255379] restore self if need be
 			if (actualTemplate.getParameter().size() > 0) {
@@ -984,6 +1169,10 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		}
 		// Close the invoked template's variable scope now
 		((AcceleoEvaluationEnvironment)getEvaluationEnvironment()).removeVariableScope();
+		if (streamText) {
+			final AcceleoGeneratedText invocationText = getContext().closeGeneratedText();
+			return invocationText.indent(getContext().getCurrentLineIndentation());
+		}
 		String invocationResult = getContext().closeContext();
 		if (evaluatingInitSection) {
 			return invocationResult;
@@ -1067,7 +1256,11 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 				if (source instanceof EObject) {
 					lastEObjectSelfValue = (EObject)source;
 				}
-				if (result != null) {
+				if (result instanceof AcceleoGeneratedText) {
+					boolean fireEvent = fireEvent(expression);
+					appendGeneratedText((AcceleoGeneratedText)result, generatedBlock, lastEObjectSelfValue,
+							fireEvent);
+				} else if (result != null) {
 					boolean fireEvent = fireEvent(expression);
 					delegateAppend(toString(result), generatedBlock, lastEObjectSelfValue, fireEvent);
 				}
@@ -1162,21 +1355,19 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	 */
 	@Override
 	public Object visitOperationCallExp(OperationCallExp<C, O> callExp) {
-		// We need something a little more intelligent to avoid overriding all "+" operators
-		if (callExp.getOperationCode() == PredefinedType.PLUS) {
-			final C stringType = getEnvironment().getOCLStandardLibrary().getString();
-			if (callExp.getSource().getType() == stringType
-					|| callExp.getArgument().get(0).getType() == stringType) {
-				((EObject)callExp.getReferredOperation()).eAdapters().add(new AcceleoOverrideAdapter());
-			}
-		} else if (((EObject)callExp.getReferredOperation()).eIsProxy()) {
+		if (callExp.getOperationCode() != PredefinedType.DIVIDE
+				&& ((EObject)callExp.getReferredOperation()).eIsProxy()) {
 			/*
 			 * OCL used "/" as operation name for the division ... Which means divisions will never be
-			 * serializable : its URI is invalid. We'll then try and "trick" OCL for these.
+			 * serializable : its URI is invalid. We'll then evaluate these ourselves as the compiled module
+			 * cannot be altered : it may be shared by concurrent generations.
 			 */
 			URI uri = ((InternalEObject)callExp.getReferredOperation()).eProxyURI();
 			if (uri.fragment() != null && uri.fragment().endsWith("%2F")) { //$NON-NLS-1$
-				callExp.setOperationCode(PredefinedType.DIVIDE);
+				lastSourceExpression = callExp.getSource();
+				final Object source = getVisitor().visitExpression(callExp.getSource());
+				final Object argument = getVisitor().visitExpression(callExp.getArgument().get(0));
+				return divide(callExp, source, argument);
 			}
 		}
 
@@ -1333,6 +1524,62 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		}
 	}
 
+	/**
+	 * Appends the text of a template invocation to the current context. The text will only be converted to
+	 * a String if it needs to be stripped of its protected area markers.
+	 * 
+	 * @param text
+	 *            Text that is to be appended to the current buffer.
+	 * @param sourceBlock
+	 *            The block for which this text has been generated.
+	 * @param source
+	 *            The Object for which was generated this text.
+	 * @param fireEvent
+	 *            Tells us whether we should fire generation events.
+	 */
+	private void appendGeneratedText(AcceleoGeneratedText text, Block sourceBlock, EObject source,
+			boolean fireEvent) {
+		if (shouldRemoveProtectedMarker(sourceBlock)) {
+			delegateAppend(text.toString(), sourceBlock, source, fireEvent);
+		} else {
+			getContext().append(text, sourceBlock, source, fireEvent);
+		}
+	}
+
+	/**
+	 * Tells whether the text of the given invocation can be kept as an {@link AcceleoGeneratedText} instead
+	 * of being converted to a String. This is only the case for invocations which result is directly
+	 * generated, and only when no decorator, debugger or init section needs to be given Strings.
+	 * 
+	 * @param invocation
+	 *            The template invocation that is about to be evaluated.
+	 * @return <code>true</code> if the text of this invocation can be kept as an
+	 *         {@link AcceleoGeneratedText}, <code>false</code> otherwise.
+	 */
+	private boolean canStreamText(TemplateInvocation invocation) {
+		return debug == null && !evaluatingInitSection && getAcceleoVisitor() == null
+				&& invocation.eContainingFeature() == MtlPackage.eINSTANCE.getBlock_Body();
+	}
+
+	/**
+	 * If I have an {@link AcceleoEvaluationVisitorDecorator Acceleo-specific decorator}, I'll delegate the
+	 * binding of invocation parameters to it.
+	 * 
+	 * @param parameter
+	 *            The parameter of the called template or query.
+	 * @param index
+	 *            Index of the argument in the invocation.
+	 * @param value
+	 *            Value of the argument.
+	 */
+	private void delegateBindInvocationParameter(Variable parameter, int index, Object value) {
+		if (getVisitor() instanceof AcceleoEvaluationVisitorDecorator<?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?>) {
+			getAcceleoVisitor().bindInvocationParameter(parameter, index, value);
+		} else {
+			bindInvocationParameter(parameter, index, value);
+		}
+	}
+
 	/**
 	 * Indicates if the source block qualifies for the removal of the protected area marker.
 	 * 
@@ -1440,6 +1687,45 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		return getCachedResult(query, arguments);
 	}
 
+	/**
+	 * If I have an {@link AcceleoEvaluationVisitorDecorator Acceleo-specific decorator}, I'll ask it whether
+	 * the given file is up to date.
+	 * 
+	 * @param filePath
+	 *            Path of the file that is about to be generated.
+	 * @param fileBlock
+	 *            The file block which is to generate this file.
+	 * @param source
+	 *            The source EObject for this file block.
+	 * @param appendMode
+	 *            If <code>false</code>, the file would be replaced by a new one.
+	 * @return <code>true</code> if the file need not be generated again.
+	 */
+	private boolean delegateIsUpToDate(String filePath, Block fileBlock, EObject source, boolean appendMode) {
+		if (getVisitor() instanceof AcceleoEvaluationVisitorDecorator<?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?>) {
+			return getAcceleoVisitor().isUpToDate(getContext().getFileFor(filePath), fileBlock, source,
+					appendMode);
+		}
+		return isUpToDate(getContext().getFileFor(filePath), fileBlock, source, appendMode);
+	}
+
+	/**
+	 * If I have an {@link AcceleoEvaluationVisitorDecorator Acceleo-specific decorator}, I'll delegate the
+	 * evaluation of invocation arguments to it.
+	 * 
+	 * @param argument
+	 *            The argument expression that is to be evaluated.
+	 * @param index
+	 *            Index of the argument in the invocation.
+	 * @return Value of the argument.
+	 */
+	private Object delegateVisitInvocationArgument(OCLExpression<C> argument, int index) {
+		if (getVisitor() instanceof AcceleoEvaluationVisitorDecorator<?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?>) {
+			return getAcceleoVisitor().visitAcceleoInvocationArgument(argument, index);
+		}
+		return visitAcceleoInvocationArgument(argument, index);
+	}
+
 	/**
 	 * This will evaluate guards of all <code>candidates</code> and filter out those whose guard is evaluated
 	 * to <code>false</code>. Template with no specified guards aren't removed from the list.
@@ -1450,10 +1736,10 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	 * @param candidates
 	 *            List that is to be filtered.
 	 * @param arguments
-	 *            Arguments of all templates. Those need to be set for guard evaluation.
+	 *            Values of the invocation's arguments. Those need to be set for guard evaluation.
 	 */
 	@SuppressWarnings("unchecked")
-	private void evaluateGuards(List<Template> candidates, List<Variable> arguments) {
+	private void evaluateGuards(List<Template> candidates, Object[] arguments) {
 		final boolean fireEvents = fireGenerationEvent;
 		fireGenerationEvent = false;
 		AcceleoEvaluationException exception = null;
@@ -1473,25 +1759,17 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			}
 			// Set parameter values
 			for (int i = 0; i < candidate.getParameter().size(); i++) {
-				final Variable param = candidate.getParameter().get(i);
-				VariableExp init = EcoreFactory.eINSTANCE.createVariableExp();
-				init.setReferredVariable(arguments.get(i));
-				param.setInitExpression(init);
-				getVisitor().visitVariable((org.eclipse.ocl.expressions.Variable<C, PM>)param);
-				// [255379] sets new value of "self" to match the very first arg of the invocation
-				if (i == 0) {
-					Object newContext = getEvaluationEnvironment().getValueOf(param.getName());
-					getEvaluationEnvironment().add(SELF_VARIABLE_NAME, newContext);
-				}
+				delegateBindInvocationParameter(candidate.getParameter().get(i), i, arguments[i]);
+			}
+			// [255379] sets new value of "self" to match the very first arg of the invocation
+			if (candidate.getParameter().size() > 0) {
+				getEvaluationEnvironment().add(SELF_VARIABLE_NAME, arguments[0]);
 			}
 			final Object guardValue = getVisitor().visitExpression((OCLExpression<C>)candidate.getGuard());
 
 			// restore parameters as they were prior to the call
 			for (int i = 0; i < candidate.getParameter().size(); i++) {
-				final Variable param = candidate.getParameter().get(i);
-				((VariableExp)param.getInitExpression()).setReferredVariable(null);
-				param.setInitExpression(null);
-				getEvaluationEnvironment().remove(param.getName());
+				getEvaluationEnvironment().remove(candidate.getParameter().get(i).getName());
 			}
 			// [255379] restore self if need be
 			if (candidate.getParameter().size() > 0) {
@@ -1597,8 +1875,9 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 	@SuppressWarnings("unchecked")
 	private Template prepareInvocation(TemplateInvocation invocation) {
 		final Template template = invocation.getDefinition();
-		final List<Variable> temporaryArgVars = new ArrayList<Variable>(invocation.getArgument().size());
+		final AcceleoEvaluationEnvironment env = (AcceleoEvaluationEnvironment)getEvaluationEnvironment();
 		final Template actualTemplate;
+		final Object[] argValues;
 
 		if (invocation.isSuper()) {
 			final Template containingTemplate = (Template)invocation.eContainer();
@@ -1610,100 +1889,44 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			} else {
 				actualTemplate = template.getOverrides().get(0);
 			}
-			boolean fireEvents = fireGenerationEvent;
-			fireGenerationEvent = false;
 
-			for (int i = 0; i < actualTemplate.getParameter().size(); i++) {
-				/*
-				 * We'll create a temporary var beforehand for each parameter to avoid scoping issues with the
-				 * variables context (temporary vars are global). This shouldn't be too much overhead in terms
-				 * of raw performance.
-				 */
-				final Variable tempVar = EcoreFactory.eINSTANCE.createVariable();
-				tempVar.setName(TEMPORARY_INVOCATION_ARG_PREFIX + i);
-				final VariableExp init = EcoreFactory.eINSTANCE.createVariableExp();
-				init.setReferredVariable(containingTemplate.getParameter().get(i));
-				tempVar.setInitExpression(init);
-				temporaryArgVars.add(tempVar);
-				// Evaluate the value of this new variable
-				getVisitor().visitVariable((org.eclipse.ocl.expressions.Variable<C, PM>)tempVar);
-			}
-
-			// The actual template that will be called is known ; create its variable scope
-			((AcceleoEvaluationEnvironment)getEvaluationEnvironment()).createVariableScope();
-
-			// Determine argument values and context
-			for (int i = 0; i < actualTemplate.getParameter().size(); i++) {
-				Variable var = actualTemplate.getParameter().get(i);
-				final VariableExp init = EcoreFactory.eINSTANCE.createVariableExp();
-				final Variable temporaryVar = temporaryArgVars.get(i);
-				init.setReferredVariable(temporaryVar);
-				var.setInitExpression(init);
-				// Evaluate the value of this new variable
-				getVisitor().visitVariable((org.eclipse.ocl.expressions.Variable<C, PM>)var);
-				// Unset every temporary reference we've set to prevent cross referencers from keeping these
-				var.setInitExpression(null);
-				init.setReferredVariable(null);
-				temporaryVar.setType(null);
-				temporaryVar.setInitExpression(null);
+			// The arguments of a super call are the current values of the containing template's parameters
+			argValues = new Object[actualTemplate.getParameter().size()];
+			for (int i = 0; i < argValues.length; i++) {
+				argValues[i] = env.getValueOf(containingTemplate.getParameter().get(i).getName());
 			}
-			fireGenerationEvent = fireEvents;
 		} else {
 			final int argumentCount = invocation.getArgument().size();
-			final Object[] argValues = new Object[argumentCount];
+			argValues = new Object[argumentCount];
 			// Determine values of the arguments
 			boolean fireEvents = fireGenerationEvent;
 			fireGenerationEvent = false;
 			for (int i = 0; i < argumentCount; i++) {
 				final OCLExpression<C> argument = (OCLExpression<C>)invocation.getArgument().get(i);
-				final Variable tempVar = EcoreFactory.eINSTANCE.createVariable();
-				tempVar.setName(TEMPORARY_INVOCATION_ARG_PREFIX + i);
-				tempVar.setInitExpression(new ParameterInitExpression(argument));
-				tempVar.setType((EClassifier)argument.getType());
-				temporaryArgVars.add(tempVar);
-				// Evaluate the value of this new variable
-				getVisitor().visitVariable((org.eclipse.ocl.expressions.Variable<C, PM>)tempVar);
-				final Object argValue = getEvaluationEnvironment().getValueOf(tempVar.getName());
+				final Object argValue = delegateVisitInvocationArgument(argument, i);
 				if (isInvalid(argValue)) {
-					final Object currentSelf = getEvaluationEnvironment().getValueOf(SELF_VARIABLE_NAME);
-					final AcceleoEvaluationException exception = getContext().createAcceleoException(
-							invocation, argument, "AcceleoEvaluationVisitor.UndefinedArgument", currentSelf); //$NON-NLS-1$
-					// Evaluation of this template failed. Remove all previously created variables
-					for (int j = 0; j <= i; j++) {
-						getEvaluationEnvironment().remove(invocation.getArgument().get(j).getName());
-					}
-					throw exception;
+					final Object currentSelf = env.getValueOf(SELF_VARIABLE_NAME);
+					throw getContext().createAcceleoException(invocation, argument,
+							"AcceleoEvaluationVisitor.UndefinedArgument", currentSelf); //$NON-NLS-1$
 				}
-				argValues[i] = getEvaluationEnvironment().getValueOf(tempVar.getName());
+				argValues[i] = argValue;
 			}
 			fireGenerationEvent = fireEvents;
-			// retrieve all applicable candidates of the call
-			final List<Template> applicableCandidates = ((AcceleoEvaluationEnvironment)getEvaluationEnvironment())
-					.getAllCandidates((Module)EcoreUtil.getRootContainer(invocation), template, argValues);
-			evaluateGuards(applicableCandidates, temporaryArgVars);
-			// We now know the actual template that's to be called ; create its variable scope
-			((AcceleoEvaluationEnvironment)getEvaluationEnvironment()).createVariableScope();
-
-			if (applicableCandidates.iterator().hasNext()) {
-				actualTemplate = ((AcceleoEvaluationEnvironment)getEvaluationEnvironment())
-						.getMostSpecificTemplate(applicableCandidates, argValues);
-
-				// Determine argument values and context
-				for (int i = 0; i < actualTemplate.getParameter().size(); i++) {
-					Variable var = actualTemplate.getParameter().get(i);
-					final VariableExp init = EcoreFactory.eINSTANCE.createVariableExp();
-					final Variable temporaryVar = temporaryArgVars.get(i);
-					init.setReferredVariable(temporaryVar);
-					var.setInitExpression(init);
-					// Evaluate the value of this new variable
-					getVisitor().visitVariable((org.eclipse.ocl.expressions.Variable<C, PM>)var);
-					// Unset every temporary reference we've set to prevent cross referencers from keeping
-					// these
-					var.setInitExpression(null);
-					init.setReferredVariable(null);
-					temporaryVar.setType(null);
-					temporaryVar.setInitExpression(null);
+
+			final Module origin = (Module)EcoreUtil.getRootContainer(invocation);
+			// No need to go through the whole resolution if none of the candidates is guarded
+			Template resolvedTemplate = env.getUnguardedMostSpecificTemplate(origin, template, argValues);
+			if (resolvedTemplate == null) {
+				// retrieve all applicable candidates of the call
+				final List<Template> applicableCandidates = env.getAllCandidates(origin, template, argValues);
+				evaluateGuards(applicableCandidates, argValues);
+				if (applicableCandidates.iterator().hasNext()) {
+					resolvedTemplate = env.getMostSpecificTemplate(applicableCandidates, argValues);
 				}
+			}
+
+			if (resolvedTemplate != null) {
+				actualTemplate = resolvedTemplate;
 			} else {
 				// No template remains after guard evaluation. Create an empty template so no
 				// text will be generated from this call.
@@ -1711,9 +1934,71 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			}
 		}
 
+		// We now know the actual template that's to be called ; create its variable scope
+		env.createVariableScope();
+
+		// Bind the argument values to the actual template's parameters
+		for (int i = 0; i < actualTemplate.getParameter().size(); i++) {
+			delegateBindInvocationParameter(actualTemplate.getParameter().get(i), i, argValues[i]);
+		}
+
 		return actualTemplate;
 	}
 
+	/**
+	 * Evaluates the division of <code>source</code> by <code>argument</code> through OCL. The operation code
+	 * of <code>callExp</code> is not set since the module may be shared by concurrent generations, OCL is
+	 * rather asked to evaluate {@link #division} with the given operands.
+	 * 
+	 * @param callExp
+	 *            The division which operands have been evaluated.
+	 * @param source
+	 *            The dividend.
+	 * @param argument
+	 *            The divisor.
+	 * @return The result of the division, <code>invalid</code> if it could not be computed.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object divide(OperationCallExp<C, O> callExp, Object source, Object argument) {
+		if (division == null) {
+			division = (OperationCallExp<C, O>)EcoreFactory.eINSTANCE.createOperationCallExp();
+			division.setOperationCode(PredefinedType.DIVIDE);
+			division.setSource(createDivisionOperand(DIVIDEND_VARIABLE_NAME));
+			division.getArgument().add(createDivisionOperand(DIVISOR_VARIABLE_NAME));
+			divisionVisitor = new EvaluationVisitorImpl<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS, E>(
+					getEnvironment(), getEvaluationEnvironment(), getExtentMap());
+		}
+		division.setReferredOperation(callExp.getReferredOperation());
+		division.setType(callExp.getType());
+		division.getSource().setType(callExp.getSource().getType());
+		division.getArgument().get(0).setType(callExp.getArgument().get(0).getType());
+
+		getEvaluationEnvironment().add(DIVIDEND_VARIABLE_NAME, source);
+		getEvaluationEnvironment().add(DIVISOR_VARIABLE_NAME, argument);
+		try {
+			return divisionVisitor.visitOperationCallExp(division);
+		} finally {
+			getEvaluationEnvironment().remove(DIVIDEND_VARIABLE_NAME);
+			getEvaluationEnvironment().remove(DIVISOR_VARIABLE_NAME);
+		}
+	}
+
+	/**
+	 * Creates an operand of {@link #division}, referring to the variable of the given name.
+	 * 
+	 * @param variableName
+	 *            Name of the variable holding the value of the operand.
+	 * @return The operand of {@link #division} referring to the variable of the given name.
+	 */
+	@SuppressWarnings("unchecked")
+	private OCLExpression<C> createDivisionOperand(String variableName) {
+		final Variable variable = EcoreFactory.eINSTANCE.createVariable();
+		variable.setName(variableName);
+		final VariableExp operand = EcoreFactory.eINSTANCE.createVariableExp();
+		operand.setReferredVariable(variable);
+		return (OCLExpression<C>)operand;
+	}
+
 	/**
 	 * Tell if we should profile this expression.
 	 * 
@@ -1815,6 +2100,9 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 			}
 			if (delegate != null) {
 				result = delegate.visitAcceleoTemplate((Template)expression);
+			} else if (expression == streamedTemplate) {
+				streamedTemplate = null;
+				result = visitStreamedTemplate((Template)expression);
 			} else {
 				result = visitAcceleoTemplate((Template)expression);
 			}
@@ -1912,36 +2200,4 @@ public class AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS,
 		}
 		return buffer.toString();
 	}
-
-	/**
-	 * These will be used as dummies for our temporary variables so as not to change the container of
-	 * TemplateInvocation and QueryInvocation parameter expressions.
-	 * 
-	 * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
-	 */
-	private class ParameterInitExpression extends OCLExpressionImpl {
-		/** Expression this will delegate evaluation to. */
-		private final OCLExpression<C> referredExpression;
-
-		/**
-		 * Instantiates an instance given the expression to delegate evaluation to.
-		 * 
-		 * @param expession
-		 *            Expression to which evaluation will be delegated.
-		 */
-		public ParameterInitExpression(OCLExpression<C> expession) {
-			referredExpression = expession;
-		}
-
-		/**
-		 * {@inheritDoc}
-		 * 
-		 * @see org.eclipse.ocl.ecore.impl.OCLExpressionImpl#accept(U)
-		 */
-		@Override
-		public <T extends Object, U extends org.eclipse.ocl.utilities.Visitor<T, ?, ?, ?, ?, ?, ?, ?, ?, ?>> T accept(
-				U v) {
-			return referredExpression.accept(v);
-		}
-	}
 }
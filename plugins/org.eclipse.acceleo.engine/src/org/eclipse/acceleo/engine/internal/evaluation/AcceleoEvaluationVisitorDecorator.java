@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -27,6 +27,8 @@ import org.eclipse.acceleo.model.mtl.Template;
 import org.eclipse.acceleo.model.mtl.TemplateInvocation;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.ocl.EvaluationVisitorDecorator;
+import org.eclipse.ocl.ecore.Variable;
+import org.eclipse.ocl.expressions.OCLExpression;
 
 /**
  * This will allow us to decorate Acceleo-specific evaluation visitor calls. This will mainly be used for the
@@ -89,6 +91,21 @@ public class AcceleoEvaluationVisitorDecorator<PK, C, O, P, EL, PM, S, COA, SSA,
 		getAcceleoDelegate().append(string, sourceBlock, source, fireEvent);
 	}
 
+	/**
+	 * Binds the value of an invocation's argument to the corresponding parameter of the called template or
+	 * query in the current variable scope.
+	 * 
+	 * @param parameter
+	 *            The parameter of the called template or query.
+	 * @param index
+	 *            Index of the argument in the invocation.
+	 * @param value
+	 *            Value of the argument.
+	 */
+	public void bindInvocationParameter(Variable parameter, int index, Object value) {
+		getAcceleoDelegate().bindInvocationParameter(parameter, index, value);
+	}
+
 	/**
 	 * Demands creation of a writer for the given file path from the generation strategy.
 	 * 
@@ -152,6 +169,25 @@ public class AcceleoEvaluationVisitorDecorator<PK, C, O, P, EL, PM, S, COA, SSA,
 		getAcceleoDelegate().cacheResult(query, arguments, result);
 	}
 
+	/**
+	 * Tells whether the given file is already up to date on disk, in which case its file block will not be
+	 * evaluated.
+	 * 
+	 * @param generatedFile
+	 *            File that is about to be generated.
+	 * @param fileBlock
+	 *            The file block which is to generate this file.
+	 * @param source
+	 *            The source EObject for this file block.
+	 * @param appendMode
+	 *            If <code>false</code>, the file would be replaced by a new one.
+	 * @return <code>true</code> if the file need not be generated again.
+	 * @since 3.5
+	 */
+	public boolean isUpToDate(File generatedFile, Block fileBlock, EObject source, boolean appendMode) {
+		return getAcceleoDelegate().isUpToDate(generatedFile, fileBlock, source, appendMode);
+	}
+
 	/**
 	 * Handles the evaluation of an Acceleo {@link Block}.
 	 * 
@@ -205,6 +241,19 @@ public class AcceleoEvaluationVisitorDecorator<PK, C, O, P, EL, PM, S, COA, SSA,
 		getAcceleoDelegate().visitAcceleoInitSection(init);
 	}
 
+	/**
+	 * Evaluates the given argument of a template or query invocation.
+	 * 
+	 * @param argument
+	 *            The argument expression that is to be evaluated.
+	 * @param index
+	 *            Index of the argument in the invocation.
+	 * @return Value of the argument.
+	 */
+	public Object visitAcceleoInvocationArgument(OCLExpression<C> argument, int index) {
+		return getAcceleoDelegate().visitAcceleoInvocationArgument(argument, index);
+	}
+
 	/**
 	 * Handles the evaluation of an Acceleo {@link LetBlock}.
 	 * 
@@ -0,0 +1,543 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.evaluation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text generated by a template or template invocation, held as the list of its segments instead of a single
+ * String. Appending the text of a nested template invocation only references it, and the indentation of a
+ * template call is only recorded : the text is copied once, when it is finally written or converted to a
+ * String.
+ * <p>
+ * Indentation is applied exactly as {@link AcceleoEvaluationVisitor#fitIndentationTo(String, String)} would :
+ * the indentation is inserted after each line terminator ("\r\n", "\r" or "\n") of the indented text.
+ * Likewise, {@link #getLastLineIndentation()} returns what
+ * {@link AcceleoEvaluationContext#getCurrentLineIndentation()} would have computed from the String
+ * representation of this text.
+ * </p>
+ * <p>
+ * Texts only are appended to while their template is evaluated, and never afterwards.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AcceleoGeneratedText implements CharSequence {
+	/** DOS line separator. */
+	private static final String DOS_LINE_SEPARATOR = "\r\n"; //$NON-NLS-1$
+
+	/** Unix line separator. */
+	private static final String UNIX_LINE_SEPARATOR = "\n"; //$NON-NLS-1$
+
+	/** Mac line separator. */
+	private static final String MAC_LINE_SEPARATOR = "\r"; //$NON-NLS-1$
+
+	/** Segments of this text. These are either Strings or nested {@link AcceleoGeneratedText}s. */
+	private final List<Object> segments;
+
+	/** Indentation given to every line but the first of this text's segments. Never <code>null</code>. */
+	private final String indentation;
+
+	/** Length of this text once rendered. */
+	private int length;
+
+	/** Number of line terminators this text contains. */
+	private int terminatorCount;
+
+	/** Tells whether this text contains a DOS line separator. */
+	private boolean hasDOSSeparator;
+
+	/** Tells whether this text contains a '\n'. */
+	private boolean hasUnixSeparator;
+
+	/** Tells whether this text contains a '\r'. */
+	private boolean hasMacSeparator;
+
+	/** First character of this text once rendered. Only meaningful if {@link #length} is not zero. */
+	private char firstChar;
+
+	/** Last character of this text once rendered. Only meaningful if {@link #length} is not zero. */
+	private char lastChar;
+
+	/** Caches the String representation of this text. Reset whenever this text is appended to. */
+	private String rendered;
+
+	/**
+	 * Creates an empty text.
+	 */
+	public AcceleoGeneratedText() {
+		segments = new ArrayList<Object>();
+		indentation = ""; //$NON-NLS-1$
+	}
+
+	/**
+	 * Creates the text rendering <code>text</code> with the given indentation.
+	 * 
+	 * @param text
+	 *            The text that is to be indented.
+	 * @param indentation
+	 *            Indentation that is to be given to all of <code>text</code> lines but the first. Cannot
+	 *            contain line terminators.
+	 */
+	private AcceleoGeneratedText(AcceleoGeneratedText text, String indentation) {
+		segments = new ArrayList<Object>(1);
+		segments.add(text);
+		this.indentation = indentation;
+		length = text.length + indentation.length() * text.terminatorCount;
+		terminatorCount = text.terminatorCount;
+		hasDOSSeparator = text.hasDOSSeparator;
+		hasUnixSeparator = text.hasUnixSeparator;
+		hasMacSeparator = text.hasMacSeparator;
+		firstChar = text.firstChar;
+		if (text.lastChar == '\r' || text.lastChar == '\n') {
+			lastChar = indentation.charAt(indentation.length() - 1);
+		} else {
+			lastChar = text.lastChar;
+		}
+	}
+
+	/**
+	 * Appends the given String to this text.
+	 * 
+	 * @param string
+	 *            The String that is to be appended.
+	 */
+	public void append(String string) {
+		final int stringLength = string.length();
+		if (stringLength == 0) {
+			return;
+		}
+		int terminators = 0;
+		for (int i = 0; i < stringLength; i++) {
+			final char c = string.charAt(i);
+			if (c == '\n') {
+				hasUnixSeparator = true;
+				terminators++;
+			} else if (c == '\r') {
+				hasMacSeparator = true;
+				if (i + 1 < stringLength && string.charAt(i + 1) == '\n') {
+					hasDOSSeparator = true;
+				} else {
+					terminators++;
+				}
+			}
+		}
+		appendSummary(stringLength, terminators, string.charAt(0), string.charAt(stringLength - 1));
+		segments.add(string);
+	}
+
+	/**
+	 * Appends the given text to this one. <code>text</code> is not copied and should not be modified
+	 * afterwards.
+	 * 
+	 * @param text
+	 *            The text that is to be appended.
+	 */
+	public void append(AcceleoGeneratedText text) {
+		if (text.length == 0) {
+			return;
+		}
+		hasDOSSeparator = hasDOSSeparator || text.hasDOSSeparator;
+		hasUnixSeparator = hasUnixSeparator || text.hasUnixSeparator;
+		hasMacSeparator = hasMacSeparator || text.hasMacSeparator;
+		appendSummary(text.length, text.terminatorCount, text.firstChar, text.lastChar);
+		segments.add(text);
+	}
+
+	/**
+	 * Returns this text with the given indentation inserted after each of its line terminators. This text
+	 * is not copied unless <code>newIndentation</code> itself contains line terminators.
+	 * 
+	 * @param newIndentation
+	 *            Indentation that is to be given to all of this text's lines but the first.
+	 * @return This text with the given indentation inserted after each of its line terminators.
+	 */
+	public AcceleoGeneratedText indent(String newIndentation) {
+		if (newIndentation.length() == 0 || terminatorCount == 0) {
+			return this;
+		}
+		if (newIndentation.indexOf('\r') != -1 || newIndentation.indexOf('\n') != -1) {
+			// The indentation could combine with our own terminators : render it right away
+			final AcceleoGeneratedText result = new AcceleoGeneratedText();
+			result.append(new AcceleoGeneratedText(this, newIndentation).toString());
+			return result;
+		}
+		return new AcceleoGeneratedText(this, newIndentation);
+	}
+
+	/**
+	 * Returns the indentation of this text's last line, computed as
+	 * {@link AcceleoEvaluationContext#getCurrentLineIndentation()} does for Strings : the whitespace
+	 * characters following the last DOS line separator, or the last '\n' if there are none, or the last '\r'
+	 * if there are neither.
+	 * 
+	 * @return The indentation of this text's last line.
+	 */
+	public String getLastLineIndentation() {
+		final StringBuilder lastLine = new StringBuilder();
+		try {
+			if (hasDOSSeparator) {
+				appendTail(lastLine, DOS_LINE_SEPARATOR);
+			} else if (hasUnixSeparator) {
+				appendTail(lastLine, UNIX_LINE_SEPARATOR);
+			} else if (hasMacSeparator) {
+				appendTail(lastLine, MAC_LINE_SEPARATOR);
+			} else {
+				appendLeadingWhitespaces(lastLine);
+			}
+		} catch (IOException e) {
+			// Cannot happen with a StringBuilder
+		}
+		int end = 0;
+		while (end < lastLine.length() && Character.isWhitespace(lastLine.charAt(end))) {
+			end++;
+		}
+		return lastLine.substring(0, end);
+	}
+
+	/**
+	 * Writes this text to the given Appendable.
+	 * 
+	 * @param out
+	 *            The Appendable to which this text is to be written.
+	 * @throws IOException
+	 *             Thrown if we cannot write to <code>out</code>.
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		if (indentation.length() == 0) {
+			for (int i = 0; i < segments.size(); i++) {
+				final Object segment = segments.get(i);
+				if (segment instanceof String) {
+					out.append((String)segment);
+				} else {
+					((AcceleoGeneratedText)segment).writeTo(out);
+				}
+			}
+		} else {
+			final IndentingAppendable indenter = new IndentingAppendable(out, indentation);
+			((AcceleoGeneratedText)segments.get(0)).writeTo(indenter);
+			indenter.finish();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index) {
+		return toString().charAt(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (rendered == null) {
+			if (segments.size() == 1 && segments.get(0) instanceof String) {
+				rendered = (String)segments.get(0);
+			} else {
+				final StringBuilder buffer = new StringBuilder(length);
+				try {
+					writeTo(buffer);
+				} catch (IOException e) {
+					// Cannot happen with a StringBuilder
+				}
+				rendered = buffer.toString();
+			}
+		}
+		return rendered;
+	}
+
+	/**
+	 * Updates the summary of this text with that of an appended segment.
+	 * 
+	 * @param segmentLength
+	 *            Length of the appended segment.
+	 * @param segmentTerminators
+	 *            Number of line terminators in the appended segment.
+	 * @param segmentFirstChar
+	 *            First character of the appended segment.
+	 * @param segmentLastChar
+	 *            Last character of the appended segment.
+	 */
+	private void appendSummary(int segmentLength, int segmentTerminators, char segmentFirstChar,
+			char segmentLastChar) {
+		if (indentation.length() != 0) {
+			throw new IllegalStateException();
+		}
+		terminatorCount += segmentTerminators;
+		if (length == 0) {
+			firstChar = segmentFirstChar;
+		} else if (lastChar == '\r' && segmentFirstChar == '\n') {
+			// "\r" and "\n" form a single terminator
+			hasDOSSeparator = true;
+			terminatorCount--;
+		}
+		lastChar = segmentLastChar;
+		length += segmentLength;
+		rendered = null;
+	}
+
+	/**
+	 * Tells whether the given segment contains the given separator.
+	 * 
+	 * @param segment
+	 *            The segment.
+	 * @param separator
+	 *            The separator we seek.
+	 * @return <code>true</code> if <code>segment</code> contains <code>separator</code>.
+	 */
+	private static boolean contains(Object segment, String separator) {
+		if (segment instanceof String) {
+			return ((String)segment).contains(separator);
+		}
+		final AcceleoGeneratedText text = (AcceleoGeneratedText)segment;
+		final boolean result;
+		if (DOS_LINE_SEPARATOR.equals(separator)) {
+			result = text.hasDOSSeparator;
+		} else if (UNIX_LINE_SEPARATOR.equals(separator)) {
+			result = text.hasUnixSeparator;
+		} else {
+			result = text.hasMacSeparator;
+		}
+		return result;
+	}
+
+	/**
+	 * Appends the part of this text that follows the last occurrence of <code>separator</code> to
+	 * <code>out</code>. This text must contain <code>separator</code>, and it must not contain any '\n' if
+	 * <code>separator</code> is the Mac line separator.
+	 * 
+	 * @param out
+	 *            The Appendable to which the tail of this text is to be written.
+	 * @param separator
+	 *            One of the DOS, Unix or Mac line separators.
+	 * @throws IOException
+	 *             Thrown if we cannot write to <code>out</code>.
+	 */
+	private void appendTail(Appendable out, String separator) throws IOException {
+		if (indentation.length() != 0) {
+			// The last separator of our segment is followed by our indentation
+			out.append(indentation);
+			final IndentingAppendable indenter = new IndentingAppendable(out, indentation);
+			((AcceleoGeneratedText)segments.get(0)).appendTail(indenter, separator);
+			indenter.finish();
+			return;
+		}
+		int index = segments.size() - 1;
+		boolean splitSeparator = false;
+		while (index >= 0 && !contains(segments.get(index), separator)) {
+			if (DOS_LINE_SEPARATOR.equals(separator) && index > 0 && startsWithLineFeed(segments.get(index))
+					&& endsWithCarriageReturn(segments.get(index - 1))) {
+				splitSeparator = true;
+				break;
+			}
+			index--;
+		}
+		final Object last = segments.get(index);
+		if (splitSeparator) {
+			final String segment;
+			if (last instanceof String) {
+				segment = (String)last;
+			} else {
+				segment = last.toString();
+			}
+			out.append(segment, 1, segment.length());
+		} else if (last instanceof String) {
+			final String segment = (String)last;
+			out.append(segment, segment.lastIndexOf(separator) + separator.length(), segment.length());
+		} else {
+			((AcceleoGeneratedText)last).appendTail(out, separator);
+		}
+		for (int i = index + 1; i < segments.size(); i++) {
+			final Object segment = segments.get(i);
+			if (segment instanceof String) {
+				out.append((String)segment);
+			} else {
+				((AcceleoGeneratedText)segment).writeTo(out);
+			}
+		}
+	}
+
+	/**
+	 * Appends the leading whitespaces of this text to <code>out</code>. This is only called on texts that do
+	 * not contain any line terminator, and which indentation thus never is rendered.
+	 * 
+	 * @param out
+	 *            The buffer to which whitespaces are to be appended.
+	 * @return <code>true</code> if this text only contains whitespaces.
+	 */
+	private boolean appendLeadingWhitespaces(StringBuilder out) {
+		for (int i = 0; i < segments.size(); i++) {
+			final Object segment = segments.get(i);
+			if (segment instanceof String) {
+				final String string = (String)segment;
+				for (int j = 0; j < string.length(); j++) {
+					if (!Character.isWhitespace(string.charAt(j))) {
+						return false;
+					}
+					out.append(string.charAt(j));
+				}
+			} else if (!((AcceleoGeneratedText)segment).appendLeadingWhitespaces(out)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tells whether the given non-empty segment starts with a '\n'.
+	 * 
+	 * @param segment
+	 *            The segment.
+	 * @return <code>true</code> if <code>segment</code> starts with a '\n'.
+	 */
+	private static boolean startsWithLineFeed(Object segment) {
+		if (segment instanceof String) {
+			return ((String)segment).charAt(0) == '\n';
+		}
+		return ((AcceleoGeneratedText)segment).firstChar == '\n';
+	}
+
+	/**
+	 * Tells whether the given non-empty segment ends with a '\r'.
+	 * 
+	 * @param segment
+	 *            The segment.
+	 * @return <code>true</code> if <code>segment</code> ends with a '\r'.
+	 */
+	private static boolean endsWithCarriageReturn(Object segment) {
+		if (segment instanceof String) {
+			final String string = (String)segment;
+			return string.charAt(string.length() - 1) == '\r';
+		}
+		return ((AcceleoGeneratedText)segment).lastChar == '\r';
+	}
+
+	/**
+	 * Inserts an indentation after each line terminator of the text it is given. This will only be told
+	 * that a trailing '\r' was a terminator on its own when {@link #finish()} is called.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class IndentingAppendable implements Appendable {
+		/** The Appendable to which indented text is written. */
+		private final Appendable out;
+
+		/** The indentation to insert after each line terminator. */
+		private final String indentation;
+
+		/** Tells whether the last character we were given was a '\r'. */
+		private boolean pendingCarriageReturn;
+
+		/**
+		 * Creates an Appendable indenting text before writing it to <code>out</code>.
+		 * 
+		 * @param out
+		 *            The Appendable to which indented text is to be written.
+		 * @param indentation
+		 *            The indentation to insert after each line terminator.
+		 */
+		IndentingAppendable(Appendable out, String indentation) {
+			this.out = out;
+			this.indentation = indentation;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Appendable#append(java.lang.CharSequence)
+		 */
+		public Appendable append(CharSequence csq) throws IOException {
+			return append(csq, 0, csq.length());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Appendable#append(java.lang.CharSequence, int, int)
+		 */
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			int copyStart = start;
+			for (int i = start; i < end; i++) {
+				final char c = csq.charAt(i);
+				if (pendingCarriageReturn) {
+					pendingCarriageReturn = false;
+					if (c == '\n') {
+						// Completes a DOS line separator
+						out.append(csq, copyStart, i + 1);
+						out.append(indentation);
+						copyStart = i + 1;
+						continue;
+					}
+					out.append(csq, copyStart, i);
+					out.append(indentation);
+					copyStart = i;
+				}
+				if (c == '\r') {
+					pendingCarriageReturn = true;
+				} else if (c == '\n') {
+					out.append(csq, copyStart, i + 1);
+					out.append(indentation);
+					copyStart = i + 1;
+				}
+			}
+			out.append(csq, copyStart, end);
+			return this;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Appendable#append(char)
+		 */
+		public Appendable append(char c) throws IOException {
+			return append(String.valueOf(c));
+		}
+
+		/**
+		 * Signals that the whole text has been given to this Appendable.
+		 * 
+		 * @throws IOException
+		 *             Thrown if we cannot write to the underlying Appendable.
+		 */
+		void finish() throws IOException {
+			if (pendingCarriageReturn) {
+				pendingCarriageReturn = false;
+				out.append(indentation);
+			}
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.evaluation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the protected areas of the files present under a given folder, read in parallel before a generation
+ * starts. Only the files containing a protected area start marker are indexed, and only if their charset
+ * allows us to search for this marker without decoding them. Each entry can only be taken once, and will
+ * not be returned if its file has changed since it was indexed or if it is generated with another charset :
+ * such files are read again, as are the files that have not been indexed.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public final class ProtectedAreaIndex {
+	/** The protected areas of the indexed files, mapped to the absolute path of these files. */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** The charset with which files have been read, <code>null</code> if it is not supported. */
+	private final Charset charset;
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param charset
+	 *            The charset with which files will be read, <code>null</code> if it is not supported.
+	 */
+	private ProtectedAreaIndex(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Reads the protected areas of the files under the given folder with as many threads as there are
+	 * available processors. Files that cannot be read or that contain no protected area are not indexed.
+	 * 
+	 * @param root
+	 *            The folder which files are to be indexed.
+	 * @param charset
+	 *            The charset with which files are to be read, <code>null</code> for the System default.
+	 * @return The index of the protected areas of the files under <code>root</code>.
+	 * @throws InterruptedException
+	 *             Thrown if we are interrupted while waiting for the files to be read.
+	 */
+	public static ProtectedAreaIndex build(File root, String charset) throws InterruptedException {
+		final ProtectedAreaIndex index = new ProtectedAreaIndex(getCharset(charset));
+		if (index.charset == null) {
+			return index;
+		}
+		final List<File> files = new ArrayList<File>();
+		collectFiles(root, files, new HashSet<String>());
+		if (files.isEmpty()) {
+			return index;
+		}
+		final int threadCount = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			tasks.add(index.new FileIndexer(files, i, threadCount));
+		}
+		final ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+		try {
+			pool.invokeAll(tasks);
+		} finally {
+			pool.shutdown();
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of files currently indexed.
+	 * 
+	 * @return The number of files currently indexed.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes the protected areas of the given file from this index and returns them.
+	 * 
+	 * @param file
+	 *            The file which protected areas we need.
+	 * @param fileCharset
+	 *            Charset of the file, <code>null</code> for the System default.
+	 * @return The protected areas of <code>file</code>, <code>null</code> if it has not been indexed, if it
+	 *         has been read with another charset or if it changed since it was indexed.
+	 */
+	public ProtectedAreas take(File file, String fileCharset) {
+		final Entry entry = entries.remove(file.getAbsolutePath());
+		if (entry != null && charset.equals(getCharset(fileCharset))
+				&& entry.lastModified == file.lastModified() && entry.length == file.length()) {
+			return entry.areas;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the charset of the given name.
+	 * 
+	 * @param charsetName
+	 *            Name or alias of the charset, <code>null</code> for the System default.
+	 * @return The charset of the given name, <code>null</code> if it is not supported.
+	 */
+	private static Charset getCharset(String charsetName) {
+		if (charsetName == null) {
+			return Charset.defaultCharset();
+		}
+		try {
+			return Charset.forName(charsetName);
+		} catch (IllegalArgumentException e) {
+			// Illegal or unsupported charset name, these files will be read when generated
+			return null;
+		}
+	}
+
+	/**
+	 * Adds all files under the given folder to the given list.
+	 * 
+	 * @param folder
+	 *            The folder to browse.
+	 * @param files
+	 *            The list in which files are to be added.
+	 * @param visited
+	 *            Canonical paths of the folders we already browsed, so that links cannot make us loop.
+	 */
+	private static void collectFiles(File folder, List<File> files, Set<String> visited) {
+		try {
+			if (!visited.add(folder.getCanonicalPath())) {
+				return;
+			}
+		} catch (IOException e) {
+			return;
+		}
+		final File[] children = folder.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (child.isDirectory()) {
+				collectFiles(child, files, visited);
+			} else if (child.isFile()) {
+				files.add(child);
+			}
+		}
+	}
+
+	/**
+	 * The protected areas of an indexed file, along with the state of this file when it was read.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class Entry {
+		/** The protected areas of the file. */
+		private final ProtectedAreas areas;
+
+		/** Time stamp of the file when it was read. */
+		private final long lastModified;
+
+		/** Length of the file when it was read. */
+		private final long length;
+
+		/**
+		 * Creates an entry for the given file.
+		 * 
+		 * @param areas
+		 *            The protected areas of the file.
+		 * @param lastModified
+		 *            Time stamp of the file when it was read.
+		 * @param length
+		 *            Length of the file when it was read.
+		 */
+		Entry(ProtectedAreas areas, long lastModified, long length) {
+			this.areas = areas;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Reads one out of every <em>stride</em> files of a list, starting at a given index.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private final class FileIndexer implements Callable<Object> {
+		/** The files to index. */
+		private final List<File> files;
+
+		/** Index of the first file this will read. */
+		private final int first;
+
+		/** Number of files between two files read by this indexer. */
+		private final int stride;
+
+		/**
+		 * Creates an indexer for a subset of the given files.
+		 * 
+		 * @param files
+		 *            The files to index.
+		 * @param first
+		 *            Index of the first file this will read.
+		 * @param stride
+		 *            Number of files between two files read by this indexer.
+		 */
+		FileIndexer(List<File> files, int first, int stride) {
+			this.files = files;
+			this.first = first;
+			this.stride = stride;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call() {
+			for (int i = first; i < files.size() && !Thread.currentThread().isInterrupted(); i += stride) {
+				final File file = files.get(i);
+				// Read the state first so that a file modified while we read it will be read again
+				final long lastModified = file.lastModified();
+				final long length = file.length();
+				try {
+					final ProtectedAreas areas = ProtectedAreas.readIfProtected(file, charset);
+					if (areas != null) {
+						entries.put(file.getAbsolutePath(), new Entry(areas, lastModified, length));
+					}
+				} catch (IOException e) {
+					// This file will be read again if it is generated
+				}
+			}
+			// This has no explicit result. Only used to await termination
+			return null;
+		}
+	}
+}
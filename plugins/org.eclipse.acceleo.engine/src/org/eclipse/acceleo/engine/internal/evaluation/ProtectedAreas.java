@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.evaluation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.acceleo.engine.AcceleoEngineMessages;
+
+/**
+ * The protected areas found in an existing file, along with whether this file contained the JMerge
+ * {@value #JMERGE_TAG} tag.
+ * <p>
+ * Files are searched for the protected area markers without being decoded : as long as their charset encodes
+ * the markers and line separators as plain ASCII bytes, and cannot use these bytes for anything else, only
+ * the protected areas themselves will be decoded. Large files are memory-mapped instead of read.
+ * </p>
+ * <p>
+ * The areas are the same as those that would be found by reading the file line by line : each area spans
+ * from its start marker to the end of its end marker, the end marker being searched from the line following
+ * the start marker. An area that isn't closed spans to the end of the file.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public final class ProtectedAreas {
+	/** The tag that marks a file as being handled through JMerge. */
+	private static final String JMERGE_TAG = "@generated"; //$NON-NLS-1$
+
+	/** The line separator we consider by default if we haven't found any yet. */
+	private static final String DOS_LINE_SEPARATOR = "\r\n"; //$NON-NLS-1$
+
+	/** Files which size is at least this will be memory-mapped instead of being read in memory. */
+	private static final int MAPPING_THRESHOLD = 1 << 20;
+
+	/** Start of the protected areas. */
+	private static final String USER_CODE_START = AcceleoEngineMessages.getString("usercode.start"); //$NON-NLS-1$
+
+	/** End of the protected areas. */
+	private static final String USER_CODE_END = AcceleoEngineMessages.getString("usercode.end"); //$NON-NLS-1$
+
+	/** Content of the protected areas, mapped to their marker. */
+	private final Map<String, String> areas;
+
+	/** Whether the file contains {@value #JMERGE_TAG}. */
+	private final boolean jmergeTag;
+
+	/**
+	 * Instantiates the protected areas of a file.
+	 * 
+	 * @param areas
+	 *            Content of the protected areas, mapped to their marker.
+	 * @param jmergeTag
+	 *            Whether the file contains {@value #JMERGE_TAG}.
+	 */
+	private ProtectedAreas(Map<String, String> areas, boolean jmergeTag) {
+		this.areas = Collections.unmodifiableMap(areas);
+		this.jmergeTag = jmergeTag;
+	}
+
+	/**
+	 * Searches the given text for protected areas.
+	 * 
+	 * @param content
+	 *            The text which protected areas are to be saved.
+	 * @return The protected areas of <code>content</code>.
+	 */
+	public static ProtectedAreas parse(CharSequence content) {
+		return scan(new CharSource(content));
+	}
+
+	/**
+	 * Searches the given file for protected areas.
+	 * 
+	 * @param file
+	 *            The file which protected areas are to be saved.
+	 * @param charset
+	 *            Charset of the file, <code>null</code> for the System default.
+	 * @return The protected areas of <code>file</code>.
+	 * @throws IOException
+	 *             Thrown if we cannot read through <code>file</code>.
+	 */
+	public static ProtectedAreas read(File file, String charset) throws IOException {
+		final Charset encoding;
+		if (charset != null) {
+			encoding = Charset.forName(charset);
+		} else {
+			encoding = Charset.defaultCharset();
+		}
+		return read(file, encoding, false);
+	}
+
+	/**
+	 * Searches the given file for protected areas if it contains at least one protected area start marker.
+	 * Files which charset would force us to decode them before searching for this marker are not read.
+	 * 
+	 * @param file
+	 *            The file which protected areas are to be saved.
+	 * @param charset
+	 *            Charset of the file.
+	 * @return The protected areas of <code>file</code>, <code>null</code> if it contains no protected area
+	 *         or if its charset cannot be searched without decoding it.
+	 * @throws IOException
+	 *             Thrown if we cannot read through <code>file</code>.
+	 */
+	static ProtectedAreas readIfProtected(File file, Charset charset) throws IOException {
+		if (!isAsciiCompatible(charset)) {
+			return null;
+		}
+		return read(file, charset, true);
+	}
+
+	/**
+	 * Searches the given file for protected areas.
+	 * 
+	 * @param file
+	 *            The file which protected areas are to be saved.
+	 * @param encoding
+	 *            Charset of the file.
+	 * @param protectedOnly
+	 *            Whether to return <code>null</code> if the file contains no protected area start marker.
+	 * @return The protected areas of <code>file</code>.
+	 * @throws IOException
+	 *             Thrown if we cannot read through <code>file</code>.
+	 */
+	private static ProtectedAreas read(File file, Charset encoding, boolean protectedOnly)
+			throws IOException {
+		final FileInputStream input = new FileInputStream(file);
+		try {
+			final FileChannel channel = input.getChannel();
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(AcceleoEngineMessages.getString(
+						"ProtectedAreas.FileTooLarge", file.getPath())); //$NON-NLS-1$
+			}
+			if (size >= MAPPING_THRESHOLD) {
+				final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				try {
+					return scan(buffer, encoding, protectedOnly);
+				} finally {
+					unmap(buffer);
+				}
+			}
+			final ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// Keep on reading until the buffer is full
+			}
+			buffer.flip();
+			return scan(buffer, encoding, protectedOnly);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Returns the content of the protected areas, mapped to their marker.
+	 * 
+	 * @return The content of the protected areas, mapped to their marker.
+	 */
+	public Map<String, String> getAreas() {
+		return areas;
+	}
+
+	/**
+	 * Tells whether the file contains the JMerge {@value #JMERGE_TAG} tag.
+	 * 
+	 * @return <code>true</code> if the file contains the JMerge tag, <code>false</code> otherwise.
+	 */
+	public boolean hasJMergeTag() {
+		return jmergeTag;
+	}
+
+	/**
+	 * Searches the given bytes for protected areas.
+	 * 
+	 * @param bytes
+	 *            Content of the file.
+	 * @param charset
+	 *            Charset of the file.
+	 * @param protectedOnly
+	 *            Whether to return <code>null</code> if the file contains no protected area start marker.
+	 * @return The protected areas of the file.
+	 */
+	private static ProtectedAreas scan(ByteBuffer bytes, Charset charset, boolean protectedOnly) {
+		final Source source;
+		if (isAsciiCompatible(charset)) {
+			source = new ByteSource(bytes, charset);
+		} else {
+			source = new CharSource(charset.decode(bytes));
+		}
+		if (protectedOnly && source.indexOf(USER_CODE_START, 0) == -1) {
+			return null;
+		}
+		return scan(source);
+	}
+
+	/**
+	 * Searches the given source for protected areas.
+	 * 
+	 * @param source
+	 *            The source which protected areas are to be saved.
+	 * @return The protected areas of <code>source</code>.
+	 */
+	private static ProtectedAreas scan(Source source) {
+		final Map<String, String> areas = new HashMap<String, String>();
+		final int length = source.length();
+		int position = 0;
+		while (position < length) {
+			final int start = source.indexOf(USER_CODE_START, position);
+			if (start == -1) {
+				break;
+			}
+			final int lineEnd = source.lineEnd(start);
+			final String marker = source.text(start + USER_CODE_START.length(), lineEnd).trim();
+			final int end;
+			if (lineEnd < length) {
+				end = source.indexOf(USER_CODE_END, source.nextLine(lineEnd));
+			} else {
+				end = -1;
+			}
+			if (end == -1) {
+				// Everything up to the end of the file is saved
+				final StringBuilder content = new StringBuilder(source.text(start, length));
+				final char last = source.charAt(length - 1);
+				if (last != '\r' && last != '\n') {
+					// The last line gets the previous line's separator
+					content.append(source.lastLineSeparator());
+				}
+				areas.put(marker, content.toString());
+				break;
+			}
+			final int areaEnd = end + USER_CODE_END.length();
+			areas.put(marker, source.text(start, areaEnd));
+			// Everything following the end of user code marker on its line is ignored
+			position = source.nextLine(source.lineEnd(areaEnd));
+		}
+		return new ProtectedAreas(areas, source.indexOf(JMERGE_TAG, 0) != -1);
+	}
+
+	/**
+	 * Tells whether the given charset encodes all ASCII characters as their ASCII byte, and never uses these
+	 * bytes as part of another character's encoding.
+	 * 
+	 * @param charset
+	 *            The charset to check.
+	 * @return <code>true</code> if we can search the bytes encoded with <code>charset</code> for ASCII
+	 *         characters.
+	 */
+	private static boolean isAsciiCompatible(Charset charset) {
+		final String name = charset.name();
+		return "UTF-8".equals(name) || "US-ASCII".equals(name) || name.startsWith("ISO-8859-") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				|| name.startsWith("windows-125"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Releases the memory mapping of the given buffer without waiting for it to be garbage collected, so
+	 * that the file can be written again right away. This is only a best effort : the buffer will be
+	 * unmapped on garbage collection if the VM doesn't allow us to do it.
+	 * 
+	 * @param buffer
+	 *            The buffer to unmap. It mustn't be accessed anymore.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			final Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner); //$NON-NLS-1$
+			}
+			// CHECKSTYLE:OFF
+		} catch (Exception e) {
+			// CHECKSTYLE:ON
+			// The buffer will be unmapped when collected
+		}
+	}
+
+	/**
+	 * The content that is searched for protected areas.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private abstract static class Source {
+		/**
+		 * Returns the length of this source.
+		 * 
+		 * @return The length of this source.
+		 */
+		public abstract int length();
+
+		/**
+		 * Returns the character at the given index. This only needs to be accurate for ASCII characters.
+		 * 
+		 * @param index
+		 *            Index of the character.
+		 * @return The character at the given index.
+		 */
+		public abstract char charAt(int index);
+
+		/**
+		 * Returns the text between the two given indices.
+		 * 
+		 * @param start
+		 *            Index of the first character, inclusive.
+		 * @param end
+		 *            Index of the last character, exclusive.
+		 * @return The text between <code>start</code> and <code>end</code>.
+		 */
+		public abstract String text(int start, int end);
+
+		/**
+		 * Returns the index of the given ASCII String in this source.
+		 * 
+		 * @param searched
+		 *            The String to search.
+		 * @param from
+		 *            Index from which to search.
+		 * @return The index of <code>searched</code> in this source, <code>-1</code> if not found.
+		 */
+		public int indexOf(String searched, int from) {
+			final char first = searched.charAt(0);
+			final int max = length() - searched.length();
+			for (int i = from; i <= max; i++) {
+				if (charAt(i) == first) {
+					int j = 1;
+					while (j < searched.length() && charAt(i + j) == searched.charAt(j)) {
+						j++;
+					}
+					if (j == searched.length()) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the index of the line separator ending the line at the given index, or the length of this
+		 * source if this line is the last and has no separator.
+		 * 
+		 * @param index
+		 *            Index of a character of the line.
+		 * @return The index of the line separator ending this line.
+		 */
+		public int lineEnd(int index) {
+			final int length = length();
+			int i = index;
+			while (i < length) {
+				final char c = charAt(i);
+				if (c == '\r' || c == '\n') {
+					break;
+				}
+				i++;
+			}
+			return i;
+		}
+
+		/**
+		 * Returns the index following the line separator at the given index.
+		 * 
+		 * @param lineEnd
+		 *            Index of a line separator, or the length of this source.
+		 * @return The index of the following line.
+		 */
+		public int nextLine(int lineEnd) {
+			if (lineEnd >= length()) {
+				return lineEnd;
+			}
+			if (charAt(lineEnd) == '\r' && lineEnd + 1 < length() && charAt(lineEnd + 1) == '\n') {
+				return lineEnd + 2;
+			}
+			return lineEnd + 1;
+		}
+
+		/**
+		 * Returns the last line separator of this source, or a DOS line separator if there are none.
+		 * 
+		 * @return The last line separator of this source.
+		 */
+		public String lastLineSeparator() {
+			for (int i = length() - 1; i >= 0; i--) {
+				final char c = charAt(i);
+				if (c == '\n') {
+					if (i > 0 && charAt(i - 1) == '\r') {
+						return DOS_LINE_SEPARATOR;
+					}
+					return "\n"; //$NON-NLS-1$
+				} else if (c == '\r') {
+					return "\r"; //$NON-NLS-1$
+				}
+			}
+			return DOS_LINE_SEPARATOR;
+		}
+	}
+
+	/**
+	 * Searches decoded text.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class CharSource extends Source {
+		/** The text to search. */
+		private final CharSequence content;
+
+		/**
+		 * Wraps the given text.
+		 * 
+		 * @param content
+		 *            The text to search.
+		 */
+		CharSource(CharSequence content) {
+			this.content = content;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas.Source#length()
+		 */
+		@Override
+		public int length() {
+			return content.length();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas.Source#charAt(int)
+		 */
+		@Override
+		public char charAt(int index) {
+			return content.charAt(index);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas.Source#text(int, int)
+		 */
+		@Override
+		public String text(int start, int end) {
+			return content.subSequence(start, end).toString();
+		}
+	}
+
+	/**
+	 * Searches encoded bytes, only decoding the requested text.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class ByteSource extends Source {
+		/** The bytes to search. */
+		private final ByteBuffer bytes;
+
+		/** Index of the first byte in {@link #bytes}. */
+		private final int offset;
+
+		/** The charset in which {@link #bytes} are encoded. */
+		private final Charset charset;
+
+		/**
+		 * Wraps the given bytes.
+		 * 
+		 * @param bytes
+		 *            The bytes to search.
+		 * @param charset
+		 *            The charset in which <code>bytes</code> are encoded.
+		 */
+		ByteSource(ByteBuffer bytes, Charset charset) {
+			this.bytes = bytes;
+			this.offset = bytes.position();
+			this.charset = charset;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas.Source#length()
+		 */
+		@Override
+		public int length() {
+			return bytes.limit() - offset;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas.Source#charAt(int)
+		 */
+		@Override
+		public char charAt(int index) {
+			return (char)(bytes.get(offset + index) & 0xff);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas.Source#text(int, int)
+		 */
+		@Override
+		public String text(int start, int end) {
+			final ByteBuffer slice = bytes.duplicate();
+			slice.limit(offset + end);
+			slice.position(offset + start);
+			final CharBuffer decoded = charset.decode(slice);
+			return decoded.toString();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,15 +11,34 @@
 package org.eclipse.acceleo.engine.internal.evaluation;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.acceleo.common.preference.AcceleoPreferences;
+import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
+import org.eclipse.acceleo.common.utils.AcceleoStandardLibrary;
+import org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache;
+import org.eclipse.acceleo.engine.generation.cache.UnboundedQueryCache;
 import org.eclipse.acceleo.model.mtl.Query;
+import org.eclipse.acceleo.model.mtl.QueryInvocation;
+import org.eclipse.acceleo.model.mtl.TemplateInvocation;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.ocl.expressions.OperationCallExp;
 
 /**
  * This will act as a cache for the query invocation so that invoking the same query with the same arguments
  * multiple times will always yield the same result, with the best possible performance.
+ * <p>
+ * The actual storage is delegated to an {@link IAcceleoQueryCache}. When this storage is shared with other
+ * generations, only the results of the queries that do not depend on the generation's state (no call to
+ * <code>invoke()</code>, <code>current()</code>, <code>getProperty()</code>, <code>strtok()</code> or to a
+ * template, directly or through other queries) are stored in it, the others being kept in a storage
+ * specific to this cache.
+ * </p>
  * 
  * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
  */
@@ -38,20 +57,65 @@ public class QueryCache {
 	/** This instance will be used as the cached result of a query when it is null. */
 	private static final Object NULL_QUERY_RESULT = new Object();
 
+	/** Names of the operations which result depends on the state of the current generation. */
+	private static final Set<String> CONTEXTUAL_OPERATIONS = new HashSet<String>();
+
+	static {
+		CONTEXTUAL_OPERATIONS.add(AcceleoNonStandardLibrary.OPERATION_OCLANY_INVOKE);
+		CONTEXTUAL_OPERATIONS.add(AcceleoNonStandardLibrary.OPERATION_OCLANY_CURRENT);
+		CONTEXTUAL_OPERATIONS.add(AcceleoNonStandardLibrary.OPERATION_OCLANY_GETPROPERTY);
+		CONTEXTUAL_OPERATIONS.add(AcceleoStandardLibrary.OPERATION_STRING_STRTOK);
+	}
+
 	/** <code>invalid</code> instance of the environment for which this cache is used. */
 	private final Object invalid;
 
-	/** The actual Map backing this cache. */
-	private final Map<Query, Map<Object, Object>> queryResults = new HashMap<Query, Map<Object, Object>>();
+	/** Whether results should be cached at all. */
+	private final boolean enabled;
+
+	/** Storage of the results that can be shared with other generations. */
+	private final IAcceleoQueryCache sharedResults;
+
+	/** Storage of the results that are specific to this generation. */
+	private final IAcceleoQueryCache localResults;
+
+	/** Remembers whether each query we've been asked about can use {@link #sharedResults}. */
+	private final Map<Query, Boolean> shareableQueries = new HashMap<Query, Boolean>();
 
 	/**
-	 * We need to know the "invalid" instance.
+	 * We need to know the "invalid" instance. The cache will be enabled or disabled according to the current
+	 * preferences.
 	 * 
 	 * @param invalid
 	 *            <code>invalid</code> instance for this environment.
 	 */
 	public QueryCache(Object invalid) {
+		this(invalid, AcceleoPreferences.isQueryCacheEnabled(), null);
+	}
+
+	/**
+	 * Creates a query cache backed by the given storage.
+	 * 
+	 * @param invalid
+	 *            <code>invalid</code> instance for this environment.
+	 * @param enabled
+	 *            Whether results should be cached at all. If <code>false</code>, this cache will never
+	 *            return any result.
+	 * @param sharedResults
+	 *            Storage that may be shared with other generations. If <code>null</code>, all results will
+	 *            be kept in a storage specific to this cache.
+	 * @since 3.5
+	 */
+	public QueryCache(Object invalid, boolean enabled, IAcceleoQueryCache sharedResults) {
 		this.invalid = invalid;
+		this.enabled = enabled;
+		// The statistics of this cache are never read
+		this.localResults = new UnboundedQueryCache(false);
+		if (sharedResults != null) {
+			this.sharedResults = sharedResults;
+		} else {
+			this.sharedResults = localResults;
+		}
 	}
 
 	/**
@@ -101,7 +165,7 @@ public class QueryCache {
 	 *            Result we are to cache.
 	 */
 	public void cacheResult(Query query, List<Object> params, Object result) {
-		if (!AcceleoPreferences.isQueryCacheEnabled()) {
+		if (!enabled) {
 			return;
 		}
 
@@ -109,20 +173,19 @@ public class QueryCache {
 		if (params.size() == 1) {
 			key = params.get(0);
 		}
-
-		Map<Object, Object> cache = queryResults.get(query);
-		if (cache == null) {
-			cache = new HashMap<Object, Object>();
-			queryResults.put(query, cache);
+		if (key == null) {
+			key = NULL_QUERY_RESULT;
 		}
 
+		final Object value;
 		if (result == invalid) {
-			cache.put(key, INVALID_QUERY_RESULT);
+			value = INVALID_QUERY_RESULT;
 		} else if (result == null) {
-			cache.put(key, NULL_QUERY_RESULT);
+			value = NULL_QUERY_RESULT;
 		} else {
-			cache.put(key, result);
+			value = result;
 		}
+		getResults(query).put(query, key, value);
 	}
 
 	/**
@@ -137,7 +200,7 @@ public class QueryCache {
 	 *         hasn't been run yet.
 	 */
 	public Object getResult(Query query, List<Object> params) {
-		if (!AcceleoPreferences.isQueryCacheEnabled() || !queryResults.containsKey(query)) {
+		if (!enabled) {
 			return NO_CACHED_RESULT;
 		}
 
@@ -145,13 +208,70 @@ public class QueryCache {
 		if (params.size() == 1) {
 			key = params.get(0);
 		}
+		if (key == null) {
+			key = NULL_QUERY_RESULT;
+		}
 
-		Map<Object, Object> cache = queryResults.get(query);
-
-		Object result = cache.get(key);
+		Object result = getResults(query).get(query, key);
 		if (result == null) {
 			result = NO_CACHED_RESULT;
 		}
 		return result;
 	}
+
+	/**
+	 * Returns the storage in which the results of the given query are to be kept.
+	 * 
+	 * @param query
+	 *            The query which results are to be cached.
+	 * @return The storage in which the results of the given query are to be kept.
+	 */
+	private IAcceleoQueryCache getResults(Query query) {
+		if (sharedResults == localResults) {
+			return localResults;
+		}
+		Boolean shareable = shareableQueries.get(query);
+		if (shareable == null) {
+			shareable = Boolean.valueOf(isShareable(query, new HashSet<Query>()));
+			shareableQueries.put(query, shareable);
+		}
+		if (shareable.booleanValue()) {
+			return sharedResults;
+		}
+		return localResults;
+	}
+
+	/**
+	 * Checks whether the results of the given query only depend on its arguments.
+	 * 
+	 * @param query
+	 *            The query to check.
+	 * @param visited
+	 *            The queries we've already checked along this path.
+	 * @return <code>true</code> if the results of the given query can be shared with other generations.
+	 */
+	private static boolean isShareable(Query query, Set<Query> visited) {
+		if (!visited.add(query)) {
+			return true;
+		}
+		final Iterator<EObject> children = query.eAllContents();
+		while (children.hasNext()) {
+			final EObject child = children.next();
+			if (child instanceof TemplateInvocation) {
+				return false;
+			} else if (child instanceof QueryInvocation) {
+				final Query called = ((QueryInvocation)child).getDefinition();
+				if (called == null || !isShareable(called, visited)) {
+					return false;
+				}
+			} else if (child instanceof OperationCallExp<?, ?>) {
+				final Object operation = ((OperationCallExp<?, ?>)child).getReferredOperation();
+				if (operation instanceof EOperation
+						&& CONTEXTUAL_OPERATIONS.contains(((EOperation)operation).getName())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
 }
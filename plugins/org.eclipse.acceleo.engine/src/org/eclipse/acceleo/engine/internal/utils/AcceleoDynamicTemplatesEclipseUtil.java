@@ -24,6 +24,7 @@ import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.AcceleoEnginePlugin;
+import org.eclipse.acceleo.engine.internal.environment.TemplateDispatchCache;
 import org.eclipse.core.runtime.FileLocator;
 import org.osgi.framework.Bundle;
 
@@ -63,6 +64,7 @@ public final class AcceleoDynamicTemplatesEclipseUtil {
 		}
 		descriptor.getPaths().addAll(paths);
 		EXTENDING_BUNDLES.put(bundle, descriptor);
+		TemplateDispatchCache.invalidateAll();
 	}
 
 	/**
@@ -84,6 +86,7 @@ public final class AcceleoDynamicTemplatesEclipseUtil {
 		descriptor.getPaths().addAll(acceleoDynamicModulesDescriptor.getPaths());
 
 		EXTENDING_BUNDLES.put(bundle, descriptor);
+		TemplateDispatchCache.invalidateAll();
 	}
 
 	/**
@@ -92,6 +95,7 @@ public final class AcceleoDynamicTemplatesEclipseUtil {
 	public static void clearRegistry() {
 		EXTENDING_BUNDLES.clear();
 		REGISTERED_MODULES.clear();
+		TemplateDispatchCache.invalidateAll();
 	}
 
 	/**
@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.acceleo.engine.AcceleoEngineMessages;
+import org.eclipse.acceleo.engine.AcceleoEvaluationException;
+import org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy;
+import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
+import org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter;
+
+/**
+ * This generation strategy does not write anything : it records, in order, all of the calls the evaluation
+ * context makes to its strategy, and buffers the generated text in memory. The recorded calls can later on
+ * be replayed against the actual strategy of the generation through
+ * {@link #replay(IAcceleoGenerationStrategy)}.
+ * <p>
+ * This allows us to evaluate templates on worker threads while still handing the files over to the actual
+ * strategy from a single thread, and in the same order as a sequential generation would have.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class DeferredGenerationStrategy extends AbstractGenerationStrategy {
+	/** The operations that have been recorded, in the order in which they have been called. */
+	private final List<DeferredOperation> operations = new ArrayList<DeferredOperation>();
+
+	/** Paths of all files that have been opened through this strategy. */
+	private final Set<String> touchedFiles = new LinkedHashSet<String>();
+
+	/** The lost code that's been handed to {@link #createLostFiles(Map)}, if any. */
+	private Map<String, Map<String, String>> lostFiles;
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#createLostFile(java.lang.String,
+	 *      java.util.Map)
+	 */
+	@Override
+	public Map<String, StringWriter> createLostFile(String originalPath, Map<String, String> lostCode) {
+		operations.add(new LostFileOperation(originalPath, new LinkedHashMap<String, String>(lostCode)));
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#createLostFiles(java.util.Map)
+	 */
+	@Override
+	public Map<String, StringWriter> createLostFiles(Map<String, Map<String, String>> lostCode) {
+		lostFiles = new LinkedHashMap<String, Map<String, String>>();
+		for (Map.Entry<String, Map<String, String>> entry : lostCode.entrySet()) {
+			lostFiles.put(entry.getKey(), new LinkedHashMap<String, String>(entry.getValue()));
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#createWriterFor(java.io.File,
+	 *      org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter, boolean, boolean)
+	 */
+	@Override
+	public AbstractAcceleoWriter createWriterFor(File file, AbstractAcceleoWriter previous,
+			boolean appendMode, boolean hasJMergeTags) throws IOException {
+		final DeferredWriter writer = new DeferredWriter(file.getPath());
+		operations.add(new OpenOperation(file, writer, appendMode, hasJMergeTags, null, false));
+		touchedFiles.add(file.getPath());
+		return writer;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#createWriterFor(java.io.File,
+	 *      org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter, boolean, boolean,
+	 *      java.lang.String)
+	 */
+	@Override
+	public AbstractAcceleoWriter createWriterFor(File file, AbstractAcceleoWriter previous,
+			boolean appendMode, boolean hasJMergeTags, String charset) throws IOException {
+		final DeferredWriter writer = new DeferredWriter(file.getPath());
+		operations.add(new OpenOperation(file, writer, appendMode, hasJMergeTags, charset, true));
+		touchedFiles.add(file.getPath());
+		return writer;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.generation.strategy.AbstractGenerationStrategy#flushWriter(java.lang.String,
+	 *      java.io.Writer)
+	 */
+	@Override
+	public void flushWriter(String filePath, Writer writer) throws IOException {
+		operations.add(new FlushOperation(filePath, writer));
+	}
+
+	/**
+	 * Returns the paths of all files this strategy has been asked to create a writer for.
+	 * 
+	 * @return The paths of all files this strategy has been asked to create a writer for.
+	 */
+	public Set<String> getTouchedFiles() {
+		return touchedFiles;
+	}
+
+	/**
+	 * Replays all recorded operations against the given strategy, in the order in which they were recorded.
+	 * This mimics what the evaluation context would have done had it been given <code>target</code> in the
+	 * first place : writers are created, filled then flushed, lost files are created, and the global
+	 * handlers of the strategy are called once all files are flushed.
+	 * 
+	 * @param target
+	 *            The strategy against which operations are to be replayed.
+	 * @return The preview of this replay if <code>target</code> returns previews, an empty map otherwise.
+	 */
+	public Map<String, String> replay(IAcceleoGenerationStrategy target) {
+		final Map<String, Writer> preview = new HashMap<String, Writer>();
+		final Map<Writer, AbstractAcceleoWriter> actualWriters = new IdentityHashMap<Writer, AbstractAcceleoWriter>();
+		try {
+			for (DeferredOperation operation : operations) {
+				operation.replay(target, preview, actualWriters);
+			}
+			if (lostFiles != null) {
+				target.createLostFiles(lostFiles);
+			}
+			target.flushWriters(preview);
+		} catch (IOException e) {
+			throw new AcceleoEvaluationException(AcceleoEngineMessages
+					.getString("AcceleoEvaluationContext.WriteError"), e); //$NON-NLS-1$
+		}
+
+		Map<String, String> result = new HashMap<String, String>();
+		if (target.willReturnPreview()) {
+			result = new HashMap<String, String>(target.preparePreview(preview));
+		}
+		try {
+			target.awaitCompletion();
+		} catch (InterruptedException e) {
+			throw new AcceleoEvaluationException(AcceleoEngineMessages
+					.getString("AcceleoEvaluationContext.CleanUpError"), e); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+	/**
+	 * A single call to the strategy that can be replayed later on.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private abstract static class DeferredOperation {
+		/**
+		 * Replays this operation against the given strategy.
+		 * 
+		 * @param target
+		 *            The strategy against which this operation is to be replayed.
+		 * @param preview
+		 *            The actual writers that have been created so far, mapped to their target path.
+		 * @param actualWriters
+		 *            Maps the deferred writers to the actual writers created for them.
+		 * @throws IOException
+		 *             Thrown if the strategy fails to create or flush a writer.
+		 */
+		public abstract void replay(IAcceleoGenerationStrategy target, Map<String, Writer> preview,
+				Map<Writer, AbstractAcceleoWriter> actualWriters) throws IOException;
+	}
+
+	/**
+	 * Records a call to one of the <code>createWriterFor</code> methods.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class OpenOperation extends DeferredOperation {
+		/** File for which a writer has been created. */
+		private final File file;
+
+		/** The buffer we handed over to the context in place of the actual writer. */
+		private final DeferredWriter writer;
+
+		/** Whether the file was to be opened in append mode. */
+		private final boolean appendMode;
+
+		/** Whether the file contained JMerge tags. */
+		private final boolean hasJMergeTags;
+
+		/** Charset of the file. */
+		private final String charset;
+
+		/** Tells us which of the two <code>createWriterFor</code> has been called. */
+		private final boolean withCharset;
+
+		/**
+		 * Records a call to <code>createWriterFor</code>.
+		 * 
+		 * @param file
+		 *            File for which a writer has been created.
+		 * @param writer
+		 *            The buffer we handed over to the context in place of the actual writer.
+		 * @param appendMode
+		 *            Whether the file was to be opened in append mode.
+		 * @param hasJMergeTags
+		 *            Whether the file contained JMerge tags.
+		 * @param charset
+		 *            Charset of the file.
+		 * @param withCharset
+		 *            Tells us which of the two <code>createWriterFor</code> has been called.
+		 */
+		OpenOperation(File file, DeferredWriter writer, boolean appendMode, boolean hasJMergeTags,
+				String charset, boolean withCharset) {
+			this.file = file;
+			this.writer = writer;
+			this.appendMode = appendMode;
+			this.hasJMergeTags = hasJMergeTags;
+			this.charset = charset;
+			this.withCharset = withCharset;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.utils.DeferredGenerationStrategy.DeferredOperation#replay(org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy,
+		 *      java.util.Map, java.util.Map)
+		 */
+		@Override
+		public void replay(IAcceleoGenerationStrategy target, Map<String, Writer> preview,
+				Map<Writer, AbstractAcceleoWriter> actualWriters) throws IOException {
+			final AbstractAcceleoWriter previous = (AbstractAcceleoWriter)preview.get(file.getPath());
+			final AbstractAcceleoWriter actual;
+			if (withCharset) {
+				actual = target.createWriterFor(file, previous, appendMode, hasJMergeTags, charset);
+			} else {
+				actual = target.createWriterFor(file, previous, appendMode, hasJMergeTags);
+			}
+			preview.put(file.getPath(), actual);
+			actualWriters.put(writer, actual);
+		}
+	}
+
+	/**
+	 * Records a call to {@link IAcceleoGenerationStrategy#flushWriter(String, Writer)}.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class FlushOperation extends DeferredOperation {
+		/** Path of the file that's been flushed. */
+		private final String filePath;
+
+		/** The deferred writer that's been flushed. */
+		private final Writer writer;
+
+		/**
+		 * Records a call to <code>flushWriter</code>.
+		 * 
+		 * @param filePath
+		 *            Path of the file that's been flushed.
+		 * @param writer
+		 *            The deferred writer that's been flushed.
+		 */
+		FlushOperation(String filePath, Writer writer) {
+			this.filePath = filePath;
+			this.writer = writer;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.utils.DeferredGenerationStrategy.DeferredOperation#replay(org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy,
+		 *      java.util.Map, java.util.Map)
+		 */
+		@Override
+		public void replay(IAcceleoGenerationStrategy target, Map<String, Writer> preview,
+				Map<Writer, AbstractAcceleoWriter> actualWriters) throws IOException {
+			final AbstractAcceleoWriter actual = actualWriters.get(writer);
+			actual.append(writer.toString());
+			target.flushWriter(filePath, actual);
+		}
+	}
+
+	/**
+	 * Records a call to {@link IAcceleoGenerationStrategy#createLostFile(String, Map)}.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class LostFileOperation extends DeferredOperation {
+		/** Path of the file from which code has been lost. */
+		private final String originalPath;
+
+		/** The lost code. */
+		private final Map<String, String> lostCode;
+
+		/**
+		 * Records a call to <code>createLostFile</code>.
+		 * 
+		 * @param originalPath
+		 *            Path of the file from which code has been lost.
+		 * @param lostCode
+		 *            The lost code.
+		 */
+		LostFileOperation(String originalPath, Map<String, String> lostCode) {
+			this.originalPath = originalPath;
+			this.lostCode = lostCode;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.internal.utils.DeferredGenerationStrategy.DeferredOperation#replay(org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy,
+		 *      java.util.Map, java.util.Map)
+		 */
+		@Override
+		public void replay(IAcceleoGenerationStrategy target, Map<String, Writer> preview,
+				Map<Writer, AbstractAcceleoWriter> actualWriters) {
+			final Map<String, StringWriter> lostFileWriters = target.createLostFile(originalPath, lostCode);
+			if (lostFileWriters != null) {
+				preview.putAll(lostFileWriters);
+			}
+		}
+	}
+
+	/**
+	 * In-memory writer handed over to the evaluation context in place of the actual strategy's writers.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class DeferredWriter extends AbstractAcceleoWriter {
+		/** Path of the file this writer stands for. */
+		private final String targetPath;
+
+		/**
+		 * Creates a buffer for the file at the given path.
+		 * 
+		 * @param targetPath
+		 *            Path of the file this writer stands for.
+		 */
+		DeferredWriter(String targetPath) {
+			this.targetPath = targetPath;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter#getTargetPath()
+		 */
+		@Override
+		public String getTargetPath() {
+			return targetPath;
+		}
+	}
+}
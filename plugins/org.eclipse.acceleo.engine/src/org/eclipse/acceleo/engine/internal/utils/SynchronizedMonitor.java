@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.internal.utils;
+
+import org.eclipse.emf.common.util.Diagnostic;
+import org.eclipse.emf.common.util.Monitor;
+
+/**
+ * Wraps a progress monitor so that it can be shared by all threads of a parallel generation. Monitors are
+ * usually not meant to be called from multiple threads, all calls will thus be serialized.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class SynchronizedMonitor implements Monitor {
+	/** The monitor to which all calls will be delegated. */
+	private final Monitor delegate;
+
+	/**
+	 * Wraps the given monitor.
+	 * 
+	 * @param delegate
+	 *            The monitor to which all calls will be delegated.
+	 */
+	public SynchronizedMonitor(Monitor delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#beginTask(java.lang.String, int)
+	 */
+	public synchronized void beginTask(String name, int totalWork) {
+		delegate.beginTask(name, totalWork);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#clearBlocked()
+	 */
+	public synchronized void clearBlocked() {
+		delegate.clearBlocked();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#done()
+	 */
+	public synchronized void done() {
+		delegate.done();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#internalWorked(double)
+	 */
+	public synchronized void internalWorked(double work) {
+		delegate.internalWorked(work);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#isCanceled()
+	 */
+	public synchronized boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#setBlocked(org.eclipse.emf.common.util.Diagnostic)
+	 */
+	public synchronized void setBlocked(Diagnostic reason) {
+		delegate.setBlocked(reason);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#setCanceled(boolean)
+	 */
+	public synchronized void setCanceled(boolean value) {
+		delegate.setCanceled(value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#setTaskName(java.lang.String)
+	 */
+	public synchronized void setTaskName(String name) {
+		delegate.setTaskName(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#subTask(java.lang.String)
+	 */
+	public synchronized void subTask(String name) {
+		delegate.subTask(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.common.util.Monitor#worked(int)
+	 */
+	public synchronized void worked(int work) {
+		delegate.worked(work);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2012 Obeo.
+ * Copyright (c) 2010, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,6 +33,7 @@ import org.eclipse.acceleo.common.utils.ModelUtils;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.AcceleoEnginePlugin;
 import org.eclipse.acceleo.engine.event.IAcceleoTextGenerationListener;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy;
 import org.eclipse.acceleo.engine.generation.strategy.DoNotGenerateGenerationStrategy;
 import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
@@ -239,9 +240,10 @@ public abstract class AbstractAcceleoGenerator {
 	 * If you need to change the way files are generated, this is your entry point.
 	 * <p>
 	 * The default is {@link org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy}; it generates
-	 * files on the fly. If you only need to preview the results, return a new
-	 * {@link org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy}. Both of these aren't aware of
-	 * the running Eclipse and can be used standalone.
+	 * files on the fly, skipping unchanged files and writing asynchronously if the
+	 * {@link #getGenerationOptions() generation options} say so. If you only need to preview the results,
+	 * return a new {@link org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy}. Both of these
+	 * aren't aware of the running Eclipse and can be used standalone.
 	 * </p>
 	 * <p>
 	 * If you need the file generation to be aware of the workspace (A typical example is when you wanna
@@ -256,9 +258,30 @@ public abstract class AbstractAcceleoGenerator {
 	 * @return The generation strategy that is to be used for generations launched through this launcher.
 	 */
 	public IAcceleoGenerationStrategy getGenerationStrategy() {
+		final GenerationOptions options = getGenerationOptions();
+		if (options != null) {
+			return new DefaultStrategy(options.isSkipUnchangedFilesEnabled(), options
+					.isAsynchronousWritesEnabled());
+		}
 		return new DefaultStrategy();
 	}
 
+	/**
+	 * If you need to configure the generations launched through this launcher without altering the global
+	 * preferences, for example to skip the files which content did not change, this is your entry point.
+	 * <p>
+	 * The default returns <code>null</code> so that generations follow the Acceleo preferences. Options can
+	 * be derived from {@link GenerationOptions#fromPreferences()}.
+	 * </p>
+	 * 
+	 * @return The options of the generations launched through this launcher, <code>null</code> to follow
+	 *         the preferences.
+	 * @since 3.5
+	 */
+	public GenerationOptions getGenerationOptions() {
+		return null;
+	}
+
 	/**
 	 * If you wish to launch the generation on something else than {@link #model}, alter it here.
 	 * 
@@ -569,7 +592,7 @@ public abstract class AbstractAcceleoGenerator {
 		IAcceleoGenerationStrategy generationStrategy = getGenerationStrategy();
 		DoNotGenerateGenerationStrategy doNotGenerateGenerationStrategy = new DoNotGenerateGenerationStrategy(
 				generationStrategy);
-		AcceleoService service = new AcceleoService(doNotGenerateGenerationStrategy);
+		AcceleoService service = new AcceleoService(doNotGenerateGenerationStrategy, getGenerationOptions());
 		for (IAcceleoTextGenerationListener listener : getGenerationListeners()) {
 			service.addListener(listener);
 		}
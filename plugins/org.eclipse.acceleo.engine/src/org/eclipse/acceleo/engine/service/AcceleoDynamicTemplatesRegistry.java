@@ -18,6 +18,7 @@ import java.util.Set;
 
 import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
+import org.eclipse.acceleo.engine.internal.environment.TemplateDispatchCache;
 import org.eclipse.acceleo.engine.internal.utils.AcceleoDynamicTemplatesEclipseUtil;
 import org.eclipse.acceleo.engine.internal.utils.DynamicModuleContribution;
 import org.eclipse.emf.common.EMFPlugin;
@@ -56,7 +57,11 @@ public final class AcceleoDynamicTemplatesRegistry {
 	 * @since 0.8
 	 */
 	public boolean addModule(File module) {
-		return registeredModules.add(module);
+		final boolean changed = registeredModules.add(module);
+		if (changed) {
+			TemplateDispatchCache.invalidateAll();
+		}
+		return changed;
 	}
 
 	/**
@@ -68,7 +73,11 @@ public final class AcceleoDynamicTemplatesRegistry {
 	 *         <code>modules</code>.
 	 */
 	public boolean addModules(Collection<File> modules) {
-		return registeredModules.addAll(modules);
+		final boolean changed = registeredModules.addAll(modules);
+		if (changed) {
+			TemplateDispatchCache.invalidateAll();
+		}
+		return changed;
 	}
 
 	/**
@@ -113,6 +122,7 @@ public final class AcceleoDynamicTemplatesRegistry {
 	 */
 	public void clearRegistryResourceSet() {
 		registeredModules.clear();
+		TemplateDispatchCache.invalidateAll();
 	}
 
 	/**
@@ -173,7 +183,11 @@ public final class AcceleoDynamicTemplatesRegistry {
 	 * @since 0.8
 	 */
 	public boolean removeModule(File module) {
-		return registeredModules.remove(module);
+		final boolean changed = registeredModules.remove(module);
+		if (changed) {
+			TemplateDispatchCache.invalidateAll();
+		}
+		return changed;
 	}
 
 	/**
@@ -184,6 +198,10 @@ public final class AcceleoDynamicTemplatesRegistry {
 	 * @return <code>true</code> if the set has been changed.
 	 */
 	public boolean removeModules(Collection<File> modules) {
-		return registeredModules.removeAll(modules);
+		final boolean changed = registeredModules.removeAll(modules);
+		if (changed) {
+			TemplateDispatchCache.invalidateAll();
+		}
+		return changed;
 	}
 }
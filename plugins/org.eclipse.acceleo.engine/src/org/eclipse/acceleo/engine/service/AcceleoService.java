@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,13 +12,23 @@ package org.eclipse.acceleo.engine.service;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.common.preference.AcceleoPreferences;
 import org.eclipse.acceleo.common.utils.CompactHashSet;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
@@ -27,14 +37,20 @@ import org.eclipse.acceleo.engine.AcceleoEvaluationException;
 import org.eclipse.acceleo.engine.event.AbstractAcceleoTextGenerationListener;
 import org.eclipse.acceleo.engine.event.IAcceleoTextGenerationListener;
 import org.eclipse.acceleo.engine.generation.AcceleoEngine;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.acceleo.engine.generation.IAcceleoEngine;
+import org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache;
 import org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy;
+import org.eclipse.acceleo.engine.generation.strategy.DoNotGenerateGenerationStrategy;
 import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
 import org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy;
+import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitor;
 import org.eclipse.acceleo.engine.internal.utils.AcceleoEngineRegistry;
 import org.eclipse.acceleo.engine.internal.utils.AcceleoListenerDescriptor;
 import org.eclipse.acceleo.engine.internal.utils.AcceleoTraceabilityRegistryListenerUils;
 import org.eclipse.acceleo.engine.internal.utils.DefaultEngineSelector;
+import org.eclipse.acceleo.engine.internal.utils.DeferredGenerationStrategy;
+import org.eclipse.acceleo.engine.internal.utils.SynchronizedMonitor;
 import org.eclipse.acceleo.model.mtl.Module;
 import org.eclipse.acceleo.model.mtl.ModuleElement;
 import org.eclipse.acceleo.model.mtl.Template;
@@ -46,10 +62,14 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.emf.common.EMFPlugin;
+import org.eclipse.emf.common.notify.Notifier;
 import org.eclipse.emf.common.util.Monitor;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EClassifier;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 /**
  * This class provides utility methods to launch the generation of an Acceleo template.
@@ -67,6 +87,12 @@ public final class AcceleoService {
 	/** The key of the undefined template message. */
 	private static final String UNDEFINED_TEMPLATE = "AcceleoService.UndefinedTemplate"; //$NON-NLS-1$
 
+	/**
+	 * Number of evaluations each thread of a parallel generation can have ahead of the files that have been
+	 * handed over to the generation strategy. This bounds the amount of generated text held in memory.
+	 */
+	private static final int PARALLEL_GENERATION_WINDOW = 8;
+
 	/** The engine we'll use for all generations through this service instance. */
 	private IAcceleoEngine generationEngine;
 
@@ -124,6 +150,30 @@ public final class AcceleoService {
 	 */
 	private boolean forceTraceability;
 
+	/**
+	 * Number of threads that will be used to evaluate templates through
+	 * {@link #doGenerate(Map, EObject, File, Monitor)}.
+	 */
+	private int generationParallelism = 1;
+
+	/** Storage of the query results for all generations launched through this service, if any. */
+	private IAcceleoQueryCache queryCache;
+
+	/** Indicates if the query results should be kept from one generation to the next. */
+	private boolean reuseQueryCache;
+
+	/** Remembers the inputs of the generations to detect changes that would invalidate the query cache. */
+	private final InputChangeTracker inputTracker = new InputChangeTracker();
+
+	/** Options of the generations launched through this service. <code>null</code> to follow the preferences. */
+	private GenerationOptions generationOptions;
+
+	/** Number of files written by the default strategy when the current generation started. */
+	private int writtenFilesAtStart;
+
+	/** Number of files skipped by the default strategy when the current generation started. */
+	private int skippedFilesAtStart;
+
 	/**
 	 * Instantiates an instance of the service with a default generation strategy.
 	 * 
@@ -142,11 +192,32 @@ public final class AcceleoService {
 	 * @since 3.0
 	 */
 	public AcceleoService(IAcceleoGenerationStrategy generationStrategy) {
-		if (generationStrategy == null) {
+		this(generationStrategy, null);
+	}
+
+	/**
+	 * Instantiates an instance of the service given the generation strategy and options that are to be used
+	 * for its generations. If no strategy is given, the {@link DefaultStrategy} created for this service
+	 * will skip unchanged files and write files asynchronously as told by <code>options</code>.
+	 * 
+	 * @param generationStrategy
+	 *            Generation strategy that'll be used for this generation. <code>null</code> to use a
+	 *            {@link DefaultStrategy}.
+	 * @param options
+	 *            Options of the generations launched through this service. <code>null</code> to follow the
+	 *            preferences.
+	 * @since 3.5
+	 */
+	public AcceleoService(IAcceleoGenerationStrategy generationStrategy, GenerationOptions options) {
+		if (generationStrategy == null && options != null) {
+			strategy = new DefaultStrategy(options.isSkipUnchangedFilesEnabled(), options
+					.isAsynchronousWritesEnabled());
+		} else if (generationStrategy == null) {
 			strategy = new DefaultStrategy();
 		} else {
 			strategy = generationStrategy;
 		}
+		generationOptions = options;
 		createEngine();
 	}
 
@@ -274,6 +345,160 @@ public final class AcceleoService {
 		// empty implementation
 	}
 
+	/**
+	 * Sets the number of threads that will be used to evaluate templates when generating through
+	 * {@link #doGenerate(Map, EObject, File, Monitor)}. Any value lower than <code>2</code> means that the
+	 * generation will be sequential, which is the default.
+	 * <p>
+	 * In parallel mode, each (template, element) pair is evaluated on its own with a separate evaluation
+	 * context. The files and preview are then handed over to the generation strategy in the exact same order
+	 * as they would have been by a sequential generation. Evaluations that open a file already generated
+	 * earlier in the same run are evaluated once more, sequentially, so that they see the same file content
+	 * (protected areas, appended text) as a sequential generation would have.
+	 * </p>
+	 * <p>
+	 * The generation will silently fall back to sequential mode if text generation listeners are registered
+	 * (they expect events in generation order), if the engine is not the default {@link AcceleoEngine}, if the
+	 * debugger or profiler are active or if dynamic modules are registered. Generations that write to
+	 * &quot;stdout&quot; may see their output interleaved.
+	 * </p>
+	 * 
+	 * @param parallelism
+	 *            Number of threads that will be used to evaluate templates.
+	 * @since 3.5
+	 */
+	public void setGenerationParallelism(int parallelism) {
+		this.generationParallelism = parallelism;
+	}
+
+	/**
+	 * Returns the number of threads that will be used to evaluate templates when generating through
+	 * {@link #doGenerate(Map, EObject, File, Monitor)}.
+	 * 
+	 * @return The number of threads that will be used to evaluate templates.
+	 * @since 3.5
+	 */
+	public int getGenerationParallelism() {
+		return generationParallelism;
+	}
+
+	/**
+	 * Sets the options of the generations launched through this service. This allows stand alone clients to
+	 * configure the query cache, traceability, profiler and debug messages of their generations without
+	 * altering the global preferences. When no options are set, a snapshot of the preferences is taken at the
+	 * start of each generation.
+	 * <p>
+	 * Note that the traceability option is considered when the service selects its engine, and the options
+	 * of the default strategy when the service creates it, both of which happen on construction. Use
+	 * {@link #AcceleoService(IAcceleoGenerationStrategy, GenerationOptions)} to disable the traceability of a
+	 * service's generations or to skip unchanged files.
+	 * </p>
+	 * 
+	 * @param options
+	 *            The options of the generations launched through this service. <code>null</code> to follow
+	 *            the preferences.
+	 * @since 3.5
+	 */
+	public void setGenerationOptions(GenerationOptions options) {
+		this.generationOptions = options;
+	}
+
+	/**
+	 * Returns the options of the generations launched through this service.
+	 * 
+	 * @return The options of the generations launched through this service, <code>null</code> if they follow
+	 *         the preferences.
+	 * @since 3.5
+	 */
+	public GenerationOptions getGenerationOptions() {
+		return generationOptions;
+	}
+
+	/**
+	 * Sets the storage in which the results of the queries will be cached for the generations launched
+	 * through this service. This can be used to bound the memory used by the cache through an
+	 * {@link org.eclipse.acceleo.engine.generation.cache.LRUQueryCache} or a
+	 * {@link org.eclipse.acceleo.engine.generation.cache.SoftQueryCache}, and to monitor its efficiency
+	 * through {@link IAcceleoQueryCache#getStatistics()}.
+	 * <p>
+	 * The cache will only be used if this service relies on an {@link AcceleoEngine}. It will be cleared
+	 * before each generation unless {@link #setQueryCacheReuse(boolean) reuse} has been activated. The
+	 * provided implementations are thread safe and can thus be used with
+	 * {@link #setGenerationParallelism(int) parallel generations}.
+	 * </p>
+	 * 
+	 * @param cache
+	 *            The storage in which query results will be cached. <code>null</code> to use a new unbounded
+	 *            cache for each evaluation, which is the default.
+	 * @since 3.5
+	 */
+	public void setQueryCache(IAcceleoQueryCache cache) {
+		this.queryCache = cache;
+		if (generationEngine instanceof AcceleoEngine) {
+			((AcceleoEngine)generationEngine).setQueryCache(cache);
+		}
+	}
+
+	/**
+	 * Returns the storage in which the results of the queries are cached for the generations launched through
+	 * this service.
+	 * 
+	 * @return The storage in which the results of the queries are cached, <code>null</code> if none has been
+	 *         set.
+	 * @since 3.5
+	 */
+	public IAcceleoQueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Sets whether the content of the {@link #setQueryCache(IAcceleoQueryCache) query cache} should be kept
+	 * from one generation to the next. When activated, the cache will be cleared whenever the resources
+	 * containing the input models of previous generations have changed : a resource being added to or
+	 * removed from their resource set, loaded, unloaded, saved, or having its root objects changed. These
+	 * changes are detected by comparing the state of the resources with the one they had at the end of the
+	 * previous generation, nothing is attached to the input models in between. Changes made to the objects
+	 * of a resource are only detected if this resource {@link Resource#setTrackingModification(boolean)
+	 * tracks its modifications}, {@link #invalidateQueryCache()} must be called after such changes
+	 * otherwise. The resources containing Acceleo modules are not considered : the engine itself updates
+	 * them during the generations, and cached results are specific to the queries they were computed for.
+	 * Only the results of queries that do not depend on the generation context (properties, current
+	 * elements, other templates ...) are ever kept in the cache.
+	 * 
+	 * @param reuse
+	 *            <code>true</code> if the cached query results should be reused across generations,
+	 *            <code>false</code> otherwise.
+	 * @since 3.5
+	 */
+	public void setQueryCacheReuse(boolean reuse) {
+		this.reuseQueryCache = reuse;
+	}
+
+	/**
+	 * Clears the {@link #setQueryCache(IAcceleoQueryCache) query cache} of this service. This must be called
+	 * when the query results are {@link #setQueryCacheReuse(boolean) reused across generations} and the
+	 * input models have been changed in a way this service cannot detect.
+	 * 
+	 * @since 3.5
+	 */
+	public void invalidateQueryCache() {
+		if (queryCache != null) {
+			queryCache.clear();
+		}
+		inputTracker.reset();
+	}
+
+	/**
+	 * Returns whether the content of the query cache is kept from one generation to the next.
+	 * 
+	 * @return <code>true</code> if the cached query results are reused across generations, <code>false</code>
+	 *         otherwise.
+	 * @since 3.5
+	 */
+	public boolean isQueryCacheReused() {
+		return reuseQueryCache;
+	}
+
 	/**
 	 * This can be used to launch the generation of multiple Acceleo templates given their names and their
 	 * containing modules.
@@ -343,32 +568,36 @@ public final class AcceleoService {
 		this.generationIsOccurring = true;
 		this.prepareGeneration(monitor, generationRoot);
 
-		// Calls all templates with each of their potential arguments
-		final List<Object> arguments = new ArrayList<Object>();
-		// The input model itself is a potential argument
-		arguments.add(model);
-		for (Map.Entry<EClassifier, Set<Template>> entry : templateTypes.entrySet()) {
-			if (entry.getKey().isInstance(model)) {
-				for (Template template : entry.getValue()) {
-					previewResult.putAll(doGenerateTemplate(template, arguments, generationRoot, monitor));
-					generationHasOccurred = true;
-				}
-			}
-		}
-		final TreeIterator<EObject> targetElements = model.eAllContents();
-		while (targetElements.hasNext()) {
-			final EObject potentialTarget = targetElements.next();
+		if (canGenerateInParallel()) {
+			previewResult.putAll(doGenerateInParallel(templateTypes, model, generationRoot, monitor));
+		} else {
+			// Calls all templates with each of their potential arguments
+			final List<Object> arguments = new ArrayList<Object>();
+			// The input model itself is a potential argument
+			arguments.add(model);
 			for (Map.Entry<EClassifier, Set<Template>> entry : templateTypes.entrySet()) {
-				if (entry.getKey().isInstance(potentialTarget)) {
-					arguments.clear();
-					arguments.add(potentialTarget);
+				if (entry.getKey().isInstance(model)) {
 					for (Template template : entry.getValue()) {
-						previewResult
-								.putAll(doGenerateTemplate(template, arguments, generationRoot, monitor));
+						previewResult.putAll(doGenerateTemplate(template, arguments, generationRoot, monitor));
 						generationHasOccurred = true;
 					}
 				}
 			}
+			final TreeIterator<EObject> targetElements = model.eAllContents();
+			while (targetElements.hasNext()) {
+				final EObject potentialTarget = targetElements.next();
+				for (Map.Entry<EClassifier, Set<Template>> entry : templateTypes.entrySet()) {
+					if (entry.getKey().isInstance(potentialTarget)) {
+						arguments.clear();
+						arguments.add(potentialTarget);
+						for (Template template : entry.getValue()) {
+							previewResult.putAll(doGenerateTemplate(template, arguments, generationRoot,
+									monitor));
+							generationHasOccurred = true;
+						}
+					}
+				}
+			}
 		}
 
 		// End
@@ -880,6 +1109,7 @@ public final class AcceleoService {
 	 */
 	public Map<String, String> doGenerateTemplate(Template template, List<? extends Object> arguments,
 			File generationRoot, Monitor monitor) {
+		trackQueryCacheInputs(arguments);
 		try {
 			return generationEngine.evaluate(template, arguments, generationRoot, strategy, monitor);
 		} finally {
@@ -911,6 +1141,15 @@ public final class AcceleoService {
 	 */
 	private void prepareGeneration(Monitor monitor, File generationRoot) {
 		generationHasOccurred = false;
+		final DefaultStrategy defaultStrategy = getDefaultStrategy();
+		if (defaultStrategy != null) {
+			writtenFilesAtStart = defaultStrategy.getWrittenFileCount();
+			skippedFilesAtStart = defaultStrategy.getSkippedFileCount();
+		}
+		if (queryCache != null && (!reuseQueryCache || inputTracker.hasChanged())) {
+			queryCache.clear();
+			inputTracker.reset();
+		}
 		for (IAcceleoTextGenerationListener listener : STATIC_LISTENERS) {
 			generationEngine.addListener(listener);
 		}
@@ -943,7 +1182,8 @@ public final class AcceleoService {
 		}
 
 		forceTraceability = false;
-		if (!deactivateTraceability) {
+		if (!deactivateTraceability
+				&& (generationOptions == null || generationOptions.isTraceabilityEnabled())) {
 			for (AcceleoListenerDescriptor acceleoListenerDescriptor : descriptorsUsed) {
 				IAcceleoTextGenerationListener listener = acceleoListenerDescriptor.getTraceabilityListener();
 				if (listener instanceof AbstractAcceleoTextGenerationListener) {
@@ -981,6 +1221,15 @@ public final class AcceleoService {
 			generationEngine.addListener(acceleoListenerDescriptor.getTraceabilityListener());
 		}
 
+		// Snapshot the options once for the whole generation
+		if (generationEngine instanceof AcceleoEngine) {
+			GenerationOptions runOptions = generationOptions;
+			if (runOptions == null) {
+				runOptions = GenerationOptions.fromPreferences();
+			}
+			((AcceleoEngine)generationEngine).setGenerationOptions(runOptions);
+		}
+
 		// notify every listeners that the generation is starting.
 		List<IAcceleoTextGenerationListener> listeners = new ArrayList<IAcceleoTextGenerationListener>();
 		listeners.addAll(STATIC_LISTENERS);
@@ -1032,6 +1281,52 @@ public final class AcceleoService {
 		if (forceTraceability) {
 			AcceleoPreferences.switchTraceability(false);
 		}
+		// Query results computed during this generation remain valid as long as its inputs are untouched
+		inputTracker.update();
+		if (generationEngine instanceof AcceleoEngine) {
+			((AcceleoEngine)generationEngine).setGenerationOptions(generationOptions);
+		}
+		logGeneratedFileCount();
+	}
+
+	/**
+	 * Returns the {@link DefaultStrategy} used by this service, if any.
+	 * 
+	 * @return The {@link DefaultStrategy} used by this service, <code>null</code> if it uses another
+	 *         strategy.
+	 */
+	private DefaultStrategy getDefaultStrategy() {
+		IAcceleoGenerationStrategy actualStrategy = strategy;
+		if (actualStrategy instanceof DoNotGenerateGenerationStrategy) {
+			actualStrategy = ((DoNotGenerateGenerationStrategy)actualStrategy).getDelegate();
+		}
+		if (actualStrategy instanceof DefaultStrategy) {
+			return (DefaultStrategy)actualStrategy;
+		}
+		return null;
+	}
+
+	/**
+	 * Logs the number of files the default strategy has written and skipped during this generation if debug
+	 * messages are enabled.
+	 */
+	private void logGeneratedFileCount() {
+		final boolean debugMessages;
+		if (generationOptions != null) {
+			debugMessages = generationOptions.isDebugMessagesEnabled();
+		} else {
+			debugMessages = AcceleoPreferences.isDebugMessagesEnabled();
+		}
+		final DefaultStrategy defaultStrategy = getDefaultStrategy();
+		if (debugMessages && defaultStrategy != null) {
+			final int written = defaultStrategy.getWrittenFileCount() - writtenFilesAtStart;
+			final int skipped = defaultStrategy.getSkippedFileCount() - skippedFilesAtStart;
+			if (written > 0 || skipped > 0) {
+				AcceleoEnginePlugin.log(AcceleoEngineMessages.getString(
+						"AcceleoService.GeneratedFileCount", Integer.valueOf(written), Integer //$NON-NLS-1$
+								.valueOf(skipped)), false);
+			}
+		}
 	}
 
 	/**
@@ -1061,13 +1356,196 @@ public final class AcceleoService {
 	 * Instantiates the engine that will be used by this service for the generation.
 	 */
 	private void createEngine() {
-		if (EMFPlugin.IS_ECLIPSE_RUNNING) {
+		generationEngine = null;
+		final boolean traceability = generationOptions == null || generationOptions.isTraceabilityEnabled();
+		if (EMFPlugin.IS_ECLIPSE_RUNNING && traceability) {
 			generationEngine = new DefaultEngineSelector().selectEngine(AcceleoEngineRegistry
 					.getRegisteredCreators());
 		}
 		if (generationEngine == null) {
 			generationEngine = new AcceleoEngine();
 		}
+		if (generationEngine instanceof AcceleoEngine) {
+			((AcceleoEngine)generationEngine).setQueryCache(queryCache);
+		}
+	}
+
+	/**
+	 * Remembers the state of the resource sets of the given generation arguments if the query cache is to be
+	 * reused across generations.
+	 * 
+	 * @param arguments
+	 *            Arguments of a template evaluation.
+	 */
+	private void trackQueryCacheInputs(List<? extends Object> arguments) {
+		if (queryCache == null || !reuseQueryCache) {
+			return;
+		}
+		for (Object argument : arguments) {
+			if (argument instanceof EObject) {
+				final EObject eObject = (EObject)argument;
+				final Resource resource = eObject.eResource();
+				if (resource == null) {
+					inputTracker.watch(EcoreUtil.getRootContainer(eObject));
+				} else if (resource.getResourceSet() == null) {
+					inputTracker.watch(resource);
+				} else {
+					inputTracker.watch(resource.getResourceSet());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the current generation can be evaluated in parallel. See
+	 * {@link #setGenerationParallelism(int)} for the conditions under which we'll fall back to a sequential
+	 * generation.
+	 * 
+	 * @return <code>true</code> if the current generation can be evaluated in parallel, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean canGenerateInParallel() {
+		boolean canGenerateInParallel = generationParallelism > 1
+				&& generationEngine.getClass() == AcceleoEngine.class;
+		canGenerateInParallel = canGenerateInParallel && STATIC_LISTENERS.isEmpty()
+				&& addedListeners.isEmpty() && descriptorsUsed.isEmpty();
+		canGenerateInParallel = canGenerateInParallel && AcceleoEvaluationVisitor.getDebug() == null
+				&& AcceleoEvaluationVisitor.getProfiler() == null;
+		return canGenerateInParallel
+				&& AcceleoDynamicTemplatesRegistry.INSTANCE.getRegisteredModules().isEmpty();
+	}
+
+	/**
+	 * Adds to <code>units</code> a generation unit for each of the given templates that can be called on
+	 * <code>target</code>.
+	 * 
+	 * @param templateTypes
+	 *            The templates to call, mapped to the type of their parameter.
+	 * @param target
+	 *            The potential argument of the templates.
+	 * @param units
+	 *            The list to which generation units should be added.
+	 */
+	private void collectGenerationUnits(Map<EClassifier, Set<Template>> templateTypes, EObject target,
+			List<GenerationUnit> units) {
+		for (Map.Entry<EClassifier, Set<Template>> entry : templateTypes.entrySet()) {
+			if (entry.getKey().isInstance(target)) {
+				for (Template template : entry.getValue()) {
+					units.add(new GenerationUnit(template, target));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluates all of the given templates with each of their potential arguments from <code>model</code>
+	 * using a pool of {@link #generationParallelism} threads. The files generated by each evaluation are
+	 * handed over to the generation strategy in the order a sequential generation would have used.
+	 * 
+	 * @param templateTypes
+	 *            The templates to call, mapped to the type of their parameter.
+	 * @param model
+	 *            Input model for this generation.
+	 * @param generationRoot
+	 *            This will be used as the root for the generated files.
+	 * @param monitor
+	 *            This will be used as the progress monitor for the generation. Can be <code>null</code>.
+	 * @return The preview of this generation if the strategy returns previews, an empty map otherwise.
+	 */
+	private Map<String, String> doGenerateInParallel(Map<EClassifier, Set<Template>> templateTypes,
+			EObject model, File generationRoot, Monitor monitor) {
+		/*
+		 * Workers only read the input model. Resolve all of its proxies beforehand so that they do not
+		 * concurrently load resources or replace proxies in the model's lists.
+		 */
+		resolveInputModel(model);
+
+		// Gathers the (template, argument) pairs in the order a sequential generation would call them
+		final List<GenerationUnit> units = new ArrayList<GenerationUnit>();
+		trackQueryCacheInputs(Collections.singletonList(model));
+		collectGenerationUnits(templateTypes, model, units);
+		final TreeIterator<EObject> targetElements = model.eAllContents();
+		while (targetElements.hasNext()) {
+			collectGenerationUnits(templateTypes, targetElements.next(), units);
+		}
+
+		Monitor workerMonitor = null;
+		if (monitor != null) {
+			workerMonitor = new SynchronizedMonitor(monitor);
+		}
+		final Map<String, String> previewResult = new HashMap<String, String>();
+		final Set<String> generatedFiles = new HashSet<String>();
+		final LinkedList<Future<DeferredGenerationStrategy>> pending = new LinkedList<Future<DeferredGenerationStrategy>>();
+		final int window = generationParallelism * PARALLEL_GENERATION_WINDOW;
+		final ExecutorService pool = Executors.newFixedThreadPool(generationParallelism);
+		try {
+			int next = 0;
+			for (GenerationUnit unit : units) {
+				while (next < units.size() && pending.size() < window) {
+					pending.add(pool.submit(new DeferredEvaluation(units.get(next++), generationRoot,
+							workerMonitor)));
+				}
+				final DeferredGenerationStrategy deferred = getDeferredResult(pending.removeFirst());
+				if (Collections.disjoint(generatedFiles, deferred.getTouchedFiles())) {
+					previewResult.putAll(deferred.replay(strategy));
+				} else {
+					/*
+					 * An earlier unit generated one of the same files. This evaluation may have read an outdated
+					 * version of it, evaluate it once more now that the previous units have been written.
+					 */
+					previewResult.putAll(doGenerateTemplate(unit.template, unit.arguments, generationRoot,
+							monitor));
+				}
+				generatedFiles.addAll(deferred.getTouchedFiles());
+				generationHasOccurred = true;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return previewResult;
+	}
+
+	/**
+	 * Resolves all proxies of the input model, along with those of the resources it references.
+	 * 
+	 * @param model
+	 *            The input model of the generation.
+	 */
+	private static void resolveInputModel(EObject model) {
+		final Resource resource = model.eResource();
+		if (resource != null && resource.getResourceSet() != null) {
+			EcoreUtil.resolveAll(resource.getResourceSet());
+		} else if (resource != null) {
+			EcoreUtil.resolveAll(resource);
+		} else {
+			EcoreUtil.resolveAll(model);
+		}
+	}
+
+	/**
+	 * Waits for the given deferred evaluation to end and returns its result, rethrowing the exception it
+	 * failed with if any.
+	 * 
+	 * @param future
+	 *            The deferred evaluation we need the result of.
+	 * @return The strategy in which this evaluation recorded its files.
+	 */
+	private DeferredGenerationStrategy getDeferredResult(Future<DeferredGenerationStrategy> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AcceleoEvaluationException(AcceleoEngineMessages
+					.getString("AcceleoService.ParallelGenerationInterrupted"), e); //$NON-NLS-1$
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new AcceleoEvaluationException(cause.getMessage(), cause);
+		}
 	}
 
 	/**
@@ -1162,4 +1640,189 @@ public final class AcceleoService {
 	public boolean hasGenerationOccurred() {
 		return this.generationHasOccurred;
 	}
+
+	/**
+	 * A single template call of a parallel generation.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class GenerationUnit {
+		/** The template to evaluate. */
+		final Template template;
+
+		/** The arguments of the call. */
+		final List<Object> arguments;
+
+		/**
+		 * Creates a generation unit for the given template and argument.
+		 * 
+		 * @param template
+		 *            The template to evaluate.
+		 * @param argument
+		 *            The sole argument of the call.
+		 */
+		GenerationUnit(Template template, EObject argument) {
+			this.template = template;
+			this.arguments = Collections.<Object> singletonList(argument);
+		}
+	}
+
+	/**
+	 * Evaluates a generation unit on a worker thread, recording its files in a
+	 * {@link DeferredGenerationStrategy} instead of writing them.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private final class DeferredEvaluation implements Callable<DeferredGenerationStrategy> {
+		/** The unit to evaluate. */
+		private final GenerationUnit unit;
+
+		/** Root of the generated files. */
+		private final File generationRoot;
+
+		/** Progress monitor of the generation. */
+		private final Monitor monitor;
+
+		/**
+		 * Prepares the evaluation of the given unit.
+		 * 
+		 * @param unit
+		 *            The unit to evaluate.
+		 * @param generationRoot
+		 *            Root of the generated files.
+		 * @param monitor
+		 *            Progress monitor of the generation. Can be <code>null</code>.
+		 */
+		DeferredEvaluation(GenerationUnit unit, File generationRoot, Monitor monitor) {
+			this.unit = unit;
+			this.generationRoot = generationRoot;
+			this.monitor = monitor;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public DeferredGenerationStrategy call() {
+			final DeferredGenerationStrategy deferred = new DeferredGenerationStrategy();
+			generationEngine.evaluate(unit.template, unit.arguments, generationRoot, deferred, monitor);
+			return deferred;
+		}
+	}
+
+	/**
+	 * This will remember the state of the resources containing the generation inputs in order to detect any
+	 * change that would make the cached query results stale. Only the resource-level state is considered so
+	 * that the input models are neither walked nor adapted.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class InputChangeTracker {
+		/** The watched resource sets, resources or objects, mapped to their state when last updated. */
+		private final Map<Notifier, List<Object>> watchedStates = new LinkedHashMap<Notifier, List<Object>>();
+
+		/**
+		 * Starts watching the given resource set, resource or object. Its current state is remembered.
+		 * 
+		 * @param notifier
+		 *            The resource set, resource or object that is to be watched.
+		 */
+		public void watch(Notifier notifier) {
+			if (!watchedStates.containsKey(notifier)) {
+				watchedStates.put(notifier, getState(notifier));
+			}
+		}
+
+		/**
+		 * Remembers the current state of the watched notifiers.
+		 */
+		public void update() {
+			for (Map.Entry<Notifier, List<Object>> entry : watchedStates.entrySet()) {
+				entry.setValue(getState(entry.getKey()));
+			}
+		}
+
+		/**
+		 * Returns whether the state of any of the watched notifiers has changed since it was last remembered.
+		 * 
+		 * @return <code>true</code> if something has changed in the watched notifiers, <code>false</code>
+		 *         otherwise.
+		 */
+		public boolean hasChanged() {
+			for (Map.Entry<Notifier, List<Object>> entry : watchedStates.entrySet()) {
+				if (!getState(entry.getKey()).equals(entry.getValue())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Forgets about all of the watched notifiers. They will be watched anew by the next generation that
+		 * uses them.
+		 */
+		public void reset() {
+			watchedStates.clear();
+		}
+
+		/**
+		 * Returns the current state of the given resource set, resource or object.
+		 * 
+		 * @param notifier
+		 *            The resource set, resource or object.
+		 * @return The current state of <code>notifier</code>.
+		 */
+		private static List<Object> getState(Notifier notifier) {
+			final List<Object> state = new ArrayList<Object>();
+			if (notifier instanceof ResourceSet) {
+				for (Resource resource : ((ResourceSet)notifier).getResources()) {
+					addState(state, resource);
+				}
+			} else if (notifier instanceof Resource) {
+				addState(state, (Resource)notifier);
+			} else if (notifier instanceof EObject) {
+				state.add(((EObject)notifier).eContainer());
+				state.add(((EObject)notifier).eResource());
+			}
+			return state;
+		}
+
+		/**
+		 * Adds the current state of the given resource to <code>state</code> : whether it is loaded or
+		 * modified, its time stamp and its root objects. Resources containing Acceleo modules are ignored.
+		 * 
+		 * @param state
+		 *            The state to which that of the resource is to be added.
+		 * @param resource
+		 *            The resource.
+		 */
+		private static void addState(List<Object> state, Resource resource) {
+			if (isModuleResource(resource)) {
+				return;
+			}
+			state.add(resource);
+			state.add(Boolean.valueOf(resource.isLoaded()));
+			state.add(Boolean.valueOf(resource.isModified()));
+			state.add(Long.valueOf(resource.getTimeStamp()));
+			state.add(Integer.valueOf(resource.getContents().size()));
+			state.addAll(resource.getContents());
+		}
+
+		/**
+		 * Checks whether the given resource contains an Acceleo module.
+		 * 
+		 * @param resource
+		 *            The resource to check.
+		 * @return <code>true</code> if <code>resource</code> contains an Acceleo module, <code>false</code>
+		 *         otherwise.
+		 */
+		private static boolean isModuleResource(Resource resource) {
+			if (resource.getURI() != null
+					&& IAcceleoConstants.EMTL_FILE_EXTENSION.equals(resource.getURI().fileExtension())) {
+				return true;
+			}
+			return !resource.getContents().isEmpty() && resource.getContents().get(0) instanceof Module;
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,6 +25,7 @@ import org.eclipse.acceleo.internal.ide.ui.debug.core.AcceleoDebugger;
 import org.eclipse.acceleo.internal.ide.ui.debug.model.AcceleoDebugTarget;
 import org.eclipse.acceleo.internal.ide.ui.debug.model.AcceleoProcess;
 import org.eclipse.acceleo.internal.ide.ui.launching.IAcceleoLaunchConfigurationConstants;
+import org.eclipse.acceleo.profiler.AggregatingProfiler;
 import org.eclipse.acceleo.profiler.Profiler;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFolder;
@@ -84,7 +85,12 @@ public class AcceleoPluginLaunchingStrategy implements IAcceleoLaunchingStrategy
 			AcceleoEvaluationVisitor.setDebug(debugger);
 			debugger.start();
 		} else if (AcceleoPreferences.isProfilerEnabled() || profiling) {
-			profiler = new Profiler();
+			if (configuration.getAttribute(IAcceleoLaunchConfigurationConstants.ATTR_AGGREGATE_PROFILING,
+					false)) {
+				profiler = new AggregatingProfiler();
+			} else {
+				profiler = new Profiler();
+			}
 			AcceleoEngineUtils.setProfiler(profiler);
 			launch.addProcess(new AcceleoProcess(launch));
 		} else {
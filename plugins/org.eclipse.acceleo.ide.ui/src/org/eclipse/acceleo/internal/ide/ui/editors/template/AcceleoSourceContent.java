@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -416,6 +416,7 @@ public class AcceleoSourceContent {
 		source.getWarnings().clear();
 		source.getInfos().clear();
 		source.getBuffer().replace(posBegin, posEnd, newText);
+		source.refreshLines();
 		CSTNode current = getCSTNode(posBegin, posEnd);
 		if (current instanceof TextExpression && newText.indexOf(IAcceleoConstants.DEFAULT_BEGIN) > -1) {
 			current = (CSTNode)current.eContainer();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -136,6 +136,11 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 	 */
 	private Button computeProfiling;
 
+	/**
+	 * Checkbox button that indicates if the profiling information should be aggregated by call tree node.
+	 */
+	private Button aggregateProfiling;
+
 	/**
 	 * Available launching strategies in the current Eclipse instance. An internal extension point is defined
 	 * to specify multiple launching strategies.
@@ -269,6 +274,7 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 			}
 			profileModelButton.setEnabled(computeProfiling.getSelection());
 			profileModelText.setEnabled(computeProfiling.getSelection());
+			aggregateProfiling.setEnabled(computeProfiling.getSelection());
 		}
 	}
 
@@ -539,6 +545,7 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 					Button button = (Button)widget;
 					profileModelText.setEnabled(button.getSelection());
 					profileModelButton.setEnabled(button.getSelection());
+					aggregateProfiling.setEnabled(button.getSelection());
 					AcceleoPreferences.switchProfiler(button.getSelection());
 					updateLaunchConfigurationDialog();
 				}
@@ -551,6 +558,24 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 
 		computeProfiling.setSelection(checkedByDefault);
 		createHelpButton(comp, AcceleoUIMessages.getString("AcceleoMainTab.Help.Profiling")); //$NON-NLS-1$
+
+		aggregateProfiling = new Button(comp, SWT.CHECK);
+		aggregateProfiling.setFont(font);
+		gd = new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING | GridData.FILL_HORIZONTAL);
+		gd.horizontalSpan = 1;
+		aggregateProfiling.setLayoutData(gd);
+		aggregateProfiling.setText(AcceleoUIMessages.getString("AcceleoMainTab.AggregateProfiling")); //$NON-NLS-1$
+		aggregateProfiling.addSelectionListener(new SelectionListener() {
+			public void widgetSelected(SelectionEvent e) {
+				updateLaunchConfigurationDialog();
+			}
+
+			public void widgetDefaultSelected(SelectionEvent e) {
+
+			}
+		});
+		aggregateProfiling.setEnabled(checkedByDefault);
+		createHelpButton(comp, AcceleoUIMessages.getString("AcceleoMainTab.Help.AggregateProfiling")); //$NON-NLS-1$
 	}
 
 	/**
@@ -762,6 +787,9 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 			} else {
 				computeProfiling.setSelection(false);
 			}
+			aggregateProfiling.setSelection(config.getAttribute(
+					IAcceleoLaunchConfigurationConstants.ATTR_AGGREGATE_PROFILING, false));
+			aggregateProfiling.setEnabled(profiling);
 		} catch (CoreException e) {
 			AcceleoUIActivator.getDefault().getLog().log(e.getStatus());
 		}
@@ -899,6 +927,8 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_MODEL_PATH, modelText.getText().trim());
 		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_COMPUTE_PROFILING, computeProfiling
 				.getSelection());
+		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_AGGREGATE_PROFILING,
+				aggregateProfiling.getSelection());
 		if (computeProfiling.getSelection()) {
 			config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_PROFILE_MODEL_PATH,
 					profileModelText.getText().trim());
@@ -923,6 +953,7 @@ public class AcceleoMainTab extends org.eclipse.jdt.debug.ui.launchConfiguration
 		if (computeProfiling != null && computeProfiling.getSelection()) {
 			config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_PROFILE_MODEL_PATH, ""); //$NON-NLS-1$
 		}
+		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_AGGREGATE_PROFILING, false);
 		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_TARGET_PATH, ""); //$NON-NLS-1$
 		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_COMPUTE_TRACEABILITY, false);
 		config.setAttribute(IAcceleoLaunchConfigurationConstants.ATTR_ARGUMENTS, ""); //$NON-NLS-1$
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -53,6 +53,12 @@ public interface IAcceleoLaunchConfigurationConstants {
 	 */
 	String ATTR_COMPUTE_PROFILING = AcceleoUIActivator.PLUGIN_ID + ".COMPUTE_PROFILING"; //$NON-NLS-1$
 
+	/**
+	 * Launch configuration attribute key. The value is true if the profiling information should be aggregated
+	 * by call tree node instead of being recorded for each call.
+	 */
+	String ATTR_AGGREGATE_PROFILING = AcceleoUIActivator.PLUGIN_ID + ".AGGREGATE_PROFILING"; //$NON-NLS-1$
+
 	/**
 	 * Launch configuration attribute key. This is the value of the code generation arguments.
 	 */
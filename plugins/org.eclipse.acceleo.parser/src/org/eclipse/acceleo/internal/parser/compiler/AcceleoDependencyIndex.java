@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.internal.parser.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.acceleo.common.IAcceleoConstants;
+import org.eclipse.acceleo.internal.parser.cst.utils.FileContent;
+import org.eclipse.acceleo.internal.parser.cst.utils.Region;
+import org.eclipse.acceleo.internal.parser.cst.utils.Sequence;
+
+/**
+ * Persistent index of the modules imported or extended by the Acceleo modules of a classpath entry. It is
+ * used to find the modules depending on a given module without reading all the modules of the project each
+ * time one of them is built.
+ * <p>
+ * The index is stored next to the output directory of the classpath entry. Each module is recorded with its
+ * path, the size, time stamp and hash of its content, and the names it imports or extends. A module is only
+ * read again if its size or time stamp changed, and only parsed again if its content changed.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class AcceleoDependencyIndex {
+
+	/**
+	 * The first line of the index files, changed whenever their format changes.
+	 */
+	private static final String HEADER = "acceleo.dependencies 1"; //$NON-NLS-1$
+
+	/**
+	 * The number of columns of the index files before the dependencies of the module.
+	 */
+	private static final int FIXED_COLUMNS = 4;
+
+	/**
+	 * The algorithm used to hash the content of the modules.
+	 */
+	private static final String HASH_ALGORITHM = "MD5"; //$NON-NLS-1$
+
+	/**
+	 * The size of the buffer used to read the modules.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The directory containing the indexed modules.
+	 */
+	private final File inputDirectory;
+
+	/**
+	 * The file in which the index is stored.
+	 */
+	private final AcceleoIndexFile indexFile;
+
+	/**
+	 * The indexed modules, mapped to their path relative to the input directory.
+	 */
+	private final Map<String, IndexEntry> entries = new LinkedHashMap<String, IndexEntry>();
+
+	/**
+	 * The modules importing or extending a module, mapped to the simple name of this module. Computed lazily,
+	 * <code>null</code> when the entries changed.
+	 */
+	private Map<String, Set<File>> dependingModules;
+
+	/**
+	 * Creates the index of the modules of the given classpath entry, loading the index stored by a previous
+	 * build if any.
+	 * 
+	 * @param entry
+	 *            The classpath entry.
+	 */
+	public AcceleoDependencyIndex(AcceleoProjectClasspathEntry entry) {
+		this.inputDirectory = entry.getInputDirectory();
+		File outputDirectory = entry.getOutputDirectory();
+		this.indexFile = new AcceleoIndexFile(outputDirectory, "dependencies", HEADER); //$NON-NLS-1$
+		this.load();
+	}
+
+	/**
+	 * Returns the file in which the index is stored.
+	 * 
+	 * @return The file in which the index is stored.
+	 */
+	public File getIndexFile() {
+		return this.indexFile.getFile();
+	}
+
+	/**
+	 * Returns the modules of the classpath entry importing or extending a module with the given simple name.
+	 * Imports and extends using qualified names are matched on their last segment.
+	 * 
+	 * @param moduleName
+	 *            The simple name of the module (i.e. without package nor extension).
+	 * @return The modules importing or extending a module with the given simple name.
+	 */
+	public Set<File> getFilesDependingOn(String moduleName) {
+		if (this.dependingModules == null) {
+			this.dependingModules = new HashMap<String, Set<File>>();
+			for (Map.Entry<String, IndexEntry> entry : this.entries.entrySet()) {
+				File module = new File(this.inputDirectory, entry.getKey());
+				for (String dependency : entry.getValue().dependencies) {
+					String simpleName = dependency;
+					int lastSegment = dependency.lastIndexOf(IAcceleoConstants.NAMESPACE_SEPARATOR);
+					if (lastSegment > -1) {
+						simpleName = dependency.substring(lastSegment
+								+ IAcceleoConstants.NAMESPACE_SEPARATOR.length());
+					}
+					Set<File> modules = this.dependingModules.get(simpleName);
+					if (modules == null) {
+						modules = new LinkedHashSet<File>();
+						this.dependingModules.put(simpleName, modules);
+					}
+					modules.add(module);
+				}
+			}
+		}
+		Set<File> result = this.dependingModules.get(moduleName);
+		if (result == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Updates the index with the current content of the given modules, and stores it if it changed. Modules
+	 * that are not in the input directory of the classpath entry are ignored, indexed modules that are not in
+	 * the given set are removed from the index.
+	 * 
+	 * @param modules
+	 *            All the modules of the project.
+	 */
+	public void update(Set<File> modules) {
+		boolean changed = false;
+		Set<String> paths = new LinkedHashSet<String>();
+		for (File module : modules) {
+			String path = AcceleoIndexFile.getRelativePath(this.inputDirectory, module);
+			if (path != null) {
+				paths.add(path);
+				IndexEntry entry = this.entries.get(path);
+				if (entry == null || entry.length != module.length()
+						|| entry.lastModified != module.lastModified()) {
+					IndexEntry newEntry = this.createEntry(module, entry);
+					if (newEntry != null) {
+						this.entries.put(path, newEntry);
+						changed = true;
+					}
+				}
+			}
+		}
+		for (Iterator<String> iterator = this.entries.keySet().iterator(); iterator.hasNext();) {
+			if (!paths.contains(iterator.next())) {
+				iterator.remove();
+				changed = true;
+			}
+		}
+		if (changed) {
+			this.dependingModules = null;
+			this.save();
+		}
+	}
+
+	/**
+	 * Returns the names of the modules imported or extended in the given module content. The names are
+	 * searched in the text of the module without parsing it, the result may thus contain names mentioned in
+	 * comments.
+	 * 
+	 * @param content
+	 *            The content of a module.
+	 * @return The names of the modules imported or extended in the given module content.
+	 */
+	public static List<String> getDependencies(StringBuffer content) {
+		List<String> dependencies = new ArrayList<String>();
+		Sequence importSequence = new Sequence(new String[] {IAcceleoConstants.DEFAULT_BEGIN,
+				IAcceleoConstants.IMPORT, });
+		Region region = importSequence.search(content);
+		while (region.b() > -1) {
+			addName(dependencies, content, region.e());
+			region = importSequence.search(content, region.e(), content.length());
+		}
+		Sequence extendsSequence = new Sequence(IAcceleoConstants.EXTENDS);
+		region = extendsSequence.search(content);
+		while (region.b() > -1) {
+			int end = addName(dependencies, content, region.e());
+			// A module can extend several modules
+			while (end < content.length() && content.charAt(end) == ',') {
+				end = addName(dependencies, content, end + 1);
+			}
+			region = extendsSequence.search(content, region.e(), content.length());
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Reads the module name starting at the given index, ignoring the leading white spaces, and adds it to
+	 * the given list.
+	 * 
+	 * @param names
+	 *            The list in which to add the name.
+	 * @param content
+	 *            The content of a module.
+	 * @param index
+	 *            The index at which to start reading.
+	 * @return The index following the name and its trailing white spaces.
+	 */
+	private static int addName(List<String> names, StringBuffer content, int index) {
+		int begin = skipWhitespaces(content, index);
+		int end = begin;
+		while (end < content.length()
+				&& (Character.isJavaIdentifierPart(content.charAt(end)) || content.charAt(end) == ':')) {
+			end++;
+		}
+		if (end > begin && !names.contains(content.substring(begin, end))) {
+			names.add(content.substring(begin, end));
+		}
+		return skipWhitespaces(content, end);
+	}
+
+	/**
+	 * Returns the index of the first character that is not a white space from the given index.
+	 * 
+	 * @param content
+	 *            The content of a module.
+	 * @param index
+	 *            The index at which to start.
+	 * @return The index of the first character that is not a white space from the given index.
+	 */
+	private static int skipWhitespaces(StringBuffer content, int index) {
+		int result = index;
+		while (result < content.length() && Character.isWhitespace(content.charAt(result))) {
+			result++;
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the index entry of the given module, reusing the dependencies of its previous entry if its
+	 * content did not change.
+	 * 
+	 * @param module
+	 *            The module.
+	 * @param previousEntry
+	 *            The previous entry of the module, <code>null</code> if it was not indexed.
+	 * @return The index entry of the given module, <code>null</code> if it cannot be read.
+	 */
+	private IndexEntry createEntry(File module, IndexEntry previousEntry) {
+		long length = module.length();
+		long lastModified = module.lastModified();
+		String hash = hash(module);
+		if (hash == null) {
+			return null;
+		}
+		List<String> dependencies;
+		if (previousEntry != null && hash.equals(previousEntry.hash)) {
+			dependencies = previousEntry.dependencies;
+		} else {
+			dependencies = getDependencies(FileContent.getFileContent(module));
+		}
+		return new IndexEntry(length, lastModified, hash, dependencies);
+	}
+
+	/**
+	 * Loads the index stored by a previous build. The index is left empty if there is none, or if it cannot
+	 * be read.
+	 */
+	private void load() {
+		try {
+			for (String[] columns : this.indexFile.read()) {
+				if (columns.length < FIXED_COLUMNS) {
+					this.entries.clear();
+					return;
+				}
+				List<String> dependencies = new ArrayList<String>(columns.length - FIXED_COLUMNS);
+				for (int i = FIXED_COLUMNS; i < columns.length; i++) {
+					dependencies.add(columns[i]);
+				}
+				this.entries.put(columns[0], new IndexEntry(Long.parseLong(columns[1]), Long
+						.parseLong(columns[2]), columns[3], dependencies));
+			}
+		} catch (NumberFormatException e) {
+			// The index will be computed again
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * Stores the index next to the output directory. The index is only a cache, it will be computed again by
+	 * the next build if it cannot be stored.
+	 */
+	private void save() {
+		List<String[]> lines = new ArrayList<String[]>(this.entries.size());
+		for (Map.Entry<String, IndexEntry> entry : this.entries.entrySet()) {
+			IndexEntry indexEntry = entry.getValue();
+			String[] columns = new String[FIXED_COLUMNS + indexEntry.dependencies.size()];
+			columns[0] = entry.getKey();
+			columns[1] = Long.toString(indexEntry.length);
+			columns[2] = Long.toString(indexEntry.lastModified);
+			columns[3] = indexEntry.hash;
+			for (int i = 0; i < indexEntry.dependencies.size(); i++) {
+				columns[FIXED_COLUMNS + i] = indexEntry.dependencies.get(i);
+			}
+			lines.add(columns);
+		}
+		this.indexFile.write(lines);
+	}
+
+	/**
+	 * Computes the hash of the content of the given module.
+	 * 
+	 * @param module
+	 *            The module.
+	 * @return The hash of the content of the given module, <code>null</code> if it cannot be read.
+	 */
+	private static String hash(File module) {
+		InputStream stream = null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			stream = new FileInputStream(module);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read = stream.read(buffer);
+			while (read != -1) {
+				digest.update(buffer, 0, read);
+				read = stream.read(buffer);
+			}
+			return AcceleoIndexFile.toHexString(digest.digest());
+		} catch (IOException e) {
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		} finally {
+			AcceleoIndexFile.close(stream);
+		}
+	}
+
+	/**
+	 * The information recorded for a module.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class IndexEntry {
+		/**
+		 * The size of the module when it was indexed.
+		 */
+		final long length;
+
+		/**
+		 * The time stamp of the module when it was indexed.
+		 */
+		final long lastModified;
+
+		/**
+		 * The hash of the content of the module.
+		 */
+		final String hash;
+
+		/**
+		 * The names of the modules imported or extended by the module.
+		 */
+		final List<String> dependencies;
+
+		/**
+		 * Creates an index entry.
+		 * 
+		 * @param length
+		 *            The size of the module.
+		 * @param lastModified
+		 *            The time stamp of the module.
+		 * @param hash
+		 *            The hash of the content of the module.
+		 * @param dependencies
+		 *            The names of the modules imported or extended by the module.
+		 */
+		IndexEntry(long length, long lastModified, String hash, List<String> dependencies) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.dependencies = dependencies;
+		}
+	}
+}
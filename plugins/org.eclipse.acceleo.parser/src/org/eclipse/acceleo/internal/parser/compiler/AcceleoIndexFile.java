@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.internal.parser.compiler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file stored next to the output directory of a classpath entry to cache information about its modules
+ * between two builds. The file starts with a header identifying its format, followed by one line of tab
+ * separated columns per module.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class AcceleoIndexFile {
+
+	/**
+	 * The separator of the columns of the index files.
+	 */
+	private static final char SEPARATOR = '\t';
+
+	/**
+	 * The encoding of the index files.
+	 */
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	/**
+	 * The file in which the index is stored.
+	 */
+	private final File file;
+
+	/**
+	 * The first line of the index file, changed whenever its format changes.
+	 */
+	private final String header;
+
+	/**
+	 * Creates the index file with the given extension stored next to the given output directory.
+	 * 
+	 * @param outputDirectory
+	 *            The output directory of the classpath entry.
+	 * @param extension
+	 *            The extension of the index file.
+	 * @param header
+	 *            The first line of the index file, changed whenever its format changes.
+	 */
+	AcceleoIndexFile(File outputDirectory, String extension, String header) {
+		this.file = new File(outputDirectory.getParentFile(), '.' + outputDirectory.getName() + '.'
+				+ extension);
+		this.header = header;
+	}
+
+	/**
+	 * Returns the file in which the index is stored.
+	 * 
+	 * @return The file in which the index is stored.
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Reads the lines stored by a previous build.
+	 * 
+	 * @return The columns of each line of the index, an empty list if there is no index, if it has been
+	 *         stored in another format or if it cannot be read.
+	 */
+	public List<String[]> read() {
+		List<String[]> lines = new ArrayList<String[]>();
+		if (!this.file.isFile()) {
+			return lines;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), ENCODING));
+			if (this.header.equals(reader.readLine())) {
+				String line = reader.readLine();
+				while (line != null) {
+					lines.add(line.split(String.valueOf(SEPARATOR)));
+					line = reader.readLine();
+				}
+			}
+		} catch (IOException e) {
+			// The index will be computed again
+			lines.clear();
+		} finally {
+			close(reader);
+		}
+		return lines;
+	}
+
+	/**
+	 * Stores the given lines. The index is only a cache, it will be computed again by the next build if it
+	 * cannot be stored.
+	 * 
+	 * @param lines
+	 *            The columns of each line of the index.
+	 * @return <code>true</code> if the index has been stored, <code>false</code> otherwise.
+	 */
+	public boolean write(List<String[]> lines) {
+		File directory = this.file.getParentFile();
+		if (directory == null || !directory.isDirectory()) {
+			return false;
+		}
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file), ENCODING));
+			writer.write(this.header);
+			writer.write('\n');
+			for (String[] columns : lines) {
+				for (int i = 0; i < columns.length; i++) {
+					if (i > 0) {
+						writer.write(SEPARATOR);
+					}
+					writer.write(columns[i]);
+				}
+				writer.write('\n');
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			close(writer);
+		}
+	}
+
+	/**
+	 * Returns the path of the given file relative to the given directory.
+	 * 
+	 * @param directory
+	 *            The directory.
+	 * @param file
+	 *            The file.
+	 * @return The path of the given file relative to the given directory using '/' as separator,
+	 *         <code>null</code> if it is not in the given directory.
+	 */
+	public static String getRelativePath(File directory, File file) {
+		String directoryPath = directory.getAbsolutePath();
+		String filePath = file.getAbsolutePath();
+		if (filePath.length() > directoryPath.length() && filePath.startsWith(directoryPath)
+				&& filePath.charAt(directoryPath.length()) == File.separatorChar) {
+			return filePath.substring(directoryPath.length() + 1).replace(File.separatorChar, '/');
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the hexadecimal representation of the given digest.
+	 * 
+	 * @param digest
+	 *            The digest.
+	 * @return The hexadecimal representation of the given digest.
+	 */
+	public static String toHexString(byte[] digest) {
+		StringBuilder result = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16));
+			result.append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Closes the given stream, ignoring errors.
+	 * 
+	 * @param closeable
+	 *            The stream to close, can be <code>null</code>.
+	 */
+	public static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// Nothing more we can do
+			}
+		}
+	}
+}
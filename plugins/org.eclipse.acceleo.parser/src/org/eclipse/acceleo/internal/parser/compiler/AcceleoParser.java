@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -49,7 +49,6 @@ import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipse.ocl.ecore.OperationCallExp;
 
@@ -267,10 +266,14 @@ public class AcceleoParser {
 		Set<File> allAcceleoModules = this.acceleoProject.getAllAcceleoModules();
 		Set<File> built = new LinkedHashSet<File>();
 		if (!monitor.isCanceled()) {
-			for (File file : allAcceleoModules) {
-				if (!built.contains(file)) {
-					built.addAll(this.build(file, monitor));
+			try {
+				for (File file : allAcceleoModules) {
+					if (!built.contains(file)) {
+						built.addAll(this.build(file, monitor));
+					}
 				}
+			} finally {
+				this.acceleoProject.saveSignatureFingerprints();
 			}
 		}
 		return built;
@@ -290,6 +293,7 @@ public class AcceleoParser {
 		try {
 			built = this.build(file, monitor);
 		} finally {
+			this.acceleoProject.saveSignatureFingerprints();
 			Thread unloadThread = new Thread() {
 				/**
 				 * {@inheritDoc}
@@ -363,8 +367,15 @@ public class AcceleoParser {
 		if (outputFile != null && !outputFile.exists()) {
 			isImpactingBuild = true;
 		}
+		String previousFingerprint = null;
+		if (outputFile != null && outputFile.exists()) {
+			previousFingerprint = this.acceleoProject.getSignatureFingerprint(outputFile);
+		}
 		if (outputFile != null && !outputFile.exists() && file.lastModified() < outputFile.lastModified()) {
 			isImpactingBuild = false;
+		} else if (previousFingerprint != null) {
+			// Only a change of the public API of the module impacts the modules depending on it
+			isImpactingBuild = !previousFingerprint.equals(AcceleoParserSignatureUtils.fingerprint(module));
 		} else {
 			ResourceSet resourceSetTMP = new AcceleoResourceSetImpl();
 			AcceleoParserUtils.registerLibraries(resourceSetTMP);
@@ -394,9 +405,6 @@ public class AcceleoParser {
 		Set<URI> dependingModulesURI = new LinkedHashSet<URI>(moduleDependencies.size());
 		Set<File> dependingModulesFiles = new LinkedHashSet<File>(moduleDependencies.size());
 
-		// Compute the signature of the previous compilation
-		AcceleoParserSignatureUtils.signature(file, new ResourceSetImpl());
-
 		monitor.subTask(AcceleoParserMessages.getString(
 				"AcceleoParser.ResolvingDependencies", file.getAbsolutePath())); //$NON-NLS-1$
 
@@ -685,6 +693,8 @@ public class AcceleoParser {
 			}
 
 			oResource.save(options);
+			this.acceleoProject.setSignatureFingerprint(outputFile, AcceleoParserSignatureUtils
+					.fingerprint(acceleoSourceBuffer.getCST()));
 			monitor.worked(10);
 			filesBuilt.add(file);
 		} catch (IOException e) {
@@ -760,9 +770,7 @@ public class AcceleoParser {
 		Set<File> filesToBuild = Sets.newLinkedHashSet();
 		if (!monitor.isCanceled()) {
 			// Compute the files that are depending on "file".
-			List<Sequence> sequencesToSearch = AcceleoParserUtils.getImportSequencesToSearch(
-					this.acceleoProject, file);
-			filesToBuild = this.acceleoProject.getFilesDependingOn(sequencesToSearch);
+			filesToBuild = this.acceleoProject.getFilesDependingOn(file);
 
 			Set<File> fileBuiltByPropagation = new LinkedHashSet<File>();
 			for (File fileToBuild : filesToBuild) {
@@ -781,7 +789,7 @@ public class AcceleoParser {
 
 			// Same thing but for the dependent projects
 			for (AcceleoProject dependentAcceleoProject : this.acceleoProject.getDependentProjects()) {
-				filesToBuild.addAll(dependentAcceleoProject.getFilesDependingOn(sequencesToSearch));
+				filesToBuild.addAll(dependentAcceleoProject.getFilesDependingOn(file));
 				fileBuiltByPropagation = new LinkedHashSet<File>();
 				for (File fileToBuild : filesToBuild) {
 					if (!fileToBuild.equals(dependingBuiltFile)
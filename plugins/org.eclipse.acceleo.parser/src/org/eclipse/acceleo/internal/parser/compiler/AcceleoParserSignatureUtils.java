@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,9 @@ package org.eclipse.acceleo.internal.parser.compiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -124,6 +127,41 @@ public final class AcceleoParserSignatureUtils {
 		return createSignatureList(module);
 	}
 
+	/**
+	 * Returns the fingerprint of the public API of the given Acceleo module : its {@link #signature
+	 * signatures} along with the signatures of its macros. Two versions of a module with the same fingerprint
+	 * can be used in the same way by the modules importing or extending it, the modules depending on it do
+	 * not need to be built again when only the body of its templates, queries or macros changed.
+	 * 
+	 * @param module
+	 *            The module from which to compute the fingerprint.
+	 * @return The fingerprint of the public API of the given Acceleo module.
+	 * @since 3.5
+	 */
+	public static String fingerprint(org.eclipse.acceleo.parser.cst.Module module) {
+		StringBuilder signatures = new StringBuilder();
+		for (String signature : createSignatureList(module)) {
+			signatures.append(signature).append('\n');
+		}
+		if (module != null) {
+			for (org.eclipse.acceleo.parser.cst.ModuleElement element : module.getOwnedModuleElement()) {
+				if (element instanceof org.eclipse.acceleo.parser.cst.Macro) {
+					signatures.append(createMacroSignature((org.eclipse.acceleo.parser.cst.Macro)element));
+					signatures.append('\n');
+				}
+			}
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest( //$NON-NLS-1$
+					signatures.toString().getBytes("UTF-8")); //$NON-NLS-1$
+			return AcceleoIndexFile.toHexString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			return signatures.toString();
+		} catch (UnsupportedEncodingException e) {
+			return signatures.toString();
+		}
+	}
+
 	/**
 	 * This will create and return the list of signatures for the given Acceleo module. The list will contain
 	 * all signatures in a particular order :
@@ -243,6 +281,49 @@ public final class AcceleoParserSignatureUtils {
 		return signature.toString();
 	}
 
+	/**
+	 * This will create a String representing the signature of the given macro. The form of this String is
+	 * fixed and will be :
+	 * <code>&lt;visibility&gt; &lt;macroName&gt;(&lt;macroParam&gt;[,&lt;macroParam&gt;]*):&lt;type&gt;</code>
+	 * , "macroParam" being of the form <code>&lt;paramName&gt;:&lt;paramType&gt;</code>
+	 * 
+	 * @param macro
+	 *            The macro for which we need a signature.
+	 * @return The signature of <code>macro</code>.
+	 */
+	private static String createMacroSignature(org.eclipse.acceleo.parser.cst.Macro macro) {
+		StringBuilder signature = new StringBuilder();
+		signature.append("Macro "); //$NON-NLS-1$
+		if (macro.getVisibility() != null) {
+			signature.append(macro.getVisibility().getLiteral());
+		}
+		signature.append(' ');
+		if (macro.getName() != null) {
+			signature.append(macro.getName());
+		}
+		signature.append('(');
+		Iterator<org.eclipse.acceleo.parser.cst.Variable> paramIterator = macro.getParameter().iterator();
+		while (paramIterator.hasNext()) {
+			org.eclipse.acceleo.parser.cst.Variable param = paramIterator.next();
+			if (param.getName() != null) {
+				signature.append(param.getName());
+			}
+			signature.append(':');
+			if (param.getType() != null) {
+				signature.append(param.getType());
+			}
+			if (paramIterator.hasNext()) {
+				signature.append(',');
+			}
+		}
+		signature.append(')');
+		signature.append(':');
+		if (macro.getType() != null) {
+			signature.append(macro.getType());
+		}
+		return signature.toString();
+	}
+
 	/**
 	 * This will create a String representing the signature of the given query. The form of this String is
 	 * fixed and will be :
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.acceleo.internal.parser.compiler;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import java.io.File;
@@ -20,6 +21,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.acceleo.common.IAcceleoConstants;
@@ -66,6 +68,17 @@ public class AcceleoProject {
 	 */
 	private Set<File> acceleoModulesCache = new LinkedHashSet<File>();
 
+	/**
+	 * The persistent index of the dependencies between the modules of each classpath entry.
+	 */
+	private Map<AcceleoProjectClasspathEntry, AcceleoDependencyIndex> dependencyIndexes = Maps
+			.newHashMap();
+
+	/**
+	 * The persistent index of the fingerprints of the modules compiled in each classpath entry.
+	 */
+	private Map<AcceleoProjectClasspathEntry, AcceleoSignatureIndex> signatureIndexes = Maps.newHashMap();
+
 	/**
 	 * The constructor.
 	 * 
@@ -98,8 +111,33 @@ public class AcceleoProject {
 	 * @return The set of files depending on the given file.
 	 */
 	public Set<File> getFilesDependingOn(File file) {
-		List<Sequence> sequencesToSearch = AcceleoParserUtils.getImportSequencesToSearch(this, file);
-		return this.getFilesDependingOn(sequencesToSearch);
+		String simpleModuleName = file.getName();
+		if (simpleModuleName.endsWith(IAcceleoConstants.MTL_FILE_EXTENSION)) {
+			simpleModuleName = simpleModuleName.substring(0, simpleModuleName.length()
+					- (IAcceleoConstants.MTL_FILE_EXTENSION.length() + 1));
+		}
+
+		// Only the modules that changed since the last build are read again
+		Set<File> allAcceleoModules = this.getAllAcceleoModules();
+		Set<File> dependingFiles = new LinkedHashSet<File>();
+		for (AcceleoProjectClasspathEntry entry : this.entries) {
+			AcceleoDependencyIndex dependencyIndex = this.dependencyIndexes.get(entry);
+			if (dependencyIndex == null) {
+				dependencyIndex = new AcceleoDependencyIndex(entry);
+				this.dependencyIndexes.put(entry, dependencyIndex);
+			}
+			dependencyIndex.update(allAcceleoModules);
+			dependingFiles.addAll(dependencyIndex.getFilesDependingOn(simpleModuleName));
+		}
+
+		// Keep the order of the modules in the project
+		Set<File> filesToBuild = new LinkedHashSet<File>();
+		for (File acceleoModule : allAcceleoModules) {
+			if (dependingFiles.contains(acceleoModule)) {
+				filesToBuild.add(acceleoModule);
+			}
+		}
+		return filesToBuild;
 	}
 
 	/**
@@ -425,6 +463,74 @@ public class AcceleoProject {
 		return null;
 	}
 
+	/**
+	 * Returns the fingerprint recorded for the given compiled module by a previous build. See
+	 * {@link AcceleoParserSignatureUtils#fingerprint}.
+	 * 
+	 * @param outputFile
+	 *            The compiled module.
+	 * @return The fingerprint recorded for the given compiled module, <code>null</code> if there is none or
+	 *         if the compiled module changed since it was recorded.
+	 * @since 3.5
+	 */
+	public String getSignatureFingerprint(File outputFile) {
+		AcceleoSignatureIndex signatureIndex = this.getSignatureIndex(outputFile);
+		if (signatureIndex != null) {
+			return signatureIndex.getFingerprint(outputFile);
+		}
+		return null;
+	}
+
+	/**
+	 * Records the fingerprint of the given compiled module, it will be stored by
+	 * {@link #saveSignatureFingerprints()}.
+	 * 
+	 * @param outputFile
+	 *            The compiled module.
+	 * @param fingerprint
+	 *            The fingerprint of the module.
+	 * @since 3.5
+	 */
+	public void setSignatureFingerprint(File outputFile, String fingerprint) {
+		AcceleoSignatureIndex signatureIndex = this.getSignatureIndex(outputFile);
+		if (signatureIndex != null) {
+			signatureIndex.setFingerprint(outputFile, fingerprint);
+		}
+	}
+
+	/**
+	 * Stores the fingerprints recorded since the last time they were stored.
+	 * 
+	 * @since 3.5
+	 */
+	public void saveSignatureFingerprints() {
+		for (AcceleoSignatureIndex signatureIndex : this.signatureIndexes.values()) {
+			signatureIndex.save();
+		}
+	}
+
+	/**
+	 * Returns the index of the fingerprints of the classpath entry in which the given module is compiled.
+	 * 
+	 * @param outputFile
+	 *            The compiled module.
+	 * @return The index of the fingerprints of the classpath entry in which the given module is compiled,
+	 *         <code>null</code> if it is not compiled in this project.
+	 */
+	private AcceleoSignatureIndex getSignatureIndex(File outputFile) {
+		for (AcceleoProjectClasspathEntry entry : this.entries) {
+			if (AcceleoIndexFile.getRelativePath(entry.getOutputDirectory(), outputFile) != null) {
+				AcceleoSignatureIndex signatureIndex = this.signatureIndexes.get(entry);
+				if (signatureIndex == null) {
+					signatureIndex = new AcceleoSignatureIndex(entry);
+					this.signatureIndexes.put(entry, signatureIndex);
+				}
+				return signatureIndex;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the input file for the given output file.
 	 * 
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.internal.parser.compiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent index of the fingerprints of the public API of the modules compiled in the output directory of
+ * a classpath entry. See {@link AcceleoParserSignatureUtils#fingerprint}. It is used to know whether the
+ * modules depending on a module need to be built again without loading the previous compiled module.
+ * <p>
+ * The index is stored next to the output directory of the classpath entry. Each compiled module is recorded
+ * with the size and time stamp of its file, a fingerprint is only trusted if the compiled module has not been
+ * written by someone else since it was recorded.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class AcceleoSignatureIndex {
+
+	/**
+	 * The first line of the index files, changed whenever their format changes.
+	 */
+	private static final String HEADER = "acceleo.signatures 1"; //$NON-NLS-1$
+
+	/**
+	 * The number of columns of the index files.
+	 */
+	private static final int COLUMNS = 4;
+
+	/**
+	 * The directory containing the compiled modules.
+	 */
+	private final File outputDirectory;
+
+	/**
+	 * The file in which the index is stored.
+	 */
+	private final AcceleoIndexFile indexFile;
+
+	/**
+	 * The recorded compiled modules, mapped to their path relative to the output directory.
+	 */
+	private final Map<String, IndexEntry> entries = new LinkedHashMap<String, IndexEntry>();
+
+	/**
+	 * Indicates if the index changed since it has been loaded or stored.
+	 */
+	private boolean dirty;
+
+	/**
+	 * Creates the index of the compiled modules of the given classpath entry, loading the index stored by a
+	 * previous build if any.
+	 * 
+	 * @param entry
+	 *            The classpath entry.
+	 */
+	public AcceleoSignatureIndex(AcceleoProjectClasspathEntry entry) {
+		this.outputDirectory = entry.getOutputDirectory();
+		this.indexFile = new AcceleoIndexFile(outputDirectory, "signatures", HEADER); //$NON-NLS-1$
+		this.load();
+	}
+
+	/**
+	 * Returns the file in which the index is stored.
+	 * 
+	 * @return The file in which the index is stored.
+	 */
+	public File getIndexFile() {
+		return this.indexFile.getFile();
+	}
+
+	/**
+	 * Returns the fingerprint recorded for the given compiled module.
+	 * 
+	 * @param outputFile
+	 *            The compiled module.
+	 * @return The fingerprint recorded for the given compiled module, <code>null</code> if there is none or
+	 *         if the compiled module changed since it was recorded.
+	 */
+	public String getFingerprint(File outputFile) {
+		String path = AcceleoIndexFile.getRelativePath(this.outputDirectory, outputFile);
+		if (path != null) {
+			IndexEntry entry = this.entries.get(path);
+			if (entry != null && entry.length == outputFile.length()
+					&& entry.lastModified == outputFile.lastModified()) {
+				return entry.fingerprint;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records the fingerprint of the given compiled module. The module must have been saved, a module that
+	 * does not exist is removed from the index.
+	 * 
+	 * @param outputFile
+	 *            The compiled module.
+	 * @param fingerprint
+	 *            The fingerprint of the module.
+	 */
+	public void setFingerprint(File outputFile, String fingerprint) {
+		String path = AcceleoIndexFile.getRelativePath(this.outputDirectory, outputFile);
+		if (path == null) {
+			return;
+		}
+		if (outputFile.isFile()) {
+			IndexEntry entry = new IndexEntry(outputFile.length(), outputFile.lastModified(), fingerprint);
+			if (!entry.equals(this.entries.put(path, entry))) {
+				this.dirty = true;
+			}
+		} else if (this.entries.remove(path) != null) {
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Stores the index next to the output directory if it changed. The index is only a cache, the previous
+	 * compiled modules will be loaded by the next build if it cannot be stored.
+	 */
+	public void save() {
+		if (!this.dirty) {
+			return;
+		}
+		List<String[]> lines = new ArrayList<String[]>(this.entries.size());
+		for (Map.Entry<String, IndexEntry> entry : this.entries.entrySet()) {
+			IndexEntry indexEntry = entry.getValue();
+			lines.add(new String[] {entry.getKey(), Long.toString(indexEntry.length),
+					Long.toString(indexEntry.lastModified), indexEntry.fingerprint, });
+		}
+		if (this.indexFile.write(lines)) {
+			this.dirty = false;
+		}
+	}
+
+	/**
+	 * Loads the index stored by a previous build. The index is left empty if there is none, or if it cannot
+	 * be read.
+	 */
+	private void load() {
+		try {
+			for (String[] columns : this.indexFile.read()) {
+				if (columns.length != COLUMNS) {
+					this.entries.clear();
+					return;
+				}
+				this.entries.put(columns[0], new IndexEntry(Long.parseLong(columns[1]), Long
+						.parseLong(columns[2]), columns[3]));
+			}
+		} catch (NumberFormatException e) {
+			// The previous compiled modules will be loaded
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * The information recorded for a compiled module.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class IndexEntry {
+		/**
+		 * The size of the compiled module when it was recorded.
+		 */
+		final long length;
+
+		/**
+		 * The time stamp of the compiled module when it was recorded.
+		 */
+		final long lastModified;
+
+		/**
+		 * The fingerprint of the public API of the module.
+		 */
+		final String fingerprint;
+
+		/**
+		 * Creates an index entry.
+		 * 
+		 * @param length
+		 *            The size of the compiled module.
+		 * @param lastModified
+		 *            The time stamp of the compiled module.
+		 * @param fingerprint
+		 *            The fingerprint of the public API of the module.
+		 */
+		IndexEntry(long length, long lastModified, String fingerprint) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.fingerprint = fingerprint;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IndexEntry)) {
+				return false;
+			}
+			IndexEntry other = (IndexEntry)obj;
+			return this.length == other.length && this.lastModified == other.lastModified
+					&& this.fingerprint.equals(other.fingerprint);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return this.fingerprint.hashCode();
+		}
+	}
+}
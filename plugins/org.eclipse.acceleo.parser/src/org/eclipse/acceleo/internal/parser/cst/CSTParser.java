@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,7 @@ import org.eclipse.acceleo.common.internal.utils.compatibility.AcceleoOCLReflect
 import org.eclipse.acceleo.common.utils.ModelUtils;
 import org.eclipse.acceleo.internal.parser.AcceleoParserMessages;
 import org.eclipse.acceleo.internal.parser.IAcceleoParserProblemsConstants;
+import org.eclipse.acceleo.internal.parser.cst.utils.CharArraySequence;
 import org.eclipse.acceleo.internal.parser.cst.utils.ParserUtils;
 import org.eclipse.acceleo.internal.parser.cst.utils.Region;
 import org.eclipse.acceleo.internal.parser.cst.utils.Sequence;
@@ -265,21 +266,21 @@ public class CSTParser {
 		if (source.getBuffer() == null || source.getBuffer().length() == 0) {
 			logProblem(AcceleoParserMessages.getString("CSTParser.EmptyBuffer"), 0, -1); //$NON-NLS-1$
 		} else {
-			Region bH = pModule.searchBeginHeader(source.getBuffer(), 0, source.getBuffer().length());
+			Region bH = pModule.searchBeginHeader(source.getContent(), 0, source.getContent().length());
 			if (bH.b() == -1) {
 				logProblem(AcceleoParserMessages.getString("CSTParser.MissingModule"), 0, -1); //$NON-NLS-1$
 			} else {
-				Region eH = pModule.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, source.getBuffer()
+				Region eH = pModule.searchEndHeaderAtBeginHeader(source.getContent(), bH, source.getContent()
 						.length());
 				if (eH.b() == -1) {
 					logProblem(AcceleoParserMessages.getString("CSTParser.MissingModuleEnd"), bH.b(), bH.e()); //$NON-NLS-1$
 				} else {
 					Module eModule = CstFactory.eINSTANCE.createModule();
-					setPositions(eModule, bH.b(), source.getBuffer().length());
+					setPositions(eModule, bH.b(), source.getContent().length());
 					List<Comment> commentsBeforeModule = parseBeforeModule(eModule);
 					computeModuleDocumentation(commentsBeforeModule, eModule);
 					parseModuleHeader(bH.e(), eH.b(), eModule);
-					parseModuleBody(eH.e(), source.getBuffer().length(), eModule);
+					parseModuleBody(eH.e(), source.getContent().length(), eModule);
 
 					checkModuleImports(eModule);
 					checkModuleExtends(eModule);
@@ -376,16 +377,16 @@ public class CSTParser {
 		if (source.getBuffer() == null || source.getBuffer().length() == 0) {
 			logProblem(AcceleoParserMessages.getString("CSTParser.EmptyBuffer"), 0, -1); //$NON-NLS-1$
 		} else {
-			Region bH = pModule.searchBeginHeader(source.getBuffer(), 0, source.getBuffer().length());
+			Region bH = pModule.searchBeginHeader(source.getContent(), 0, source.getContent().length());
 			if (bH.b() == -1) {
 				logProblem(AcceleoParserMessages.getString("CSTParser.MissingModule"), 0, -1); //$NON-NLS-1$
 			} else {
-				Region eH = pModule.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, source.getBuffer()
+				Region eH = pModule.searchEndHeaderAtBeginHeader(source.getContent(), bH, source.getContent()
 						.length());
 				if (eH.b() == -1) {
 					logProblem(AcceleoParserMessages.getString("CSTParser.MissingModuleEnd"), bH.b(), bH.e()); //$NON-NLS-1$
 				} else {
-					setPositions(eModule, bH.b(), source.getBuffer().length());
+					setPositions(eModule, bH.b(), source.getContent().length());
 					List<Comment> commentsBeforeModule = parseBeforeModule(eModule);
 					computeModuleDocumentation(commentsBeforeModule, eModule);
 					return eModule.getDocumentation();
@@ -407,9 +408,9 @@ public class CSTParser {
 		int currentPosition = 0;
 		List<Comment> commentBeforeModuleHeader = new ArrayList<Comment>();
 		while (currentPosition < eModule.getStartPosition() && currentPosition != -1) {
-			Region docBH = pDocumentation.searchBeginHeader(source.getBuffer(), currentPosition, eModule
+			Region docBH = pDocumentation.searchBeginHeader(source.getContent(), currentPosition, eModule
 					.getStartPosition());
-			Region comBH = pComment.searchBeginHeader(source.getBuffer(), currentPosition, eModule
+			Region comBH = pComment.searchBeginHeader(source.getContent(), currentPosition, eModule
 					.getStartPosition());
 
 			if (docBH.b() == -1 && comBH.b() == -1) {
@@ -426,7 +427,7 @@ public class CSTParser {
 						currentPosition = eDocumentation.getEndPosition();
 					} else {
 						// never
-						currentPosition = source.getBuffer().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
+						currentPosition = source.getContent().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
 								docBH.e() + 1);
 					}
 				} else if (docBH.b() > comBH.b()) {
@@ -438,7 +439,7 @@ public class CSTParser {
 						currentPosition = eComment.getEndPosition();
 					} else {
 						// never
-						currentPosition = source.getBuffer().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
+						currentPosition = source.getContent().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
 								comBH.e() + 1);
 					}
 				}
@@ -451,7 +452,7 @@ public class CSTParser {
 					parseWhitespaceArea(currentPosition, eDocumentation.getStartPosition());
 					currentPosition = eDocumentation.getEndPosition();
 				} else {
-					currentPosition = source.getBuffer().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
+					currentPosition = source.getContent().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
 							docBH.e() + 1);
 				}
 			} else if (docBH.b() == -1 && comBH.b() != -1) {
@@ -462,7 +463,7 @@ public class CSTParser {
 					parseWhitespaceArea(currentPosition, eComment.getStartPosition());
 					currentPosition = eComment.getEndPosition();
 				} else {
-					currentPosition = source.getBuffer().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
+					currentPosition = source.getContent().indexOf(IAcceleoConstants.DEFAULT_BEGIN,
 							comBH.e() + 1);
 				}
 			}
@@ -480,11 +481,11 @@ public class CSTParser {
 	 *            The beginning position of the supposed whitespace area
 	 */
 	private void parseWhitespaceArea(int startPosition, int endPosition) {
-		String substring = source.getBuffer().substring(startPosition, endPosition);
+		CharSequence area = source.getContent().subSequence(startPosition, endPosition);
 
 		// This regex will detect everything that is not a whitespace
 		Pattern p = Pattern.compile("\\S"); //$NON-NLS-1$
-		Matcher matcher = p.matcher(substring);
+		Matcher matcher = p.matcher(area);
 		boolean found = matcher.find();
 
 		if (found) {
@@ -508,7 +509,7 @@ public class CSTParser {
 	 */
 	private Comment parseCommentBeforeModule(Region beginHeader, int moduleStartPosition) {
 		Comment comment;
-		Region eH = pComment.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader,
+		Region eH = pComment.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader,
 				moduleStartPosition);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER, IAcceleoConstants.COMMENT),
@@ -519,13 +520,13 @@ public class CSTParser {
 				Comment eComment = CstFactory.eINSTANCE.createComment();
 				setPositions(eComment, beginHeader.b(), eH.e());
 
-				eComment.setBody(source.getBuffer().substring(beginHeader.e(), eH.b()));
+				eComment.setBody(source.getContent().substring(beginHeader.e(), eH.b()));
 				DocumentationUtils.parseToDoFixMe(this.source, eComment.getStartPosition(), eComment
 						.getEndPosition(), CommentType.COMMENT_IN_HEADER);
 
 				comment = eComment;
 			} else {
-				Region eB = pComment.searchEndBodyAtEndHeader(source.getBuffer(), eH, moduleStartPosition);
+				Region eB = pComment.searchEndBodyAtEndHeader(source.getContent(), eH, moduleStartPosition);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_STMT, IAcceleoConstants.COMMENT),
 							beginHeader.b(), beginHeader.e());
@@ -534,7 +535,7 @@ public class CSTParser {
 					Comment eComment = CstFactory.eINSTANCE.createComment();
 					setPositions(eComment, beginHeader.b(), eB.e());
 
-					eComment.setBody(source.getBuffer().substring(eH.e(), eB.b()));
+					eComment.setBody(source.getContent().substring(eH.e(), eB.b()));
 					DocumentationUtils.parseToDoFixMe(this.source, eComment.getStartPosition(), eComment
 							.getEndPosition(), CommentType.COMMENT_WITH_END_HEADER);
 
@@ -556,7 +557,7 @@ public class CSTParser {
 	 */
 	private Documentation parseDocumentationBeforeModule(Region beginHeader, int moduleStartPosition) {
 		Documentation eDocumentation;
-		Region eH = pDocumentation.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader,
+		Region eH = pDocumentation.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader,
 				moduleStartPosition);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER,
@@ -567,7 +568,7 @@ public class CSTParser {
 				eDocumentation = CstFactory.eINSTANCE.createDocumentation();
 				setPositions(eDocumentation, beginHeader.b(), eH.e());
 
-				String body = parseDocumentationBody(source.getBuffer().substring(beginHeader.e(), eH.b()));
+				String body = parseDocumentationBody(source.getContent().substring(beginHeader.e(), eH.b()));
 				eDocumentation.setBody(body);
 
 				DocumentationUtils.parseToDoFixMe(this.source, eDocumentation.getStartPosition(),
@@ -629,10 +630,10 @@ public class CSTParser {
 	 *            is the current object of the CST model, it will be modified in this method
 	 */
 	public void parseModuleHeader(int posBegin, int posEnd, Module eModule) {
-		Region bH = pParenthesis.searchBeginHeader(source.getBuffer(), posBegin, posEnd);
+		Region bH = pParenthesis.searchBeginHeader(source.getContent(), posBegin, posEnd);
 		if (bH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString("CSTParser.MissingMetamodel"), posBegin, posEnd); //$NON-NLS-1$
-			String name = source.getBuffer().substring(posBegin, posEnd).trim();
+			String name = source.getContent().trimmedSubstring(posBegin, posEnd);
 			if (ACCELEO_KEYWORDS.contains(name) || AcceleoOCLReflection.getReservedKeywords().contains(name)) {
 				logWarning(AcceleoParserMessages.getString("CSTParser.InvalidModuleName"), posBegin, posEnd); //$NON-NLS-1$
 			}
@@ -643,17 +644,17 @@ public class CSTParser {
 						posEnd);
 			}
 		} else {
-			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
 			} else {
 				parseModuleHeaderTypedModels(bH.e(), eH.b(), eModule);
 				int eExtend = parseModuleHeaderExtends(eH.e(), posEnd, eModule);
-				if (source.getBuffer().substring(eExtend, posEnd).trim().length() > 0) {
+				if (!source.getContent().isBlank(eExtend, posEnd)) {
 					logProblem(IAcceleoParserProblemsConstants.SYNTAX_TEXT_NOT_VALID, eExtend, posEnd);
 				}
 			}
-			String name = source.getBuffer().substring(posBegin, bH.b()).trim();
+			String name = source.getContent().trimmedSubstring(posBegin, bH.b());
 			if (ACCELEO_KEYWORDS.contains(name) || AcceleoOCLReflection.getReservedKeywords().contains(name)) {
 				logWarning(
 						AcceleoParserMessages.getString("CSTParser.InvalidModuleName", name), posBegin, bH.b()); //$NON-NLS-1$
@@ -706,14 +707,13 @@ public class CSTParser {
 	 */
 	private void parseModuleHeaderTypedModels(int posBegin, int posEnd, Module eModule) {
 		int currentPos = posBegin;
-		String substring = source.getBuffer().substring(posBegin, posEnd);
-		if ("".equals(substring.trim())) { //$NON-NLS-1$
+		if (source.getContent().isBlank(posBegin, posEnd)) {
 			logProblem(AcceleoParserMessages.getString("CSTParser.MissingMetamodel"), eModule //$NON-NLS-1$
 					.getStartPosition(), eModule.getEndPosition());
 		}
 
 		while (currentPos != posEnd) {
-			Region comma = pComma.search(source.getBuffer(), currentPos, posEnd, null,
+			Region comma = pComma.search(source.getContent(), currentPos, posEnd, null,
 					new SequenceBlock[] {pLiteral });
 			TypedModel typedModel = CstFactory.eINSTANCE.createTypedModel();
 			int e;
@@ -723,25 +723,28 @@ public class CSTParser {
 				e = comma.b();
 			}
 			setPositions(typedModel, currentPos, e);
-			String ePackageKey = source.getBuffer().substring(currentPos, e).trim();
-			EPackage ePackage = ModelUtils.getEPackage(ePackageKey);
-			if (ePackage == null && ePackageKey.startsWith(IAcceleoConstants.LITERAL_BEGIN)
-					&& ePackageKey.endsWith(IAcceleoConstants.LITERAL_END)) {
-				ePackageKey = ePackageKey.substring(IAcceleoConstants.LITERAL_BEGIN.length(), ePackageKey
-						.length()
-						- IAcceleoConstants.LITERAL_END.length());
+			String ePackageKey = source.getContent().trimmedSubstring(currentPos, e);
+			EPackage ePackage;
+			// Modules can be parsed concurrently, the registries are not thread safe
+			synchronized(AcceleoPackageRegistry.INSTANCE) {
 				ePackage = ModelUtils.getEPackage(ePackageKey);
-				if (ePackage == null) {
-					try {
-						ePackageKey = AcceleoPackageRegistry.INSTANCE.registerEcorePackages(ePackageKey,
-								AcceleoDynamicMetamodelResourceSetImpl.DYNAMIC_METAMODEL_RESOURCE_SET);
-					} catch (WrappedException ex) {
-						// swallow exception
-					}
+				if (ePackage == null && ePackageKey.startsWith(IAcceleoConstants.LITERAL_BEGIN)
+						&& ePackageKey.endsWith(IAcceleoConstants.LITERAL_END)) {
+					ePackageKey = ePackageKey.substring(IAcceleoConstants.LITERAL_BEGIN.length(),
+							ePackageKey.length() - IAcceleoConstants.LITERAL_END.length());
 					ePackage = ModelUtils.getEPackage(ePackageKey);
 					if (ePackage == null) {
-						logProblem(
-								AcceleoParserMessages.getString("CSTParser.MetamodelNotFound"), currentPos, e); //$NON-NLS-1$
+						try {
+							ePackageKey = AcceleoPackageRegistry.INSTANCE.registerEcorePackages(ePackageKey,
+									AcceleoDynamicMetamodelResourceSetImpl.DYNAMIC_METAMODEL_RESOURCE_SET);
+						} catch (WrappedException ex) {
+							// swallow exception
+						}
+						ePackage = ModelUtils.getEPackage(ePackageKey);
+						if (ePackage == null) {
+							logProblem(AcceleoParserMessages.getString("CSTParser.MetamodelNotFound"), //$NON-NLS-1$
+									currentPos, e);
+						}
 					}
 				}
 			}
@@ -770,27 +773,26 @@ public class CSTParser {
 	 * @return the ending index of the clause, or the beginning index if it doesn't exist
 	 */
 	private int parseModuleHeaderExtends(int posBegin, int posEnd, Module eModule) {
-		int bExtend = ParserUtils.shiftKeyword(source.getBuffer(), posBegin, posEnd,
+		int bExtend = ParserUtils.shiftKeyword(source.getContent(), posBegin, posEnd,
 				IAcceleoConstants.EXTENDS, true);
 		boolean errorFound = false;
 		if (bExtend != posBegin) {
 			while (bExtend != posEnd && !errorFound) {
-				Region comma = pComma.search(source.getBuffer(), bExtend, posEnd, null,
+				Region comma = pComma.search(source.getContent(), bExtend, posEnd, null,
 						new SequenceBlock[] {pLiteral });
 				if (comma.b() == -1) {
 					ModuleExtendsValue eModuleExtendsValue = CstFactory.eINSTANCE.createModuleExtendsValue();
-					String trimmedText = source.getBuffer().substring(bExtend, posEnd).trim();
-					int indexOfSpace = trimmedText.indexOf(" "); //$NON-NLS-1$
+					String trimmedText = source.getContent().trimmedSubstring(bExtend, posEnd);
+					int indexOfSpace = trimmedText.indexOf(' ');
 					if (indexOfSpace == -1) {
 						eModuleExtendsValue.setName(trimmedText);
 						eModule.getExtends().add(eModuleExtendsValue);
 						setPositions(eModuleExtendsValue, bExtend, posEnd);
 						bExtend = posEnd;
 					} else {
-						int indexOfSpaceInTrimmedText = source.getBuffer().indexOf(trimmedText, bExtend)
+						int indexOfSpaceInTrimmedText = source.getContent().skipWhitespaces(bExtend, posEnd)
 								+ indexOfSpace;
-						eModuleExtendsValue.setName(source.getBuffer().substring(bExtend,
-								indexOfSpaceInTrimmedText).trim());
+						eModuleExtendsValue.setName(trimmedText.substring(0, indexOfSpace).trim());
 						eModule.getExtends().add(eModuleExtendsValue);
 						setPositions(eModuleExtendsValue, bExtend, indexOfSpaceInTrimmedText);
 						bExtend = indexOfSpaceInTrimmedText;
@@ -804,7 +806,7 @@ public class CSTParser {
 				} else {
 					ModuleExtendsValue eModuleExtendsValue = CstFactory.eINSTANCE.createModuleExtendsValue();
 					setPositions(eModuleExtendsValue, bExtend, comma.b());
-					eModuleExtendsValue.setName(source.getBuffer().substring(bExtend, comma.b()).trim());
+					eModuleExtendsValue.setName(source.getContent().trimmedSubstring(bExtend, comma.b()));
 					eModule.getExtends().add(eModuleExtendsValue);
 					bExtend = comma.e();
 					if (eModuleExtendsValue.getName() != null
@@ -852,10 +854,10 @@ public class CSTParser {
 				pDocumentation, };
 		Region[] positions = Region.createPositions(pModuleElements.length);
 		while (currentPosBegin > -1 && currentPosBegin < posEnd) {
-			int i = ParserUtils.getNextSequence(source.getBuffer(), currentPosBegin, posEnd, pModuleElements,
+			int i = ParserUtils.getNextSequence(source.getContent(), currentPosBegin, posEnd, pModuleElements,
 					positions);
 			if (i == -1) {
-				if (source.getBuffer().substring(currentPosBegin, posEnd).trim().length() > 0) {
+				if (!source.getContent().isBlank(currentPosBegin, posEnd)) {
 					logProblem(
 							AcceleoParserMessages.getString("CSTParser.InvalidModel"), currentPosBegin, posEnd); //$NON-NLS-1$
 				}
@@ -863,7 +865,7 @@ public class CSTParser {
 			} else {
 				SequenceBlock pModuleElement = pModuleElements[i];
 				Region bH = positions[i];
-				if (source.getBuffer().substring(currentPosBegin, bH.b()).trim().length() > 0) {
+				if (!source.getContent().isBlank(currentPosBegin, bH.b())) {
 					logProblem(
 							AcceleoParserMessages.getString("CSTParser.InvalidModuleElement"), currentPosBegin, bH.b()); //$NON-NLS-1$
 				}
@@ -899,7 +901,7 @@ public class CSTParser {
 	 */
 	private int parseDocumentationEnding(Region beginHeader, int posEnd, Module eModule) {
 		int posBegin;
-		Region eH = pDocumentation.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pDocumentation.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER,
 					IAcceleoConstants.DOCUMENTATION_BEGIN), beginHeader.b(), beginHeader.e());
@@ -908,7 +910,7 @@ public class CSTParser {
 			Documentation eDocumentation = CstFactory.eINSTANCE.createDocumentation();
 			setPositions(eDocumentation, beginHeader.b(), eH.e());
 
-			String body = parseDocumentationBody(source.getBuffer().substring(beginHeader.e(), eH.b()));
+			String body = parseDocumentationBody(source.getContent().substring(beginHeader.e(), eH.b()));
 			eDocumentation.setBody(body);
 
 			DocumentationUtils.parseToDoFixMe(this.source, eDocumentation.getStartPosition(), eDocumentation
@@ -933,7 +935,7 @@ public class CSTParser {
 	 */
 	private int parseCommentEnding(Region beginHeader, int posEnd, Module eModule) {
 		int posBegin;
-		Region eH = pComment.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pComment.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER, IAcceleoConstants.COMMENT),
 					beginHeader.b(), beginHeader.e());
@@ -943,7 +945,7 @@ public class CSTParser {
 				Comment eComment = CstFactory.eINSTANCE.createComment();
 				setPositions(eComment, beginHeader.b(), eH.e());
 
-				eComment.setBody(source.getBuffer().substring(beginHeader.e(), eH.b()));
+				eComment.setBody(source.getContent().substring(beginHeader.e(), eH.b()));
 
 				DocumentationUtils.parseToDoFixMe(this.source, eComment.getStartPosition(), eComment
 						.getEndPosition(), CommentType.COMMENT_IN_HEADER);
@@ -952,7 +954,7 @@ public class CSTParser {
 
 				posBegin = eH.e();
 			} else {
-				Region eB = pComment.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pComment.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_STMT, IAcceleoConstants.COMMENT),
 							beginHeader.b(), beginHeader.e());
@@ -961,7 +963,7 @@ public class CSTParser {
 					Comment eComment = CstFactory.eINSTANCE.createComment();
 					setPositions(eComment, beginHeader.b(), eB.e());
 
-					eComment.setBody(source.getBuffer().substring(eH.e(), eB.b()));
+					eComment.setBody(source.getContent().substring(eH.e(), eB.b()));
 
 					DocumentationUtils.parseToDoFixMe(this.source, eComment.getStartPosition(), eComment
 							.getEndPosition(), CommentType.COMMENT_WITH_END_HEADER);
@@ -988,7 +990,7 @@ public class CSTParser {
 	 */
 	private int parseImportEnding(Region beginHeader, int posEnd, Module eModule) {
 		int posBegin;
-		Region eH = pImport.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pImport.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER, IAcceleoConstants.IMPORT),
 					beginHeader.b(), beginHeader.e());
@@ -996,7 +998,7 @@ public class CSTParser {
 		} else {
 			ModuleImportsValue eModuleImportsValue = CstFactory.eINSTANCE.createModuleImportsValue();
 			setPositions(eModuleImportsValue, beginHeader.e(), eH.b());
-			eModuleImportsValue.setName(source.getBuffer().substring(beginHeader.e(), eH.b()).trim());
+			eModuleImportsValue.setName(source.getContent().trimmedSubstring(beginHeader.e(), eH.b()));
 
 			if (eModuleImportsValue.getName() != null
 					&& !eModuleImportsValue.getName().contains(IAcceleoConstants.NAMESPACE_SEPARATOR)) {
@@ -1023,7 +1025,7 @@ public class CSTParser {
 	 */
 	private int parseTemplateEnding(Region beginHeader, int posEnd, Module eModule) {
 		int posBegin;
-		Region eH = pTemplate.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pTemplate.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER, IAcceleoConstants.TEMPLATE),
 					beginHeader.b(), beginHeader.e());
@@ -1036,7 +1038,7 @@ public class CSTParser {
 				eModule.getOwnedModuleElement().add(eTemplate);
 				parseTemplateHeader(beginHeader.e(), eH.b(), eTemplate);
 			} else {
-				Region eB = pTemplate.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pTemplate.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_STMT, IAcceleoConstants.TEMPLATE),
 							beginHeader.b(), beginHeader.e());
@@ -1067,7 +1069,7 @@ public class CSTParser {
 	 */
 	private int parseMacroEnding(Region beginHeader, int posEnd, Module eModule) {
 		int posBegin;
-		Region eH = pMacro.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pMacro.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER, IAcceleoConstants.MACRO),
 					beginHeader.b(), beginHeader.e());
@@ -1080,7 +1082,7 @@ public class CSTParser {
 				eModule.getOwnedModuleElement().add(eMacro);
 				parseMacroHeader(beginHeader.e(), eH.b(), eMacro);
 			} else {
-				Region eB = pMacro.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pMacro.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_STMT, IAcceleoConstants.MACRO),
 							beginHeader.b(), beginHeader.e());
@@ -1111,7 +1113,7 @@ public class CSTParser {
 	 */
 	private int parseQueryEnding(Region beginHeader, int posEnd, Module eModule) {
 		int posBegin;
-		Region eH = pQuery.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pQuery.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_STMT_HEADER, IAcceleoConstants.QUERY),
 					beginHeader.b(), beginHeader.e());
@@ -1124,7 +1126,7 @@ public class CSTParser {
 				eModule.getOwnedModuleElement().add(eQuery);
 				parseQueryHeader(beginHeader.e(), eH.b(), eQuery);
 			} else {
-				Region eB = pQuery.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pQuery.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(
 							AcceleoParserMessages.getString("CSTParser.InvalidQuery"), beginHeader.b(), beginHeader.e()); //$NON-NLS-1$
@@ -1156,10 +1158,10 @@ public class CSTParser {
 	 */
 	public void parseTemplateHeader(int posBegin, int posEnd, Template eTemplate) {
 		int posShift = shiftVisibility(posBegin, posEnd, eTemplate);
-		Region bH = pParenthesis.searchBeginHeader(source.getBuffer(), posShift, posEnd);
+		Region bH = pParenthesis.searchBeginHeader(source.getContent(), posShift, posEnd);
 		if (bH.b() == -1) {
 			logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, posShift, posEnd);
-			String name = source.getBuffer().substring(posShift, posEnd).trim();
+			String name = source.getContent().trimmedSubstring(posShift, posEnd);
 			if (!ParserUtils.isIdentifier(name)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posShift, posEnd);
 			}
@@ -1169,7 +1171,7 @@ public class CSTParser {
 						AcceleoParserMessages.getString("CSTParser.InvalidTemplateName", name), posShift, posEnd); //$NON-NLS-1$
 			}
 		} else {
-			String name = source.getBuffer().substring(posShift, bH.b()).trim();
+			String name = source.getContent().trimmedSubstring(posShift, bH.b());
 			if (!ParserUtils.isIdentifier(name)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posShift, bH.b());
 			}
@@ -1178,7 +1180,7 @@ public class CSTParser {
 						AcceleoParserMessages.getString("CSTParser.InvalidTemplateName", name), posShift, bH.b()); //$NON-NLS-1$
 			}
 			eTemplate.setName(name);
-			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				// never
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
@@ -1197,7 +1199,7 @@ public class CSTParser {
 				currentPosBegin = parseTemplateHeaderGuard(currentPosBegin, currentPosEnd, posEnd, eTemplate);
 				currentPosBegin = parseTemplateHeaderPost(currentPosBegin, currentPosEnd, posEnd, eTemplate);
 				currentPosBegin = shiftInitSectionBody(currentPosBegin, currentPosEnd, eTemplate);
-				if (source.getBuffer().substring(currentPosBegin, posEnd).trim().length() > 0) {
+				if (!source.getContent().isBlank(currentPosBegin, posEnd)) {
 					logProblem(IAcceleoParserProblemsConstants.SYNTAX_TEXT_NOT_VALID, currentPosBegin, posEnd);
 				}
 				if (eTemplate.getParameter().isEmpty()) {
@@ -1219,17 +1221,17 @@ public class CSTParser {
 	 */
 	private int parseTemplateHeaderIndexOfGuardOrPostOrBrackets(int posBegin, int posEnd) {
 		int currentPosEnd = posEnd;
-		Region guard = pGuard.search(source.getBuffer(), posBegin, currentPosEnd, null,
+		Region guard = pGuard.search(source.getContent(), posBegin, currentPosEnd, null,
 				new SequenceBlock[] {pLiteral });
 		if (guard.b() > -1) {
 			currentPosEnd = guard.b();
 		} else {
-			Region post = pPost.search(source.getBuffer(), posBegin, currentPosEnd, null,
+			Region post = pPost.search(source.getContent(), posBegin, currentPosEnd, null,
 					new SequenceBlock[] {pLiteral });
 			if (post.b() > -1) {
 				currentPosEnd = post.b();
 			} else {
-				Region bracket = pBrackets.search(source.getBuffer(), posBegin, currentPosEnd, null,
+				Region bracket = pBrackets.search(source.getContent(), posBegin, currentPosEnd, null,
 						new SequenceBlock[] {pLiteral });
 				if (bracket.b() > -1) {
 					currentPosEnd = bracket.b();
@@ -1252,27 +1254,27 @@ public class CSTParser {
 	 */
 	private int parseTemplateHeaderOverrides(int posBegin, int posEnd, Template eTemplate) {
 		int currentPosBegin = posBegin;
-		int bOverride = ParserUtils.shiftKeyword(source.getBuffer(), currentPosBegin, posEnd,
+		int bOverride = ParserUtils.shiftKeyword(source.getContent(), currentPosBegin, posEnd,
 				IAcceleoConstants.OVERRIDES, true);
 		if (bOverride != currentPosBegin) {
 			currentPosBegin = bOverride;
 			while (currentPosBegin != posEnd) {
-				Region comma = pComma.search(source.getBuffer(), currentPosBegin, posEnd, null,
+				Region comma = pComma.search(source.getContent(), currentPosBegin, posEnd, null,
 						new SequenceBlock[] {pLiteral });
 				if (comma.b() == -1) {
 					TemplateOverridesValue eTemplateOverridesValue = CstFactory.eINSTANCE
 							.createTemplateOverridesValue();
 					setPositions(eTemplateOverridesValue, currentPosBegin, posEnd);
-					eTemplateOverridesValue.setName(source.getBuffer().substring(currentPosBegin, posEnd)
-							.trim());
+					eTemplateOverridesValue.setName(source.getContent().trimmedSubstring(currentPosBegin,
+							posEnd));
 					eTemplate.getOverrides().add(eTemplateOverridesValue);
 					currentPosBegin = posEnd;
 				} else {
 					TemplateOverridesValue eTemplateOverridesValue = CstFactory.eINSTANCE
 							.createTemplateOverridesValue();
 					setPositions(eTemplateOverridesValue, currentPosBegin, comma.b());
-					eTemplateOverridesValue.setName(source.getBuffer().substring(currentPosBegin, comma.b())
-							.trim());
+					eTemplateOverridesValue.setName(source.getContent().trimmedSubstring(currentPosBegin,
+							comma.b()));
 					eTemplate.getOverrides().add(eTemplateOverridesValue);
 					currentPosBegin = comma.e();
 				}
@@ -1296,18 +1298,19 @@ public class CSTParser {
 	 */
 	private int parseTemplateHeaderGuard(int posBegin, int posEnd, int headerPosEnd, Template eTemplate) {
 		int currentPos = posBegin;
-		int bGuard = ParserUtils.shiftKeyword(source.getBuffer(), currentPos, posEnd,
+		int bGuard = ParserUtils.shiftKeyword(source.getContent(), currentPos, posEnd,
 				IAcceleoConstants.GUARD, false);
 		if (bGuard != currentPos) {
 			currentPos = bGuard;
-			if (ParserUtils.shiftKeyword(source.getBuffer(), currentPos, posEnd,
+			if (ParserUtils.shiftKeyword(source.getContent(), currentPos, posEnd,
 					IAcceleoConstants.PARENTHESIS_BEGIN, false) == currentPos) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, currentPos,
 						posEnd);
 				currentPos = headerPosEnd;
 			} else {
-				Region bHParenthesis = pParenthesis.searchBeginHeader(source.getBuffer(), currentPos, posEnd);
-				Region eHParenthesis = pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(),
+				Region bHParenthesis = pParenthesis.searchBeginHeader(source.getContent(), currentPos,
+						posEnd);
+				Region eHParenthesis = pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(),
 						bHParenthesis, posEnd);
 				if (eHParenthesis.b() == -1) {
 					// never
@@ -1341,18 +1344,19 @@ public class CSTParser {
 	 */
 	private int parseTemplateHeaderPost(int posBegin, int posEnd, int headerPosEnd, Template eTemplate) {
 		int currentPos = posBegin;
-		int bPost = ParserUtils.shiftKeyword(source.getBuffer(), currentPos, posEnd, IAcceleoConstants.POST,
+		int bPost = ParserUtils.shiftKeyword(source.getContent(), currentPos, posEnd, IAcceleoConstants.POST,
 				false);
 		if (bPost != currentPos) {
 			currentPos = bPost;
-			if (ParserUtils.shiftKeyword(source.getBuffer(), currentPos, posEnd,
+			if (ParserUtils.shiftKeyword(source.getContent(), currentPos, posEnd,
 					IAcceleoConstants.PARENTHESIS_BEGIN, false) == currentPos) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, currentPos,
 						posEnd);
 				currentPos = headerPosEnd;
 			} else {
-				Region bHParenthesis = pParenthesis.searchBeginHeader(source.getBuffer(), currentPos, posEnd);
-				Region eHParenthesis = pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(),
+				Region bHParenthesis = pParenthesis.searchBeginHeader(source.getContent(), currentPos,
+						posEnd);
+				Region eHParenthesis = pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(),
 						bHParenthesis, posEnd);
 				if (eHParenthesis.b() == -1) {
 					// never
@@ -1383,18 +1387,18 @@ public class CSTParser {
 	 * @return the ending index of the keyword, or the beginning index if it doesn't exist
 	 */
 	private int shiftVisibility(int posBegin, int posEnd, ModuleElement eModuleElement) {
-		int posShift = ParserUtils.shiftKeyword(source.getBuffer(), posBegin, posEnd,
+		int posShift = ParserUtils.shiftKeyword(source.getContent(), posBegin, posEnd,
 				IAcceleoConstants.VISIBILITY_KIND_PRIVATE, true);
 		int b = posBegin;
 		if (b != posShift) {
 			eModuleElement.setVisibility(VisibilityKind.PRIVATE);
 		} else {
-			posShift = ParserUtils.shiftKeyword(source.getBuffer(), posShift, posEnd,
+			posShift = ParserUtils.shiftKeyword(source.getContent(), posShift, posEnd,
 					IAcceleoConstants.VISIBILITY_KIND_PROTECTED, true);
 			if (b != posShift) {
 				eModuleElement.setVisibility(VisibilityKind.PROTECTED);
 			} else {
-				posShift = ParserUtils.shiftKeyword(source.getBuffer(), posShift, posEnd,
+				posShift = ParserUtils.shiftKeyword(source.getContent(), posShift, posEnd,
 						IAcceleoConstants.VISIBILITY_KIND_PUBLIC, true);
 				if (b != posShift) {
 					eModuleElement.setVisibility(VisibilityKind.PUBLIC);
@@ -1419,11 +1423,11 @@ public class CSTParser {
 	 * @return the ending index of the init section, or the beginning index if it doesn't exist
 	 */
 	protected int shiftInitSectionBody(int posBegin, int posEnd, Block eBlock) {
-		if (ParserUtils.shiftKeyword(source.getBuffer(), posBegin, posEnd, IAcceleoConstants.BRACKETS_BEGIN,
+		if (ParserUtils.shiftKeyword(source.getContent(), posBegin, posEnd, IAcceleoConstants.BRACKETS_BEGIN,
 				false) != posBegin) {
-			Region bHBrackets = pBrackets.searchBeginHeader(source.getBuffer(), posBegin, posEnd);
+			Region bHBrackets = pBrackets.searchBeginHeader(source.getContent(), posBegin, posEnd);
 			Region eHBrackets = pBrackets
-					.searchEndHeaderAtBeginHeader(source.getBuffer(), bHBrackets, posEnd);
+					.searchEndHeaderAtBeginHeader(source.getContent(), bHBrackets, posEnd);
 			int posResult;
 			if (eHBrackets.b() == -1) {
 				logProblem(
@@ -1459,11 +1463,11 @@ public class CSTParser {
 	 * @return true if one (or more) semicolon is found
 	 */
 	private boolean shiftInitSectionBodyCreatesVariables(int posBegin, int posEnd, InitSection eInitSection) {
-		List<Region> positions = pSemicolon.split(source.getBuffer(), posBegin, posEnd, true, null, null);
+		List<Region> positions = pSemicolon.split(source.getContent(), posBegin, posEnd, true, null, null);
 		boolean semicolonFound = false;
 		for (int i = 0; i < positions.size(); i++) {
 			Region variablePos = positions.get(i);
-			String text = source.getBuffer().substring(variablePos.b(), variablePos.e()).trim();
+			String text = source.getContent().trimmedSubstring(variablePos.b(), variablePos.e());
 			if (text.equals(IAcceleoConstants.SEMICOLON_SEPARATOR)) {
 				if (!semicolonFound) {
 					semicolonFound = true;
@@ -1489,7 +1493,7 @@ public class CSTParser {
 	 * @return the new variables
 	 */
 	protected Variable[] createVariablesCommaSeparator(int posBegin, int posEnd) {
-		List<Region> positions = pComma.split(source.getBuffer(), posBegin, posEnd, false, null, null);
+		List<Region> positions = pComma.split(source.getContent(), posBegin, posEnd, false, null, null);
 		Variable[] eVariables = new Variable[positions.size()];
 		List<String> variableNames = new ArrayList<String>();
 		for (int i = 0; i < eVariables.length; i++) {
@@ -1519,48 +1523,42 @@ public class CSTParser {
 	 * @return the new variable
 	 */
 	public Variable createVariable(int posBegin, int posEnd) {
-		String variableBuffer = source.getBuffer().substring(posBegin, posEnd);
+		CharArraySequence content = source.getContent();
 		Variable eVariable;
-		int bDot = variableBuffer.indexOf(IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR);
+		int bDot = content.indexOf(IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR, posBegin, posEnd);
 		if (bDot == -1) {
-			logProblem(
-					AcceleoParserMessages.getString("CSTParser.InvalidVariable", variableBuffer.trim()), posBegin, //$NON-NLS-1$
+			String text = content.trimmedSubstring(posBegin, posEnd);
+			logProblem(AcceleoParserMessages.getString("CSTParser.InvalidVariable", text), posBegin, //$NON-NLS-1$
 					posEnd);
 			eVariable = null;
 		} else {
-			String name = variableBuffer.substring(0, bDot);
-			String type = variableBuffer.substring(bDot
-					+ IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length());
+			String name = content.trimmedSubstring(posBegin, bDot);
+			int bType = bDot + IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length();
+			int eType = posEnd;
 			eVariable = CstFactory.eINSTANCE.createVariable();
 			setPositions(eVariable, posBegin, posEnd);
-			int bInit = variableBuffer.indexOf(IAcceleoConstants.VARIABLE_INIT_SEPARATOR, bDot
-					+ IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length());
+			int bInit = content.indexOf(IAcceleoConstants.VARIABLE_INIT_SEPARATOR, bType, posEnd);
 			if (bInit != -1) {
-				type = variableBuffer.substring(bDot
-						+ IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length(), bInit);
-				String initExpression = variableBuffer.substring(bInit
-						+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length());
+				eType = bInit;
+				int bExpression = bInit + IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length();
 				ModelExpression eInitExpression = CstFactory.eINSTANCE.createModelExpression();
-				setPositions(eInitExpression, posBegin + bInit
-						+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length(), posEnd);
+				setPositions(eInitExpression, bExpression, posEnd);
 				eVariable.setInitExpression(eInitExpression);
-				eInitExpression.setBody(initExpression);
-				pBlock.parseExpressionHeader(posBegin + bInit
-						+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length(), posEnd, eInitExpression);
+				eInitExpression.setBody(content.substring(bExpression, posEnd));
+				pBlock.parseExpressionHeader(bExpression, posEnd, eInitExpression);
 			}
 
-			eVariable.setName(name.trim());
-			if (!ParserUtils.isIdentifier(name.trim())) {
-				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name.trim(), posBegin,
-						posEnd);
+			eVariable.setName(name);
+			if (!ParserUtils.isIdentifier(name)) {
+				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posBegin, posEnd);
 			}
-			if (ACCELEO_KEYWORDS.contains(name.trim())
-					|| AcceleoOCLReflection.getReservedKeywords().contains(name.trim())) {
-				logWarning(AcceleoParserMessages.getString("CSTParser.InvalidVariableName", name), posBegin, //$NON-NLS-1$
-						posEnd);
+			if (ACCELEO_KEYWORDS.contains(name)
+					|| AcceleoOCLReflection.getReservedKeywords().contains(name)) {
+				logWarning(AcceleoParserMessages.getString("CSTParser.InvalidVariableName", //$NON-NLS-1$
+						content.substring(posBegin, bDot)), posBegin, posEnd);
 			}
 
-			eVariable.setType(type.trim());
+			eVariable.setType(content.trimmedSubstring(bType, eType));
 		}
 		return eVariable;
 	}
@@ -1611,10 +1609,10 @@ public class CSTParser {
 	 */
 	public void parseQueryHeader(int posBegin, int posEnd, Query eQuery) {
 		int posShift = shiftVisibility(posBegin, posEnd, eQuery);
-		Region bH = pParenthesis.searchBeginHeader(source.getBuffer(), posShift, posEnd);
+		Region bH = pParenthesis.searchBeginHeader(source.getContent(), posShift, posEnd);
 		if (bH.b() == -1) {
 			logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, posShift, posEnd);
-			String name = source.getBuffer().substring(posShift, posEnd).trim();
+			String name = source.getContent().trimmedSubstring(posShift, posEnd);
 			if (!ParserUtils.isIdentifier(name)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posShift, posEnd);
 			}
@@ -1624,7 +1622,7 @@ public class CSTParser {
 			}
 			eQuery.setName(name);
 		} else {
-			String name = source.getBuffer().substring(posShift, bH.b()).trim();
+			String name = source.getContent().trimmedSubstring(posShift, bH.b());
 			if (!ParserUtils.isIdentifier(name)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posShift, bH.b());
 			}
@@ -1633,7 +1631,7 @@ public class CSTParser {
 						.b());
 			}
 			eQuery.setName(name);
-			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				// never
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
@@ -1646,26 +1644,24 @@ public class CSTParser {
 					}
 				}
 				int currentPosBegin = eH.e();
-				int eDot = ParserUtils.shiftKeyword(source.getBuffer(), currentPosBegin, posEnd,
+				int eDot = ParserUtils.shiftKeyword(source.getContent(), currentPosBegin, posEnd,
 						IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR, false);
 				if (eDot == currentPosBegin) {
 					logProblem(AcceleoParserMessages.getString(MISSING_CHARACTER_KEY,
 							IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR), currentPosBegin, posEnd);
 				}
-				String bodyText = source.getBuffer().substring(eDot, posEnd);
-				int bInit = bodyText.indexOf(IAcceleoConstants.VARIABLE_INIT_SEPARATOR);
+				int bInit = source.getContent().indexOf(IAcceleoConstants.VARIABLE_INIT_SEPARATOR, eDot,
+						posEnd);
 				if (bInit != -1) {
-					String type = bodyText.substring(0, bInit).trim();
+					String type = source.getContent().trimmedSubstring(eDot, bInit);
 					eQuery.setType(type);
-					String initExpression = bodyText.substring(bInit
-							+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length());
+					int bExpression = bInit + IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length();
+					String initExpression = source.getContent().substring(bExpression, posEnd);
 					ModelExpression eExpression = CstFactory.eINSTANCE.createModelExpression();
-					setPositions(eExpression, eDot + bInit
-							+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length(), posEnd);
+					setPositions(eExpression, bExpression, posEnd);
 					eQuery.setExpression(eExpression);
 					eExpression.setBody(initExpression);
-					pBlock.parseExpressionHeader(eDot + bInit
-							+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length(), posEnd, eExpression);
+					pBlock.parseExpressionHeader(bExpression, posEnd, eExpression);
 				} else {
 					logProblem(AcceleoParserMessages.getString(MISSING_CHARACTER_KEY,
 							IAcceleoConstants.VARIABLE_INIT_SEPARATOR), currentPosBegin, posEnd);
@@ -1691,10 +1687,10 @@ public class CSTParser {
 	 */
 	public void parseMacroHeader(int posBegin, int posEnd, Macro eMacro) {
 		int posShift = shiftVisibility(posBegin, posEnd, eMacro);
-		Region bH = pParenthesis.searchBeginHeader(source.getBuffer(), posShift, posEnd);
+		Region bH = pParenthesis.searchBeginHeader(source.getContent(), posShift, posEnd);
 		if (bH.b() == -1) {
 			logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, posShift, posEnd);
-			String name = source.getBuffer().substring(posShift, posEnd).trim();
+			String name = source.getContent().trimmedSubstring(posShift, posEnd);
 			if (!ParserUtils.isIdentifier(name)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posShift, posEnd);
 			}
@@ -1704,7 +1700,7 @@ public class CSTParser {
 						posEnd);
 			}
 		} else {
-			String name = source.getBuffer().substring(posShift, bH.b()).trim();
+			String name = source.getContent().trimmedSubstring(posShift, bH.b());
 			if (!ParserUtils.isIdentifier(name)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posShift, bH.b());
 			}
@@ -1713,7 +1709,7 @@ public class CSTParser {
 				logWarning(AcceleoParserMessages.getString("CSTParser.InvalidMacroName", name), posShift, //$NON-NLS-1$
 						bH.b());
 			}
-			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region eH = pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				// never
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
@@ -1726,13 +1722,13 @@ public class CSTParser {
 					}
 				}
 				int currentPosBegin = eH.e();
-				int eDot = ParserUtils.shiftKeyword(source.getBuffer(), currentPosBegin, posEnd,
+				int eDot = ParserUtils.shiftKeyword(source.getContent(), currentPosBegin, posEnd,
 						IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR, false);
 				if (eDot == currentPosBegin) {
 					logProblem(AcceleoParserMessages.getString(MISSING_CHARACTER_KEY,
 							IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR), currentPosBegin, posEnd);
 				}
-				String type = source.getBuffer().substring(eDot, posEnd).trim();
+				String type = source.getContent().trimmedSubstring(eDot, posEnd);
 				eMacro.setType(type);
 			}
 		}
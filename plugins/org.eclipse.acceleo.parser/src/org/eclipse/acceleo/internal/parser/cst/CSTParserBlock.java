@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.common.internal.utils.compatibility.AcceleoOCLReflection;
 import org.eclipse.acceleo.internal.parser.AcceleoParserMessages;
 import org.eclipse.acceleo.internal.parser.IAcceleoParserProblemsConstants;
+import org.eclipse.acceleo.internal.parser.cst.utils.CharArraySequence;
 import org.eclipse.acceleo.internal.parser.cst.utils.ISequence;
 import org.eclipse.acceleo.internal.parser.cst.utils.ParserUtils;
 import org.eclipse.acceleo.internal.parser.cst.utils.Region;
@@ -183,7 +184,7 @@ public class CSTParserBlock {
 		int currentPosBegin = posBegin;
 		Region[] positions = Region.createPositions(pBlockElements.length);
 		while (currentPosBegin > -1 && currentPosBegin < posEnd) {
-			int i = ParserUtils.getNextSequence(source.getBuffer(), currentPosBegin, posEnd, pBlockElements,
+			int i = ParserUtils.getNextSequence(source.getContent(), currentPosBegin, posEnd, pBlockElements,
 					positions);
 			if (i == -1) {
 				parseText(currentPosBegin, posEnd, eBlock);
@@ -228,7 +229,7 @@ public class CSTParserBlock {
 	 */
 	private int parseCommentEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pAcceleo.pComment.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pAcceleo.pComment.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.COMMENT),
 					beginHeader.b(), beginHeader.e());
@@ -237,7 +238,7 @@ public class CSTParserBlock {
 			if (eH.getSequence() == pAcceleo.pComment.getEndHeaderBody()) {
 				Comment eComment = CstFactory.eINSTANCE.createComment();
 				setPositions(eComment, beginHeader.b(), eH.e());
-				eComment.setBody(source.getBuffer().substring(beginHeader.e(), eH.b()));
+				eComment.setBody(source.getContent().substring(beginHeader.e(), eH.b()));
 				eBlock.getBody().add(eComment);
 				posBegin = eH.e();
 
@@ -246,7 +247,7 @@ public class CSTParserBlock {
 				DocumentationUtils.checkKeyword(eComment.getBody(), IAcceleoConstants.TAG_FIXME, source,
 						beginHeader.e(), eH.b());
 			} else {
-				Region eB = pAcceleo.pComment.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pAcceleo.pComment.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK, IAcceleoConstants.COMMENT),
 							beginHeader.b(), beginHeader.e());
@@ -254,7 +255,7 @@ public class CSTParserBlock {
 				} else {
 					Comment eComment = CstFactory.eINSTANCE.createComment();
 					setPositions(eComment, beginHeader.b(), eB.e());
-					eComment.setBody(source.getBuffer().substring(eH.e(), eB.b()));
+					eComment.setBody(source.getContent().substring(eH.e(), eB.b()));
 					eBlock.getBody().add(eComment);
 					posBegin = eB.e();
 					DocumentationUtils.checkKeyword(eComment.getBody(), IAcceleoConstants.TAG_TODO, source,
@@ -280,7 +281,7 @@ public class CSTParserBlock {
 	 */
 	private int parseFileEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pFile.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pFile.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.FILE),
 					beginHeader.b(), beginHeader.e());
@@ -293,7 +294,7 @@ public class CSTParserBlock {
 				eBlock.getBody().add(eFile);
 				parseFileHeader(beginHeader.e(), eH.b(), eFile);
 			} else {
-				Region eB = pFile.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pFile.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK, IAcceleoConstants.FILE),
 							beginHeader.b(), beginHeader.e());
@@ -323,12 +324,12 @@ public class CSTParserBlock {
 	 *            is the current object of the CST model, it will be modified in this method
 	 */
 	public void parseFileHeader(int posBegin, int posEnd, FileBlock eFile) {
-		if (ParserUtils.shiftKeyword(source.getBuffer(), posBegin, posEnd,
+		if (ParserUtils.shiftKeyword(source.getContent(), posBegin, posEnd,
 				IAcceleoConstants.PARENTHESIS_BEGIN, false) == posBegin) {
 			logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, posBegin, posEnd);
 		} else {
-			Region bH = pAcceleo.pParenthesis.searchBeginHeader(source.getBuffer(), posBegin, posEnd);
-			Region eH = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region bH = pAcceleo.pParenthesis.searchBeginHeader(source.getContent(), posBegin, posEnd);
+			Region eH = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
 			} else {
@@ -352,7 +353,7 @@ public class CSTParserBlock {
 	private void parseFileHeaderParenthesis(Region bH, Region eH, FileBlock eFile) {
 		int b = bH.e();
 		int e;
-		Region comma = pAcceleo.pComma.search(source.getBuffer(), b, eH.b(), null, new SequenceBlock[] {
+		Region comma = pAcceleo.pComma.search(source.getContent(), b, eH.b(), null, new SequenceBlock[] {
 				pAcceleo.pParenthesis, pAcceleo.pComment, pAcceleo.pLiteral, });
 		if (comma.b() == -1) {
 			e = eH.b();
@@ -371,12 +372,13 @@ public class CSTParserBlock {
 
 		if (comma.b() != -1) {
 			boolean openModeFound = false;
-			b = ParserUtils.shiftKeyword(source.getBuffer(), comma.e(), eH.b(), "true", true); //$NON-NLS-1$
+			b = ParserUtils.shiftKeyword(source.getContent(), comma.e(), eH.b(), "true", true); //$NON-NLS-1$
 			if (b != comma.e()) {
 				eFile.setOpenMode(OpenModeKind.APPEND);
 				openModeFound = true;
 			} else {
-				b = ParserUtils.shiftKeyword(source.getBuffer(), comma.e(), eH.b(), "false", true); //$NON-NLS-1$
+				b = ParserUtils.shiftKeyword(source.getContent(), comma.e(), eH.b(),
+						"false", true); //$NON-NLS-1$
 				if (b != comma.e()) {
 					eFile.setOpenMode(OpenModeKind.OVER_WRITE);
 					openModeFound = true;
@@ -387,7 +389,7 @@ public class CSTParserBlock {
 						AcceleoParserMessages.getString("CSTParserBlock.MissingFileMode"), comma.b(), eH.b()); //$NON-NLS-1$
 			} else {
 				// For now, simply ignore the specification's "unique ID"
-				int eComma = ParserUtils.shiftKeyword(source.getBuffer(), b, eH.b(),
+				int eComma = ParserUtils.shiftKeyword(source.getContent(), b, eH.b(),
 						IAcceleoConstants.COMMA_SEPARATOR, false);
 				if (eComma != b) {
 					b = eComma;
@@ -395,7 +397,7 @@ public class CSTParserBlock {
 					setPositions(eFileCharset, b, eH.b());
 					eFile.setCharset(eFileCharset);
 					parseExpressionHeader(b, eH.b(), eFileCharset);
-				} else if (source.getBuffer().substring(b, eH.b()).trim().length() > 0) {
+				} else if (!source.getContent().isBlank(b, eH.b())) {
 					logProblem(AcceleoParserMessages.getString(
 							"Parser.MissingCharacter", IAcceleoConstants.COMMA_SEPARATOR), b, eH.b()); //$NON-NLS-1$
 				}
@@ -434,7 +436,7 @@ public class CSTParserBlock {
 	 */
 	private int parseForEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pFor.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pFor.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.FOR),
 					beginHeader.b(), beginHeader.e());
@@ -447,7 +449,7 @@ public class CSTParserBlock {
 				eBlock.getBody().add(eFor);
 				parseForHeader(beginHeader.e(), eH.b(), eFor);
 			} else {
-				Region eB = pFor.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pFor.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK, IAcceleoConstants.FOR),
 							beginHeader.b(), beginHeader.e());
@@ -477,19 +479,19 @@ public class CSTParserBlock {
 	 *            is the current object of the CST model, it will be modified in this method
 	 */
 	public void parseForHeader(int posBegin, int posEnd, ForBlock eFor) {
-		if (ParserUtils.shiftKeyword(source.getBuffer(), posBegin, posEnd,
+		if (ParserUtils.shiftKeyword(source.getContent(), posBegin, posEnd,
 				IAcceleoConstants.PARENTHESIS_BEGIN, false) == posBegin) {
 			logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, posBegin, posEnd);
 		} else {
-			Region bH = pAcceleo.pParenthesis.searchBeginHeader(source.getBuffer(), posBegin, posEnd);
-			Region eH = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region bH = pAcceleo.pParenthesis.searchBeginHeader(source.getContent(), posBegin, posEnd);
+			Region eH = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
 			} else {
 				// File URL
 				int b = bH.e();
 				int e = eH.b();
-				Region pipe = pAcceleo.pPipe.search(source.getBuffer(), b, eH.b());
+				Region pipe = pAcceleo.pPipe.search(source.getContent(), b, eH.b());
 				if (pipe.b() != -1) {
 					Variable eVariable = pAcceleo.createVariable(b, pipe.b());
 					eFor.setLoopVariable(eVariable);
@@ -509,7 +511,7 @@ public class CSTParserBlock {
 				currentPosBegin = shiftPrefixedOCLExpression(currentPosBegin, posEnd,
 						IAcceleoConstants.GUARD, false, eFor, CstPackage.eINSTANCE.getForBlock_Guard());
 				currentPosBegin = pAcceleo.shiftInitSectionBody(currentPosBegin, posEnd, eFor);
-				if (source.getBuffer().substring(currentPosBegin, posEnd).trim().length() > 0) {
+				if (!source.getContent().isBlank(currentPosBegin, posEnd)) {
 					logProblem(IAcceleoParserProblemsConstants.SYNTAX_TEXT_NOT_VALID, currentPosBegin, posEnd);
 				}
 			}
@@ -542,18 +544,18 @@ public class CSTParserBlock {
 	private int shiftPrefixedOCLExpression(int posBegin, int posEnd, String prefix, boolean wholeWord,
 			CSTNode eCSTNode, EStructuralFeature eStructuralFeature) {
 		int currentPos = posBegin;
-		int b = ParserUtils.shiftKeyword(source.getBuffer(), currentPos, posEnd, prefix, wholeWord);
+		int b = ParserUtils.shiftKeyword(source.getContent(), currentPos, posEnd, prefix, wholeWord);
 		if (b != currentPos) {
 			currentPos = b;
-			if (ParserUtils.shiftKeyword(source.getBuffer(), currentPos, posEnd,
+			if (ParserUtils.shiftKeyword(source.getContent(), currentPos, posEnd,
 					IAcceleoConstants.PARENTHESIS_BEGIN, false) == currentPos) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, currentPos,
 						posEnd);
 				currentPos = posEnd;
 			} else {
-				Region bHParenthesis = pAcceleo.pParenthesis.searchBeginHeader(source.getBuffer(),
+				Region bHParenthesis = pAcceleo.pParenthesis.searchBeginHeader(source.getContent(),
 						currentPos, posEnd);
-				Region eHParenthesis = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(),
+				Region eHParenthesis = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(),
 						bHParenthesis, posEnd);
 				if (eHParenthesis.b() == -1) {
 					logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED,
@@ -598,7 +600,7 @@ public class CSTParserBlock {
 	 */
 	private int parseIfEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pIf.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pIf.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.IF),
 					beginHeader.b(), beginHeader.e());
@@ -611,7 +613,7 @@ public class CSTParserBlock {
 				eBlock.getBody().add(eIf);
 				parseIfHeader(beginHeader.e(), eH.b(), eIf);
 			} else {
-				Region eB = pIf.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pIf.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK, IAcceleoConstants.IF),
 							beginHeader.b(), beginHeader.e());
@@ -662,7 +664,7 @@ public class CSTParserBlock {
 		SequenceBlock[] pInhibs = new SequenceBlock[] {pAcceleo.pComment, pIf };
 		Region[] pElementsPositions = Region.createPositions(pElements.length);
 		Region[] pInhibsPositions = Region.createPositions(pInhibs.length);
-		int i = ParserUtils.getNextSequence(source.getBuffer(), posBegin, posEnd, pElements,
+		int i = ParserUtils.getNextSequence(source.getContent(), posBegin, posEnd, pElements,
 				pElementsPositions, pInhibs, pInhibsPositions);
 		int eThen;
 		if (i == -1) {
@@ -680,7 +682,7 @@ public class CSTParserBlock {
 				parse(pElementsPositions[i].e(), posEnd, eElse);
 				i = -1;
 			} else if (pElement == pElseIf) {
-				Region eH = pElseIf.searchEndHeaderAtBeginHeader(source.getBuffer(), pElementsPositions[i],
+				Region eH = pElseIf.searchEndHeaderAtBeginHeader(source.getContent(), pElementsPositions[i],
 						posEnd);
 				if (eH.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER,
@@ -692,7 +694,7 @@ public class CSTParserBlock {
 					// setPositions in the next lines
 					eIf.getElseIf().add(eElseIfBlock);
 					parseIfHeader(pElementsPositions[i].e(), eH.b(), eElseIfBlock);
-					i = ParserUtils.getNextSequence(source.getBuffer(), eH.e(), posEnd, pElements,
+					i = ParserUtils.getNextSequence(source.getContent(), eH.e(), posEnd, pElements,
 							pElementsPositions, pInhibs, pInhibsPositions);
 					int eElseIf;
 					if (i == -1) {
@@ -722,7 +724,7 @@ public class CSTParserBlock {
 	 */
 	private int parseLetEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pLet.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pLet.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.LET),
 					beginHeader.b(), beginHeader.e());
@@ -735,7 +737,7 @@ public class CSTParserBlock {
 				eBlock.getBody().add(eLet);
 				parseLetHeader(beginHeader.e(), eH.b(), eLet);
 			} else {
-				Region eB = pLet.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pLet.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK, IAcceleoConstants.LET),
 							beginHeader.b(), beginHeader.e());
@@ -765,48 +767,42 @@ public class CSTParserBlock {
 	 *            is the current object of the CST model, it will be modified in this method
 	 */
 	public void parseLetHeader(int posBegin, int posEnd, LetBlock eLet) {
-		String variableBuffer = source.getBuffer().substring(posBegin, posEnd);
+		CharArraySequence content = source.getContent();
 		Variable eVariable;
-		int bDot = variableBuffer.indexOf(IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR);
+		int bDot = content.indexOf(IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR, posBegin, posEnd);
 		if (bDot == -1) {
-			logProblem(
-					AcceleoParserMessages.getString("CSTParser.InvalidVariable", variableBuffer.trim()), posBegin, //$NON-NLS-1$
+			String text = content.trimmedSubstring(posBegin, posEnd);
+			logProblem(AcceleoParserMessages.getString("CSTParser.InvalidVariable", text), posBegin, //$NON-NLS-1$
 					posEnd);
 			eVariable = null;
 		} else {
-			String name = variableBuffer.substring(0, bDot);
-			String type = variableBuffer.substring(bDot
-					+ IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length());
+			String name = content.trimmedSubstring(posBegin, bDot);
+			int bType = bDot + IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length();
 			eVariable = CstFactory.eINSTANCE.createVariable();
 			setPositions(eVariable, posBegin, posEnd);
-			int bInit = variableBuffer.indexOf(IAcceleoConstants.VARIABLE_INIT_SEPARATOR, bDot
-					+ IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length());
+			int bInit = content.indexOf(IAcceleoConstants.VARIABLE_INIT_SEPARATOR, bType, posEnd);
 			if (bInit != -1) {
-				type = variableBuffer.substring(bDot
-						+ IAcceleoConstants.VARIABLE_DECLARATION_SEPARATOR.length(), bInit);
-				String initExpression = variableBuffer.substring(bInit
-						+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length());
+				int bExpression = bInit + IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length();
 				ModelExpression eInitExpression = CstFactory.eINSTANCE.createModelExpression();
-				setPositions(eInitExpression, posBegin + bInit
-						+ IAcceleoConstants.VARIABLE_INIT_SEPARATOR.length(), posEnd);
+				setPositions(eInitExpression, bExpression, posEnd);
 				eVariable.setInitExpression(eInitExpression);
-				eInitExpression.setBody(initExpression);
-				eVariable.setName(name.trim());
-				if (!ParserUtils.isIdentifier(name.trim())) {
-					logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name.trim(), posBegin,
+				eInitExpression.setBody(content.substring(bExpression, posEnd));
+				eVariable.setName(name);
+				if (!ParserUtils.isIdentifier(name)) {
+					logProblem(IAcceleoParserProblemsConstants.SYNTAX_NAME_NOT_VALID + name, posBegin,
 							posEnd);
 				}
-				if (CSTParser.ACCELEO_KEYWORDS.contains(name.trim())
-						|| AcceleoOCLReflection.getReservedKeywords().contains(name.trim())) {
-					pAcceleo.logWarning(AcceleoParserMessages
-							.getString("CSTParser.InvalidVariableName", name), posBegin, //$NON-NLS-1$
-							posEnd);
+				if (CSTParser.ACCELEO_KEYWORDS.contains(name)
+						|| AcceleoOCLReflection.getReservedKeywords().contains(name)) {
+					pAcceleo.logWarning(AcceleoParserMessages.getString("CSTParser.InvalidVariableName", //$NON-NLS-1$
+							content.substring(posBegin, bDot)), posBegin, posEnd);
 				}
 
-				eVariable.setType(type.trim());
+				eVariable.setType(content.trimmedSubstring(bType, bInit));
 			} else {
-				logProblem(AcceleoParserMessages.getString("CSTParser.InvalidLetVariable", variableBuffer //$NON-NLS-1$
-						.trim()), posBegin, posEnd);
+				String text = content.trimmedSubstring(posBegin, posEnd);
+				logProblem(AcceleoParserMessages.getString("CSTParser.InvalidLetVariable", text), posBegin, //$NON-NLS-1$
+						posEnd);
 				eVariable = null;
 			}
 
@@ -831,7 +827,7 @@ public class CSTParserBlock {
 		SequenceBlock[] pInhibs = new SequenceBlock[] {pAcceleo.pComment, pLet, pIf };
 		Region[] pElementsPositions = Region.createPositions(pElements.length);
 		Region[] pInhibsPositions = Region.createPositions(pInhibs.length);
-		int i = ParserUtils.getNextSequence(source.getBuffer(), posBegin, posEnd, pElements,
+		int i = ParserUtils.getNextSequence(source.getContent(), posBegin, posEnd, pElements,
 				pElementsPositions, pInhibs, pInhibsPositions);
 		int eThen;
 		if (i == -1) {
@@ -849,7 +845,7 @@ public class CSTParserBlock {
 				parse(pElementsPositions[i].e(), posEnd, eElse);
 				i = -1;
 			} else if (pElement == pElseLet) {
-				Region eH = pElseLet.searchEndHeaderAtBeginHeader(source.getBuffer(), pElementsPositions[i],
+				Region eH = pElseLet.searchEndHeaderAtBeginHeader(source.getContent(), pElementsPositions[i],
 						posEnd);
 				if (eH.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER,
@@ -861,7 +857,7 @@ public class CSTParserBlock {
 					// setPositions in the next lines
 					eLet.getElseLet().add(eElseLetBlock);
 					parseLetHeader(pElementsPositions[i].e(), eH.b(), eElseLetBlock);
-					i = ParserUtils.getNextSequence(source.getBuffer(), eH.e(), posEnd, pElements,
+					i = ParserUtils.getNextSequence(source.getContent(), eH.e(), posEnd, pElements,
 							pElementsPositions, pInhibs, pInhibsPositions);
 					int eElseLet;
 					if (i == -1) {
@@ -891,7 +887,7 @@ public class CSTParserBlock {
 	 */
 	private int parseTraceEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pTrace.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pTrace.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.TRACE),
 					beginHeader.b(), beginHeader.e());
@@ -904,7 +900,7 @@ public class CSTParserBlock {
 				eBlock.getBody().add(eTrace);
 				parseTraceHeader(beginHeader.e(), eH.b(), eTrace);
 			} else {
-				Region eB = pTrace.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pTrace.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK, IAcceleoConstants.TRACE),
 							beginHeader.b(), beginHeader.e());
@@ -968,7 +964,7 @@ public class CSTParserBlock {
 	 */
 	private int parseProtectedAreaEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pProtectedArea.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pProtectedArea.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(AcceleoParserMessages
 					.getString(INVALID_BLOCK_HEADER, IAcceleoConstants.PROTECTED_AREA), beginHeader.b(),
@@ -982,7 +978,7 @@ public class CSTParserBlock {
 				eBlock.getBody().add(eProtectedArea);
 				parseProtectedAreaHeader(beginHeader.e(), eH.b(), eProtectedArea);
 			} else {
-				Region eB = pProtectedArea.searchEndBodyAtEndHeader(source.getBuffer(), eH, posEnd);
+				Region eB = pProtectedArea.searchEndBodyAtEndHeader(source.getContent(), eH, posEnd);
 				if (eB.b() == -1) {
 					logProblem(AcceleoParserMessages.getString(INVALID_BLOCK,
 							IAcceleoConstants.PROTECTED_AREA), beginHeader.b(), beginHeader.e());
@@ -1012,12 +1008,12 @@ public class CSTParserBlock {
 	 *            is the current object of the CST model, it will be modified in this method
 	 */
 	public void parseProtectedAreaHeader(int posBegin, int posEnd, ProtectedAreaBlock eProtectedArea) {
-		if (ParserUtils.shiftKeyword(source.getBuffer(), posBegin, posEnd,
+		if (ParserUtils.shiftKeyword(source.getContent(), posBegin, posEnd,
 				IAcceleoConstants.PARENTHESIS_BEGIN, false) == posBegin) {
 			logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_ARE_REQUIRED, posBegin, posEnd);
 		} else {
-			Region bH = pAcceleo.pParenthesis.searchBeginHeader(source.getBuffer(), posBegin, posEnd);
-			Region eH = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getBuffer(), bH, posEnd);
+			Region bH = pAcceleo.pParenthesis.searchBeginHeader(source.getContent(), posBegin, posEnd);
+			Region eH = pAcceleo.pParenthesis.searchEndHeaderAtBeginHeader(source.getContent(), bH, posEnd);
 			if (eH.b() == -1) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_PARENTHESIS_NOT_TERMINATED, bH.b(), bH.e());
 			} else {
@@ -1025,7 +1021,7 @@ public class CSTParserBlock {
 				setPositions(eModelExpression, bH.e(), eH.b());
 				eProtectedArea.setMarker(eModelExpression);
 				parseExpressionHeader(bH.e(), eH.b(), eModelExpression);
-				if (source.getBuffer().substring(eH.e(), posEnd).trim().length() > 0) {
+				if (!source.getContent().isBlank(eH.e(), posEnd)) {
 					logProblem(IAcceleoParserProblemsConstants.SYNTAX_TEXT_NOT_VALID, eH.e(), posEnd);
 				}
 			}
@@ -1060,7 +1056,7 @@ public class CSTParserBlock {
 	 */
 	private int parseExpressionEnding(Region beginHeader, int posEnd, Block eBlock) {
 		int posBegin;
-		Region eH = pExpression.searchEndHeaderAtBeginHeader(source.getBuffer(), beginHeader, posEnd);
+		Region eH = pExpression.searchEndHeaderAtBeginHeader(source.getContent(), beginHeader, posEnd);
 		if (eH.b() == -1) {
 			logProblem(
 					AcceleoParserMessages.getString("CSTParserBlock.InvalidInvocation"), beginHeader.b(), beginHeader.e()); //$NON-NLS-1$
@@ -1094,7 +1090,7 @@ public class CSTParserBlock {
 		Region[] pElementsPositions = Region.createPositions(pElements.length);
 		SequenceBlock[] pInhibs = new SequenceBlock[] {pAcceleo.pLiteral, pAcceleo.pParenthesis, };
 		Region[] pInhibsPositions = Region.createPositions(pInhibs.length);
-		int i = ParserUtils.getNextSequence(source.getBuffer(), posBegin, posEnd, pElements,
+		int i = ParserUtils.getNextSequence(source.getContent(), posBegin, posEnd, pElements,
 				pElementsPositions, pInhibs, pInhibsPositions);
 		int bBeforeEachAfter;
 		if (i != -1 && pElementsPositions[i].b() != -1) {
@@ -1102,7 +1098,7 @@ public class CSTParserBlock {
 		} else {
 			bBeforeEachAfter = posEnd;
 		}
-		eModelExpression.setBody(source.getBuffer().substring(posBegin, bBeforeEachAfter).trim());
+		eModelExpression.setBody(source.getContent().trimmedSubstring(posBegin, bBeforeEachAfter));
 		if (bBeforeEachAfter < posEnd) {
 			int currentPosBegin = bBeforeEachAfter;
 			currentPosBegin = shiftPrefixedOCLExpression(currentPosBegin, posEnd, IAcceleoConstants.BEFORE,
@@ -1112,7 +1108,7 @@ public class CSTParserBlock {
 							.getModelExpression_Each());
 			currentPosBegin = shiftPrefixedOCLExpression(currentPosBegin, posEnd, IAcceleoConstants.AFTER,
 					true, eModelExpression, CstPackage.eINSTANCE.getModelExpression_After());
-			if (source.getBuffer().substring(currentPosBegin, posEnd).trim().length() > 0) {
+			if (!source.getContent().isBlank(currentPosBegin, posEnd)) {
 				logProblem(IAcceleoParserProblemsConstants.SYNTAX_TEXT_NOT_VALID, currentPosBegin, posEnd);
 			}
 		}
@@ -1129,10 +1125,10 @@ public class CSTParserBlock {
 	 *            will be the parent of the new object to create
 	 */
 	private void parseText(int posBegin, int posEnd, Block eBlock) {
-		if (source.getBuffer().substring(posBegin, posEnd).length() > 0) {
+		if (posEnd > posBegin) {
 			TextExpression eText = CstFactory.eINSTANCE.createTextExpression();
 			setPositions(eText, posBegin, posEnd);
-			eText.setValue(source.getBuffer().substring(posBegin, posEnd));
+			eText.setValue(source.getContent().substring(posBegin, posEnd));
 			eBlock.getBody().add(eText);
 		}
 	}
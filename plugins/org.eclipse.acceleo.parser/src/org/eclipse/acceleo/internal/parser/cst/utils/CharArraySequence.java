@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.internal.parser.cst.utils;
+
+/**
+ * A read-only view of the text to parse, backed by an array of characters. Unlike {@link StringBuffer}, the
+ * accesses to the characters are not synchronized and the tokens are searched without creating any
+ * substring. The parser only creates strings for the values it stores in the CST model.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class CharArraySequence implements CharSequence {
+
+	/**
+	 * The characters of the text, shared with the sub sequences of this view.
+	 */
+	private final char[] chars;
+
+	/**
+	 * The index of the first character of this view in the array.
+	 */
+	private final int offset;
+
+	/**
+	 * The number of characters of this view.
+	 */
+	private final int count;
+
+	/**
+	 * Creates a view of the current content of the given buffer. The view will not reflect the later changes
+	 * of the buffer.
+	 * 
+	 * @param buffer
+	 *            is the buffer to copy
+	 */
+	public CharArraySequence(StringBuffer buffer) {
+		this.count = buffer.length();
+		this.chars = new char[count];
+		buffer.getChars(0, count, chars, 0);
+		this.offset = 0;
+	}
+
+	/**
+	 * Creates a view of the given characters.
+	 * 
+	 * @param chars
+	 *            is the array of characters
+	 * @param offset
+	 *            is the index of the first character of the view in the array
+	 * @param count
+	 *            is the number of characters of the view
+	 */
+	private CharArraySequence(char[] chars, int offset, int count) {
+		this.chars = chars;
+		this.offset = offset;
+		this.count = count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int index) {
+		if (index < 0 || index >= count) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		return chars[offset + index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSequence subSequence(int start, int end) {
+		checkRange(start, end);
+		return new CharArraySequence(chars, offset + start, end - start);
+	}
+
+	/**
+	 * Returns the characters between the given indexes.
+	 * 
+	 * @param start
+	 *            is the beginning index, inclusive
+	 * @param end
+	 *            is the ending index, exclusive
+	 * @return the characters between the given indexes
+	 */
+	public String substring(int start, int end) {
+		checkRange(start, end);
+		return new String(chars, offset + start, end - start);
+	}
+
+	/**
+	 * Returns the characters between the given indexes without the leading and trailing whitespaces. This is
+	 * the same as <code>substring(start, end).trim()</code> with a single copy of the characters.
+	 * 
+	 * @param start
+	 *            is the beginning index, inclusive
+	 * @param end
+	 *            is the ending index, exclusive
+	 * @return the trimmed characters between the given indexes
+	 */
+	public String trimmedSubstring(int start, int end) {
+		checkRange(start, end);
+		int b = skipWhitespaces(start, end);
+		int e = end;
+		while (e > b && chars[offset + e - 1] <= ' ') {
+			e--;
+		}
+		return new String(chars, offset + b, e - b);
+	}
+
+	/**
+	 * Indicates if there are only whitespaces between the given indexes. This is the same as
+	 * <code>substring(start, end).trim().length() == 0</code> without any copy.
+	 * 
+	 * @param start
+	 *            is the beginning index, inclusive
+	 * @param end
+	 *            is the ending index, exclusive
+	 * @return true if there are only whitespaces between the given indexes
+	 */
+	public boolean isBlank(int start, int end) {
+		checkRange(start, end);
+		return skipWhitespaces(start, end) == end;
+	}
+
+	/**
+	 * Returns the index of the first non whitespace character between the given indexes, as defined by
+	 * {@link String#trim()}.
+	 * 
+	 * @param start
+	 *            is the beginning index, inclusive
+	 * @param end
+	 *            is the ending index, exclusive
+	 * @return the index of the first non whitespace character, or the ending index if there is none
+	 */
+	public int skipWhitespaces(int start, int end) {
+		int b = start;
+		while (b < end && chars[offset + b] <= ' ') {
+			b++;
+		}
+		return b;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the given string, starting at the given index.
+	 * 
+	 * @param str
+	 *            is the string to search
+	 * @param fromIndex
+	 *            is the index to start the search from
+	 * @return the index of the first occurrence, or -1 if there is none
+	 */
+	public int indexOf(String str, int fromIndex) {
+		return indexOf(str, fromIndex, count);
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the given string lying entirely between the given indexes.
+	 * 
+	 * @param str
+	 *            is the string to search
+	 * @param fromIndex
+	 *            is the index to start the search from, inclusive
+	 * @param toIndex
+	 *            is the index to end the search at, exclusive
+	 * @return the index of the first occurrence, or -1 if there is none
+	 */
+	public int indexOf(String str, int fromIndex, int toIndex) {
+		int b = Math.max(fromIndex, 0);
+		int last = Math.min(toIndex, count) - str.length();
+		if (str.length() == 0) {
+			if (b <= last) {
+				return b;
+			}
+			return -1;
+		}
+		char first = str.charAt(0);
+		for (int i = b; i <= last; i++) {
+			if (chars[offset + i] == first && regionMatches(i, str)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Indicates if the given string is found at the given index. The string must fit in this view.
+	 * 
+	 * @param index
+	 *            is the index in this view
+	 * @param str
+	 *            is the string to compare
+	 * @return true if the characters at the given index are the ones of the string
+	 */
+	private boolean regionMatches(int index, String str) {
+		int i = offset + index;
+		for (int j = 0; j < str.length(); j++) {
+			if (chars[i++] != str.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks that the given indexes delimit a range of this view.
+	 * 
+	 * @param start
+	 *            is the beginning index, inclusive
+	 * @param end
+	 *            is the ending index, exclusive
+	 */
+	private void checkRange(int start, int end) {
+		if (start < 0) {
+			throw new StringIndexOutOfBoundsException(start);
+		}
+		if (end > count) {
+			throw new StringIndexOutOfBoundsException(end);
+		}
+		if (start > end) {
+			throw new StringIndexOutOfBoundsException(end - start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return new String(chars, offset, count);
+	}
+}
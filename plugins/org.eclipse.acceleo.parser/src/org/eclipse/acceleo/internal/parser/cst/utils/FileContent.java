@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -99,7 +99,7 @@ public final class FileContent {
 	 *            buffer in which we want to look for an encoding code
 	 * @return the found encoding code or null
 	 */
-	public static String getEncoding(StringBuffer buffer) {
+	public static String getEncoding(CharSequence buffer) {
 		String result = null;
 
 		Sequence bSequence = new Sequence(IAcceleoConstants.DEFAULT_BEGIN, IAcceleoConstants.COMMENT,
@@ -126,7 +126,7 @@ public final class FileContent {
 	 *            in the starting comment block or in the starting documentation block)
 	 * @return the found encoding code or null
 	 */
-	private static String getEncoding(StringBuffer buffer, Sequence bSequence) {
+	private static String getEncoding(CharSequence buffer, Sequence bSequence) {
 		Region b = bSequence.search(buffer);
 		if (b.e() != -1) {
 			int bEncoding = b.e();
@@ -142,7 +142,7 @@ public final class FileContent {
 								.charAt(eEncoding)))) {
 					eEncoding++;
 				}
-				return buffer.substring(bEncoding, eEncoding).trim();
+				return buffer.subSequence(bEncoding, eEncoding).toString().trim();
 			}
 		}
 		return null;
@@ -157,7 +157,7 @@ public final class FileContent {
 	 *            is the offset in the buffer
 	 * @return the column
 	 */
-	public static int columnNumber(final StringBuffer buffer, int index) {
+	public static int columnNumber(final CharSequence buffer, int index) {
 		if (buffer != null && index < buffer.length()) {
 			int column = 1;
 			for (int i = index - 1; i >= 0; i--) {
@@ -181,7 +181,7 @@ public final class FileContent {
 	 *            is the offset in the buffer
 	 * @return the line
 	 */
-	public static int lineNumber(final StringBuffer buffer, int index) {
+	public static int lineNumber(final CharSequence buffer, int index) {
 		if (buffer != null && index < buffer.length()) {
 			int line = 1;
 			for (int i = index - 1; i >= 0; i--) {
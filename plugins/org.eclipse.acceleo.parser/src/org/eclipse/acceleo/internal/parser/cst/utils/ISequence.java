@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,7 +29,7 @@ public interface ISequence {
 	 * @return the index of the first offset, Region.NOT_FOUND if the sequence doesn't exist between posBegin
 	 *         and posEnd
 	 */
-	Region search(final StringBuffer buffer, int posBegin, int posEnd);
+	Region search(final CharSequence buffer, int posBegin, int posEnd);
 
 	/**
 	 * To find the first offset of this sequence in the given buffer, ignoring other sequences...
@@ -47,6 +47,6 @@ public interface ISequence {
 	 * @return the index of the first offset, Region.NOT_FOUND if the sequence doesn't exist between posBegin
 	 *         and posEnd
 	 */
-	Region search(final StringBuffer buffer, int posBegin, int posEnd, Sequence spec, SequenceBlock[] inhibs);
+	Region search(final CharSequence buffer, int posBegin, int posEnd, Sequence spec, SequenceBlock[] inhibs);
 
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -72,7 +72,7 @@ public final class ParserUtils {
 	 *            are the previous values computed for the candidates, it is modified in this method
 	 * @return the index in the tables 'pElements' and in 'pElementsPositions' of the next element
 	 */
-	public static int getNextSequence(StringBuffer buffer, int posBegin, int posEnd, ISequence[] pElements,
+	public static int getNextSequence(CharSequence buffer, int posBegin, int posEnd, ISequence[] pElements,
 			Region[] pElementsPositions) {
 		assert pElements.length == pElementsPositions.length;
 		for (int i = 0; i < pElements.length; i++) {
@@ -114,7 +114,7 @@ public final class ParserUtils {
 	 *            are the previous values computed for the ignored blocks, it is modified in this method
 	 * @return the index in the tables 'pElements' and in 'pElementsPositions' of the next element
 	 */
-	public static int getNextSequence(StringBuffer buffer, int posBegin, int posEnd, ISequence[] pElements,
+	public static int getNextSequence(CharSequence buffer, int posBegin, int posEnd, ISequence[] pElements,
 			Region[] pElementsPositions, SequenceBlock[] pInhibs, Region[] pInhibsPositions) {
 		int currentPosBegin = posBegin;
 		while (currentPosBegin > -1 && currentPosBegin < posEnd) {
@@ -144,7 +144,7 @@ public final class ParserUtils {
 	 *            indicates if the search mode is 'whole word'
 	 * @return the ending index of the keyword, or the beginning index if it doesn't exist
 	 */
-	public static int shiftKeyword(StringBuffer buffer, int posBegin, int posEnd, String keyword,
+	public static int shiftKeyword(CharSequence buffer, int posBegin, int posEnd, String keyword,
 			boolean wholeWord) {
 		return shiftKeyword(buffer, posBegin, posEnd, keyword, false, wholeWord);
 	}
@@ -166,7 +166,7 @@ public final class ParserUtils {
 	 *            indicates if the search mode is 'whole word'
 	 * @return the ending index of the keyword, or the beginning index if it doesn't exist
 	 */
-	public static int shiftKeyword(StringBuffer buffer, int posBegin, int posEnd, String keyword,
+	public static int shiftKeyword(CharSequence buffer, int posBegin, int posEnd, String keyword,
 			boolean ignoreCase, boolean wholeWord) {
 		if (keyword == null || keyword.length() == 0) {
 			return posBegin;
@@ -202,7 +202,7 @@ public final class ParserUtils {
 	 *            indicates if the search mode is 'ignore case'
 	 * @return the ending index of the keyword, or the beginning index if it doesn't exist
 	 */
-	private static int strictlyReadKeyword(StringBuffer buffer, int posBegin, String keyword,
+	private static int strictlyReadKeyword(CharSequence buffer, int posBegin, String keyword,
 			boolean ignoreCase) {
 		int e = posBegin;
 		for (int i = 0; i < keyword.length(); i++) {
@@ -245,7 +245,7 @@ public final class ParserUtils {
 	 *            is the ending index
 	 * @return the ending index of the identifier, or 'posBegin' if the following text isn't an identifier
 	 */
-	public static int shiftIdentifier(StringBuffer buffer, int posBegin, int posEnd) {
+	public static int shiftIdentifier(CharSequence buffer, int posBegin, int posEnd) {
 		int b = posBegin;
 		while (b < posEnd && Character.isWhitespace(buffer.charAt(b))) {
 			b++;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -111,18 +111,41 @@ public class Sequence implements ISequence {
 	 *            is the ending index
 	 * @return the index of the string, or -1 if it doesn't exist
 	 */
-	private int indexOf(StringBuffer buffer, String tag, int posBegin, int posEnd) {
-		int index = buffer.substring(posBegin, posEnd).indexOf(tag);
-		if ((index + posBegin) > 1 && IAcceleoConstants.LITERAL_ESCAPE.equals(tag)
-				&& "\\".equals(buffer.substring(posBegin + index - 1, posBegin + index))) { //$NON-NLS-1$
+	private int indexOf(CharSequence buffer, String tag, int posBegin, int posEnd) {
+		int index = -1;
+		int last = Math.min(posEnd, buffer.length()) - tag.length();
+		for (int i = posBegin; index == -1 && i <= last; i++) {
+			if (regionMatches(buffer, tag, i)) {
+				index = i;
+			}
+		}
+		if (index > 1 && IAcceleoConstants.LITERAL_ESCAPE.equals(tag) && buffer.charAt(index - 1) == '\\') {
 			// Ensure that "\'" does not count
 			index = -1;
 		}
+		return index;
+	}
 
-		if (index >= 0) {
-			return index + posBegin;
+	/**
+	 * Indicates if the characters of the buffer at the given index are the ones of the tag. The tag must fit
+	 * in the buffer.
+	 * 
+	 * @param buffer
+	 *            is the buffer
+	 * @param tag
+	 *            is the string to compare
+	 * @param pos
+	 *            is the index in the buffer
+	 * @return true if the tag is found at the given index
+	 */
+	private static boolean regionMatches(CharSequence buffer, String tag, int pos) {
+		int len = tag.length();
+		for (int i = 0; i < len; i++) {
+			if (buffer.charAt(pos + i) != tag.charAt(i)) {
+				return false;
+			}
 		}
-		return index;
+		return true;
 	}
 
 	/**
@@ -136,7 +159,7 @@ public class Sequence implements ISequence {
 	 *            is the index
 	 * @return true if the tag matches at the given index
 	 */
-	private boolean matches(StringBuffer buffer, String tag, int pos) {
+	private boolean matches(CharSequence buffer, String tag, int pos) {
 		int len = tag.length();
 		int currentPos = pos;
 		int index = 0;
@@ -160,7 +183,7 @@ public class Sequence implements ISequence {
 		}
 
 		if (result && IAcceleoConstants.LITERAL_ESCAPE.equals(tag) && pos > 1
-				&& "\\".equals(buffer.substring(pos - 1, pos))) { //$NON-NLS-1$
+				&& buffer.charAt(pos - 1) == '\\') {
 			// We have found the string escape token but we have the escape token before.
 			result = false;
 		}
@@ -175,16 +198,16 @@ public class Sequence implements ISequence {
 	 *            is the buffer
 	 * @return the index of the first offset, Region.NOT_FOUND if the sequence doesn't exist
 	 */
-	public Region search(final StringBuffer buffer) {
+	public Region search(final CharSequence buffer) {
 		return search(buffer, 0, buffer.length());
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.StringBuffer, int, int)
+	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.CharSequence, int, int)
 	 */
-	public Region search(final StringBuffer buffer, int posBegin, int posEnd) {
+	public Region search(final CharSequence buffer, int posBegin, int posEnd) {
 		if (buffer != null && posBegin >= 0 && tokens != null && tokens.length > 0) {
 			int b = indexOf(buffer, tokens[0], posBegin, posEnd);
 			while (b > -1) {
@@ -209,7 +232,7 @@ public class Sequence implements ISequence {
 	 *            is the ending index
 	 * @return true if the tag matches at the given index
 	 */
-	private Integer matchesEnd(final StringBuffer buffer, int posBegin, int posEnd) {
+	private Integer matchesEnd(final CharSequence buffer, int posBegin, int posEnd) {
 		Integer e;
 		if (tokens.length == 1) {
 			e = Integer.valueOf(posBegin + tokens[0].length());
@@ -237,11 +260,11 @@ public class Sequence implements ISequence {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.StringBuffer, int, int,
+	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.CharSequence, int, int,
 	 *      org.eclipse.acceleo.parser.cst.utils.Sequence,
 	 *      org.eclipse.acceleo.parser.cst.utils.SequenceBlock[])
 	 */
-	public Region search(final StringBuffer buffer, int posBegin, int posEnd, Sequence spec,
+	public Region search(final CharSequence buffer, int posBegin, int posEnd, Sequence spec,
 			SequenceBlock[] inhibs) {
 		Region result;
 		if (spec == null && inhibs == null) {
@@ -301,7 +324,7 @@ public class Sequence implements ISequence {
 	 *            are some blocks to ignore
 	 * @return an index in the table 'positions' or -1 if there isn't any candidate
 	 */
-	private int getOrCreateIndexOfNextPosition(Region[] positions, final StringBuffer buffer, int pos,
+	private int getOrCreateIndexOfNextPosition(Region[] positions, final CharSequence buffer, int pos,
 			int posEnd, Sequence spec, SequenceBlock[] inhibs) {
 		if (positions[0].b() != -1 && spec != null && pos > positions[0].b()) {
 			positions[0] = spec.search(buffer, pos, posEnd); // spec
@@ -344,7 +367,7 @@ public class Sequence implements ISequence {
 	 *            are the ignored blocks
 	 * @return the positions of the different parts
 	 */
-	public List<Region> split(final StringBuffer buffer, int posBegin, int posEnd, boolean keepSeparator,
+	public List<Region> split(final CharSequence buffer, int posBegin, int posEnd, boolean keepSeparator,
 			Sequence spec, SequenceBlock[] inhibs) {
 		List<Region> result = new ArrayList<Region>();
 		if (buffer != null && buffer.length() > 0 && posEnd > 0 && posEnd > posBegin) {
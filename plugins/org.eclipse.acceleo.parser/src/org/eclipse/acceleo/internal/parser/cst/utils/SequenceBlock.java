@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -155,20 +155,21 @@ public class SequenceBlock implements ISequence {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.StringBuffer, int, int)
+	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.CharSequence, int, int)
 	 */
-	public Region search(final StringBuffer buffer, int posBegin, int posEnd) {
+	public Region search(final CharSequence buffer, int posBegin, int posEnd) {
 		return searchBeginHeader(buffer, posBegin, posEnd);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.StringBuffer, int, int,
+	 * @see org.eclipse.acceleo.parser.cst.utils.ISequence#search(java.lang.CharSequence, int, int,
 	 *      org.eclipse.acceleo.parser.cst.utils.Sequence,
 	 *      org.eclipse.acceleo.parser.cst.utils.SequenceBlock[])
 	 */
-	public Region search(StringBuffer buffer, int posBegin, int posEnd, Sequence spec, SequenceBlock[] inhibs) {
+	public Region search(CharSequence buffer, int posBegin, int posEnd, Sequence spec,
+			SequenceBlock[] inhibs) {
 		if (beginHeader == null) {
 			return Region.NOT_FOUND;
 		}
@@ -187,7 +188,7 @@ public class SequenceBlock implements ISequence {
 	 * @return the index of the first offset, Region.NOT_FOUND if the sequence doesn't exist between posBegin
 	 *         and posEnd
 	 */
-	public Region searchBeginHeader(final StringBuffer buffer, int posBegin, int posEnd) {
+	public Region searchBeginHeader(final CharSequence buffer, int posBegin, int posEnd) {
 		if (beginHeader == null) {
 			return Region.NOT_FOUND;
 		}
@@ -206,7 +207,7 @@ public class SequenceBlock implements ISequence {
 	 * @return the index of the end of the body, Region.NOT_FOUND if the sequence doesn't exist between
 	 *         posBegin and posEnd
 	 */
-	public Region searchEndBodyAtBeginHeader(final StringBuffer buffer, Region indexOfBeginHeaderFound,
+	public Region searchEndBodyAtBeginHeader(final CharSequence buffer, Region indexOfBeginHeaderFound,
 			int posEnd) {
 		Region result = Region.NOT_FOUND;
 		if (indexOfBeginHeaderFound.b() != -1) {
@@ -234,7 +235,7 @@ public class SequenceBlock implements ISequence {
 	 * @return the index of the end of the header, Region.NOT_FOUND if the sequence doesn't exist between
 	 *         posBegin and posEnd
 	 */
-	public Region searchEndHeaderAtBeginHeader(final StringBuffer buffer, Region indexOfBeginHeaderFound,
+	public Region searchEndHeaderAtBeginHeader(final CharSequence buffer, Region indexOfBeginHeaderFound,
 			int posEnd) {
 		Region result;
 		if (indexOfBeginHeaderFound.b() == -1) {
@@ -304,7 +305,7 @@ public class SequenceBlock implements ISequence {
 	 *            is the ending index
 	 * @return an index in the table 'positions' or -1 if there isn't any candidate
 	 */
-	private int getOrCreateIndexOfHeaderNextPosition(Region[] positions, final StringBuffer buffer, int pos,
+	private int getOrCreateIndexOfHeaderNextPosition(Region[] positions, final CharSequence buffer, int pos,
 			int posEnd) {
 		if (positions[0].b() != -1 && specHeader != null && pos > positions[0].b()) {
 			positions[0] = specHeader.search(buffer, pos, posEnd); // spec
@@ -347,7 +348,8 @@ public class SequenceBlock implements ISequence {
 	 * @return the index of the end of the body, Region.NOT_FOUND if the sequence doesn't exist between
 	 *         posBegin and posEnd
 	 */
-	public Region searchEndBodyAtEndHeader(final StringBuffer buffer, Region indexOfEndHeaderFound, int posEnd) {
+	public Region searchEndBodyAtEndHeader(final CharSequence buffer, Region indexOfEndHeaderFound,
+			int posEnd) {
 		Region result;
 		if (indexOfEndHeaderFound.b() == -1) {
 			result = Region.NOT_FOUND;
@@ -409,7 +411,7 @@ public class SequenceBlock implements ISequence {
 	 *            is the ending index
 	 * @return an index in the table 'positions' or -1 if there isn't any candidate
 	 */
-	private int getOrCreateIndexOfBodyNextPosition(Region[] positions, final StringBuffer buffer, int pos,
+	private int getOrCreateIndexOfBodyNextPosition(Region[] positions, final CharSequence buffer, int pos,
 			int posEnd) {
 		if (positions[0].b() != -1 && specBody != null && pos > positions[0].b()) {
 			positions[0] = specBody.search(buffer, pos, posEnd); // spec
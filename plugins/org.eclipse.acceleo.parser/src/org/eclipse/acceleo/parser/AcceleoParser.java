@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,10 +23,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.acceleo.common.IAcceleoConstants;
 import org.eclipse.acceleo.common.internal.utils.AcceleoPackageRegistry;
+import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
+import org.eclipse.acceleo.common.utils.AcceleoStandardLibrary;
 import org.eclipse.acceleo.common.utils.CompactHashSet;
 import org.eclipse.acceleo.common.utils.ModelUtils;
 import org.eclipse.acceleo.internal.parser.AcceleoParserMessages;
@@ -96,6 +103,13 @@ public class AcceleoParser {
 	 */
 	private boolean trimmedCompilation;
 
+	/**
+	 * Indicates if we will compile the independent modules concurrently.
+	 * 
+	 * @since 3.5
+	 */
+	private boolean parallelCompilation;
+
 	/**
 	 * The operations in the module.
 	 */
@@ -133,6 +147,29 @@ public class AcceleoParser {
 		this.trimmedCompilation = trimmedCompilation;
 	}
 
+	/**
+	 * The constructor.
+	 * <p>
+	 * A parallel compilation parses all files concurrently, then resolves and saves the modules in waves : a
+	 * module is never resolved nor saved at the same time as one of the modules it (transitively) imports or
+	 * extends. The compiled modules and the reported problems are the same as with a sequential compilation.
+	 * The metamodels used by the modules must not be modified while we compile.
+	 * </p>
+	 * 
+	 * @param asBinaryResource
+	 *            Indicates if we will compile the mtl file as a binary resource (default: false).
+	 * @param trimmedCompilation
+	 *            Indicates if we will trimmed the emtl produced (default: false).
+	 * @param parallelCompilation
+	 *            Indicates if we will compile the independent modules concurrently (default: false).
+	 * @since 3.5
+	 */
+	public AcceleoParser(boolean asBinaryResource, boolean trimmedCompilation, boolean parallelCompilation) {
+		this.asBinaryResource = asBinaryResource;
+		this.trimmedCompilation = trimmedCompilation;
+		this.parallelCompilation = parallelCompilation;
+	}
+
 	/**
 	 * This will create and return the list of signatures for the given Acceleo module. The list will contain
 	 * all signatures in a particular order :
@@ -505,13 +542,23 @@ public class AcceleoParser {
 		 */
 		boolean firstIteration = true;
 		boolean buildDependantFiles = true;
+		/*
+		 * With a parallel compilation, the CST of all files but the first are created concurrently once we
+		 * know that the files dependant on the first one need to be built.
+		 */
+		List<AcceleoSourceBuffer> parsedSources = null;
 		for (Iterator<AcceleoFile> itAcceleoFiles = acceleoFiles.iterator(); !monitor.isCanceled()
 				&& itAcceleoFiles.hasNext() && itOutputURIs.hasNext() && buildDependantFiles;) {
 			AcceleoFile acceleoFile = itAcceleoFiles.next();
 			monitor.subTask(AcceleoParserMessages.getString("AcceleoParser.ParseFileCST", //$NON-NLS-1$
 					new Object[] {acceleoFile.getMtlFile().getName() }));
 			URI oURI = itOutputURIs.next();
-			AcceleoSourceBuffer source = new AcceleoSourceBuffer(acceleoFile);
+			AcceleoSourceBuffer source;
+			if (parsedSources == null) {
+				source = new AcceleoSourceBuffer(acceleoFile);
+			} else {
+				source = parsedSources.get(sources.size() - 1);
+			}
 			sources.add(source);
 
 			final ResourceSet previousRS = new AcceleoResourceSetImpl();
@@ -558,7 +605,9 @@ public class AcceleoParser {
 				resourceImpl.setTrimPosition(trimmedCompilation);
 			}
 			newResources.add(oResource);
-			source.createCST();
+			if (source.getCST() == null) {
+				source.createCST();
+			}
 			for (ModuleImportsValue importValue : source.getCST().getImports()) {
 				String importedFileName = importValue.getName();
 				if (importedFileName != null) {
@@ -589,6 +638,10 @@ public class AcceleoParser {
 
 				buildDependantFiles = !previousSignatures.equals(newSignatures);
 				firstIteration = false;
+				if (buildDependantFiles && parallelCompilation) {
+					int count = Math.min(acceleoFiles.size(), outputURIs.size());
+					parsedSources = createCSTs(acceleoFiles.subList(1, count));
+				}
 			}
 		}
 		for (Iterator<URI> itDependenciesURIs = dependenciesURIs.iterator(); !monitor.isCanceled()
@@ -624,17 +677,35 @@ public class AcceleoParser {
 	 */
 	private void resolveAST(final ResourceSet oResourceSet, Map<URI, URI> mapURIs,
 			List<AcceleoSourceBuffer> sources, Monitor monitor) {
+		List<List<AcceleoSourceBuffer>> waves = null;
+		ExecutorService pool = null;
+		if (parallelCompilation && sources.size() > 1) {
+			waves = computeWaves(sources);
+			pool = Executors.newFixedThreadPool(Math.min(sources.size(), Runtime.getRuntime()
+					.availableProcessors()));
+		}
 		try {
-			for (Iterator<AcceleoSourceBuffer> itSources = sources.iterator(); !monitor.isCanceled()
-					&& itSources.hasNext();) {
-				AcceleoSourceBuffer source = itSources.next();
-				if (source.getFile() != null) {
-					monitor.subTask(AcceleoParserMessages.getString("AcceleoParser.ParseFileAST", //$NON-NLS-1$
-							new Object[] {source.getFile().getName() }));
+			if (waves == null) {
+				for (Iterator<AcceleoSourceBuffer> itSources = sources.iterator(); !monitor.isCanceled()
+						&& itSources.hasNext();) {
+					AcceleoSourceBuffer source = itSources.next();
+					if (source.getFile() != null) {
+						monitor.subTask(AcceleoParserMessages.getString(
+								"AcceleoParser.ParseFileAST", new Object[] {source.getFile().getName() })); //$NON-NLS-1$
+					}
+					source.resolveAST();
+					source.resolveASTDocumentation();
+					monitor.worked(1);
 				}
-				source.resolveAST();
-				source.resolveASTDocumentation();
-				monitor.worked(1);
+			} else {
+				/*
+				 * Demand loading modifies the resource set, the resolution of the proxies cannot be left to
+				 * the workers. The libraries are lazily loaded in static fields on first use.
+				 */
+				EcoreUtil.resolveAll(oResourceSet);
+				new AcceleoStandardLibrary();
+				new AcceleoNonStandardLibrary();
+				processInWaves(pool, waves, false, monitor);
 			}
 			if (mapURIs != null) {
 				for (Resource resource : oResourceSet.getResources()) {
@@ -648,41 +719,28 @@ public class AcceleoParser {
 				}
 			}
 			trimEnvironment(oResourceSet);
-			for (Iterator<AcceleoSourceBuffer> itSources = sources.iterator(); !monitor.isCanceled()
-					&& itSources.hasNext();) {
-				AcceleoSourceBuffer source = itSources.next();
-				if (source.getFile() != null) {
-					monitor.subTask(AcceleoParserMessages.getString(
-							"AcceleoParser.SaveAST", new Object[] {source //$NON-NLS-1$
-									.getFile().getName(), }));
-				}
-				Module eModule = source.getAST();
-				if (eModule != null) {
-					Resource newResource = eModule.eResource();
-					Map<String, String> options = new HashMap<String, String>();
-					if (!asBinaryResource) {
-						String encoding = source.getEncoding();
-						if (encoding == null) {
-							encoding = "UTF-8"; //$NON-NLS-1$
-						}
-						options.put(XMLResource.OPTION_ENCODING, encoding);
-					}
-					try {
-						newResource.save(options);
-					} catch (IOException e) {
-						source.logProblem(AcceleoParserMessages.getString(
-								"AcceleoParser.Error.FileSaving", newResource //$NON-NLS-1$
-										.getURI().lastSegment(), e.getMessage()), 0, -1);
+			if (waves == null) {
+				for (Iterator<AcceleoSourceBuffer> itSources = sources.iterator(); !monitor.isCanceled()
+						&& itSources.hasNext();) {
+					AcceleoSourceBuffer source = itSources.next();
+					if (source.getFile() != null) {
+						monitor.subTask(AcceleoParserMessages.getString(
+								"AcceleoParser.SaveAST", new Object[] {source //$NON-NLS-1$
+										.getFile().getName(), }));
 					}
-				} else {
-					source.logProblem(AcceleoParserMessages.getString(
-							"AcceleoParser.Error.InvalidAST", source.getFile() //$NON-NLS-1$
-									.getName()), 0, -1);
+					saveAST(source);
+					monitor.worked(1);
 				}
-				monitor.worked(1);
+			} else {
+				// The converter is lazily created by the resource set
+				oResourceSet.getURIConverter();
+				processInWaves(pool, waves, true, monitor);
 			}
 			this.manageParsingResult(sources);
 		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
 			Thread unloadThread = new Thread() {
 				/**
 				 * {@inheritDoc}
@@ -701,6 +759,282 @@ public class AcceleoParser {
 		}
 	}
 
+	/**
+	 * Saves the AST of the given source.
+	 * 
+	 * @param source
+	 *            The source which AST is to be saved.
+	 */
+	private void saveAST(AcceleoSourceBuffer source) {
+		Module eModule = source.getAST();
+		if (eModule != null) {
+			Resource newResource = eModule.eResource();
+			Map<String, String> options = new HashMap<String, String>();
+			if (!asBinaryResource) {
+				String encoding = source.getEncoding();
+				if (encoding == null) {
+					encoding = "UTF-8"; //$NON-NLS-1$
+				}
+				options.put(XMLResource.OPTION_ENCODING, encoding);
+			}
+			try {
+				newResource.save(options);
+			} catch (IOException e) {
+				source.logProblem(AcceleoParserMessages.getString(
+						"AcceleoParser.Error.FileSaving", newResource //$NON-NLS-1$
+								.getURI().lastSegment(), e.getMessage()), 0, -1);
+			}
+		} else {
+			source.logProblem(AcceleoParserMessages.getString(
+					"AcceleoParser.Error.InvalidAST", source.getFile() //$NON-NLS-1$
+							.getName()), 0, -1);
+		}
+	}
+
+	/**
+	 * Creates the CST of the given files concurrently.
+	 * 
+	 * @param acceleoFiles
+	 *            The files to parse.
+	 * @return The source buffers of the given files, in the same order. The CST of the files that could not
+	 *         be parsed because we were interrupted will be <code>null</code>.
+	 */
+	private List<AcceleoSourceBuffer> createCSTs(List<AcceleoFile> acceleoFiles) {
+		final List<AcceleoSourceBuffer> parsedSources = new ArrayList<AcceleoSourceBuffer>(acceleoFiles
+				.size());
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(acceleoFiles.size());
+		for (AcceleoFile acceleoFile : acceleoFiles) {
+			final AcceleoSourceBuffer source = new AcceleoSourceBuffer(acceleoFile);
+			parsedSources.add(source);
+			tasks.add(new Callable<Object>() {
+				/**
+				 * {@inheritDoc}
+				 * 
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				public Object call() {
+					source.createCST();
+					return null;
+				}
+			});
+		}
+		if (!tasks.isEmpty()) {
+			final ExecutorService pool = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime
+					.getRuntime().availableProcessors()));
+			try {
+				invokeAll(pool, tasks);
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return parsedSources;
+	}
+
+	/**
+	 * Resolves or saves the AST of the given sources, one wave after the other. The sources of a given wave
+	 * are handled concurrently.
+	 * 
+	 * @param pool
+	 *            The pool that will handle the sources of each wave.
+	 * @param waves
+	 *            The waves of sources, as returned by {@link #computeWaves(List)}.
+	 * @param save
+	 *            <code>true</code> to save the AST of the sources, <code>false</code> to resolve them.
+	 * @param monitor
+	 *            The monitor.
+	 */
+	private void processInWaves(ExecutorService pool, List<List<AcceleoSourceBuffer>> waves,
+			final boolean save, Monitor monitor) {
+		for (Iterator<List<AcceleoSourceBuffer>> itWaves = waves.iterator(); !monitor.isCanceled()
+				&& itWaves.hasNext();) {
+			final List<AcceleoSourceBuffer> wave = itWaves.next();
+			final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(wave.size());
+			for (final AcceleoSourceBuffer source : wave) {
+				tasks.add(new Callable<Object>() {
+					/**
+					 * {@inheritDoc}
+					 * 
+					 * @see java.util.concurrent.Callable#call()
+					 */
+					public Object call() {
+						if (save) {
+							saveAST(source);
+						} else {
+							source.resolveAST();
+							source.resolveASTDocumentation();
+						}
+						return null;
+					}
+				});
+			}
+			if (!invokeAll(pool, tasks)) {
+				break;
+			}
+			monitor.worked(wave.size());
+		}
+	}
+
+	/**
+	 * Executes the given tasks and waits for their completion. Any exception thrown by one of the tasks is
+	 * thrown back from here.
+	 * 
+	 * @param pool
+	 *            The pool that will execute the tasks.
+	 * @param tasks
+	 *            The tasks to execute.
+	 * @return <code>false</code> if we were interrupted before all tasks completed, <code>true</code>
+	 *         otherwise.
+	 */
+	private static boolean invokeAll(ExecutorService pool, List<Callable<Object>> tasks) {
+		try {
+			for (Future<Object> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new WrappedException(e);
+		}
+		return true;
+	}
+
+	/**
+	 * Splits the given sources in waves that can be resolved concurrently.
+	 * <p>
+	 * A sequential compilation resolves each module with the modules it imports or extends resolved if and
+	 * only if they precede it in the list of sources, and the resolution of a module reads the modules it
+	 * transitively imports or extends. Each module will thus be in a later wave than the modules of its
+	 * dependencies that precede it, and in an earlier wave than the modules of its dependencies that follow
+	 * it. As modules that depend on each other are never in the same wave, their resources will not be saved
+	 * concurrently either.
+	 * </p>
+	 * 
+	 * @param sources
+	 *            The sources, in compilation order.
+	 * @return The waves of sources. The sources of each wave are in compilation order.
+	 */
+	private static List<List<AcceleoSourceBuffer>> computeWaves(List<AcceleoSourceBuffer> sources) {
+		final int count = sources.size();
+		final Map<String, List<Integer>> indices = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < count; i++) {
+			final Module module = sources.get(i).getAST();
+			if (module != null) {
+				addIndex(indices, module.getNsURI(), i);
+				addIndex(indices, module.getName(), i);
+			}
+		}
+
+		final List<List<Integer>> dependencies = new ArrayList<List<Integer>>(count);
+		for (int i = 0; i < count; i++) {
+			final List<Integer> direct = new ArrayList<Integer>();
+			final org.eclipse.acceleo.parser.cst.Module cst = sources.get(i).getCST();
+			if (cst != null) {
+				for (ModuleImportsValue importValue : cst.getImports()) {
+					addDependencies(direct, indices, importValue.getName());
+				}
+				for (ModuleExtendsValue extendValue : cst.getExtends()) {
+					addDependencies(direct, indices, extendValue.getName());
+				}
+			}
+			dependencies.add(direct);
+		}
+
+		final List<List<Integer>> predecessors = new ArrayList<List<Integer>>(count);
+		for (int i = 0; i < count; i++) {
+			predecessors.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < count; i++) {
+			final Set<Integer> closure = new CompactHashSet<Integer>();
+			final List<Integer> toVisit = new ArrayList<Integer>(dependencies.get(i));
+			while (!toVisit.isEmpty()) {
+				final Integer next = toVisit.remove(toVisit.size() - 1);
+				if (next.intValue() != i && closure.add(next)) {
+					toVisit.addAll(dependencies.get(next.intValue()));
+				}
+			}
+			for (Integer dependency : closure) {
+				if (dependency.intValue() < i) {
+					predecessors.get(i).add(dependency);
+				} else {
+					predecessors.get(dependency.intValue()).add(Integer.valueOf(i));
+				}
+			}
+		}
+
+		// All predecessors precede their successor in the list, a single pass is enough
+		final int[] levels = new int[count];
+		final List<List<AcceleoSourceBuffer>> waves = new ArrayList<List<AcceleoSourceBuffer>>();
+		for (int i = 0; i < count; i++) {
+			for (Integer predecessor : predecessors.get(i)) {
+				levels[i] = Math.max(levels[i], levels[predecessor.intValue()] + 1);
+			}
+			if (levels[i] == waves.size()) {
+				waves.add(new ArrayList<AcceleoSourceBuffer>());
+			}
+			waves.get(levels[i]).add(sources.get(i));
+		}
+		return waves;
+	}
+
+	/**
+	 * Maps the given module name to the given index.
+	 * 
+	 * @param indices
+	 *            Indices of the modules, mapped to their name.
+	 * @param name
+	 *            Name of a module. Can be <code>null</code>.
+	 * @param index
+	 *            Index of this module in the list of sources.
+	 */
+	private static void addIndex(Map<String, List<Integer>> indices, String name, int index) {
+		if (name != null) {
+			List<Integer> named = indices.get(name);
+			if (named == null) {
+				named = new ArrayList<Integer>(1);
+				indices.put(name, named);
+			}
+			if (!named.contains(Integer.valueOf(index))) {
+				named.add(Integer.valueOf(index));
+			}
+		}
+	}
+
+	/**
+	 * Adds the indices of the modules that can be designated by the given imported or extended name.
+	 * 
+	 * @param dependencies
+	 *            The list in which to add the indices of the dependencies.
+	 * @param indices
+	 *            Indices of the modules, mapped to their name.
+	 * @param name
+	 *            Name of an imported or extended module. Can be <code>null</code>.
+	 */
+	private static void addDependencies(List<Integer> dependencies, Map<String, List<Integer>> indices,
+			String name) {
+		if (name != null) {
+			final String trimmed = name.trim();
+			List<Integer> named = indices.get(trimmed);
+			if (named == null) {
+				// The module might be designated by its simple name
+				int lastSegment = trimmed.lastIndexOf(IAcceleoConstants.NAMESPACE_SEPARATOR);
+				if (lastSegment > -1) {
+					named = indices.get(trimmed.substring(lastSegment
+							+ IAcceleoConstants.NAMESPACE_SEPARATOR.length()));
+				}
+			}
+			if (named != null) {
+				dependencies.addAll(named);
+			}
+		}
+	}
+
 	/**
 	 * Trim the useless data in the given resource set by removing the signature of non used EOperations,
 	 * Templates and Queries.
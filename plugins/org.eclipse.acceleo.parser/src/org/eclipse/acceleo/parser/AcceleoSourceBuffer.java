@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,13 +11,13 @@
 package org.eclipse.acceleo.parser;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.eclipse.acceleo.internal.parser.ast.CST2ASTConverterWithDocumentationResolver;
 import org.eclipse.acceleo.internal.parser.ast.IASTProvider;
 import org.eclipse.acceleo.internal.parser.ast.ocl.OCLParser;
 import org.eclipse.acceleo.internal.parser.cst.CSTParser;
+import org.eclipse.acceleo.internal.parser.cst.utils.CharArraySequence;
 import org.eclipse.acceleo.internal.parser.cst.utils.FileContent;
 import org.eclipse.acceleo.internal.parser.documentation.IDocumentationProvider;
 import org.eclipse.acceleo.parser.cst.CstFactory;
@@ -60,6 +60,11 @@ import org.eclipse.ocl.Environment;
  */
 public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider {
 
+	/**
+	 * The initial capacity of the arrays holding the line information.
+	 */
+	private static final int INITIAL_LINES_CAPACITY = 64;
+
 	/**
 	 * The AST model. It is created when you call the 'createAST' function.
 	 */
@@ -83,11 +88,26 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	private final StringBuffer buffer;
 
 	/**
-	 * This list will be initialized with the beginning offset of all lines in the given source buffer.
-	 * 
-	 * @since 0.8
+	 * This array will be initialized with the beginning offset of all lines in the given source buffer (the
+	 * offset of the line delimiter ending the previous line), <code>null</code> until it is needed.
+	 */
+	private int[] lines;
+
+	/**
+	 * This array will be initialized with the offset of all the line feeds in the given source buffer,
+	 * <code>null</code> until it is needed.
+	 */
+	private int[] lineFeeds;
+
+	/**
+	 * The length of the buffer when the line information has been computed.
+	 */
+	private int linesBufferLength;
+
+	/**
+	 * The read-only view of the buffer given to the parser, <code>null</code> until it is needed.
 	 */
-	private final List<Integer> lines = new ArrayList<Integer>();
+	private CharArraySequence content;
 
 	/**
 	 * Parsing problems.
@@ -128,7 +148,6 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 		this.problems = new AcceleoParserProblems();
 		this.warnings = new AcceleoParserWarnings();
 		this.infos = new AcceleoParserInfos();
-		init();
 	}
 
 	/**
@@ -154,26 +173,56 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 		this.problems = new AcceleoParserProblems();
 		this.warnings = new AcceleoParserWarnings();
 		this.infos = new AcceleoParserInfos();
-		init();
 	}
 
 	/**
-	 * Initializes the line information for the underlying buffer.
+	 * Initializes the line information for the underlying buffer if it has not been computed yet or if the
+	 * length of the buffer changed since.
 	 */
 	private void init() {
-		lines.add(Integer.valueOf(0));
+		if (lines != null && linesBufferLength == buffer.length()) {
+			return;
+		}
+		int[] lineStarts = new int[INITIAL_LINES_CAPACITY];
+		int lineCount = 1;
+		int[] feeds = new int[INITIAL_LINES_CAPACITY];
+		int feedCount = 0;
 		int offset = 0;
-		while (offset < buffer.length()) {
-			if (buffer.charAt(offset) == '\n') {
-				lines.add(Integer.valueOf(offset));
-			} else if (buffer.charAt(offset) == '\r') {
-				lines.add(Integer.valueOf(offset));
-				if (buffer.length() > offset + 1 && buffer.charAt(offset + 1) == '\n') {
+		final int length = buffer.length();
+		while (offset < length) {
+			char c = buffer.charAt(offset);
+			if (c == '\n' || c == '\r') {
+				if (lineCount == lineStarts.length) {
+					lineStarts = Arrays.copyOf(lineStarts, lineCount << 1);
+				}
+				lineStarts[lineCount++] = offset;
+				if (c == '\r' && offset + 1 < length && buffer.charAt(offset + 1) == '\n') {
 					offset++;
 				}
+				if (buffer.charAt(offset) == '\n') {
+					if (feedCount == feeds.length) {
+						feeds = Arrays.copyOf(feeds, feedCount << 1);
+					}
+					feeds[feedCount++] = offset;
+				}
 			}
 			offset++;
 		}
+		lines = Arrays.copyOf(lineStarts, lineCount);
+		lineFeeds = Arrays.copyOf(feeds, feedCount);
+		linesBufferLength = length;
+	}
+
+	/**
+	 * Ensure to compute the line information and the read-only view of the buffer again before to use them.
+	 * This must be called when the buffer has been modified.
+	 * 
+	 * @since 3.5
+	 */
+	public void refreshLines() {
+		lines = null;
+		lineFeeds = null;
+		content = null;
 	}
 
 	/***
@@ -185,28 +234,46 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	 * @since 0.8
 	 */
 	public int getLineOfOffset(int offset) {
-		int soughtLine = -1;
+		init();
+		int soughtLine;
 		// shortcut
-		if (offset == 0) {
-			soughtLine = 0;
-		}
 		if (offset == buffer.length()) {
-			soughtLine = lines.size();
-		}
-		if (soughtLine == -1) {
-			for (int i = 0; i < lines.size(); i++) {
-				if (lines.get(i).intValue() > offset) {
-					soughtLine = i;
-					break;
-				}
+			soughtLine = lines.length;
+		} else if (offset == 0) {
+			soughtLine = 0;
+		} else {
+			// Index of the first line beginning after the offset
+			int index = Arrays.binarySearch(lines, offset);
+			if (index >= 0) {
+				soughtLine = index + 1;
+			} else {
+				soughtLine = -index - 1;
 			}
 		}
-		if (soughtLine == -1) {
-			soughtLine = lines.size();
-		}
 		return soughtLine;
 	}
 
+	/**
+	 * Returns the number of the line for the given offset, counting the line feeds before it. This is the
+	 * same as {@link FileContent#lineNumber(CharSequence, int)} without walking through the buffer.
+	 * 
+	 * @param offset
+	 *            is the offset in the buffer
+	 * @return the line, <code>0</code> if the offset is not in the buffer
+	 */
+	private int getLineNumber(int offset) {
+		if (offset >= buffer.length()) {
+			return 0;
+		}
+		init();
+		// Number of line feeds before the offset
+		int index = Arrays.binarySearch(lineFeeds, offset);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return index + 1;
+	}
+
 	/**
 	 * Returns the parsed file, can be null if the object is created with a buffer.
 	 * 
@@ -238,6 +305,21 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 		return buffer;
 	}
 
+	/**
+	 * Returns a read-only view of the buffer to parse. The view is computed again if the length of the buffer
+	 * changed since it was created or if {@link #refreshLines()} has been called.
+	 * 
+	 * @return the read-only view of the buffer
+	 * @noreference This method is not intended to be referenced by clients.
+	 * @since 3.5
+	 */
+	public CharArraySequence getContent() {
+		if (content == null || content.length() != buffer.length()) {
+			content = new CharArraySequence(buffer);
+		}
+		return content;
+	}
+
 	/**
 	 * Returns the encoding of the buffer to parse.
 	 * 
@@ -360,6 +442,7 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	 */
 	public void createCST() {
 		ast = null;
+		refreshLines();
 		CSTParser parser = new CSTParser(this);
 		cst = parser.parse();
 		if (cst == null) {
@@ -386,7 +469,7 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	 */
 	public void logProblem(final String message, final int posBegin, final int posEnd) {
 		int[] pos = trim(posBegin, posEnd);
-		int line = FileContent.lineNumber(buffer, pos[0]);
+		int line = getLineNumber(pos[0]);
 		problems.addProblem(getFile(), message, line, pos[0], pos[1]);
 	}
 
@@ -398,7 +481,7 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	 */
 	public void logWarning(final String message, final int posBegin, final int posEnd) {
 		int[] pos = trim(posBegin, posEnd);
-		int line = FileContent.lineNumber(this.buffer, pos[0]);
+		int line = getLineNumber(pos[0]);
 		this.warnings.addWarning(message, line, pos[0], pos[1]);
 	}
 
@@ -410,7 +493,7 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	 */
 	public void logInfo(final String message, final int posBegin, final int posEnd) {
 		int[] pos = trim(posBegin, posEnd);
-		int line = FileContent.lineNumber(this.buffer, pos[0]);
+		int line = getLineNumber(pos[0]);
 		this.infos.addInfo(message, line, pos[0], pos[1]);
 	}
 
@@ -447,6 +530,7 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 	 *         always 2
 	 */
 	public int[] trim(int posBegin, int posEnd) {
+		final CharSequence text = getContent();
 		int b;
 		if (posBegin < 0) {
 			b = 0;
@@ -454,16 +538,16 @@ public class AcceleoSourceBuffer implements IASTProvider, IDocumentationProvider
 			b = posBegin;
 		}
 		int e;
-		if (posEnd < 0 || posEnd > buffer.length()) {
-			e = buffer.length();
+		if (posEnd < 0 || posEnd > text.length()) {
+			e = text.length();
 		} else {
 			e = posEnd;
 		}
-		while (b < e && Character.isWhitespace(buffer.charAt(b))) {
+		while (b < e && Character.isWhitespace(text.charAt(b))) {
 			b++;
 		}
-		if (!((posEnd < 0 || b == e) && b + 1 < buffer.length())) {
-			while ((e > b + 1) && Character.isWhitespace(buffer.charAt(e - 1))) {
+		if (!((posEnd < 0 || b == e) && b + 1 < text.length())) {
+			while ((e > b + 1) && Character.isWhitespace(text.charAt(e - 1))) {
 				e--;
 			}
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -88,6 +88,13 @@ public abstract class AbstractAcceleoCompiler {
 	 */
 	protected boolean trimPosition;
 
+	/**
+	 * Indicates if we should compile the independent modules concurrently.
+	 * 
+	 * @since 3.5
+	 */
+	protected boolean parallelCompilation;
+
 	/**
 	 * The dependencies folders.
 	 */
@@ -272,6 +279,17 @@ public abstract class AbstractAcceleoCompiler {
 		this.trimPosition = trimPosition;
 	}
 
+	/**
+	 * Sets the boolean indicating if Acceleo should compile the independent modules concurrently.
+	 * 
+	 * @param parallelCompilation
+	 *            The boolean
+	 * @since 3.5
+	 */
+	public void setParallelCompilation(boolean parallelCompilation) {
+		this.parallelCompilation = parallelCompilation;
+	}
+
 	/**
 	 * Launches the compilation of the mtl files.
 	 * 
@@ -313,7 +331,7 @@ public abstract class AbstractAcceleoCompiler {
 
 		createOutputFiles(emtlAbsoluteURIs);
 
-		AcceleoParser parser = new AcceleoParser(binaryResource, trimPosition);
+		AcceleoParser parser = new AcceleoParser(binaryResource, trimPosition, parallelCompilation);
 		parser.parse(acceleoFiles, emtlAbsoluteURIs, dependenciesURIs, mapURIs, monitor);
 		for (Iterator<AcceleoFile> iterator = acceleoFiles.iterator(); iterator.hasNext();) {
 			AcceleoFile acceleoFile = iterator.next();
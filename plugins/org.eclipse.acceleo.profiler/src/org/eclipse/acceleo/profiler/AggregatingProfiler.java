@@ -0,0 +1,674 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.profiler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * A profiler that only keeps primitive counters for each node of the call tree instead of creating a profile
+ * entry for each call. Calls are timed with {@link System#nanoTime()}, and the calls of a given node on
+ * elements of a given type are aggregated as a single loop element : the profile of a generation is as large
+ * as its templates' call tree, whatever the size of the input model.
+ * <p>
+ * The {@link ProfileResource} is only built when {@link #getProfileResource()} or {@link #save(String)} is
+ * called. It has the same format as the one built by {@link Profiler}, with one difference : where
+ * {@link Profiler} creates one loop entry per iterated element, this profiler creates one loop entry per
+ * {@link org.eclipse.emf.ecore.EClass} of the iterated elements, monitoring that EClass and counting its
+ * iterations. Subclasses can choose another key through {@link #getLoopKey(EObject)}.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class AggregatingProfiler extends Profiler {
+	/** Parent of the root nodes. */
+	public static final int NO_NODE = -1;
+
+	/** Initial capacity of the node arrays and of the call stack. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The percentage of the root entries. */
+	private static final double PERCENT = 100.0;
+
+	/** Allows us to read the number of bytes allocated by a thread. <code>null</code> if not supported. */
+	private final Object threadBean;
+
+	/** The method returning the number of bytes allocated by a thread. <code>null</code> if not supported. */
+	private final Method allocatedBytes;
+
+	/** Number of call nodes. */
+	private int nodeCount;
+
+	/** Object monitored by each node. */
+	private EObject[] monitored;
+
+	/** Parent of each node, {@link #NO_NODE} for roots. */
+	private int[] parents;
+
+	/** Time at which each node was created, in milliseconds since the epoch. */
+	private long[] createTimes;
+
+	/** Number of calls of each node. */
+	private long[] callCounts;
+
+	/** Total time spent in each node, in nanoseconds. */
+	private long[] totalTimes;
+
+	/** Time spent in the callees of each node, in nanoseconds. */
+	private long[] calleeTimes;
+
+	/** Number of bytes allocated in each node. */
+	private long[] allocations;
+
+	/** Maps the monitored objects of the callees of each node to their own node. */
+	private Object[] callees;
+
+	/** Maps the monitored objects of the root nodes to these nodes. */
+	private final Map<EObject, Integer> roots = new HashMap<EObject, Integer>();
+
+	/** Number of loop nodes. */
+	private int loopCount;
+
+	/** Node owning each loop node. */
+	private int[] loopOwners;
+
+	/** Key of the elements aggregated by each loop node, see {@link #getLoopKey(EObject)}. */
+	private EObject[] loopTypes;
+
+	/** Time at which each loop node was created, in milliseconds since the epoch. */
+	private long[] loopCreateTimes;
+
+	/** Number of iterations of each loop node. */
+	private long[] loopCounts;
+
+	/** Total time spent in each loop node, in nanoseconds. */
+	private long[] loopTimes;
+
+	/** Maps the loop element keys of each node to their loop node. */
+	private Object[] loops;
+
+	/** Depth of the call stack. */
+	private int depth;
+
+	/** Node of each frame of the call stack. */
+	private int[] stackNodes;
+
+	/** Start time of each frame of the call stack. */
+	private long[] stackStarts;
+
+	/** Number of bytes allocated by the profiled thread when each frame started. */
+	private long[] stackAllocations;
+
+	/** Current loop node of each frame of the call stack, {@link #NO_NODE} if none. */
+	private int[] stackLoops;
+
+	/** Start time of the current loop node of each frame. */
+	private long[] stackLoopStarts;
+
+	/** The profile built from the counters, discarded as soon as they change. */
+	private ProfileResource builtResource;
+
+	/** The listeners notified of each timed call. */
+	private final List<IProfilerListener> listeners = new CopyOnWriteArrayList<IProfilerListener>();
+
+	/**
+	 * Creates a profiler that does not keep track of allocations.
+	 */
+	public AggregatingProfiler() {
+		this(false);
+	}
+
+	/**
+	 * Creates a profiler, estimating the number of bytes each node allocates if so asked and if the virtual
+	 * machine supports it.
+	 * 
+	 * @param trackAllocations
+	 *            <code>true</code> if allocations should be tracked.
+	 */
+	public AggregatingProfiler(boolean trackAllocations) {
+		Object bean = null;
+		Method method = null;
+		if (trackAllocations) {
+			try {
+				bean = ManagementFactory.getThreadMXBean();
+				method = Class.forName("com.sun.management.ThreadMXBean").getMethod( //$NON-NLS-1$
+						"getThreadAllocatedBytes", long.class); //$NON-NLS-1$
+				final Object allocated = method.invoke(bean, Long.valueOf(Thread.currentThread().getId()));
+				if (((Long)allocated).longValue() < 0) {
+					bean = null;
+					method = null;
+				}
+				// CHECKSTYLE:OFF
+			} catch (Exception e) {
+				// CHECKSTYLE:ON
+				// This virtual machine cannot tell us how much memory has been allocated
+				bean = null;
+				method = null;
+			}
+		}
+		threadBean = bean;
+		allocatedBytes = method;
+		clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.profiler.Profiler#start(org.eclipse.emf.ecore.EObject)
+	 */
+	@Override
+	public void start(EObject monitoredObject) {
+		builtResource = null;
+		final int node;
+		if (depth == 0) {
+			node = getRootNode(monitoredObject);
+		} else {
+			node = getCalleeNode(stackNodes[depth - 1], monitoredObject);
+		}
+		callCounts[node]++;
+		if (depth == stackNodes.length) {
+			final int capacity = depth << 1;
+			stackNodes = Arrays.copyOf(stackNodes, capacity);
+			stackStarts = Arrays.copyOf(stackStarts, capacity);
+			stackAllocations = Arrays.copyOf(stackAllocations, capacity);
+			stackLoops = Arrays.copyOf(stackLoops, capacity);
+			stackLoopStarts = Arrays.copyOf(stackLoopStarts, capacity);
+		}
+		stackNodes[depth] = node;
+		stackLoops[depth] = NO_NODE;
+		stackAllocations[depth] = currentAllocatedBytes();
+		stackStarts[depth] = System.nanoTime();
+		depth++;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The iteration is not recorded for <code>loopElement</code> itself but for its
+	 * {@link #getLoopKey(EObject) key}, along with all other iterations of the current node on elements
+	 * sharing that key.
+	 * </p>
+	 * 
+	 * @see org.eclipse.acceleo.profiler.Profiler#loop(org.eclipse.emf.ecore.EObject)
+	 */
+	@Override
+	public void loop(EObject loopElement) {
+		if (depth == 0) {
+			return;
+		}
+		builtResource = null;
+		final long now = System.nanoTime();
+		final int frame = depth - 1;
+		stopLoop(frame, now);
+		final int loop = getLoopNode(stackNodes[frame], getLoopKey(loopElement));
+		loopCounts[loop]++;
+		stackLoops[frame] = loop;
+		stackLoopStarts[frame] = now;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.profiler.Profiler#stop()
+	 */
+	@Override
+	public void stop() {
+		if (depth == 0) {
+			return;
+		}
+		final long now = System.nanoTime();
+		builtResource = null;
+		depth--;
+		stopLoop(depth, now);
+		final int node = stackNodes[depth];
+		final long elapsed = now - stackStarts[depth];
+		totalTimes[node] += elapsed;
+		if (allocatedBytes != null) {
+			allocations[node] += currentAllocatedBytes() - stackAllocations[depth];
+		}
+		if (depth > 0) {
+			calleeTimes[stackNodes[depth - 1]] += elapsed;
+		}
+		if (!listeners.isEmpty()) {
+			for (IProfilerListener listener : listeners) {
+				listener.callStopped(this, node, monitored[node], stackStarts[depth], elapsed);
+			}
+		}
+	}
+
+	/**
+	 * Returns the key under which the iterations on the given element are aggregated. The iterations of a
+	 * node on all elements sharing a key are recorded as a single loop entry monitoring that key.
+	 * 
+	 * @param loopElement
+	 *            The element being iterated on, may be <code>null</code>.
+	 * @return The {@link org.eclipse.emf.ecore.EClass} of <code>loopElement</code>, <code>null</code> if
+	 *         <code>loopElement</code> is <code>null</code>.
+	 */
+	protected EObject getLoopKey(EObject loopElement) {
+		if (loopElement == null) {
+			return null;
+		}
+		return loopElement.eClass();
+	}
+
+	/**
+	 * Registers a listener to be notified of each call this profiler times.
+	 * 
+	 * @param listener
+	 *            The listener to register.
+	 */
+	public void addListener(IProfilerListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener from those notified of the calls this profiler times.
+	 * 
+	 * @param listener
+	 *            The listener to remove.
+	 */
+	public void removeListener(IProfilerListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.profiler.Profiler#reset()
+	 */
+	@Override
+	public void reset() {
+		super.reset();
+		clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.profiler.Profiler#save(java.lang.String)
+	 */
+	@Override
+	public void save(String modelURI) throws IOException {
+		final ProfileResource profile = getProfileResource();
+		if (profile != null) {
+			save(profile, modelURI);
+			// Saving unloaded the built entries
+			builtResource = null;
+		}
+	}
+
+	/**
+	 * Builds the profile from the counters of this profiler. The returned profile already contains the
+	 * percentages and the {@link Profiler#INTERNAL} entries which {@link Profiler} only adds on save.
+	 * 
+	 * @return The profile built from the counters of this profiler, <code>null</code> if nothing has been
+	 *         profiled yet.
+	 * @see org.eclipse.acceleo.profiler.Profiler#getProfileResource()
+	 */
+	@Override
+	public ProfileResource getProfileResource() {
+		if (builtResource == null && nodeCount > 0) {
+			builtResource = buildResource();
+		}
+		return builtResource;
+	}
+
+	/**
+	 * Returns the number of call nodes. Node indices range from <code>0</code> to this count, parents having
+	 * lower indices than their callees.
+	 * 
+	 * @return The number of call nodes.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the object monitored by the given node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The object monitored by the given node.
+	 */
+	public EObject getMonitored(int node) {
+		return monitored[node];
+	}
+
+	/**
+	 * Returns the parent of the given node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The parent of the given node, {@link #NO_NODE} if it is a root.
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * Returns the number of calls of the given node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The number of calls of the given node.
+	 */
+	public long getCallCount(int node) {
+		return callCounts[node];
+	}
+
+	/**
+	 * Returns the total time spent in the given node, its callees included.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The total time spent in the given node, in nanoseconds.
+	 */
+	public long getTotalTime(int node) {
+		return totalTimes[node];
+	}
+
+	/**
+	 * Returns the time spent in the given node itself, its callees excluded.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The time spent in the given node itself, in nanoseconds.
+	 */
+	public long getSelfTime(int node) {
+		return totalTimes[node] - calleeTimes[node];
+	}
+
+	/**
+	 * Returns an estimate of the number of bytes allocated in the given node, its callees included.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return An estimate of the number of bytes allocated in the given node, <code>0</code> if allocations
+	 *         are not tracked.
+	 */
+	public long getAllocatedBytes(int node) {
+		return allocations[node];
+	}
+
+	/**
+	 * Tells whether this profiler estimates the number of bytes allocated by each node.
+	 * 
+	 * @return <code>true</code> if this profiler estimates the number of bytes allocated by each node.
+	 */
+	public boolean isTrackingAllocations() {
+		return allocatedBytes != null;
+	}
+
+	/**
+	 * Discards all counters.
+	 */
+	private void clear() {
+		nodeCount = 0;
+		monitored = new EObject[INITIAL_CAPACITY];
+		parents = new int[INITIAL_CAPACITY];
+		createTimes = new long[INITIAL_CAPACITY];
+		callCounts = new long[INITIAL_CAPACITY];
+		totalTimes = new long[INITIAL_CAPACITY];
+		calleeTimes = new long[INITIAL_CAPACITY];
+		allocations = new long[INITIAL_CAPACITY];
+		callees = new Object[INITIAL_CAPACITY];
+		roots.clear();
+		loopCount = 0;
+		loopOwners = new int[INITIAL_CAPACITY];
+		loopTypes = new EObject[INITIAL_CAPACITY];
+		loopCreateTimes = new long[INITIAL_CAPACITY];
+		loopCounts = new long[INITIAL_CAPACITY];
+		loopTimes = new long[INITIAL_CAPACITY];
+		loops = new Object[INITIAL_CAPACITY];
+		depth = 0;
+		stackNodes = new int[INITIAL_CAPACITY];
+		stackStarts = new long[INITIAL_CAPACITY];
+		stackAllocations = new long[INITIAL_CAPACITY];
+		stackLoops = new int[INITIAL_CAPACITY];
+		stackLoopStarts = new long[INITIAL_CAPACITY];
+		builtResource = null;
+	}
+
+	/**
+	 * Returns the root node monitoring the given object, creating it if needed.
+	 * 
+	 * @param monitoredObject
+	 *            The monitored object.
+	 * @return The root node monitoring <code>monitoredObject</code>.
+	 */
+	private int getRootNode(EObject monitoredObject) {
+		final Integer node = roots.get(monitoredObject);
+		if (node != null) {
+			return node.intValue();
+		}
+		final int created = createNode(NO_NODE, monitoredObject);
+		roots.put(monitoredObject, Integer.valueOf(created));
+		return created;
+	}
+
+	/**
+	 * Returns the callee of the given node monitoring the given object, creating it if needed.
+	 * 
+	 * @param parent
+	 *            The calling node.
+	 * @param monitoredObject
+	 *            The monitored object.
+	 * @return The callee of <code>parent</code> monitoring <code>monitoredObject</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	private int getCalleeNode(int parent, EObject monitoredObject) {
+		Map<EObject, Integer> children = (Map<EObject, Integer>)callees[parent];
+		if (children == null) {
+			children = new HashMap<EObject, Integer>();
+			callees[parent] = children;
+		}
+		final Integer node = children.get(monitoredObject);
+		if (node != null) {
+			return node.intValue();
+		}
+		final int created = createNode(parent, monitoredObject);
+		children.put(monitoredObject, Integer.valueOf(created));
+		return created;
+	}
+
+	/**
+	 * Creates a new call node.
+	 * 
+	 * @param parent
+	 *            The calling node, {@link #NO_NODE} for roots.
+	 * @param monitoredObject
+	 *            The monitored object.
+	 * @return Index of the created node.
+	 */
+	private int createNode(int parent, EObject monitoredObject) {
+		if (nodeCount == parents.length) {
+			final int capacity = nodeCount << 1;
+			monitored = Arrays.copyOf(monitored, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			createTimes = Arrays.copyOf(createTimes, capacity);
+			callCounts = Arrays.copyOf(callCounts, capacity);
+			totalTimes = Arrays.copyOf(totalTimes, capacity);
+			calleeTimes = Arrays.copyOf(calleeTimes, capacity);
+			allocations = Arrays.copyOf(allocations, capacity);
+			callees = Arrays.copyOf(callees, capacity);
+			loops = Arrays.copyOf(loops, capacity);
+		}
+		final int node = nodeCount++;
+		monitored[node] = monitoredObject;
+		parents[node] = parent;
+		createTimes[node] = System.currentTimeMillis();
+		return node;
+	}
+
+	/**
+	 * Returns the loop node of the given node aggregating the elements of the given key, creating it if
+	 * needed.
+	 * 
+	 * @param owner
+	 *            The node which loop node we need.
+	 * @param type
+	 *            Key of the loop elements.
+	 * @return The loop node of <code>owner</code> aggregating the elements of key <code>type</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	private int getLoopNode(int owner, EObject type) {
+		Map<EObject, Integer> ownerLoops = (Map<EObject, Integer>)loops[owner];
+		if (ownerLoops == null) {
+			ownerLoops = new HashMap<EObject, Integer>();
+			loops[owner] = ownerLoops;
+		}
+		final Integer loop = ownerLoops.get(type);
+		if (loop != null) {
+			return loop.intValue();
+		}
+		if (loopCount == loopOwners.length) {
+			final int capacity = loopCount << 1;
+			loopOwners = Arrays.copyOf(loopOwners, capacity);
+			loopTypes = Arrays.copyOf(loopTypes, capacity);
+			loopCreateTimes = Arrays.copyOf(loopCreateTimes, capacity);
+			loopCounts = Arrays.copyOf(loopCounts, capacity);
+			loopTimes = Arrays.copyOf(loopTimes, capacity);
+		}
+		final int created = loopCount++;
+		loopOwners[created] = owner;
+		loopTypes[created] = type;
+		loopCreateTimes[created] = System.currentTimeMillis();
+		ownerLoops.put(type, Integer.valueOf(created));
+		return created;
+	}
+
+	/**
+	 * Stops timing the current loop node of the given frame.
+	 * 
+	 * @param frame
+	 *            The frame which loop node is to be stopped.
+	 * @param now
+	 *            The current time, in nanoseconds.
+	 */
+	private void stopLoop(int frame, long now) {
+		final int loop = stackLoops[frame];
+		if (loop != NO_NODE) {
+			loopTimes[loop] += now - stackLoopStarts[frame];
+			stackLoops[frame] = NO_NODE;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far.
+	 * 
+	 * @return The number of bytes allocated by the current thread, <code>0</code> if allocations are not
+	 *         tracked.
+	 */
+	private long currentAllocatedBytes() {
+		if (allocatedBytes != null) {
+			try {
+				return ((Long)allocatedBytes.invoke(threadBean, Long.valueOf(Thread.currentThread().getId())))
+						.longValue();
+				// CHECKSTYLE:OFF
+			} catch (Exception e) {
+				// CHECKSTYLE:ON
+				// Cannot happen, we checked the method was accessible on creation
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Builds the profile model from the counters.
+	 * 
+	 * @return The profile model.
+	 */
+	private ProfileResource buildResource() {
+		final ProfileResource profile = ProfilerFactory.eINSTANCE.createProfileResource();
+		final LoopProfileEntry[] entries = new LoopProfileEntry[nodeCount];
+		final int[] rootNodes = new int[nodeCount];
+		for (int node = 0; node < nodeCount; node++) {
+			final LoopProfileEntry entry = ProfilerFactory.eINSTANCE.createLoopProfileEntry();
+			entry.setCreateTime(createTimes[node]);
+			entry.setMonitored(monitored[node]);
+			entry.setCount(callCounts[node]);
+			entry.setDuration(TimeUnit.NANOSECONDS.toMillis(totalTimes[node]));
+			final int parent = parents[node];
+			if (parent == NO_NODE) {
+				rootNodes[node] = node;
+				entry.setPercentage(PERCENT);
+				addUnique(profile.getEntries(), entry);
+			} else {
+				rootNodes[node] = rootNodes[parent];
+				entry.setPercentage(percentage(totalTimes[node], totalTimes[rootNodes[node]]));
+				addUnique(entries[parent].getCallees(), entry);
+			}
+			entries[node] = entry;
+		}
+		for (int loop = 0; loop < loopCount; loop++) {
+			final ProfileEntry entry = ProfilerFactory.eINSTANCE.createProfileEntry();
+			entry.setCreateTime(loopCreateTimes[loop]);
+			entry.setMonitored(loopTypes[loop]);
+			entry.setCount(loopCounts[loop]);
+			entry.setDuration(TimeUnit.NANOSECONDS.toMillis(loopTimes[loop]));
+			entry.setPercentage(percentage(loopTimes[loop], totalTimes[rootNodes[loopOwners[loop]]]));
+			addUnique(entries[loopOwners[loop]].getLoopElements(), entry);
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			final long selfTime = getSelfTime(node);
+			if (callees[node] != null && selfTime > 0) {
+				final ProfileEntry internal = ProfilerFactory.eINSTANCE.createProfileEntry();
+				internal.setCreateTime(createTimes[node]);
+				internal.setMonitored(INTERNAL);
+				internal.setDuration(TimeUnit.NANOSECONDS.toMillis(selfTime));
+				internal.setPercentage(percentage(selfTime, totalTimes[rootNodes[node]]));
+				addUnique(entries[node].getCallees(), internal);
+			}
+		}
+		return profile;
+	}
+
+	/**
+	 * Returns the percentage the given time represents.
+	 * 
+	 * @param time
+	 *            The time which percentage we need.
+	 * @param baseTime
+	 *            The time representing a hundred percent.
+	 * @return The percentage <code>time</code> represents.
+	 */
+	private static double percentage(long time, long baseTime) {
+		if (baseTime == 0) {
+			return 0;
+		}
+		return time * PERCENT / baseTime;
+	}
+
+	/**
+	 * Adds the given entry to the given list without checking whether the list already contains it.
+	 * 
+	 * @param list
+	 *            The list to which the entry is to be added.
+	 * @param entry
+	 *            The entry to add.
+	 */
+	private static void addUnique(EList<ProfileEntry> list, ProfileEntry entry) {
+		((InternalEList<ProfileEntry>)list).addUnique(entry);
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.profiler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+/**
+ * Exports the call tree of an {@link AggregatingProfiler} as collapsed stacks, the text format read by flame
+ * graph tools. Each line holds a call path, its frames separated by semicolons, followed by the time spent
+ * in this path itself :
+ * 
+ * <pre>
+ * module::template;module::query;other::template 42
+ * </pre>
+ * <p>
+ * Frames are named after the module element containing the monitored object, so that all the expressions
+ * of a template or query are folded in the frame of this template or query. Consecutive calls of the same
+ * frame are folded as well.
+ * </p>
+ * <p>
+ * As a consequence, recursive calls are merged into a single frame : the profiler monitors the invocation
+ * of a template from its own body like any other of its expressions, so a template calling itself ten times
+ * deep is exported as one frame holding the time of all ten calls, and the recursion depth does not appear
+ * in the stacks. A mutual recursion, on the other hand, is exported with one frame per call. Subclasses
+ * overriding {@link #getFrameName(EObject)} change which calls are merged, since only consecutive calls
+ * with equal frame names are.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public class CollapsedStackExporter {
+	/** Separates the frames of a stack. */
+	private static final char FRAME_SEPARATOR = ';';
+
+	/** Separates the name of a module from the name of its elements. */
+	private static final String ELEMENT_SEPARATOR = "::"; //$NON-NLS-1$
+
+	/** Name of the feature holding the name of the monitored elements. */
+	private static final String NAME_FEATURE = "name"; //$NON-NLS-1$
+
+	/** The profiler which call tree is to be exported. */
+	private final AggregatingProfiler profiler;
+
+	/** Unit of the times written for each stack. */
+	private final TimeUnit unit;
+
+	/**
+	 * Creates an exporter for the given profiler.
+	 * 
+	 * @param profiler
+	 *            The profiler which call tree is to be exported.
+	 * @param unit
+	 *            Unit of the times written for each stack.
+	 */
+	public CollapsedStackExporter(AggregatingProfiler profiler, TimeUnit unit) {
+		this.profiler = profiler;
+		this.unit = unit;
+	}
+
+	/**
+	 * Writes the collapsed stacks of the profiler in the given file, encoded in UTF-8.
+	 * 
+	 * @param file
+	 *            The file in which stacks are to be written.
+	 * @throws IOException
+	 *             Thrown if we cannot write in <code>file</code>.
+	 */
+	public void save(File file) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8")); //$NON-NLS-1$
+		try {
+			write(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes the collapsed stacks of the profiler in the given output, one stack per line. Stacks in which
+	 * no measurable time has been spent are not written.
+	 * 
+	 * @param output
+	 *            The output in which stacks are to be written.
+	 * @throws IOException
+	 *             Thrown if we cannot write in <code>output</code>.
+	 */
+	public void write(Appendable output) throws IOException {
+		for (Map.Entry<String, long[]> stack : collapse().entrySet()) {
+			final long time = unit.convert(stack.getValue()[0], TimeUnit.NANOSECONDS);
+			if (time > 0) {
+				output.append(stack.getKey()).append(' ').append(String.valueOf(time)).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of the frame in which the given monitored object should be accounted for. By default,
+	 * this is the name of the module element containing this object, prefixed by the name of its module.
+	 * A callee with the same frame name as its caller is merged into the caller's frame, which is why
+	 * recursive calls of a module element are exported as a single frame.
+	 * 
+	 * @param monitoredObject
+	 *            The object monitored by a node of the profiler.
+	 * @return The name of the frame of <code>monitoredObject</code>, <code>null</code> to fold it in the
+	 *         frame of its caller.
+	 */
+	protected String getFrameName(EObject monitoredObject) {
+		if (monitoredObject == null) {
+			return null;
+		}
+		EObject element = monitoredObject;
+		EObject root = element.eContainer();
+		if (root == null) {
+			return getName(element);
+		}
+		while (root.eContainer() != null) {
+			element = root;
+			root = root.eContainer();
+		}
+		final String elementName = getName(element);
+		final String rootName = getName(root);
+		if (rootName == null) {
+			return elementName;
+		}
+		return rootName + ELEMENT_SEPARATOR + elementName;
+	}
+
+	/**
+	 * Sums the self time of the profiler's nodes by collapsed stack.
+	 * 
+	 * @return The self time of each stack in nanoseconds, in the order stacks were first called.
+	 */
+	private Map<String, long[]> collapse() {
+		final int nodeCount = profiler.getNodeCount();
+		final String[] stacks = new String[nodeCount];
+		final String[] lastFrames = new String[nodeCount];
+		final Map<String, long[]> times = new LinkedHashMap<String, long[]>();
+		// Parents always have lower indices than their callees
+		for (int node = 0; node < nodeCount; node++) {
+			final int parent = profiler.getParent(node);
+			String frame = getFrameName(profiler.getMonitored(node));
+			if (frame == null && parent == AggregatingProfiler.NO_NODE) {
+				frame = profiler.getMonitored(node).eClass().getName();
+			}
+			if (parent == AggregatingProfiler.NO_NODE) {
+				stacks[node] = sanitize(frame);
+				lastFrames[node] = frame;
+			} else if (frame == null || frame.equals(lastFrames[parent])) {
+				stacks[node] = stacks[parent];
+				lastFrames[node] = lastFrames[parent];
+			} else {
+				stacks[node] = stacks[parent] + FRAME_SEPARATOR + sanitize(frame);
+				lastFrames[node] = frame;
+			}
+			long[] time = times.get(stacks[node]);
+			if (time == null) {
+				time = new long[1];
+				times.put(stacks[node], time);
+			}
+			time[0] += profiler.getSelfTime(node);
+		}
+		return times;
+	}
+
+	/**
+	 * Returns the name of the given object, or the name of its type if it has none.
+	 * 
+	 * @param object
+	 *            The object which name we need.
+	 * @return The name of <code>object</code>.
+	 */
+	private static String getName(EObject object) {
+		final EStructuralFeature feature = object.eClass().getEStructuralFeature(NAME_FEATURE);
+		if (feature instanceof EAttribute && !feature.isMany()) {
+			final Object name = object.eGet(feature);
+			if (name instanceof String && ((String)name).length() > 0) {
+				return (String)name;
+			}
+		}
+		return object.eClass().getName();
+	}
+
+	/**
+	 * Replaces the characters of the given frame name that have a meaning in the collapsed stack format.
+	 * 
+	 * @param frame
+	 *            The frame name to sanitize.
+	 * @return The sanitized frame name.
+	 */
+	private static String sanitize(String frame) {
+		return frame.replace(FRAME_SEPARATOR, '_').replace('\n', ' ').replace('\r', ' ');
+	}
+}
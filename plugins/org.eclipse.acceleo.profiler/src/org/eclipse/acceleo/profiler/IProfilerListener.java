@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.profiler;
+
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * Listeners of this kind are notified of each call an {@link AggregatingProfiler} times. They allow
+ * headless tools to forward these timings to other recorders, such as the events of a flight recorder, as
+ * the generation goes.
+ * <p>
+ * Listeners are called on the generation thread, right after the call has been accounted for : they should
+ * return quickly.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ * @since 3.5
+ */
+public interface IProfilerListener {
+	/**
+	 * Notifies this listener that a call has just been timed.
+	 * 
+	 * @param profiler
+	 *            The profiler that timed this call. Its node API can be used to browse the call path.
+	 * @param node
+	 *            The node of <code>profiler</code> this call has been aggregated in.
+	 * @param monitored
+	 *            The object that has been monitored, typically the evaluated template, query or expression.
+	 * @param startTime
+	 *            Value of {@link System#nanoTime()} when the call started.
+	 * @param duration
+	 *            Duration of the call in nanoseconds.
+	 */
+	void callStopped(AggregatingProfiler profiler, int node, EObject monitored, long startTime,
+			long duration);
+}
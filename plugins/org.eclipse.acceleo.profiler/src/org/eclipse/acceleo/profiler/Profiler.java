@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -283,8 +283,9 @@ public class Profiler {
 	 *            URI where to save data
 	 * @throws IOException
 	 *             if save fail
+	 * @since 3.5
 	 */
-	private void save(EObject result, String modelURI) throws IOException {
+	protected void save(EObject result, String modelURI) throws IOException {
 		final ResourceSet resourceSet = new ResourceSetImpl();
 		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put(
 				Resource.Factory.Registry.DEFAULT_EXTENSION, new XMIResourceFactoryImpl());
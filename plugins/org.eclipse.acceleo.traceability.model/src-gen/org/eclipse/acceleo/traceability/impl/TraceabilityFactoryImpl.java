@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -24,6 +24,8 @@ import org.eclipse.acceleo.traceability.TraceabilityPackage;
 import org.eclipse.acceleo.traceability.spec.GeneratedFileSpec;
 import org.eclipse.acceleo.traceability.spec.GeneratedTextSpec;
 import org.eclipse.acceleo.traceability.spec.InputElementSpec;
+import org.eclipse.acceleo.traceability.spec.ModelFileSpec;
+import org.eclipse.acceleo.traceability.spec.ModuleFileSpec;
 import org.eclipse.acceleo.traceability.spec.TraceabilityModelSpec;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EDataType;
@@ -133,19 +135,21 @@ public class TraceabilityFactoryImpl extends EFactoryImpl implements Traceabilit
 
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
-	 * @generated
+	 * 
+	 * @generated NOT
 	 */
 	public ModelFile createModelFile() {
-		ModelFileImpl modelFile = new ModelFileImpl();
+		ModelFileImpl modelFile = new ModelFileSpec();
 		return modelFile;
 	}
 
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
-	 * @generated
+	 * 
+	 * @generated NOT
 	 */
 	public ModuleFile createModuleFile() {
-		ModuleFileImpl moduleFile = new ModuleFileImpl();
+		ModuleFileImpl moduleFile = new ModuleFileSpec();
 		return moduleFile;
 	}
 
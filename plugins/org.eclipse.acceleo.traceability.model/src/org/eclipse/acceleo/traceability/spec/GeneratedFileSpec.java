@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,12 +10,20 @@
  *******************************************************************************/
 package org.eclipse.acceleo.traceability.spec;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.acceleo.traceability.GeneratedText;
+import org.eclipse.acceleo.traceability.ModuleElement;
+import org.eclipse.acceleo.traceability.TraceabilityPackage;
 import org.eclipse.acceleo.traceability.impl.GeneratedFileImpl;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.WrappedException;
+import org.eclipse.emf.ecore.EObject;
 
 /**
  * This specific implementation of the {@link org.eclipse.acceleo.traceability.GeneratedFile} will deal with
@@ -24,6 +32,145 @@ import org.eclipse.acceleo.traceability.impl.GeneratedFileImpl;
  * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
  */
 public class GeneratedFileSpec extends GeneratedFileImpl {
+	/** The store holding the regions of this file that have been moved out of the model, if any. */
+	private GeneratedRegionStore regionStore;
+
+	/** Variables that were visible to the file block when this file was last generated. */
+	private Map<String, Object> generationContext;
+
+	/** Model elements that were read while this file was last generated. */
+	private Set<EObject> readElements;
+
+	/**
+	 * Returns the variables that were visible to the file block when this file was last generated.
+	 * 
+	 * @return The variables that were visible to the file block when this file was last generated,
+	 *         <code>null</code> if unknown.
+	 * @since 3.5
+	 */
+	public Map<String, Object> getGenerationContext() {
+		return generationContext;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the regions of this file have been moved to a {@link GeneratedRegionStore}, they are loaded back
+	 * before being returned. A {@link WrappedException} is thrown if they cannot be read.
+	 * </p>
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.GeneratedFileImpl#getGeneratedRegions()
+	 */
+	@Override
+	public EList<GeneratedText> getGeneratedRegions() {
+		final EList<GeneratedText> regions = super.getGeneratedRegions();
+		if (regionStore != null) {
+			final GeneratedRegionStore store = regionStore;
+			regionStore = null;
+			try {
+				regions.addAll(0, store.load(this));
+			} catch (IOException e) {
+				throw new WrappedException(e);
+			}
+		}
+		return regions;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The generated regions are considered set as long as some of them are held by a
+	 * {@link GeneratedRegionStore} so that serialization and copies, which skip unset features, load them
+	 * back through {@link #getGeneratedRegions()}.
+	 * </p>
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.GeneratedFileImpl#eIsSet(int)
+	 */
+	@Override
+	public boolean eIsSet(int featureID) {
+		if (featureID == TraceabilityPackage.GENERATED_FILE__GENERATED_REGIONS && regionStore != null
+				&& regionStore.hasRegions(this)) {
+			return true;
+		}
+		return super.eIsSet(featureID);
+	}
+
+	/**
+	 * Returns the model elements that were read while this file was last generated.
+	 * 
+	 * @return The model elements that were read while this file was last generated, <code>null</code> if
+	 *         unknown.
+	 * @since 3.5
+	 */
+	public Set<EObject> getReadElements() {
+		return readElements;
+	}
+
+	/**
+	 * Records what the last generation of this file depended on. Neither of these is serialized along with
+	 * the model; <code>null</code> means that the dependencies of this file are unknown.
+	 * 
+	 * @param context
+	 *            Variables that were visible to the file block.
+	 * @param reads
+	 *            Model elements that were read while generating this file.
+	 * @since 3.5
+	 */
+	public void setGenerationDependencies(Map<String, Object> context, Set<EObject> reads) {
+		generationContext = context;
+		readElements = reads;
+	}
+
+	/**
+	 * Moves the generated regions of this file to the given store. They will be loaded back the next time
+	 * {@link #getGeneratedRegions()} is called.
+	 * 
+	 * @param store
+	 *            The store in which the regions of this file are to be moved.
+	 * @throws IOException
+	 *             Thrown if the regions cannot be written to the store. They are then left in this file.
+	 */
+	public void storeRegions(GeneratedRegionStore store) throws IOException {
+		if (generatedRegions == null || generatedRegions.isEmpty()) {
+			return;
+		}
+		if (regionStore != null && regionStore != store) {
+			// Regions cannot be spread across two stores
+			getGeneratedRegions();
+		}
+		store.store(this, generatedRegions);
+		regionStore = store;
+		generatedRegions.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.ResourceImpl#setPath(java.lang.String)
+	 */
+	@Override
+	public void setPath(String newPath) {
+		final String oldPath = getPath();
+		super.setPath(newPath);
+		if (eInternalContainer() instanceof TraceabilityModelSpec) {
+			((TraceabilityModelSpec)eInternalContainer()).pathChanged(this, oldPath);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.GeneratedFileImpl#setFileBlock(org.eclipse.acceleo.traceability.ModuleElement)
+	 */
+	@Override
+	public void setFileBlock(ModuleElement newFileBlock) {
+		final ModuleElement oldFileBlock = getFileBlock();
+		super.setFileBlock(newFileBlock);
+		if (eInternalContainer() instanceof TraceabilityModelSpec) {
+			((TraceabilityModelSpec)eInternalContainer()).fileBlockChanged(this, oldFileBlock);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
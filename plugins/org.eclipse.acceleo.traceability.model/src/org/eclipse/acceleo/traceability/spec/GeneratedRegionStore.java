@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.traceability.spec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.acceleo.traceability.GeneratedFile;
+import org.eclipse.acceleo.traceability.GeneratedText;
+import org.eclipse.acceleo.traceability.InputElement;
+import org.eclipse.acceleo.traceability.ModuleElement;
+import org.eclipse.acceleo.traceability.TraceabilityFactory;
+
+/**
+ * Keeps the generated regions of traceability files as columns of primitive integers instead of
+ * {@link GeneratedText} instances. Each region is stored as a file id, a start offset, an end offset, an
+ * input element id and a module element id. Ids refer to the objects of the traceability model, which this
+ * store keeps in tables.
+ * <p>
+ * When created with a file, regions are streamed to this file as they are stored and only their position is
+ * kept in memory. Otherwise, columns are kept in memory. In both cases, {@link GeneratedText} instances are
+ * only created again for the files which regions a client asks for.
+ * </p>
+ * <p>
+ * Once all of its regions have been loaded back, which is what saving the traceability model does, a store
+ * releases its file and tables. It can still be used to store regions afterwards.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class GeneratedRegionStore {
+	/** Number of integer columns stored for each region. */
+	private static final int COLUMN_COUNT = 5;
+
+	/** Size of an integer in bytes. */
+	private static final int INT_SIZE = 4;
+
+	/** Initial capacity of the in-memory columns. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Id of <code>null</code> elements. */
+	private static final int NO_ID = -1;
+
+	/** The file in which regions are streamed, <code>null</code> if they are kept in memory. */
+	private final File storeFile;
+
+	/** Channel through which we access {@link #storeFile}. */
+	private FileChannel channel;
+
+	/** Position at which the next run of regions will be written in {@link #storeFile}. */
+	private long filePosition;
+
+	/** The in-memory columns, <code>null</code> if regions are streamed to a file. */
+	private int[][] columns;
+
+	/** Number of regions in the in-memory columns. */
+	private int rowCount;
+
+	/** Number of regions currently stored. */
+	private int regionCount;
+
+	/** The generated files which regions have been stored, the index of each being its id. */
+	private final List<GeneratedFile> files = new ArrayList<GeneratedFile>();
+
+	/** Ids of the generated files which regions have been stored. */
+	private final Map<GeneratedFile, Integer> fileIds = new IdentityHashMap<GeneratedFile, Integer>();
+
+	/** The runs of regions stored for each file : pairs of (position, region count). */
+	private final Map<GeneratedFile, long[]> runs = new IdentityHashMap<GeneratedFile, long[]>();
+
+	/** The input elements referred to by stored regions, the index of each being its id. */
+	private final List<InputElement> inputElements = new ArrayList<InputElement>();
+
+	/** Ids of the input elements referred to by stored regions. */
+	private final Map<InputElement, Integer> inputElementIds = new IdentityHashMap<InputElement, Integer>();
+
+	/** The module elements referred to by stored regions, the index of each being its id. */
+	private final List<ModuleElement> moduleElements = new ArrayList<ModuleElement>();
+
+	/** Ids of the module elements referred to by stored regions. */
+	private final Map<ModuleElement, Integer> moduleElementIds = new IdentityHashMap<ModuleElement, Integer>();
+
+	/**
+	 * Creates a store keeping its columns in memory.
+	 */
+	public GeneratedRegionStore() {
+		this(null);
+	}
+
+	/**
+	 * Creates a store streaming regions to the given file. The file will be overwritten, and deleted when
+	 * this store is disposed.
+	 * 
+	 * @param storeFile
+	 *            The file in which regions are to be streamed, <code>null</code> to keep them in memory.
+	 */
+	public GeneratedRegionStore(File storeFile) {
+		this.storeFile = storeFile;
+		if (storeFile == null) {
+			columns = new int[COLUMN_COUNT][INITIAL_CAPACITY];
+		}
+	}
+
+	/**
+	 * Stores the given regions of the given file. The regions are left untouched, callers can discard them
+	 * once this returns.
+	 * 
+	 * @param file
+	 *            The file these regions belong to.
+	 * @param regions
+	 *            The regions to store.
+	 * @throws IOException
+	 *             Thrown if we cannot write the regions in the store file.
+	 */
+	public synchronized void store(GeneratedFile file, List<GeneratedText> regions) throws IOException {
+		final int count = regions.size();
+		if (count == 0) {
+			return;
+		}
+		final int fileId = getId(file, files, fileIds);
+		final int[][] run = new int[COLUMN_COUNT][count];
+		for (int i = 0; i < count; i++) {
+			final GeneratedText region = regions.get(i);
+			run[0][i] = fileId;
+			run[1][i] = region.getStartOffset();
+			run[2][i] = region.getEndOffset();
+			run[3][i] = getId(region.getSourceElement(), inputElements, inputElementIds);
+			run[4][i] = getId(region.getModuleElement(), moduleElements, moduleElementIds);
+		}
+		final long position;
+		if (storeFile == null) {
+			position = append(run, count);
+		} else {
+			position = write(run, count);
+		}
+		long[] fileRuns = runs.get(file);
+		if (fileRuns == null) {
+			fileRuns = new long[] {position, count };
+		} else {
+			fileRuns = Arrays.copyOf(fileRuns, fileRuns.length + 2);
+			fileRuns[fileRuns.length - 2] = position;
+			fileRuns[fileRuns.length - 1] = count;
+		}
+		runs.put(file, fileRuns);
+		regionCount += count;
+	}
+
+	/**
+	 * Tells whether this store holds regions of the given file.
+	 * 
+	 * @param file
+	 *            The file we need to check.
+	 * @return <code>true</code> if this store holds regions of <code>file</code>.
+	 */
+	public synchronized boolean hasRegions(GeneratedFile file) {
+		return runs.containsKey(file);
+	}
+
+	/**
+	 * Creates the regions stored for the given file, in the order they were stored, and removes them from
+	 * this store. This store is released if it does not hold any region afterwards.
+	 * 
+	 * @param file
+	 *            The file which regions we need.
+	 * @return The regions stored for <code>file</code>. These are not contained by any file yet.
+	 * @throws IOException
+	 *             Thrown if we cannot read the regions from the store file.
+	 */
+	public synchronized List<GeneratedText> load(GeneratedFile file) throws IOException {
+		final long[] fileRuns = runs.remove(file);
+		if (fileRuns == null) {
+			return new ArrayList<GeneratedText>();
+		}
+		int total = 0;
+		for (int i = 1; i < fileRuns.length; i += 2) {
+			total += (int)fileRuns[i];
+		}
+		final List<GeneratedText> regions = new ArrayList<GeneratedText>(total);
+		for (int i = 0; i < fileRuns.length; i += 2) {
+			final int count = (int)fileRuns[i + 1];
+			final int[][] run;
+			if (storeFile == null) {
+				run = copy((int)fileRuns[i], count);
+			} else {
+				run = read(fileRuns[i], count);
+			}
+			for (int j = 0; j < count; j++) {
+				final GeneratedText region = TraceabilityFactory.eINSTANCE.createGeneratedText();
+				region.setStartOffset(run[1][j]);
+				region.setEndOffset(run[2][j]);
+				if (run[3][j] != NO_ID) {
+					region.setSourceElement(inputElements.get(run[3][j]));
+				}
+				if (run[4][j] != NO_ID) {
+					region.setModuleElement(moduleElements.get(run[4][j]));
+				}
+				regions.add(region);
+			}
+		}
+		regionCount -= total;
+		if (runs.isEmpty()) {
+			dispose();
+		}
+		return regions;
+	}
+
+	/**
+	 * Returns the number of regions currently held by this store.
+	 * 
+	 * @return The number of regions currently held by this store.
+	 */
+	public synchronized int getRegionCount() {
+		return regionCount;
+	}
+
+	/**
+	 * Releases all regions of this store, deleting its file if any. Regions that have not been loaded are
+	 * lost. The file will be created again if regions are stored afterwards.
+	 */
+	public synchronized void dispose() {
+		runs.clear();
+		files.clear();
+		fileIds.clear();
+		inputElements.clear();
+		inputElementIds.clear();
+		moduleElements.clear();
+		moduleElementIds.clear();
+		regionCount = 0;
+		rowCount = 0;
+		filePosition = 0;
+		if (storeFile == null && columns[0].length > INITIAL_CAPACITY) {
+			columns = new int[COLUMN_COUNT][INITIAL_CAPACITY];
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Nothing we can do, the file will be deleted anyway
+			}
+			channel = null;
+		}
+		if (storeFile != null && storeFile.exists() && !storeFile.delete()) {
+			storeFile.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Returns the id of the given element, assigning it one if needed.
+	 * 
+	 * @param <T>
+	 *            Type of the element.
+	 * @param element
+	 *            The element which id we need.
+	 * @param elements
+	 *            The elements that already have an id, the index of each being its id.
+	 * @param ids
+	 *            The ids of the elements that already have one.
+	 * @return The id of <code>element</code>, {@link #NO_ID} if it is <code>null</code>.
+	 */
+	private static <T> int getId(T element, List<T> elements, Map<T, Integer> ids) {
+		if (element == null) {
+			return NO_ID;
+		}
+		Integer id = ids.get(element);
+		if (id == null) {
+			id = Integer.valueOf(elements.size());
+			elements.add(element);
+			ids.put(element, id);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Appends the given run of regions to the in-memory columns.
+	 * 
+	 * @param run
+	 *            The columns of the regions to append.
+	 * @param count
+	 *            Number of regions in <code>run</code>.
+	 * @return The row at which the run has been appended.
+	 */
+	private long append(int[][] run, int count) {
+		if (rowCount + count > columns[0].length) {
+			final int capacity = Math.max(columns[0].length << 1, rowCount + count);
+			for (int i = 0; i < COLUMN_COUNT; i++) {
+				columns[i] = Arrays.copyOf(columns[i], capacity);
+			}
+		}
+		final int row = rowCount;
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			System.arraycopy(run[i], 0, columns[i], row, count);
+		}
+		rowCount += count;
+		return row;
+	}
+
+	/**
+	 * Copies a run of regions from the in-memory columns.
+	 * 
+	 * @param row
+	 *            The row at which the run starts.
+	 * @param count
+	 *            Number of regions in the run.
+	 * @return The columns of the run.
+	 */
+	private int[][] copy(int row, int count) {
+		final int[][] run = new int[COLUMN_COUNT][];
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			run[i] = Arrays.copyOfRange(columns[i], row, row + count);
+		}
+		return run;
+	}
+
+	/**
+	 * Writes the given run of regions at the end of the store file, one column after the other.
+	 * 
+	 * @param run
+	 *            The columns of the regions to write.
+	 * @param count
+	 *            Number of regions in <code>run</code>.
+	 * @return The position at which the run has been written.
+	 * @throws IOException
+	 *             Thrown if we cannot write in the store file.
+	 */
+	private long write(int[][] run, int count) throws IOException {
+		if (channel == null) {
+			channel = new RandomAccessFile(storeFile, "rw").getChannel(); //$NON-NLS-1$
+			channel.truncate(0);
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(COLUMN_COUNT * count * INT_SIZE);
+		final IntBuffer ints = buffer.asIntBuffer();
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			ints.put(run[i], 0, count);
+		}
+		final long position = filePosition;
+		long written = position;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer, written);
+		}
+		filePosition = written;
+		return position;
+	}
+
+	/**
+	 * Reads a run of regions from the store file.
+	 * 
+	 * @param position
+	 *            The position at which the run starts.
+	 * @param count
+	 *            Number of regions in the run.
+	 * @return The columns of the run.
+	 * @throws IOException
+	 *             Thrown if we cannot read the store file.
+	 */
+	private int[][] read(long position, int count) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(COLUMN_COUNT * count * INT_SIZE);
+		long read = position;
+		while (buffer.hasRemaining()) {
+			final int bytes = channel.read(buffer, read);
+			if (bytes < 0) {
+				throw new IOException("Unexpected end of the traceability store " + storeFile); //$NON-NLS-1$
+			}
+			read += bytes;
+		}
+		buffer.flip();
+		final IntBuffer ints = buffer.asIntBuffer();
+		final int[][] run = new int[COLUMN_COUNT][count];
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			ints.get(run[i]);
+		}
+		return run;
+	}
+}
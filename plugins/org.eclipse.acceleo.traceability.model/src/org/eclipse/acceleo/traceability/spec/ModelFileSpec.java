@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.traceability.spec;
+
+import org.eclipse.acceleo.traceability.impl.ModelFileImpl;
+
+/**
+ * This specific implementation of the {@link org.eclipse.acceleo.traceability.ModelFile} will deal with
+ * non generated bits.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class ModelFileSpec extends ModelFileImpl {
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.ResourceImpl#setPath(java.lang.String)
+	 */
+	@Override
+	public void setPath(String newPath) {
+		final String oldPath = getPath();
+		super.setPath(newPath);
+		if (eInternalContainer() instanceof TraceabilityModelSpec) {
+			((TraceabilityModelSpec)eInternalContainer()).pathChanged(this, oldPath);
+		}
+	}
+}
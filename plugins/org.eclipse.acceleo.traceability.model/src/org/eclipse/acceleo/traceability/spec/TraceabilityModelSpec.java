@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,20 +10,151 @@
  *******************************************************************************/
 package org.eclipse.acceleo.traceability.spec;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.acceleo.traceability.GeneratedFile;
 import org.eclipse.acceleo.traceability.ModelFile;
 import org.eclipse.acceleo.traceability.ModuleElement;
 import org.eclipse.acceleo.traceability.ModuleFile;
+import org.eclipse.acceleo.traceability.TraceabilityPackage;
 import org.eclipse.acceleo.traceability.impl.TraceabilityModelImpl;
+import org.eclipse.emf.common.notify.NotificationChain;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EObjectContainmentEList;
 
 /**
  * This implementation of the {@link org.eclipse.acceleo.traceability.TraceabilityModel} will handle non
  * generated bits.
+ * <p>
+ * Files are looked up through hashed indices, kept in sync by the containment lists of this model and by the
+ * files themselves when their path or file block changes. When two files share the same key, the one that
+ * has been indexed first is returned.
+ * </p>
  * 
  * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
  */
 public class TraceabilityModelSpec extends TraceabilityModelImpl {
+	/** The generated files of this model, mapped to their path. */
+	private final Map<String, GeneratedFile> generatedFilesByPath = new HashMap<String, GeneratedFile>();
+
+	/** The generated files of this model, mapped to their file block. */
+	private final Map<ModuleElement, GeneratedFile> generatedFilesByBlock = new HashMap<ModuleElement, GeneratedFile>();
+
+	/** The modules of this model, mapped to their path. */
+	private final Map<String, ModuleFile> modulesByPath = new HashMap<String, ModuleFile>();
+
+	/** The model files of this model, mapped to their path. */
+	private final Map<String, ModelFile> modelFilesByPath = new HashMap<String, ModelFile>();
+
+	/** The store in which the regions of complete files are moved, <code>null</code> to keep them here. */
+	private GeneratedRegionStore regionStore;
+
+	/**
+	 * Returns the store in which the regions of complete files are moved.
+	 * 
+	 * @return The store in which the regions of complete files are moved, <code>null</code> if they are kept
+	 *         in this model.
+	 */
+	public GeneratedRegionStore getRegionStore() {
+		return regionStore;
+	}
+
+	/**
+	 * Sets the store in which the regions of complete files are to be moved. This store is kept as long as
+	 * this model, and disposed of when the resource containing this model is unloaded.
+	 * 
+	 * @param store
+	 *            The store in which the regions of complete files are to be moved, <code>null</code> to keep
+	 *            them in this model.
+	 */
+	public void setRegionStore(GeneratedRegionStore store) {
+		regionStore = store;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The region store of this model, if any, is disposed of when the resource containing this model is
+	 * unloaded. The regions it still held are lost along with the rest of the unloaded model.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.ecore.impl.BasicEObjectImpl#eSetResource(org.eclipse.emf.ecore.resource.Resource.Internal,
+	 *      org.eclipse.emf.common.notify.NotificationChain)
+	 */
+	@Override
+	public NotificationChain eSetResource(Resource.Internal resource, NotificationChain notifications) {
+		final Resource.Internal oldResource = eDirectResource();
+		final NotificationChain result = super.eSetResource(resource, notifications);
+		if (resource == null && oldResource != null && !oldResource.isLoaded() && regionStore != null) {
+			regionStore.dispose();
+			regionStore = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Moves the generated regions of the given file to the region store of this model, if any. This should
+	 * only be called once the file has been completely generated.
+	 * 
+	 * @param file
+	 *            The file which regions are to be stored.
+	 * @throws IOException
+	 *             Thrown if the regions cannot be written to the store. They are then left in the file.
+	 */
+	public void storeRegions(GeneratedFile file) throws IOException {
+		if (regionStore != null && file instanceof GeneratedFileSpec) {
+			((GeneratedFileSpec)file).storeRegions(regionStore);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.TraceabilityModelImpl#getGeneratedFiles()
+	 */
+	@Override
+	public EList<GeneratedFile> getGeneratedFiles() {
+		if (generatedFiles == null) {
+			generatedFiles = new IndexedContainmentEList<GeneratedFile>(GeneratedFile.class,
+					TraceabilityPackage.TRACEABILITY_MODEL__GENERATED_FILES);
+		}
+		return generatedFiles;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.TraceabilityModelImpl#getModules()
+	 */
+	@Override
+	public EList<ModuleFile> getModules() {
+		if (modules == null) {
+			modules = new IndexedContainmentEList<ModuleFile>(ModuleFile.class,
+					TraceabilityPackage.TRACEABILITY_MODEL__MODULES);
+		}
+		return modules;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.traceability.impl.TraceabilityModelImpl#getModelFiles()
+	 */
+	@Override
+	public EList<ModelFile> getModelFiles() {
+		if (modelFiles == null) {
+			modelFiles = new IndexedContainmentEList<ModelFile>(ModelFile.class,
+					TraceabilityPackage.TRACEABILITY_MODEL__MODEL_FILES);
+		}
+		return modelFiles;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -31,12 +162,7 @@ public class TraceabilityModelSpec extends TraceabilityModelImpl {
 	 */
 	@Override
 	public GeneratedFile getGeneratedFile(String filePath) {
-		for (GeneratedFile file : getGeneratedFiles()) {
-			if (file.getPath().equals(filePath)) {
-				return file;
-			}
-		}
-		return null;
+		return generatedFilesByPath.get(filePath);
 	}
 
 	/**
@@ -46,12 +172,7 @@ public class TraceabilityModelSpec extends TraceabilityModelImpl {
 	 */
 	@Override
 	public GeneratedFile getGeneratedFile(ModuleElement moduleElement) {
-		for (GeneratedFile file : getGeneratedFiles()) {
-			if (file.getFileBlock().equals(moduleElement)) {
-				return file;
-			}
-		}
-		return null;
+		return generatedFilesByBlock.get(moduleElement);
 	}
 
 	/**
@@ -71,12 +192,7 @@ public class TraceabilityModelSpec extends TraceabilityModelImpl {
 	 */
 	@Override
 	public ModuleFile getGenerationModule(String moduleURI) {
-		for (ModuleFile file : getModules()) {
-			if (file.getPath().equals(moduleURI)) {
-				return file;
-			}
-		}
-		return null;
+		return modulesByPath.get(moduleURI);
 	}
 
 	/**
@@ -96,11 +212,196 @@ public class TraceabilityModelSpec extends TraceabilityModelImpl {
 	 */
 	@Override
 	public ModelFile getInputModel(String modelURI) {
-		for (ModelFile file : getModelFiles()) {
-			if (file.getPath().equals(modelURI)) {
-				return file;
+		return modelFilesByPath.get(modelURI);
+	}
+
+	/**
+	 * Updates the indices of this model after the path of one of its files changed.
+	 * 
+	 * @param file
+	 *            The file which path changed.
+	 * @param oldPath
+	 *            The previous path of <code>file</code>.
+	 */
+	void pathChanged(org.eclipse.acceleo.traceability.Resource file, String oldPath) {
+		final EStructuralFeature pathFeature = TraceabilityPackage.Literals.RESOURCE__PATH;
+		if (file instanceof GeneratedFile) {
+			final GeneratedFile generatedFile = (GeneratedFile)file;
+			unindex(generatedFilesByPath, oldPath, generatedFile, getGeneratedFiles(), pathFeature);
+			index(generatedFilesByPath, generatedFile.getPath(), generatedFile);
+		} else if (file instanceof ModuleFile) {
+			final ModuleFile moduleFile = (ModuleFile)file;
+			unindex(modulesByPath, oldPath, moduleFile, getModules(), pathFeature);
+			index(modulesByPath, moduleFile.getPath(), moduleFile);
+		} else if (file instanceof ModelFile) {
+			final ModelFile modelFile = (ModelFile)file;
+			unindex(modelFilesByPath, oldPath, modelFile, getModelFiles(), pathFeature);
+			index(modelFilesByPath, modelFile.getPath(), modelFile);
+		}
+	}
+
+	/**
+	 * Updates the indices of this model after the file block of one of its generated files changed.
+	 * 
+	 * @param file
+	 *            The generated file which file block changed.
+	 * @param oldFileBlock
+	 *            The previous file block of <code>file</code>.
+	 */
+	void fileBlockChanged(GeneratedFile file, ModuleElement oldFileBlock) {
+		unindex(generatedFilesByBlock, oldFileBlock, file, getGeneratedFiles(),
+				TraceabilityPackage.Literals.GENERATED_FILE__FILE_BLOCK);
+		index(generatedFilesByBlock, file.getFileBlock(), file);
+	}
+
+	/**
+	 * Adds the given file to the indices of this model.
+	 * 
+	 * @param file
+	 *            The file that has been added to one of the containment lists of this model.
+	 */
+	private void added(Object file) {
+		if (file instanceof GeneratedFile) {
+			final GeneratedFile generatedFile = (GeneratedFile)file;
+			index(generatedFilesByPath, generatedFile.getPath(), generatedFile);
+			index(generatedFilesByBlock, generatedFile.getFileBlock(), generatedFile);
+		} else if (file instanceof ModuleFile) {
+			index(modulesByPath, ((ModuleFile)file).getPath(), (ModuleFile)file);
+		} else if (file instanceof ModelFile) {
+			index(modelFilesByPath, ((ModelFile)file).getPath(), (ModelFile)file);
+		}
+	}
+
+	/**
+	 * Removes the given file from the indices of this model.
+	 * 
+	 * @param file
+	 *            The file that has been removed from one of the containment lists of this model.
+	 */
+	private void removed(Object file) {
+		final EStructuralFeature pathFeature = TraceabilityPackage.Literals.RESOURCE__PATH;
+		if (file instanceof GeneratedFile) {
+			final GeneratedFile generatedFile = (GeneratedFile)file;
+			unindex(generatedFilesByPath, generatedFile.getPath(), generatedFile, getGeneratedFiles(),
+					pathFeature);
+			unindex(generatedFilesByBlock, generatedFile.getFileBlock(), generatedFile, getGeneratedFiles(),
+					TraceabilityPackage.Literals.GENERATED_FILE__FILE_BLOCK);
+		} else if (file instanceof ModuleFile) {
+			final ModuleFile moduleFile = (ModuleFile)file;
+			unindex(modulesByPath, moduleFile.getPath(), moduleFile, getModules(), pathFeature);
+		} else if (file instanceof ModelFile) {
+			final ModelFile modelFile = (ModelFile)file;
+			unindex(modelFilesByPath, modelFile.getPath(), modelFile, getModelFiles(), pathFeature);
+		}
+	}
+
+	/**
+	 * Maps the given value to the given key unless this key is <code>null</code> or already mapped.
+	 * 
+	 * @param <K>
+	 *            Type of the keys.
+	 * @param <V>
+	 *            Type of the values.
+	 * @param index
+	 *            The index to update.
+	 * @param key
+	 *            Key of <code>value</code>.
+	 * @param value
+	 *            The value to index.
+	 */
+	private static <K, V> void index(Map<K, V> index, K key, V value) {
+		if (key != null && !index.containsKey(key)) {
+			index.put(key, value);
+		}
+	}
+
+	/**
+	 * Removes the given value from the index if it is mapped to the given key, mapping this key to the next
+	 * element of <code>list</code> with the same key, if any.
+	 * 
+	 * @param <K>
+	 *            Type of the keys.
+	 * @param <V>
+	 *            Type of the values.
+	 * @param index
+	 *            The index to update.
+	 * @param key
+	 *            The key <code>value</code> may be mapped to.
+	 * @param value
+	 *            The value to remove from the index.
+	 * @param list
+	 *            The list which elements are indexed.
+	 * @param keyFeature
+	 *            The feature holding the key of the list's elements.
+	 */
+	private static <K, V extends EObject> void unindex(Map<K, V> index, K key, V value, List<V> list,
+			EStructuralFeature keyFeature) {
+		if (key != null && index.get(key) == value) {
+			index.remove(key);
+			for (V candidate : list) {
+				if (candidate != value && key.equals(candidate.eGet(keyFeature))) {
+					index.put(key, candidate);
+					break;
+				}
 			}
 		}
-		return null;
+	}
+
+	/**
+	 * A containment list that keeps the indices of this model up to date with its content.
+	 * 
+	 * @param <E>
+	 *            Type of the list's elements.
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private final class IndexedContainmentEList<E> extends EObjectContainmentEList<E> {
+		/** Generated serial version UID. */
+		private static final long serialVersionUID = -3385447317464263519L;
+
+		/**
+		 * Creates a containment list for the given feature of this model.
+		 * 
+		 * @param dataClass
+		 *            Type of the list's elements.
+		 * @param featureID
+		 *            ID of the feature this list holds the value of.
+		 */
+		IndexedContainmentEList(Class<?> dataClass, int featureID) {
+			super(dataClass, TraceabilityModelSpec.this, featureID);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.emf.common.util.AbstractEList#didAdd(int, java.lang.Object)
+		 */
+		@Override
+		protected void didAdd(int index, E newObject) {
+			super.didAdd(index, newObject);
+			added(newObject);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.emf.common.util.AbstractEList#didRemove(int, java.lang.Object)
+		 */
+		@Override
+		protected void didRemove(int index, E oldObject) {
+			super.didRemove(index, oldObject);
+			removed(oldObject);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.emf.common.util.AbstractEList#didSet(int, java.lang.Object, java.lang.Object)
+		 */
+		@Override
+		protected void didSet(int index, E newObject, E oldObject) {
+			super.didSet(index, newObject, oldObject);
+			removed(oldObject);
+			added(newObject);
+		}
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.acceleo.internal.traceability.engine;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -25,11 +26,43 @@ import org.eclipse.acceleo.traceability.TraceabilityFactory;
  * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
  */
 public abstract class AbstractTrace {
+	/** Initial capacity of the region sets. Most expressions generate a single region from each input. */
+	private static final int REGION_SET_CAPACITY = 2;
+
+	/** Initial capacity of the trace maps. Most expressions only refer to a few input elements. */
+	private static final int TRACE_MAP_CAPACITY = 4;
+
 	/** This will keep track of the current starting offset for added traces. */
 	protected int currentOffset;
 
 	/** maps input elements corresponding to this expression to the bits they were used to generate. */
-	protected final LinkedHashMap<InputElement, Set<GeneratedText>> traces = new LinkedHashMap<InputElement, Set<GeneratedText>>();
+	protected final LinkedHashMap<InputElement, Set<GeneratedText>> traces = new LinkedHashMap<InputElement, Set<GeneratedText>>(
+			TRACE_MAP_CAPACITY);
+
+	/**
+	 * Creates an empty set for the regions generated from a single input element. These sets are created for
+	 * every input of every traced expression and start small.
+	 * 
+	 * @return An empty set of regions.
+	 */
+	public static Set<GeneratedText> createRegionSet() {
+		return new CompactLinkedHashSet<GeneratedText>(REGION_SET_CAPACITY);
+	}
+
+	/**
+	 * Creates a set for the regions generated from a single input element, initially containing the given
+	 * regions.
+	 * 
+	 * @param regions
+	 *            The regions the new set is to contain.
+	 * @return A set containing <code>regions</code>.
+	 */
+	public static Set<GeneratedText> createRegionSet(Collection<GeneratedText> regions) {
+		final Set<GeneratedText> set = new CompactLinkedHashSet<GeneratedText>(Math.max(regions.size(),
+				REGION_SET_CAPACITY));
+		set.addAll(regions);
+		return set;
+	}
 
 	/**
 	 * Adds the given trace to the list of traces corresponding to this expression, setting the offset as it
@@ -45,7 +78,7 @@ public abstract class AbstractTrace {
 	public void addTrace(InputElement input, GeneratedText trace, int length) {
 		Set<GeneratedText> referredTraces = traces.get(input);
 		if (referredTraces == null) {
-			referredTraces = new CompactLinkedHashSet<GeneratedText>();
+			referredTraces = createRegionSet();
 			traces.put(input, referredTraces);
 		}
 		int startOffset = currentOffset;
@@ -85,7 +118,7 @@ public abstract class AbstractTrace {
 			InputElement input = entry.getKey();
 			Set<GeneratedText> referredTraces = traces.get(input);
 			if (referredTraces == null) {
-				referredTraces = new CompactLinkedHashSet<GeneratedText>();
+				referredTraces = createRegionSet();
 				traces.put(input, referredTraces);
 			}
 
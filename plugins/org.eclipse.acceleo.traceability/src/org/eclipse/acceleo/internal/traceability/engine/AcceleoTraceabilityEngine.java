@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,29 +11,75 @@
 package org.eclipse.acceleo.internal.traceability.engine;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.acceleo.engine.event.AcceleoTextGenerationEvent;
 import org.eclipse.acceleo.engine.event.IAcceleoTextGenerationListener;
 import org.eclipse.acceleo.engine.generation.AbstractAcceleoEnvironmentFactory;
 import org.eclipse.acceleo.engine.generation.AcceleoEngine;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.acceleo.engine.generation.strategy.IAcceleoGenerationStrategy;
+import org.eclipse.acceleo.internal.traceability.AcceleoTraceabilityPlugin;
 import org.eclipse.acceleo.internal.traceability.environment.AcceleoTraceabilityEnvironmentFactory;
 import org.eclipse.acceleo.model.mtl.Module;
 import org.eclipse.acceleo.traceability.TraceabilityFactory;
 import org.eclipse.acceleo.traceability.TraceabilityModel;
+import org.eclipse.acceleo.traceability.spec.GeneratedRegionStore;
+import org.eclipse.acceleo.traceability.spec.TraceabilityModelSpec;
 import org.eclipse.emf.common.util.Monitor;
+import org.eclipse.emf.ecore.EObject;
 
 /**
  * This implementation of an {@link org.eclipse.acceleo.engine.generation.IAcceleoEngine} will be used to
  * create an environment factory that instantiates traceability-enabled evaluation visitors.
+ * <p>
+ * An incremental engine will only generate the files that are affected by the changes made to the model
+ * since the previous generation, leaving all other files untouched on disk. Its trace must come from a
+ * previous incremental engine, and the model must have been modified in memory so that its elements are
+ * still the same instances : {@link ModelChangeRecorder} can be used to record these modifications. Files
+ * that are left untouched are neither sent to the generation listeners nor part of a preview.
+ * </p>
  * 
  * @author <a href="mailto:laurent.goubet@obeo.fr">Laurent Goubet</a>
  */
 public class AcceleoTraceabilityEngine extends AcceleoEngine {
 	/** All traceability information for this session will be saved in this instance. */
-	private TraceabilityModel evaluationTrace = TraceabilityFactory.eINSTANCE.createTraceabilityModel();
+	private final TraceabilityModel evaluationTrace;
+
+	/** State of the incremental generation, <code>null</code> if all files are to be generated. */
+	private final IncrementalGeneration incrementalGeneration;
+
+	/**
+	 * Creates an engine that will generate all files.
+	 */
+	public AcceleoTraceabilityEngine() {
+		evaluationTrace = TraceabilityFactory.eINSTANCE.createTraceabilityModel();
+		incrementalGeneration = null;
+	}
+
+	/**
+	 * Creates an incremental engine. Only the files affected by the given changes will be generated, and
+	 * the given trace will be updated accordingly.
+	 * 
+	 * @param previousTrace
+	 *            Trace of the previous incremental generation, <code>null</code> if this is the first one.
+	 *            All files will be generated in the latter case.
+	 * @param changedObjects
+	 *            Model elements that changed since the previous generation.
+	 * @since 3.5
+	 */
+	public AcceleoTraceabilityEngine(TraceabilityModel previousTrace,
+			Collection<? extends EObject> changedObjects) {
+		if (previousTrace != null) {
+			evaluationTrace = previousTrace;
+		} else {
+			evaluationTrace = TraceabilityFactory.eINSTANCE.createTraceabilityModel();
+		}
+		incrementalGeneration = new IncrementalGeneration(changedObjects);
+	}
 
 	/**
 	 * {@inheritDoc}
@@ -46,10 +92,18 @@ public class AcceleoTraceabilityEngine extends AcceleoEngine {
 	@Override
 	protected AbstractAcceleoEnvironmentFactory createEnvironmentFactory(File genRoot, Module rootModule,
 			IAcceleoGenerationStrategy strategy, Monitor monitor) {
+		GenerationOptions options = getGenerationOptions();
+		if (options == null) {
+			options = GenerationOptions.fromPreferences();
+		}
+		if (options.isCompactTraceabilityEnabled() && evaluationTrace instanceof TraceabilityModelSpec
+				&& ((TraceabilityModelSpec)evaluationTrace).getRegionStore() == null) {
+			((TraceabilityModelSpec)evaluationTrace).setRegionStore(createRegionStore());
+		}
 		final List<IAcceleoTextGenerationListener> listenersCopy = new ArrayList<IAcceleoTextGenerationListener>(
 				listeners);
 		return new AcceleoTraceabilityEnvironmentFactory(genRoot, rootModule, listenersCopy,
-				propertiesLookup, strategy, monitor, evaluationTrace);
+				propertiesLookup, strategy, monitor, evaluationTrace, incrementalGeneration);
 	}
 
 	/**
@@ -68,4 +122,32 @@ public class AcceleoTraceabilityEngine extends AcceleoEngine {
 			}
 		}
 	}
+
+	/**
+	 * Returns the model in which the traceability information of this engine's generations is recorded.
+	 * 
+	 * @return The model in which the traceability information of this engine's generations is recorded.
+	 * @since 3.5
+	 */
+	public TraceabilityModel getEvaluationTrace() {
+		return evaluationTrace;
+	}
+
+	/**
+	 * Creates the store in which the generated regions of complete files will be kept. Regions are streamed
+	 * to a temporary file if we can create one, kept in memory otherwise.
+	 * 
+	 * @return The store in which the generated regions of complete files will be kept.
+	 */
+	private GeneratedRegionStore createRegionStore() {
+		try {
+			final File storeFile = File.createTempFile("acceleo", ".trace"); //$NON-NLS-1$ //$NON-NLS-2$
+			// Deleted once the trace is saved or unloaded, unless the VM exits first
+			storeFile.deleteOnExit();
+			return new GeneratedRegionStore(storeFile);
+		} catch (IOException e) {
+			AcceleoTraceabilityPlugin.log(e, false);
+			return new GeneratedRegionStore();
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -56,9 +56,10 @@ import org.eclipse.ocl.ecore.SendSignalAction;
 public final class AcceleoTraceabilityOperationVisitor<C, PM> {
 	/**
 	 * Maps a source String to its Tokenizer. Needed for the implementation of the standard operation
-	 * "strtok(String, Integer)" as currently specified.
+	 * "strtok(String, Integer)" as currently specified. This is specific to the generation of our parent
+	 * visitor so that concurrent generations do not share tokenizers.
 	 */
-	private static final Map<String, TraceabilityTokenizer> TOKENIZERS = new HashMap<String, TraceabilityTokenizer>();
+	private final Map<String, TraceabilityTokenizer> tokenizers = new HashMap<String, TraceabilityTokenizer>();
 
 	/** The evaluation visitor that spawned this operation visitor. */
 	private AcceleoTraceabilityVisitor<EPackage, C, EOperation, EStructuralFeature, EEnumLiteral, PM, EObject, CallOperationAction, SendSignalAction, Constraint, EClass, EObject> visitor;
@@ -394,7 +395,7 @@ public final class AcceleoTraceabilityOperationVisitor<C, PM> {
 						.entrySet()) {
 					Set<GeneratedText> existingTraces = trace.getTraces().get(entry.getKey());
 					if (existingTraces == null) {
-						existingTraces = new CompactLinkedHashSet<GeneratedText>();
+						existingTraces = AbstractTrace.createRegionSet();
 						trace.getTraces().put(entry.getKey(), existingTraces);
 					}
 					for (GeneratedText text : entry.getValue()) {
@@ -559,7 +560,7 @@ public final class AcceleoTraceabilityOperationVisitor<C, PM> {
 			for (Map.Entry<InputElement, Set<GeneratedText>> entry : separatorTrace.getTraces().entrySet()) {
 				Set<GeneratedText> existingTraces = trace.getTraces().get(entry.getKey());
 				if (existingTraces == null) {
-					existingTraces = new CompactLinkedHashSet<GeneratedText>();
+					existingTraces = AbstractTrace.createRegionSet();
 					trace.getTraces().put(entry.getKey(), existingTraces);
 				}
 				for (GeneratedText text : entry.getValue()) {
@@ -601,14 +602,14 @@ public final class AcceleoTraceabilityOperationVisitor<C, PM> {
 		final TraceabilityTokenizer tokenizer;
 		if (flag.intValue() == 0) {
 			tokenizer = new TraceabilityTokenizer(source, delimiters);
-			TOKENIZERS.put(source, tokenizer);
+			tokenizers.put(source, tokenizer);
 			result = tokenizer.nextToken();
 		} else if (flag.intValue() == 1) {
-			if (TOKENIZERS.containsKey(source)) {
-				tokenizer = TOKENIZERS.get(source);
+			if (tokenizers.containsKey(source)) {
+				tokenizer = tokenizers.get(source);
 			} else {
 				tokenizer = new TraceabilityTokenizer(source, delimiters);
-				TOKENIZERS.put(source, tokenizer);
+				tokenizers.put(source, tokenizer);
 			}
 			String token = ""; //$NON-NLS-1$
 			if (tokenizer.hasMoreTokens()) {
@@ -1032,7 +1033,7 @@ public final class AcceleoTraceabilityOperationVisitor<C, PM> {
 						InputElement tokenKey = entry.getKey();
 						Set<GeneratedText> tokenTraces = trace.getTraces().get(tokenKey);
 						if (tokenTraces == null) {
-							tokenTraces = new CompactLinkedHashSet<GeneratedText>();
+							tokenTraces = AbstractTrace.createRegionSet();
 							trace.getTraces().put(tokenKey, tokenTraces);
 						}
 						tokenTraces.add(tokenText);
@@ -32,12 +32,11 @@ import org.eclipse.acceleo.common.internal.utils.workspace.AcceleoWorkspaceUtil;
 import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
 import org.eclipse.acceleo.common.utils.AcceleoStandardLibrary;
 import org.eclipse.acceleo.common.utils.CircularArrayDeque;
-import org.eclipse.acceleo.common.utils.CompactHashSet;
-import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
 import org.eclipse.acceleo.common.utils.Deque;
 import org.eclipse.acceleo.engine.AcceleoEngineMessages;
 import org.eclipse.acceleo.engine.AcceleoEvaluationCancelledException;
 import org.eclipse.acceleo.engine.AcceleoEvaluationException;
+import org.eclipse.acceleo.engine.internal.environment.AcceleoEvaluationEnvironment;
 import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitor;
 import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitorDecorator;
 import org.eclipse.acceleo.engine.internal.evaluation.QueryCache;
@@ -48,6 +47,7 @@ import org.eclipse.acceleo.model.mtl.FileBlock;
 import org.eclipse.acceleo.model.mtl.ForBlock;
 import org.eclipse.acceleo.model.mtl.IfBlock;
 import org.eclipse.acceleo.model.mtl.MtlPackage;
+import org.eclipse.acceleo.model.mtl.OpenModeKind;
 import org.eclipse.acceleo.model.mtl.ProtectedAreaBlock;
 import org.eclipse.acceleo.model.mtl.Query;
 import org.eclipse.acceleo.model.mtl.QueryInvocation;
@@ -61,6 +61,8 @@ import org.eclipse.acceleo.traceability.ModuleElement;
 import org.eclipse.acceleo.traceability.ModuleFile;
 import org.eclipse.acceleo.traceability.TraceabilityFactory;
 import org.eclipse.acceleo.traceability.TraceabilityModel;
+import org.eclipse.acceleo.traceability.spec.GeneratedFileSpec;
+import org.eclipse.acceleo.traceability.spec.TraceabilityModelSpec;
 import org.eclipse.emf.common.EMFPlugin;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EClass;
@@ -137,14 +139,23 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	/** Initial size of our recorded traces collection. */
 	private static final int RECORDED_TRACE_SIZE = 32;
 
+	/** Initial size of the maps holding the input elements of a given model element. */
+	private static final int INPUT_FEATURES_SIZE = 4;
+
+	/** Prefix of the variables holding the implicit contexts of the evaluation. */
+	private static final String TEMPORARY_CONTEXT_VAR_PREFIX = "context$"; //$NON-NLS-1$
+
 	/**
 	 * As we add and remove the "scope" object for templates at a different times, we need to remember whether
 	 * the template actually had a scope or not.
 	 */
 	private boolean addedTemplateScope;
 
-	/** This will be used to keep pointers towards the input elements created for the current trace. */
-	private Map<EObject, Set<InputElement>> cachedInputElements = new HashMap<EObject, Set<InputElement>>(
+	/**
+	 * This will be used to keep pointers towards the input elements created for the current trace, mapped to
+	 * their model element, then to their feature.
+	 */
+	private Map<EObject, Map<EStructuralFeature, InputElement>> cachedInputElements = new HashMap<EObject, Map<EStructuralFeature, InputElement>>(
 			INITIAL_CACHE_SIZE);
 
 	/** This will be used to keep pointers towards the module elements created for the current trace. */
@@ -174,9 +185,21 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	/** All traceability information for this session will be saved in this instance. */
 	private final TraceabilityModel evaluationTrace;
 
+	/** Variables visible to the file block being evaluated. Only used for incremental generations. */
+	private Map<String, Object> fileContext;
+
+	/** State of the incremental generation, <code>null</code> if all files are to be generated. */
+	private final IncrementalGeneration incrementalGeneration;
+
 	/** Keeps track of the variable currently being initialized. */
 	private Variable<C, PM> initializingVariable;
 
+	/**
+	 * This will hold the stack of invocation arguments. Arguments of primitive type are represented by a
+	 * variable holding their traces, others are <code>null</code>.
+	 */
+	private Deque<List<Variable<C, PM>>> invocationArguments = new CircularArrayDeque<List<Variable<C, PM>>>();
+
 	/** This will be used to keep pointers towards the latest template invocation traces. */
 	private Deque<ExpressionTrace<C>> invocationTraces;
 
@@ -240,7 +263,7 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	private InputElement protectedAreaSource;
 
 	/** Query results are cached, thus we need to cache their traces too. */
-	private QueryTraceCache<C> queryTraceCache = new QueryTraceCache<C>();
+	private final QueryTraceCache<C> queryTraceCache;
 
 	/** This will be used internally to prevent trace recording for set expressions. */
 	private boolean record = true;
@@ -252,6 +275,9 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	/** This will be updated each time we enter a for/template/query/... with the scope variable. */
 	private Deque<EObject> scopeEObjects = new CircularArrayDeque<EObject>();
 
+	/** This will be set to <code>true</code> whenever a file is left untouched by incremental generations. */
+	private boolean skippedFile;
+
 	/**
 	 * Records all variable traces for this session. Note that only primitive type variables will be recorded.
 	 */
@@ -273,9 +299,32 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	public AcceleoTraceabilityVisitor(
 			AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS, E> decoratedVisitor,
 			TraceabilityModel trace) {
+		this(decoratedVisitor, trace, null);
+	}
+
+	/**
+	 * Creates a visitor for an incremental generation. Files that are up to date will not be generated again.
+	 * 
+	 * @param decoratedVisitor
+	 *            The evaluation visitor this instance will decorate.
+	 * @param trace
+	 *            Model in which evaluation traces are to be recorded. This should be the trace of the
+	 *            previous generation.
+	 * @param incrementalGeneration
+	 *            State of the incremental generation, <code>null</code> if all files are to be generated.
+	 */
+	public AcceleoTraceabilityVisitor(
+			AcceleoEvaluationVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CLS, E> decoratedVisitor,
+			TraceabilityModel trace, IncrementalGeneration incrementalGeneration) {
 		super(decoratedVisitor);
 		this.evaluationVisitor = decoratedVisitor;
 		evaluationTrace = trace;
+		this.incrementalGeneration = incrementalGeneration;
+		queryTraceCache = new QueryTraceCache<C>(decoratedVisitor.getGenerationOptions()
+				.isQueryCacheEnabled());
+		if (incrementalGeneration != null) {
+			cacheTraceElements();
+		}
 	}
 
 	/**
@@ -402,6 +451,9 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	@Override
 	public void cacheResult(Query query, List<Object> arguments, Object result) {
 		queryTraceCache.cacheTrace(query, arguments, new ExpressionTrace<C>(recordedTraces.getLast()));
+		if (incrementalGeneration != null) {
+			incrementalGeneration.cacheQueryReads(query, arguments);
+		}
 
 		super.cacheResult(query, arguments, result);
 	}
@@ -418,6 +470,13 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		boolean fileExisted = generatedFile.exists();
 
 		GeneratedFile file = getGeneratedFile(generatedFile, appendMode, charset);
+		if (incrementalGeneration != null && incrementalGeneration.markVisited(file) && !appendMode) {
+			// This file may come from a previous generation, its former content will be replaced
+			file.getGeneratedRegions().clear();
+			file.getNameRegions().clear();
+			file.getSourceElements().clear();
+			file.setLength(0);
+		}
 		file.setCharset(charset);
 		file.setFileBlock(getModuleElement(fileBlock));
 		currentFiles.add(file);
@@ -480,7 +539,9 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	@Override
 	public Object getCachedResult(Query query, List<Object> arguments) {
 		ExpressionTrace<C> cachedTraces = queryTraceCache.getCachedTrace(query, arguments);
-		if (cachedTraces != null) {
+		final boolean knownReads = incrementalGeneration == null
+				|| incrementalGeneration.replayQueryReads(query, arguments);
+		if (cachedTraces != null && knownReads) {
 			// The query was already in cache, replace all of its invocation traces by the cached ones
 			recordedTraces.removeLast();
 			recordedTraces.add(new ExpressionTrace<C>(cachedTraces));
@@ -491,6 +552,43 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		return QueryCache.NO_CACHED_RESULT;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * During an incremental generation, a file is up to date if it has been generated by the same file block
+	 * with the same variables, and if none of the model elements it read changed since then.
+	 * </p>
+	 * 
+	 * @see org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitorDecorator#isUpToDate(java.io.File,
+	 *      org.eclipse.acceleo.model.mtl.Block, org.eclipse.emf.ecore.EObject, boolean)
+	 */
+	@Override
+	public boolean isUpToDate(File generatedFile, Block fileBlock, EObject source, boolean appendMode) {
+		if (incrementalGeneration == null || appendMode || !generatedFile.exists()) {
+			return super.isUpToDate(generatedFile, fileBlock, source, appendMode);
+		}
+		final GeneratedFile file = evaluationTrace.getGeneratedFile(generatedFile.getPath());
+		boolean upToDate = file instanceof GeneratedFileSpec && !incrementalGeneration.isVisited(file);
+		upToDate = upToDate && file.getFileBlock() != null
+				&& file.getFileBlock().getModuleElement() == fileBlock;
+		if (upToDate) {
+			final GeneratedFileSpec spec = (GeneratedFileSpec)file;
+			upToDate = spec.getGenerationContext() != null && spec.getGenerationContext().equals(fileContext)
+					&& !incrementalGeneration.isAffected(spec.getReadElements());
+		}
+		if (!upToDate) {
+			return super.isUpToDate(generatedFile, fileBlock, source, appendMode);
+		}
+
+		incrementalGeneration.markVisited(file);
+		// Enclosing files depend on what this one read
+		incrementalGeneration.readAll(((GeneratedFileSpec)file).getReadElements());
+		// The path of this file will not be traced again
+		recordedTraces.removeLast().dispose();
+		skippedFile = true;
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -500,11 +598,34 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	public void visitAcceleoFileBlock(FileBlock fileBlock) {
 		Deque<ExpressionTrace<C>> oldInvocationTraces = invocationTraces;
 		invocationTraces = new CircularArrayDeque<ExpressionTrace<C>>();
+		Map<String, Object> context = null;
+		if (incrementalGeneration != null) {
+			context = getFileContext();
+			fileContext = context;
+			incrementalGeneration.startRecording();
+		}
 
 		super.visitAcceleoFileBlock(fileBlock);
 
 		invocationTraces = oldInvocationTraces;
+		Set<EObject> reads = null;
+		if (incrementalGeneration != null) {
+			reads = incrementalGeneration.stopRecording();
+		}
+		if (skippedFile) {
+			// This file was up to date and has not been opened
+			skippedFile = false;
+			return;
+		}
 		GeneratedFile file = currentFiles.removeLast();
+		if (file instanceof GeneratedFileSpec && incrementalGeneration != null) {
+			if (fileBlock.getOpenMode() == OpenModeKind.APPEND) {
+				// We cannot tell what the previous content of this file depended on
+				((GeneratedFileSpec)file).setGenerationDependencies(null, null);
+			} else {
+				((GeneratedFileSpec)file).setGenerationDependencies(context, reads);
+			}
+		}
 		List<GeneratedText> regions = new ArrayList<GeneratedText>(file.getGeneratedRegions());
 		Collections.sort(regions);
 		int offset = 0;
@@ -519,6 +640,15 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 			}
 		}
 
+		if (!currentFiles.contains(file) && evaluationTrace instanceof TraceabilityModelSpec) {
+			// This file is complete, its regions can be moved out of the model
+			try {
+				((TraceabilityModelSpec)evaluationTrace).storeRegions(file);
+			} catch (IOException e) {
+				AcceleoTraceabilityPlugin.log(e, false);
+			}
+		}
+
 		if (!recordedTraces.isEmpty() && recordedTraces.getLast().getReferredExpression() == fileBlock
 				&& recordedTraces.getLast().getTraces().isEmpty()) {
 			recordedTraces.removeLast().dispose();
@@ -593,6 +723,77 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		protectedAreaSource = null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitorDecorator#visitAcceleoInvocationArgument(org.eclipse.ocl.expressions.OCLExpression,
+	 *      int)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Object visitAcceleoInvocationArgument(OCLExpression<C> argument, int index) {
+		final boolean isPrimitive = TraceabilityVisitorUtil.isPrimitive(argument.getType())
+				|| TraceabilityVisitorUtil.isPrimitiveCollection((EClassifier)argument.getType());
+		Variable<C, PM> argumentVariable = null;
+		Variable<C, PM> oldVar = null;
+		if (isPrimitive) {
+			// This variable is only used as a key for the argument traces, it never makes its way to the AST
+			final org.eclipse.ocl.ecore.Variable variable = org.eclipse.ocl.ecore.EcoreFactory.eINSTANCE
+					.createVariable();
+			variable.setType((EClassifier)argument.getType());
+			argumentVariable = (Variable<C, PM>)variable;
+			variableTraces.put(argumentVariable, new VariableTrace<C, PM>(argumentVariable));
+			oldVar = initializingVariable;
+			initializingVariable = argumentVariable;
+		}
+		final List<Variable<C, PM>> arguments = invocationArguments.getLast();
+		while (arguments.size() <= index) {
+			arguments.add(null);
+		}
+		arguments.set(index, argumentVariable);
+
+		final Object result = super.visitAcceleoInvocationArgument(argument, index);
+
+		if (isPrimitive) {
+			initializingVariable = oldVar;
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitorDecorator#bindInvocationParameter(org.eclipse.ocl.ecore.Variable,
+	 *      int, java.lang.Object)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void bindInvocationParameter(org.eclipse.ocl.ecore.Variable parameter, int index, Object value) {
+		final Variable<C, PM> param = (Variable<C, PM>)parameter;
+		final boolean isPrimitive = TraceabilityVisitorUtil.isPrimitive(param.getType())
+				|| TraceabilityVisitorUtil.isPrimitiveCollection((EClassifier)param.getType());
+		if (isPrimitive) {
+			final VariableTrace<C, PM> paramTrace = new VariableTrace<C, PM>(param);
+			variableTraces.put(param, paramTrace);
+
+			final List<Variable<C, PM>> arguments = invocationArguments.getLast();
+			VariableTrace<C, PM> argumentTrace = null;
+			if (index < arguments.size() && arguments.get(index) != null) {
+				argumentTrace = variableTraces.get(arguments.get(index));
+			}
+			if (argumentTrace != null && record && !evaluatingIterationSet) {
+				copyVariableTraces(argumentTrace, paramTrace);
+			}
+		}
+
+		super.bindInvocationParameter(parameter, index, value);
+
+		if (scopeEObjects.getLast() == param && value instanceof EObject) {
+			scopeEObjects.removeLast();
+			scopeEObjects.add((EObject)value);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -611,7 +812,22 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 			recordedTraces.add(new ExpressionTrace<C>(expression));
 		}
 
-		final Object result = super.visitAcceleoQueryInvocation(invocation);
+		invocationArguments.add(new ArrayList<Variable<C, PM>>(invocation.getArgument().size()));
+		if (incrementalGeneration != null) {
+			incrementalGeneration.startRecording();
+		}
+		final Object result;
+		try {
+			result = super.visitAcceleoQueryInvocation(invocation);
+		} finally {
+			disposeInvocationArguments(invocationArguments.removeLast());
+			if (incrementalGeneration != null) {
+				incrementalGeneration.stopRecording();
+			}
+		}
+		if (incrementalGeneration != null) {
+			incrementalGeneration.read(result);
+		}
 
 		/*
 		 * Query traces are cached, but the cache contains the traces of the very first invocation of this
@@ -668,11 +884,26 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		addedTemplateScope = false;
 		invocationTraces = new CircularArrayDeque<ExpressionTrace<C>>();
 
+		if (invocation.isSuper()) {
+			// the arguments of a super invocation are the parameters of the containing template
+			final List<Variable<C, PM>> arguments = new ArrayList<Variable<C, PM>>();
+			for (org.eclipse.ocl.ecore.Variable param : ((Template)invocation.eContainer()).getParameter()) {
+				arguments.add((Variable<C, PM>)param);
+			}
+			invocationArguments.add(arguments);
+		} else {
+			invocationArguments.add(new ArrayList<Variable<C, PM>>(invocation.getArgument().size()));
+		}
+
 		Object result = null;
 		final boolean oldRecordState = switchRecordState((OCLExpression<C>)invocation);
 		try {
 			result = super.visitAcceleoTemplateInvocation(invocation);
 		} finally {
+			final List<Variable<C, PM>> arguments = invocationArguments.removeLast();
+			if (!invocation.isSuper()) {
+				disposeInvocationArguments(arguments);
+			}
 			record = oldRecordState;
 
 			if (oldTraces != null && invocationTraces != null) {
@@ -1128,6 +1359,10 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 
 		boolean isGuard = callExp.eContainingFeature().getFeatureID() == MtlPackage.TEMPLATE__GUARD;
 		isGuard = isGuard && callExp.eContainer() instanceof Template;
+		if (incrementalGeneration != null) {
+			incrementalGeneration.checkOperation((EOperation)callExp.getReferredOperation(), callExp
+					.getOperationCode());
+		}
 		try {
 			if (record && !isGuard && isTraceabilityImpactingOperation(callExp)) {
 				// Boolean and Integer returning operations evaluation won't be intercepted
@@ -1177,6 +1412,11 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 			evaluatingOperationCall = oldOperationEvaluationState;
 		}
 
+		if (incrementalGeneration != null) {
+			incrementalGeneration.operationCalled((EOperation)callExp.getReferredOperation(),
+					operationCallSource);
+			incrementalGeneration.read(result);
+		}
 		operationCallSource = null;
 		operationCallSourceExpression = oldOperationCallSourceExpression;
 
@@ -1198,6 +1438,11 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		OCLExpression<C> oldPropertyCallSourceExpression = propertyCallSourceExpression;
 		propertyCallSourceExpression = callExp.getSource();
 
+		if (incrementalGeneration != null
+				&& ((EStructuralFeature)callExp.getReferredProperty()).isDerived()) {
+			// Derived features can be computed from any element of the model
+			incrementalGeneration.readUnbounded();
+		}
 		Object result = null;
 		boolean oldRecordingValue = switchRecordState(callExp);
 		try {
@@ -1229,6 +1474,9 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 			propertyCallSourceExpression = oldPropertyCallSourceExpression;
 			record = oldRecordingValue;
 		}
+		if (incrementalGeneration != null) {
+			incrementalGeneration.read(result);
+		}
 
 		if (isPropertyCallSource(callExp)) {
 			propertyCallSource = (EObject)result;
@@ -1328,6 +1576,9 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	@Override
 	public Object visitVariableExp(VariableExp<C, PM> variableExp) {
 		final Object result = super.visitVariableExp(variableExp);
+		if (incrementalGeneration != null) {
+			incrementalGeneration.read(result);
+		}
 
 		boolean recordOperationArgument = operationArgumentTrace != null && result instanceof String;
 		boolean recordVariableInitialization = isInitializingVariable()
@@ -1445,25 +1696,8 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	 * @return {@link InputElement} contained in the {@link #evaluationTrace} model.
 	 */
 	InputElement getInputElement(EObject modelElement) {
-		ModelFile soughtModel = getModelFile(modelElement);
-
-		Set<InputElement> candidateInputs = cachedInputElements.get(modelElement);
-		if (candidateInputs == null) {
-			candidateInputs = new CompactHashSet<InputElement>();
-			cachedInputElements.put(modelElement, candidateInputs);
-		}
-		for (InputElement input : candidateInputs) {
-			if (input.getFeature() == null && input.getOperation() == null) {
-				return input;
-			}
-		}
-
-		// If we're here, such an InputElement does not already exist
-		InputElement soughtElement = TraceabilityFactory.eINSTANCE.createInputElement();
-		soughtElement.setModelElement(modelElement);
-		soughtModel.getInputElements().add(soughtElement);
-		candidateInputs.add(soughtElement);
-		return soughtElement;
+		// Input elements are never created with an operation
+		return getInputElement(modelElement, null);
 	}
 
 	/**
@@ -1513,6 +1747,29 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		return retrieveScopeEObjectValue(scopeEObjects.size() - 1);
 	}
 
+	/**
+	 * Fills the element caches with the module and input elements of the trace, so that traces of an
+	 * incremental generation keep referring to the elements of the previous one.
+	 */
+	private void cacheTraceElements() {
+		for (ModuleFile module : evaluationTrace.getModules()) {
+			for (ModuleElement element : module.getModuleElements()) {
+				cachedModuleElements.put(element.getModuleElement(), element);
+			}
+		}
+		for (ModelFile model : evaluationTrace.getModelFiles()) {
+			for (InputElement input : model.getInputElements()) {
+				Map<EStructuralFeature, InputElement> candidateInputs = cachedInputElements.get(input
+						.getModelElement());
+				if (candidateInputs == null) {
+					candidateInputs = new HashMap<EStructuralFeature, InputElement>(INPUT_FEATURES_SIZE);
+					cachedInputElements.put(input.getModelElement(), candidateInputs);
+				}
+				candidateInputs.put(input.getFeature(), input);
+			}
+		}
+	}
+
 	/**
 	 * This will be used to create the evaluation trace for a given protected area's content.
 	 * 
@@ -1571,7 +1828,7 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		endRegion.setSourceElement(protectedAreaSource);
 
 		// Create the region set
-		Set<GeneratedText> set = new CompactLinkedHashSet<GeneratedText>();
+		Set<GeneratedText> set = AbstractTrace.createRegionSet();
 		trace.getTraces().put(protectedAreaSource, set);
 
 		set.add(startRegion);
@@ -1625,6 +1882,48 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		}
 		iterationTraces.clear();
 		iterationCount.clear();
+		invocationArguments.clear();
+	}
+
+	/**
+	 * Copies all traces recorded for the given argument to the given parameter trace.
+	 * 
+	 * @param argumentTrace
+	 *            Traces recorded during the evaluation of an invocation argument.
+	 * @param parameterTrace
+	 *            Trace of the parameter this argument is bound to.
+	 */
+	private void copyVariableTraces(VariableTrace<C, PM> argumentTrace, VariableTrace<C, PM> parameterTrace) {
+		for (Map.Entry<InputElement, Set<GeneratedText>> entry : argumentTrace.getTraces().entrySet()) {
+			InputElement input = entry.getKey();
+			if (protectedAreaSource != null) {
+				input = protectedAreaSource;
+			}
+			for (GeneratedText text : entry.getValue()) {
+				// 3.4 compatibility : EcoreUtil.copy() wasn't generic. The cast is necessary
+				@SuppressWarnings("cast")
+				GeneratedText copy = (GeneratedText)EcoreUtil.copy(text);
+				int regionLength = copy.getEndOffset() - copy.getStartOffset();
+				parameterTrace.addTrace(input, copy, regionLength);
+			}
+		}
+	}
+
+	/**
+	 * Disposes of the traces recorded for the given invocation arguments.
+	 * 
+	 * @param arguments
+	 *            Variables created to hold the traces of an invocation's arguments.
+	 */
+	private void disposeInvocationArguments(List<Variable<C, PM>> arguments) {
+		for (Variable<C, PM> argument : arguments) {
+			if (argument != null) {
+				final VariableTrace<C, PM> trace = variableTraces.remove(argument);
+				if (trace != null) {
+					trace.dispose();
+				}
+			}
+		}
 	}
 
 	/**
@@ -1642,6 +1941,29 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 		return text;
 	}
 
+	/**
+	 * Returns the variables visible to the file block that is about to be evaluated, along with the
+	 * implicit contexts that can be accessed through "current".
+	 * 
+	 * @return The variables visible to the file block that is about to be evaluated.
+	 */
+	private Map<String, Object> getFileContext() {
+		final Map<String, Object> context;
+		if (getEvaluationEnvironment() instanceof AcceleoEvaluationEnvironment) {
+			context = ((AcceleoEvaluationEnvironment)getEvaluationEnvironment()).getCurrentVariables();
+		} else {
+			context = new HashMap<String, Object>();
+		}
+		int index = 0;
+		Object value = getEvaluationEnvironment().getValueOf(TEMPORARY_CONTEXT_VAR_PREFIX + index);
+		while (value != null) {
+			context.put(TEMPORARY_CONTEXT_VAR_PREFIX + index, value);
+			index++;
+			value = getEvaluationEnvironment().getValueOf(TEMPORARY_CONTEXT_VAR_PREFIX + index);
+		}
+		return context;
+	}
+
 	/**
 	 * Returns an existing GeneratedFile in the trace model, creating it if needed.
 	 * 
@@ -1705,25 +2027,24 @@ public class AcceleoTraceabilityVisitor<PK, C, O, P, EL, PM, S, COA, SSA, CT, CL
 	 * @return {@link InputElement} contained in the {@link #evaluationTrace} model.
 	 */
 	private InputElement getInputElement(EObject modelElement, EStructuralFeature feature) {
-		ModelFile soughtModel = getModelFile(modelElement);
-
-		Set<InputElement> candidateInputs = cachedInputElements.get(modelElement);
+		Map<EStructuralFeature, InputElement> candidateInputs = cachedInputElements.get(modelElement);
 		if (candidateInputs == null) {
-			candidateInputs = new CompactHashSet<InputElement>();
+			candidateInputs = new HashMap<EStructuralFeature, InputElement>(INPUT_FEATURES_SIZE);
 			cachedInputElements.put(modelElement, candidateInputs);
-		}
-		for (InputElement input : candidateInputs) {
-			if (input.getFeature() == feature) {
+		} else {
+			final InputElement input = candidateInputs.get(feature);
+			if (input != null) {
 				return input;
 			}
 		}
 
 		// If we're here, such an InputElement does not already exist
+		ModelFile soughtModel = getModelFile(modelElement);
 		InputElement soughtElement = TraceabilityFactory.eINSTANCE.createInputElement();
 		soughtElement.setModelElement(modelElement);
 		soughtElement.setFeature(feature);
 		soughtModel.getInputElements().add(soughtElement);
-		candidateInputs.add(soughtElement);
+		candidateInputs.put(feature, soughtElement);
 		return soughtElement;
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,6 @@ package org.eclipse.acceleo.internal.traceability.engine;
 import java.util.LinkedHashMap;
 import java.util.Set;
 
-import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
 import org.eclipse.acceleo.traceability.GeneratedText;
 import org.eclipse.acceleo.traceability.InputElement;
 import org.eclipse.emf.ecore.util.EcoreUtil;
@@ -53,7 +52,7 @@ public class ExpressionTrace<C> extends AbstractTrace {
 		LinkedHashMap<InputElement, Set<GeneratedText>> temp = other.getTraces();
 		// We need to replace the Set instance
 		for (InputElement key : temp.keySet()) {
-			traces.put(key, new CompactLinkedHashSet<GeneratedText>(temp.get(key)));
+			traces.put(key, createRegionSet(temp.get(key)));
 		}
 	}
 
@@ -69,7 +68,7 @@ public class ExpressionTrace<C> extends AbstractTrace {
 	public void mergeTrace(InputElement input, Set<GeneratedText> regions) {
 		Set<GeneratedText> associatedTraces = traces.get(input);
 		if (associatedTraces == null) {
-			associatedTraces = new CompactLinkedHashSet<GeneratedText>();
+			associatedTraces = createRegionSet();
 			traces.put(input, associatedTraces);
 		}
 
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.internal.traceability.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
+import org.eclipse.acceleo.common.utils.CircularArrayDeque;
+import org.eclipse.acceleo.common.utils.CompactHashSet;
+import org.eclipse.acceleo.common.utils.Deque;
+import org.eclipse.acceleo.model.mtl.Query;
+import org.eclipse.acceleo.traceability.GeneratedFile;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.ocl.utilities.PredefinedType;
+
+/**
+ * This will hold the state of an incremental generation : the model elements that changed since the previous
+ * generation, and the model elements that are read while generating each file. A file which did not read any
+ * of the changed elements, and whose file block is given the same variables as the last time, will produce
+ * the same text as the last time. It can be left untouched on disk.
+ * <p>
+ * Some operations can read any element of the model, or run code we know nothing about. Files that depend on
+ * such operations have unknown dependencies and will always be generated again.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class IncrementalGeneration {
+	/** Name of the annotation carried by the operations of the Acceleo standard library. */
+	private static final String STANDARD_LIBRARY_ANNOTATION = "MTL"; //$NON-NLS-1$
+
+	/** Name of the annotation carried by the operations of the Acceleo non-standard library. */
+	private static final String NON_STANDARD_LIBRARY_ANNOTATION = "MTL non-standard"; //$NON-NLS-1$
+
+	/** Model elements that changed since the previous generation. */
+	private final Set<EObject> changedObjects;
+
+	/** Elements read by the file blocks and queries currently being evaluated, innermost last. */
+	private final Deque<ReadFrame> frames = new CircularArrayDeque<ReadFrame>();
+
+	/** Elements read by each cached query invocation, <code>null</code> for unknown dependencies. */
+	private final Map<List<Object>, Set<EObject>> queryReads = new HashMap<List<Object>, Set<EObject>>();
+
+	/** Files that have already been generated or left untouched during this generation. */
+	private final Set<GeneratedFile> visitedFiles = new CompactHashSet<GeneratedFile>();
+
+	/**
+	 * Prepares an incremental generation.
+	 * 
+	 * @param changedObjects
+	 *            Model elements that changed since the previous generation.
+	 */
+	public IncrementalGeneration(Collection<? extends EObject> changedObjects) {
+		this.changedObjects = new CompactHashSet<EObject>(changedObjects);
+	}
+
+	/**
+	 * Records the elements read by the given query invocation so that they can be replayed when its result
+	 * is taken from the cache.
+	 * 
+	 * @param query
+	 *            The query which result is being cached.
+	 * @param arguments
+	 *            Arguments of the invocation.
+	 */
+	public void cacheQueryReads(Query query, List<Object> arguments) {
+		if (frames.isEmpty()) {
+			return;
+		}
+		final ReadFrame frame = frames.getLast();
+		final Set<EObject> reads;
+		if (frame.unbounded) {
+			reads = null;
+		} else {
+			reads = new CompactHashSet<EObject>(frame.reads);
+		}
+		queryReads.put(createQueryKey(query, arguments), reads);
+	}
+
+	/**
+	 * Checks whether the given operation can read elements we cannot track, and marks all elements being
+	 * evaluated as having unknown dependencies if so.
+	 * 
+	 * @param operation
+	 *            The operation that is about to be called.
+	 * @param operationCode
+	 *            OCL code of this operation, <code>0</code> if it is not an OCL standard operation.
+	 */
+	public void checkOperation(EOperation operation, int operationCode) {
+		final boolean unbounded;
+		if (operationCode == PredefinedType.ALL_INSTANCES) {
+			unbounded = true;
+		} else if (operation.getEAnnotation(NON_STANDARD_LIBRARY_ANNOTATION) != null) {
+			// eInverse looks at the whole resource set, invoke calls into Java services
+			final String name = operation.getName();
+			unbounded = AcceleoNonStandardLibrary.OPERATION_EOBJECT_EINVERSE.equals(name)
+					|| AcceleoNonStandardLibrary.OPERATION_OCLANY_INVOKE.equals(name);
+		} else if (operation.getEAnnotation(STANDARD_LIBRARY_ANNOTATION) != null || operationCode != 0) {
+			unbounded = false;
+		} else if (operation.getEContainingClass() == EcorePackage.Literals.EOBJECT) {
+			unbounded = "eInvoke".equals(operation.getName()); //$NON-NLS-1$
+		} else {
+			// Operations of the generated model can do anything
+			unbounded = true;
+		}
+		if (unbounded) {
+			readUnbounded();
+		}
+	}
+
+	/**
+	 * Tells whether the given elements contain any of the model elements that changed since the previous
+	 * generation.
+	 * 
+	 * @param reads
+	 *            Elements read while generating a file, <code>null</code> if unknown.
+	 * @return <code>true</code> if any of the given elements changed, or if they are unknown.
+	 */
+	public boolean isAffected(Set<EObject> reads) {
+		if (reads == null) {
+			return true;
+		}
+		final Set<EObject> smaller;
+		final Set<EObject> larger;
+		if (reads.size() < changedObjects.size()) {
+			smaller = reads;
+			larger = changedObjects;
+		} else {
+			smaller = changedObjects;
+			larger = reads;
+		}
+		for (EObject element : smaller) {
+			if (larger.contains(element)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the given file has already been generated or left untouched during this generation.
+	 * 
+	 * @param file
+	 *            The file we need to check.
+	 * @return <code>true</code> if the given file has already been visited.
+	 */
+	public boolean isVisited(GeneratedFile file) {
+		return visitedFiles.contains(file);
+	}
+
+	/**
+	 * Marks the given file as visited during this generation.
+	 * 
+	 * @param file
+	 *            The file that is being generated or left untouched.
+	 * @return <code>true</code> if this is the first time this file is visited.
+	 */
+	public boolean markVisited(GeneratedFile file) {
+		return visitedFiles.add(file);
+	}
+
+	/**
+	 * Records the elements implicitly read by the given operation call. The siblings of an element are read
+	 * through its container, which is not part of the call's result.
+	 * 
+	 * @param operation
+	 *            The operation that has been called.
+	 * @param source
+	 *            Source of the call.
+	 */
+	public void operationCalled(EOperation operation, Object source) {
+		if (source instanceof EObject && operation.getEAnnotation(NON_STANDARD_LIBRARY_ANNOTATION) != null) {
+			final String name = operation.getName();
+			if (AcceleoNonStandardLibrary.OPERATION_EOBJECT_SIBLINGS.equals(name)
+					|| AcceleoNonStandardLibrary.OPERATION_EOBJECT_PRECEDINGSIBLINGS.equals(name)
+					|| AcceleoNonStandardLibrary.OPERATION_EOBJECT_FOLLOWINGSIBLINGS.equals(name)) {
+				read(((EObject)source).eContainer());
+			}
+		}
+	}
+
+	/**
+	 * Records that the given value has been read by all file blocks and queries currently being evaluated.
+	 * 
+	 * @param value
+	 *            The value that has been read. Can be a model element, a collection or any other value.
+	 */
+	public void read(Object value) {
+		if (frames.isEmpty()) {
+			return;
+		}
+		if (value instanceof EObject) {
+			for (ReadFrame frame : frames) {
+				frame.reads.add((EObject)value);
+			}
+		} else if (value instanceof Collection<?>) {
+			for (Object child : (Collection<?>)value) {
+				read(child);
+			}
+		}
+	}
+
+	/**
+	 * Records that the given elements have been read by all file blocks and queries currently being
+	 * evaluated.
+	 * 
+	 * @param reads
+	 *            The elements that have been read, <code>null</code> if unknown.
+	 */
+	public void readAll(Set<EObject> reads) {
+		if (reads == null) {
+			readUnbounded();
+		} else {
+			for (ReadFrame frame : frames) {
+				frame.reads.addAll(reads);
+			}
+		}
+	}
+
+	/**
+	 * Records that elements we cannot track have been read by all file blocks and queries currently being
+	 * evaluated.
+	 */
+	public void readUnbounded() {
+		for (ReadFrame frame : frames) {
+			frame.unbounded = true;
+		}
+	}
+
+	/**
+	 * Replays the elements read by the given query invocation, which result is about to be taken from the
+	 * cache.
+	 * 
+	 * @param query
+	 *            The query which cached result is about to be returned.
+	 * @param arguments
+	 *            Arguments of the invocation.
+	 * @return <code>true</code> if the elements read by this invocation were known, <code>false</code> if the
+	 *         query needs to be evaluated again.
+	 */
+	public boolean replayQueryReads(Query query, List<Object> arguments) {
+		final List<Object> key = createQueryKey(query, arguments);
+		if (!queryReads.containsKey(key)) {
+			return false;
+		}
+		readAll(queryReads.get(key));
+		return true;
+	}
+
+	/**
+	 * Starts recording the elements read by a file block or query.
+	 */
+	public void startRecording() {
+		frames.add(new ReadFrame());
+	}
+
+	/**
+	 * Stops recording the elements read by the innermost file block or query.
+	 * 
+	 * @return The elements that have been read since the matching {@link #startRecording()},
+	 *         <code>null</code> if unknown.
+	 */
+	public Set<EObject> stopRecording() {
+		final ReadFrame frame = frames.removeLast();
+		if (frame.unbounded) {
+			return null;
+		}
+		return frame.reads;
+	}
+
+	/**
+	 * Creates the key under which the elements read by a query invocation are recorded.
+	 * 
+	 * @param query
+	 *            The invoked query.
+	 * @param arguments
+	 *            Arguments of the invocation.
+	 * @return The key under which the elements read by this invocation are recorded.
+	 */
+	private static List<Object> createQueryKey(Query query, List<Object> arguments) {
+		final List<Object> key = new ArrayList<Object>(arguments.size() + 1);
+		key.add(query);
+		key.addAll(arguments);
+		return key;
+	}
+
+	/**
+	 * Elements read by a single file block or query.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class ReadFrame {
+		/** Elements read so far. */
+		final Set<EObject> reads = new CompactHashSet<EObject>();
+
+		/** Whether elements we cannot track have been read. */
+		boolean unbounded;
+	}
+}
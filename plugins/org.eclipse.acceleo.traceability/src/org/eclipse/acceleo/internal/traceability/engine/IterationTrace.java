@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,6 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
 import org.eclipse.acceleo.traceability.GeneratedText;
 import org.eclipse.acceleo.traceability.InputElement;
 import org.eclipse.ocl.expressions.OCLExpression;
@@ -90,7 +89,7 @@ public final class IterationTrace<C, PM> extends ExpressionTrace<C> {
 				if (text.getStartOffset() >= startOffset && text.getEndOffset() <= endOffset) {
 					Set<GeneratedText> iterationText = currentIterationTraces.get(entry.getKey());
 					if (iterationText == null) {
-						iterationText = new CompactLinkedHashSet<GeneratedText>();
+						iterationText = createRegionSet();
 						currentIterationTraces.put(entry.getKey(), iterationText);
 					}
 					iterationText.add(text);
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.internal.traceability.engine;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.eclipse.acceleo.common.utils.CompactLinkedHashSet;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+/**
+ * This adapter records the model elements that change between two generations. It is meant to be attached
+ * to the resource set, resources or root elements of the generation's input model, and its recorded changes
+ * to be given to an incremental {@link AcceleoTraceabilityEngine}.
+ * <p>
+ * An element is considered changed if any of its features changes. Elements that are added to, removed from
+ * or moved across containers are considered changed as well since their container is no longer the same.
+ * </p>
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class ModelChangeRecorder extends EContentAdapter {
+	/** The model elements that changed since we started recording, or since the last reset. */
+	private final Set<EObject> changedObjects = new CompactLinkedHashSet<EObject>();
+
+	/**
+	 * Returns the model elements that changed since we started recording, or since the last {@link #reset()}.
+	 * 
+	 * @return The model elements that changed since we started recording, or since the last reset.
+	 */
+	public Set<EObject> getChangedObjects() {
+		return changedObjects;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.ecore.util.EContentAdapter#notifyChanged(org.eclipse.emf.common.notify.Notification)
+	 */
+	@Override
+	public void notifyChanged(Notification notification) {
+		super.notifyChanged(notification);
+		if (notification.isTouch()) {
+			return;
+		}
+		final Object notifier = notification.getNotifier();
+		final boolean isContentChange;
+		if (notifier instanceof EObject) {
+			changedObjects.add((EObject)notifier);
+			final Object feature = notification.getFeature();
+			isContentChange = feature instanceof EReference && ((EReference)feature).isContainment();
+		} else {
+			isContentChange = notifier instanceof Resource
+					&& notification.getFeatureID(Resource.class) == Resource.RESOURCE__CONTENTS;
+		}
+		if (isContentChange) {
+			recordValue(notification.getOldValue());
+			recordValue(notification.getNewValue());
+		}
+	}
+
+	/**
+	 * Forgets about all changes recorded so far. This should be called once a generation took them into
+	 * account.
+	 */
+	public void reset() {
+		changedObjects.clear();
+	}
+
+	/**
+	 * Records the given value of a containment feature as changed.
+	 * 
+	 * @param value
+	 *            Old or new value of a containment feature. Can be a single element or a collection of
+	 *            elements.
+	 */
+	private void recordValue(Object value) {
+		if (value instanceof EObject) {
+			changedObjects.add((EObject)value);
+		} else if (value instanceof Collection<?>) {
+			for (Object child : (Collection<?>)value) {
+				if (child instanceof EObject) {
+					changedObjects.add((EObject)child);
+				}
+			}
+		}
+	}
+}
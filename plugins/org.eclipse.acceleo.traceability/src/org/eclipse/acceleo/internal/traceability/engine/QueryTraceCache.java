@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.eclipse.acceleo.common.preference.AcceleoPreferences;
 import org.eclipse.acceleo.model.mtl.Query;
 
 /**
@@ -29,6 +28,19 @@ public class QueryTraceCache<C> {
 	/** The actual backing map for this cache. */
 	private final Map<Query, Map<List<Object>, ExpressionTrace<C>>> queryTraceCache = new HashMap<Query, Map<List<Object>, ExpressionTrace<C>>>();
 
+	/** Whether traces should be cached at all. This should mirror the state of the query cache. */
+	private final boolean enabled;
+
+	/**
+	 * Creates a trace cache.
+	 * 
+	 * @param enabled
+	 *            Whether traces should be cached at all. This should mirror the state of the query cache.
+	 */
+	public QueryTraceCache(boolean enabled) {
+		this.enabled = enabled;
+	}
+
 	/**
 	 * This will return the cached trace for this query, if any.
 	 * 
@@ -39,7 +51,7 @@ public class QueryTraceCache<C> {
 	 * @return The cached trace for this query, if any.
 	 */
 	public ExpressionTrace<C> getCachedTrace(Query query, List<Object> parameters) {
-		if (!AcceleoPreferences.isQueryCacheEnabled() || !queryTraceCache.containsKey(query)) {
+		if (!enabled || !queryTraceCache.containsKey(query)) {
 			return null;
 		}
 
@@ -58,7 +70,7 @@ public class QueryTraceCache<C> {
 	 *            Trace that is to be cached.
 	 */
 	public void cacheTrace(Query query, List<Object> parameters, ExpressionTrace<C> trace) {
-		if (!AcceleoPreferences.isQueryCacheEnabled() || trace.getTraces().isEmpty()) {
+		if (!enabled || trace.getTraces().isEmpty()) {
 			return;
 		}
 		Map<List<Object>, ExpressionTrace<C>> cache = queryTraceCache.get(query);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,7 @@ import org.eclipse.acceleo.engine.internal.environment.AcceleoPropertiesLookup;
 import org.eclipse.acceleo.engine.internal.evaluation.AcceleoEvaluationVisitor;
 import org.eclipse.acceleo.internal.traceability.AcceleoTraceabilityEvaluationContext;
 import org.eclipse.acceleo.internal.traceability.engine.AcceleoTraceabilityVisitor;
+import org.eclipse.acceleo.internal.traceability.engine.IncrementalGeneration;
 import org.eclipse.acceleo.model.mtl.Module;
 import org.eclipse.acceleo.traceability.TraceabilityModel;
 import org.eclipse.emf.common.util.Monitor;
@@ -49,6 +50,9 @@ public class AcceleoTraceabilityEnvironmentFactory extends AcceleoEnvironmentFac
 	/** All traceability information for this session will be saved in this instance. */
 	private final TraceabilityModel evaluationTrace;
 
+	/** State of the incremental generation, <code>null</code> if all files are to be generated. */
+	private final IncrementalGeneration incrementalGeneration;
+
 	/**
 	 * Default constructor. Packages will be looked up into the global EMF registry.
 	 * 
@@ -70,8 +74,37 @@ public class AcceleoTraceabilityEnvironmentFactory extends AcceleoEnvironmentFac
 	public AcceleoTraceabilityEnvironmentFactory(File generationRoot, Module module,
 			List<IAcceleoTextGenerationListener> listeners, AcceleoPropertiesLookup propertiesLookup,
 			IAcceleoGenerationStrategy strategy, Monitor monitor, TraceabilityModel trace) {
+		this(generationRoot, module, listeners, propertiesLookup, strategy, monitor, trace, null);
+	}
+
+	/**
+	 * Creates a factory for an incremental generation. Packages will be looked up into the global EMF
+	 * registry.
+	 * 
+	 * @param generationRoot
+	 *            Root of all files that will be generated.
+	 * @param module
+	 *            The module for which this factory is to be created.
+	 * @param listeners
+	 *            The list of all listeners that are to be notified for text generation from this context.
+	 * @param propertiesLookup
+	 *            The class allowing for properties lookup for this generation.
+	 * @param strategy
+	 *            The generation strategy that's to be used by this factory's context.
+	 * @param monitor
+	 *            This will be used as the progress monitor for the generation.
+	 * @param trace
+	 *            Model in which evaluation traces are to be recorded.
+	 * @param incrementalGeneration
+	 *            State of the incremental generation, <code>null</code> if all files are to be generated.
+	 */
+	public AcceleoTraceabilityEnvironmentFactory(File generationRoot, Module module,
+			List<IAcceleoTextGenerationListener> listeners, AcceleoPropertiesLookup propertiesLookup,
+			IAcceleoGenerationStrategy strategy, Monitor monitor, TraceabilityModel trace,
+			IncrementalGeneration incrementalGeneration) {
 		super(generationRoot, module, listeners, propertiesLookup, strategy, monitor);
 		evaluationTrace = trace;
+		this.incrementalGeneration = incrementalGeneration;
 		context = new AcceleoTraceabilityEvaluationContext<EClassifier>(generationRoot, listeners, strategy,
 				monitor, evaluationTrace);
 	}
@@ -89,6 +122,7 @@ public class AcceleoTraceabilityEnvironmentFactory extends AcceleoEnvironmentFac
 			Map<? extends EClass, ? extends Set<? extends EObject>> extentMap) {
 		return new AcceleoTraceabilityVisitor<EPackage, EClassifier, EOperation, EStructuralFeature, EEnumLiteral, EParameter, EObject, CallOperationAction, SendSignalAction, Constraint, EClass, EObject>(
 				(AcceleoEvaluationVisitor<EPackage, EClassifier, EOperation, EStructuralFeature, EEnumLiteral, EParameter, EObject, CallOperationAction, SendSignalAction, Constraint, EClass, EObject>)super
-						.createEvaluationVisitor(env, evalEnv, extentMap), evaluationTrace);
+						.createEvaluationVisitor(env, evalEnv, extentMap), evaluationTrace,
+				incrementalGeneration);
 	}
 }
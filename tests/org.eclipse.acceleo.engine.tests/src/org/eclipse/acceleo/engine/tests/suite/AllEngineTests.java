@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -27,11 +27,17 @@ import org.eclipse.acceleo.engine.tests.unit.environment.AcceleoNonStandardLibra
 import org.eclipse.acceleo.engine.tests.unit.environment.AcceleoNonStandardLibraryTest;
 import org.eclipse.acceleo.engine.tests.unit.environment.AcceleoStandardLibraryParsedTest;
 import org.eclipse.acceleo.engine.tests.unit.environment.AcceleoStandardLibraryTest;
+import org.eclipse.acceleo.engine.tests.unit.environment.LibraryOperationDispatchTest;
 import org.eclipse.acceleo.engine.tests.unit.evaluation.AllAcceleoEvaluationVisitorTests;
 import org.eclipse.acceleo.engine.tests.unit.event.AcceleoListenersTest;
 import org.eclipse.acceleo.engine.tests.unit.extensibility.dynamicoverride.AcceleoDynamicOverridesTest;
+import org.eclipse.acceleo.engine.tests.unit.generation.AcceleoConcurrentGenerationTest;
 import org.eclipse.acceleo.engine.tests.unit.generation.AcceleoGenericEngineTest;
 import org.eclipse.acceleo.engine.tests.unit.generation.AcceleoProgressMonitorTest;
+import org.eclipse.acceleo.engine.tests.unit.generation.AcceleoQueryCacheTest;
+import org.eclipse.acceleo.engine.tests.unit.generation.DefaultStrategySkipUnchangedTest;
+import org.eclipse.acceleo.engine.tests.unit.profiler.AggregatingProfilerTest;
+import org.eclipse.acceleo.engine.tests.unit.profiler.CollapsedStackExporterTest;
 import org.eclipse.acceleo.engine.tests.unit.resolution.namesake.NamesakeGuardResolutionTest;
 import org.eclipse.acceleo.engine.tests.unit.resolution.namesake.ParameterTypeNarrowingResolutionTest;
 import org.eclipse.acceleo.engine.tests.unit.resolution.namesake.SimpleNamesakeResolutionTest;
@@ -56,7 +62,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({ForBlockTest.class, IfBlockTest.class, ProtectedAreaBlockTest.class, TemplateTest.class,
 		DualTemplateInvocationTest.class, QueryPropertyInvocationTest.class,
 		RecursiveTemplateInvocation.class, QueryInvocationWrapping.class, GenerationEncodingTest.class,
-		AcceleoGenericEngineTest.class, AcceleoProgressMonitorTest.class,
+		AcceleoGenericEngineTest.class, AcceleoProgressMonitorTest.class, AcceleoConcurrentGenerationTest.class,
+		AcceleoQueryCacheTest.class, DefaultStrategySkipUnchangedTest.class,
 		AllAcceleoEvaluationVisitorTests.class, AcceleoServiceTest.class, AcceleoJavaServicesTest.class,
 		AcceleoListenersTest.class, SimpleNamesakeResolutionTest.class,
 		ParameterTypeNarrowingResolutionTest.class, NamesakeGuardResolutionTest.class,
@@ -64,6 +71,7 @@ import org.junit.runners.Suite.SuiteClasses;
 		OverrideGuardResolutionTest.class, SelfTest.class, MessagesTest.class, AcceleoEnginePluginTest.class,
 		AcceleoStandardLibraryTest.class, AcceleoStandardLibraryParsedTest.class,
 		AcceleoNonStandardLibraryTest.class, AcceleoNonStandardLibraryParsedTest.class,
+		LibraryOperationDispatchTest.class, AggregatingProfilerTest.class, CollapsedStackExporterTest.class,
 		AcceleoDynamicOverridesTest.class })
 public class AllEngineTests {
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,10 +11,14 @@
 package org.eclipse.acceleo.engine.tests.unit.environment;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Map;
+import java.util.regex.Pattern;
 
+import org.eclipse.acceleo.engine.internal.environment.AcceleoPatternCache;
 import org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest;
 import org.junit.Before;
 import org.junit.Test;
@@ -125,6 +129,15 @@ public class AcceleoNonStandardLibraryParsedTest extends AbstractAcceleoTest {
 		assertFileContainsOutput("test_oclany_typed_eInverse");
 	}
 
+	/**
+	 * Tests that the result of the non standard "eInverse(OclAny)" operation can be used with the "addAll"
+	 * and "removeAll" operations.
+	 */
+	@Test
+	public void testOclAnyTypedEInverseAddAll() {
+		assertFileContainsOutput("test_oclany_typed_eInverse_addAll");
+	}
+
 	/**
 	 * Tests the behavior of the non standard "siblings(OclAny)" operation on OclAny.
 	 */
@@ -345,6 +358,29 @@ public class AcceleoNonStandardLibraryParsedTest extends AbstractAcceleoTest {
 		assertFileContainsOutput("test_collection_last_index_of_slice");
 	}
 
+	/**
+	 * Tests that the String literals given as patterns to the regular expression operations are compiled
+	 * once and reused, and that the pattern cache stays bounded.
+	 */
+	@Test
+	public void testPatternCache() {
+		AcceleoPatternCache.clear();
+		AcceleoPatternCache.precompile(module);
+		final int precompiled = AcceleoPatternCache.size();
+		assertTrue("The literal patterns of the module should have been compiled.", precompiled > 0);
+
+		final Pattern pattern = AcceleoPatternCache.compile("[aeiou]");
+		assertEquals(precompiled, AcceleoPatternCache.size());
+		assertSame(pattern, AcceleoPatternCache.compile("[aeiou]"));
+		assertTrue(pattern != AcceleoPatternCache.compileLiteral("[aeiou]"));
+
+		for (int i = 0; i < AcceleoPatternCache.MAXIMUM_SIZE + 10; i++) {
+			AcceleoPatternCache.compile("pattern" + i);
+		}
+		assertEquals(AcceleoPatternCache.MAXIMUM_SIZE, AcceleoPatternCache.size());
+		AcceleoPatternCache.clear();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -12,7 +12,9 @@
 package org.eclipse.acceleo.engine.tests.unit.environment;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -20,10 +22,12 @@ import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
@@ -49,9 +53,13 @@ import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.EcoreFactory;
 import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.ocl.ecore.OCL;
+import org.eclipse.ocl.util.CollectionUtil;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -305,6 +313,32 @@ public class AcceleoNonStandardLibraryTest extends AbstractAcceleoTest {
 		}
 	}
 
+	/**
+	 * Tests the behavior of the non standard "eGet(String)" operation on OclAny.
+	 * <p>
+	 * Expects the result to be the value of the feature with the given name, be it declared by the class of
+	 * self or inherited, and <code>null</code> if there is no such feature.
+	 * </p>
+	 */
+	@Test
+	public void testOclAnyEGet() {
+		EOperation operation = getOperation(AcceleoNonStandardLibrary.TYPE_EOBJECT_NAME,
+				AcceleoNonStandardLibrary.OPERATION_EOBJECT_EGET);
+
+		final EClass clazz = EcoreFactory.eINSTANCE.createEClass();
+		clazz.setName("clazz");
+		clazz.setAbstract(true);
+
+		assertEquals("clazz", AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment,
+				operation, clazz, "name"));
+		assertEquals(Boolean.TRUE, AcceleoLibraryOperationVisitor.callNonStandardOperation(
+				evaluationEnvironment, operation, clazz, "abstract"));
+		assertEquals(clazz.getEStructuralFeatures(), AcceleoLibraryOperationVisitor.callNonStandardOperation(
+				evaluationEnvironment, operation, clazz, "eStructuralFeatures"));
+		assertNull(AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				clazz, "unknownFeature"));
+	}
+
 	/**
 	 * Tests the behavior of the non standard "eInverse()" operation on OclAny.
 	 * <p>
@@ -376,6 +410,85 @@ public class AcceleoNonStandardLibraryTest extends AbstractAcceleoTest {
 				.next() instanceof EGenericType);
 	}
 
+	/**
+	 * Tests the behavior of the non standard "eInverse(OclAny)" operation on OclAny when the model spans
+	 * multiple resources.
+	 * <p>
+	 * Expects the inverse references from all of the resource set's resources to be returned, and the
+	 * resources that are added or unloaded between two calls to be taken into account.
+	 * </p>
+	 */
+	@Test
+	public void testOclAnyEInverseAcrossResources() {
+		EOperation operation = getOperation(AcceleoNonStandardLibrary.TYPE_EOBJECT_NAME,
+				AcceleoNonStandardLibrary.OPERATION_EOBJECT_EINVERSE);
+
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final EClass target = createClassInResource(resourceSet, "target");
+		final EClass first = createClassInResource(resourceSet, "first");
+		first.getESuperTypes().add(target);
+
+		Object result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment,
+				operation, target, EcorePackage.eINSTANCE.getEClass());
+		assertEquals(Arrays.asList(first), new ArrayList<Object>((Collection<?>)result));
+
+		final EClass second = createClassInResource(resourceSet, "second");
+		second.getESuperTypes().add(target);
+		result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				target, EcorePackage.eINSTANCE.getEClass());
+		assertEquals(Arrays.asList(first, second), new ArrayList<Object>((Collection<?>)result));
+
+		first.eResource().unload();
+		result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				target, EcorePackage.eINSTANCE.getEClass());
+		assertEquals(Arrays.asList(second), new ArrayList<Object>((Collection<?>)result));
+
+		result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				target);
+		assertEquals(2, ((Collection<?>)result).size());
+		assertTrue(((Collection<?>)result).contains(second));
+	}
+
+	/**
+	 * Tests the kind of collection returned by the non standard "eInverse()" operation on OclAny.
+	 * <p>
+	 * Expects the result to be a set ordered as the inverse references have been indexed, whether there are
+	 * none, whether they come from several resources and whether the model is already cross referenced.
+	 * </p>
+	 */
+	@Test
+	public void testOclAnyEInverseIsOrderedSet() {
+		EOperation operation = getOperation(AcceleoNonStandardLibrary.TYPE_EOBJECT_NAME,
+				AcceleoNonStandardLibrary.OPERATION_EOBJECT_EINVERSE);
+
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final EClass target = createClassInResource(resourceSet, "target");
+		final EClass first = createClassInResource(resourceSet, "first");
+		final EClass second = createClassInResource(resourceSet, "second");
+		first.getESuperTypes().add(target);
+		second.getESuperTypes().add(target);
+
+		Object result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment,
+				operation, first);
+		assertOrderedSet(Collections.emptyList(), result);
+
+		result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				target, EcorePackage.eINSTANCE.getEClass());
+		assertOrderedSet(Arrays.asList(first, second), result);
+		assertTrue(((Collection<?>)result).contains(second));
+		assertFalse(((Collection<?>)result).contains(first.getEGenericSuperTypes().get(0)));
+
+		result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				target);
+		assertOrderedSet(Arrays.asList(first, first.getEGenericSuperTypes().get(0), second, second
+				.getEGenericSuperTypes().get(0)), result);
+
+		resourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		result = AcceleoLibraryOperationVisitor.callNonStandardOperation(evaluationEnvironment, operation,
+				target, EcorePackage.eINSTANCE.getEClass());
+		assertOrderedSet(Arrays.asList(first, second), result);
+	}
+
 	/**
 	 * Tests the behavior of the non standard "siblings()" operation on OclAny.
 	 * <p>
@@ -1071,4 +1184,41 @@ public class AcceleoNonStandardLibraryTest extends AbstractAcceleoTest {
 		// not guarded
 		return null;
 	}
+
+	/**
+	 * Asserts that the given result of an operation is a set holding the expected elements in the expected
+	 * order.
+	 * 
+	 * @param expected
+	 *            The elements we expect, in order.
+	 * @param result
+	 *            The result of the operation.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void assertOrderedSet(List<?> expected, Object result) {
+		assertTrue("eInverse should return a set", result instanceof Set<?>);
+		assertSame(result, CollectionUtil.asSet((Set<Object>)result));
+		assertEquals(expected, new ArrayList<Object>(CollectionUtil.asOrderedSet((Set<Object>)result)));
+		assertEquals(expected.size(), ((Set<?>)result).size());
+	}
+
+	/**
+	 * Creates an EClass in a new resource of the given resource set.
+	 * 
+	 * @param resourceSet
+	 *            The resource set in which to create a new resource.
+	 * @param name
+	 *            Name of the EClass, and of its resource.
+	 * @return The created EClass.
+	 */
+	private EClass createClassInResource(ResourceSet resourceSet, String name) {
+		final Resource resource = new ResourceImpl(URI.createURI(name + ".ecore"));
+		resourceSet.getResources().add(resource);
+		final EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName(name);
+		ePackage.getEClassifiers().add(eClass);
+		resource.getContents().add(ePackage);
+		return eClass;
+	}
 }
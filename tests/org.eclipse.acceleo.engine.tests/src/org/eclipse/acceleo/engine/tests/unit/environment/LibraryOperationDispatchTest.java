@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.acceleo.common.utils.AcceleoNonStandardLibrary;
+import org.eclipse.acceleo.common.utils.AcceleoStandardLibrary;
+import org.eclipse.acceleo.engine.internal.environment.LibraryOperation;
+import org.eclipse.emf.ecore.EOperation;
+import org.junit.Test;
+
+/**
+ * Tests the resolution of library operations to their opcode.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class LibraryOperationDispatchTest {
+	/**
+	 * Checks that each and every operation of the standard and non-standard libraries has an opcode.
+	 */
+	@Test
+	public void testLibraryOperationsHaveOpcode() {
+		for (String operationName : getLibraryOperationNames()) {
+			final LibraryOperation opcode = LibraryOperation.forName(operationName);
+			assertFalse("Operation " + operationName + " has no opcode.", opcode == LibraryOperation.UNKNOWN);
+			assertEquals(operationName, opcode.getOperationName());
+		}
+	}
+
+	/**
+	 * Checks that opcodes resolve back to themselves and that unknown names resolve to
+	 * {@link LibraryOperation#UNKNOWN}.
+	 */
+	@Test
+	public void testOpcodeResolution() {
+		for (LibraryOperation opcode : LibraryOperation.values()) {
+			if (opcode != LibraryOperation.UNKNOWN) {
+				assertSame(opcode, LibraryOperation.forName(opcode.getOperationName()));
+			}
+		}
+		assertSame(LibraryOperation.UNKNOWN, LibraryOperation.forName("notALibraryOperation"));
+		assertSame(LibraryOperation.UNKNOWN, LibraryOperation.forName(null));
+	}
+
+	/**
+	 * Checks that operation names read from a module, which are not the interned literals the opcodes were
+	 * declared with, resolve to the opcode of the same name.
+	 */
+	@Test
+	public void testOpcodeResolutionFromDistinctNames() {
+		for (String operationName : getLibraryOperationNames()) {
+			final LibraryOperation opcode = LibraryOperation.forName(new String(operationName));
+			assertSame(LibraryOperation.forName(operationName), opcode);
+			assertEquals(operationName, opcode.getOperationName());
+		}
+	}
+
+	/**
+	 * Returns the name of all operations defined in the standard and non-standard libraries.
+	 * 
+	 * @return The name of all operations defined in the standard and non-standard libraries.
+	 */
+	private static List<String> getLibraryOperationNames() {
+		final List<String> names = new ArrayList<String>();
+		final AcceleoStandardLibrary standardLibrary = new AcceleoStandardLibrary();
+		final String[] standardTypes = new String[] {AcceleoStandardLibrary.PRIMITIVE_STRING_NAME,
+				AcceleoStandardLibrary.PRIMITIVE_INTEGER_NAME, AcceleoStandardLibrary.PRIMITIVE_REAL_NAME, };
+		for (String type : standardTypes) {
+			addOperationNames(names, standardLibrary.getExistingOperations(type));
+		}
+		final AcceleoNonStandardLibrary nonStandardLibrary = new AcceleoNonStandardLibrary();
+		final String[] nonStandardTypes = new String[] {AcceleoNonStandardLibrary.PRIMITIVE_STRING_NAME,
+				AcceleoNonStandardLibrary.TYPE_OCLANY_NAME, AcceleoNonStandardLibrary.TYPE_EOBJECT_NAME,
+				AcceleoNonStandardLibrary.TYPE_COLLECTION_NAME, AcceleoNonStandardLibrary.TYPE_SEQUENCE_NAME,
+				AcceleoNonStandardLibrary.TYPE_ORDEREDSET_NAME, };
+		for (String type : nonStandardTypes) {
+			addOperationNames(names, nonStandardLibrary.getExistingOperations(type));
+		}
+		assertFalse(names.isEmpty());
+		return names;
+	}
+
+	/**
+	 * Adds the name of the given operations to <code>names</code> if it isn't there already.
+	 * 
+	 * @param names
+	 *            The list of names to complete.
+	 * @param operations
+	 *            The operations which names are to be added.
+	 */
+	private static void addOperationNames(List<String> names, List<EOperation> operations) {
+		for (EOperation operation : operations) {
+			if (!names.contains(operation.getName())) {
+				names.add(operation.getName());
+			}
+		}
+	}
+}
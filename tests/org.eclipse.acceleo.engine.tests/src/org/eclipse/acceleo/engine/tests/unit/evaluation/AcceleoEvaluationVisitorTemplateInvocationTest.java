@@ -11,21 +11,27 @@
 package org.eclipse.acceleo.engine.tests.unit.evaluation;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.acceleo.common.utils.AcceleoCollections;
 import org.eclipse.acceleo.engine.internal.environment.AcceleoEvaluationEnvironment;
+import org.eclipse.acceleo.engine.internal.environment.TemplateDispatchCache;
 import org.eclipse.acceleo.model.mtl.FileBlock;
 import org.eclipse.acceleo.model.mtl.Module;
 import org.eclipse.acceleo.model.mtl.MtlFactory;
 import org.eclipse.acceleo.model.mtl.OpenModeKind;
 import org.eclipse.acceleo.model.mtl.Template;
 import org.eclipse.acceleo.model.mtl.TemplateInvocation;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -260,6 +266,87 @@ public class AcceleoEvaluationVisitorTemplateInvocationTest extends AbstractAcce
 				+ "templateVariableValue" + OUTPUT, entry.getValue().toString()); //$NON-NLS-1$
 	}
 
+	/**
+	 * Tests that evaluating a template invocation does not alter the invoked template's parameters.
+	 */
+	@Test
+	public void testTemplateInvocationReadOnlyParameters() {
+		final Resource res = new ResourceImpl();
+		final TemplateInvocation invocation = getDummyTemplateInvocation();
+		final Template template = getParentTemplate(invocation);
+		res.getContents().add(template.eContainer());
+		invocation.getArgument().add(createOCLExpression("name", EcorePackage.eINSTANCE.getEClass())); //$NON-NLS-1$
+		final Variable param = EcoreFactory.eINSTANCE.createVariable();
+		param.setName("s"); //$NON-NLS-1$
+		param.setType(EcorePackage.eINSTANCE.getEString());
+		res.getContents().add(param);
+		invocation.getDefinition().getParameter().add(param);
+		final VariableExp variableExp = EcoreFactory.eINSTANCE.createVariableExp();
+		variableExp.setReferredVariable(param);
+		invocation.getDefinition().getBody().clear();
+		invocation.getDefinition().getBody().add(variableExp);
+
+		param.eAdapters().add(new AdapterImpl() {
+			@Override
+			public void notifyChanged(Notification msg) {
+				fail("Template parameters should not be modified by the evaluation."); //$NON-NLS-1$
+			}
+		});
+
+		final EClass clazz = (EClass)getTestPackage().getEClassifiers().get(0);
+		evaluationVisitor.getEvaluationEnvironment().add("self", clazz); //$NON-NLS-1$
+		mapTemplates();
+
+		evaluationVisitor.visitExpression(template);
+		assertSame("Expecting a single preview", 1, getPreview().size()); //$NON-NLS-1$
+		Map.Entry<String, String> entry = getPreview().entrySet().iterator().next();
+		assertEquals("Unexpected content generated from a valid template invocation.", OUTPUT //$NON-NLS-1$
+				+ clazz.getName() + OUTPUT, entry.getValue().toString());
+		assertNull("Parameter should not have been given an init expression.", param.getInitExpression()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that the resolution of template calls is cached by the environment and flushed when the dynamic
+	 * modules registry changes.
+	 */
+	@Test
+	public void testTemplateInvocationDispatchCache() {
+		final TemplateInvocation invocation = getDummyTemplateInvocation();
+		final Template dummyTemplate = invocation.getDefinition();
+		final Module module = (Module)dummyTemplate.eContainer();
+		mapTemplates();
+
+		final AcceleoEvaluationEnvironment evaluationEnvironment = (AcceleoEvaluationEnvironment)evaluationVisitor
+				.getEvaluationEnvironment();
+		final Object[] arguments = new Object[0];
+		final List<Template> candidates = evaluationEnvironment.getAllCandidates(module, dummyTemplate,
+				arguments);
+		assertEquals("Unexpected candidates for the call.", Collections.singletonList(dummyTemplate), //$NON-NLS-1$
+				candidates);
+		assertSame("Unexpected resolution of the call.", dummyTemplate, evaluationEnvironment //$NON-NLS-1$
+				.getUnguardedMostSpecificTemplate(module, dummyTemplate, arguments));
+
+		// Altering the returned list should not alter the cache
+		candidates.clear();
+		assertEquals("Candidates list should have been a copy.", 1, evaluationEnvironment.getAllCandidates( //$NON-NLS-1$
+				module, dummyTemplate, arguments).size());
+
+		// A guarded candidate cannot be resolved without evaluating its guard
+		final Template guardedTemplate = MtlFactory.eINSTANCE.createTemplate();
+		guardedTemplate.setName(dummyTemplate.getName());
+		guardedTemplate.setGuard(createOCLExpression("true")); //$NON-NLS-1$
+		module.getOwnedModuleElement().add(guardedTemplate);
+		templates.put(guardedTemplate.getName(), guardedTemplate);
+		assertEquals("Resolution should have been cached.", 1, evaluationEnvironment.getAllCandidates(module, //$NON-NLS-1$
+				dummyTemplate, arguments).size());
+
+		TemplateDispatchCache.invalidateAll();
+		assertEquals("Cache should have been flushed.", 2, evaluationEnvironment.getAllCandidates(module, //$NON-NLS-1$
+				dummyTemplate, arguments).size());
+		assertNull("Guarded candidates cannot be resolved beforehand.", evaluationEnvironment //$NON-NLS-1$
+				.getUnguardedMostSpecificTemplate(module, dummyTemplate, arguments));
+	}
+
 	/**
 	 * Creates a dummy template invocation containing a single string literal as its expression.
 	 * 
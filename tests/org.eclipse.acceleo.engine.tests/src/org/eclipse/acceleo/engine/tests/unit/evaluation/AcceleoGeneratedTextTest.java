@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.evaluation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.acceleo.engine.internal.evaluation.AcceleoGeneratedText;
+import org.junit.Test;
+
+/**
+ * Checks that the text generated through {@link AcceleoGeneratedText} is the very same as the text that
+ * would have been generated by indenting and concatenating Strings.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class AcceleoGeneratedTextTest {
+	/** Characters of the random segments. */
+	private static final String ALPHABET = "ab \t\r\n";
+
+	/** Number of random texts that will be compared with their String counterpart. */
+	private static final int RANDOM_TEXT_COUNT = 20000;
+
+	/** Matches any line terminator. */
+	private static final Pattern LINE_TERMINATOR = Pattern.compile("\r\n|\r|\n");
+
+	/**
+	 * Checks the indentation of texts mixing line terminators.
+	 */
+	@Test
+	public void testIndentation() {
+		final String[] sources = new String[] {"a\nb", "a\r\nb\r\n", "a\rb\r", "a\r", "\n\r\n\r", "\r\n",
+				"  a\n\tb\r\n  ", };
+		for (String source : sources) {
+			final AcceleoGeneratedText text = new AcceleoGeneratedText();
+			text.append(source);
+			assertEquals(fitIndentation(source, "\t  "), text.indent("\t  ").toString());
+			assertEquals(fitIndentation(source, "\n "), text.indent("\n ").toString());
+			assertEquals(source, text.indent("").toString());
+		}
+	}
+
+	/**
+	 * Checks that carriage returns and line feeds from distinct segments form a single DOS line separator.
+	 */
+	@Test
+	public void testSplitLineSeparator() {
+		final AcceleoGeneratedText nested = new AcceleoGeneratedText();
+		nested.append("a\r");
+		final AcceleoGeneratedText text = new AcceleoGeneratedText();
+		text.append(nested);
+		text.append("\n  b");
+		assertEquals("a\r\n  b", text.toString());
+		assertEquals("a\r\n\t\t  b", text.indent("\t").indent("\t").toString());
+		assertEquals("  ", text.getLastLineIndentation());
+		assertEquals(lastLineIndentation("a\r\n  b"), text.getLastLineIndentation());
+	}
+
+	/**
+	 * Compares randomly nested texts with the result of the same operations on Strings.
+	 */
+	@Test
+	public void testRandomTexts() {
+		final Random random = new Random(20130101L);
+		for (int i = 0; i < RANDOM_TEXT_COUNT; i++) {
+			final StringBuilder expected = new StringBuilder();
+			final AcceleoGeneratedText text = createText(random, 4, expected);
+			assertEquals(expected.toString(), text.toString());
+			assertEquals(expected.length(), text.length());
+			assertEquals(lastLineIndentation(expected.toString()), text.getLastLineIndentation());
+		}
+	}
+
+	/**
+	 * Creates a random text and its expected String representation. Nested texts are indented as template
+	 * invocations would be.
+	 * 
+	 * @param random
+	 *            Source of randomness.
+	 * @param depth
+	 *            Maximum nesting depth of the text.
+	 * @param expected
+	 *            Buffer in which the expected String representation of the text will be written.
+	 * @return The created text.
+	 */
+	private static AcceleoGeneratedText createText(Random random, int depth, StringBuilder expected) {
+		final AcceleoGeneratedText text = new AcceleoGeneratedText();
+		final int segmentCount = random.nextInt(5);
+		for (int i = 0; i < segmentCount; i++) {
+			if (depth > 0 && random.nextInt(3) == 0) {
+				final String indentation = text.getLastLineIndentation();
+				assertEquals(lastLineIndentation(expected.toString()), indentation);
+				final StringBuilder nestedExpected = new StringBuilder();
+				final AcceleoGeneratedText nested = createText(random, depth - 1, nestedExpected);
+				text.append(nested.indent(indentation));
+				expected.append(fitIndentation(nestedExpected.toString(), indentation));
+			} else {
+				final StringBuilder segment = new StringBuilder();
+				final int length = random.nextInt(6);
+				for (int j = 0; j < length; j++) {
+					segment.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+				}
+				text.append(segment.toString());
+				expected.append(segment);
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Indents the given String as the evaluation visitor does.
+	 * 
+	 * @param source
+	 *            Text which indentation is to be altered.
+	 * @param indentation
+	 *            Indentation that is to be given to all of <em>source</em> lines.
+	 * @return The input <em>text</em> after its indentation has been modified.
+	 */
+	private static String fitIndentation(String source, String indentation) {
+		final Matcher matcher = LINE_TERMINATOR.matcher(source);
+		final StringBuffer result = new StringBuffer();
+		while (matcher.find()) {
+			matcher.appendReplacement(result, "$0" + indentation);
+		}
+		matcher.appendTail(result);
+		return result.toString();
+	}
+
+	/**
+	 * Computes the indentation of the given String's last line as the evaluation context does.
+	 * 
+	 * @param content
+	 *            The content of the context.
+	 * @return The indentation of the last line of <code>content</code>.
+	 */
+	private static String lastLineIndentation(String content) {
+		int newLineIndex = 0;
+		if (content.contains("\r\n")) {
+			newLineIndex = content.lastIndexOf("\r\n") + 2;
+		} else if (content.contains("\n")) {
+			newLineIndex = content.lastIndexOf('\n') + 1;
+		} else if (content.contains("\r")) {
+			newLineIndex = content.lastIndexOf('\r') + 1;
+		}
+		int end = newLineIndex;
+		while (end < content.length() && Character.isWhitespace(content.charAt(end))) {
+			end++;
+		}
+		return content.substring(newLineIndex, end);
+	}
+}
@@ -24,7 +24,8 @@ import org.junit.runners.Suite.SuiteClasses;
 		AcceleoEvaluationVisitorIfBlockTest.class, AcceleoEvaluationVisitorLetBlockTest.class,
 		AcceleoEvaluationVisitorProtectedAreaBlockTest.class,
 		AcceleoEvaluationVisitorQueryInvocationTest.class,
-		AcceleoEvaluationVisitorTemplateInvocationTest.class, LineReaderTest.class })
+		AcceleoEvaluationVisitorTemplateInvocationTest.class, LineReaderTest.class,
+		AcceleoGeneratedTextTest.class, ProtectedAreasTest.class })
 public class AllAcceleoEvaluationVisitorTests extends TestCase {
 	/**
 	 * Launches the test with the given arguments.
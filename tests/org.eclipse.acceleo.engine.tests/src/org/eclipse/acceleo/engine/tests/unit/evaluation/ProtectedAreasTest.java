@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreaIndex;
+import org.eclipse.acceleo.engine.internal.evaluation.ProtectedAreas;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the extraction of protected areas from existing files.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class ProtectedAreasTest {
+	/** The folder in which we'll create files. */
+	private File folder;
+
+	/**
+	 * Creates the folder in which we'll create files.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the temporary folder cannot be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		folder = File.createTempFile("acceleo", "protectedAreas");
+		if (!folder.delete() || !folder.mkdir()) {
+			fail("Could not create temporary folder.");
+		}
+	}
+
+	/**
+	 * Deletes the created files and their folder.
+	 */
+	@After
+	public void tearDown() {
+		final File[] children = folder.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				child.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	/**
+	 * Checks that areas span from their start marker to the end of their end marker whatever the line
+	 * separators.
+	 */
+	@Test
+	public void testAreas() {
+		final String content = "header\n// Start of user code first \r\n  kept\r"
+				+ "// End of user code trailing\n/* Start of user code second */\nkept\n"
+				+ "/* End of user code */ ignored\n";
+		final ProtectedAreas areas = ProtectedAreas.parse(content);
+		final Map<String, String> expected = new HashMap<String, String>();
+		expected.put("first", "Start of user code first \r\n  kept\r// End of user code");
+		expected.put("second */", "Start of user code second */\nkept\n/* End of user code");
+		assertEquals(expected, areas.getAreas());
+		assertFalse(areas.hasJMergeTag());
+	}
+
+	/**
+	 * Checks that an area without an end marker spans to the end of the file, its last line getting the
+	 * previous line separator as the line by line reading did.
+	 */
+	@Test
+	public void testUnterminatedArea() {
+		assertEquals("Start of user code a\nkept\n", ProtectedAreas.parse("Start of user code a\nkept\n")
+				.getAreas().get("a"));
+		assertEquals("Start of user code a\r\nkept\r\n", ProtectedAreas.parse("Start of user code a\r\nkept")
+				.getAreas().get("a"));
+		assertEquals("Start of user code a\r\n", ProtectedAreas.parse("Start of user code a").getAreas().get(
+				"a"));
+		// The end marker isn't searched on the line of the start marker
+		assertEquals("Start of user code a End of user code\r\n", ProtectedAreas.parse(
+				"Start of user code a End of user code").getAreas().get("a End of user code"));
+	}
+
+	/**
+	 * Checks that the JMerge tag is found anywhere in the text.
+	 */
+	@Test
+	public void testJMergeTag() {
+		assertTrue(ProtectedAreas.parse("a\n * @generated NOT\n").hasJMergeTag());
+		assertTrue(ProtectedAreas.parse("Start of user code a\n@generated\nEnd of user code").hasJMergeTag());
+	}
+
+	/**
+	 * Checks that the areas read from a file are decoded with its charset.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the file cannot be created.
+	 */
+	@Test
+	public void testReadFile() throws IOException {
+		final String content = "\u00e9t\u00e9\n// Start of user code \u00e9\n\u20ac\n// End of user code\n";
+		for (String charset : new String[] {"UTF-8", "ISO-8859-15", "UTF-16", }) {
+			final File file = createFile("read.txt", content, charset);
+			assertEquals(ProtectedAreas.parse(content).getAreas(), ProtectedAreas.read(file, charset)
+					.getAreas());
+		}
+	}
+
+	/**
+	 * Checks that indexed areas are only returned once, and only if their file has not changed.
+	 * 
+	 * @throws Exception
+	 *             Thrown if the files cannot be created.
+	 */
+	@Test
+	public void testIndex() throws Exception {
+		final File first = createFile("first.txt", "Start of user code a\nfirst\nEnd of user code\n",
+				"UTF-8");
+		final File second = createFile("second.txt", "Start of user code b\nsecond\nEnd of user code\n",
+				"UTF-8");
+		final ProtectedAreaIndex index = ProtectedAreaIndex.build(folder, "UTF-8");
+		assertEquals(2, index.size());
+
+		final ProtectedAreas firstAreas = index.take(first, "UTF-8");
+		assertNotNull(firstAreas);
+		assertEquals("Start of user code a\nfirst\nEnd of user code", firstAreas.getAreas().get("a"));
+		assertNull(index.take(first, "UTF-8"));
+
+		assertTrue(second.setLastModified(second.lastModified() - 10000));
+		assertNull(index.take(second, "UTF-8"));
+		assertEquals(0, index.size());
+	}
+
+	/**
+	 * Checks that only the files containing protected areas are indexed.
+	 * 
+	 * @throws Exception
+	 *             Thrown if the files cannot be created.
+	 */
+	@Test
+	public void testIndexProtectedFilesOnly() throws Exception {
+		final File protectedFile = createFile("protected.txt",
+				"@generated\nStart of user code a\nkept\nEnd of user code\n", "UTF-8");
+		final File plainFile = createFile("plain.txt", "@generated\nno user code here\n", "UTF-8");
+		final File binaryFile = new File(folder, "binary.bin");
+		final OutputStream output = new FileOutputStream(binaryFile);
+		try {
+			for (int i = 0; i < 4096; i++) {
+				output.write(i * 31);
+			}
+		} finally {
+			output.close();
+		}
+
+		final ProtectedAreaIndex index = ProtectedAreaIndex.build(folder, "UTF-8");
+		assertEquals(1, index.size());
+		assertNull(index.take(plainFile, "UTF-8"));
+		assertNull(index.take(binaryFile, "UTF-8"));
+		final ProtectedAreas areas = index.take(protectedFile, "UTF-8");
+		assertNotNull(areas);
+		assertTrue(areas.hasJMergeTag());
+		assertEquals("Start of user code a\nkept\nEnd of user code", areas.getAreas().get("a"));
+	}
+
+	/**
+	 * Checks that indexed areas are returned for any name of the charset they have been read with, the
+	 * System default being used when no charset is specified.
+	 * 
+	 * @throws Exception
+	 *             Thrown if the files cannot be created.
+	 */
+	@Test
+	public void testIndexCharsets() throws Exception {
+		final String defaultCharset = Charset.defaultCharset().name();
+		final File first = createFile("first.txt", "Start of user code a\nfirst\nEnd of user code\n",
+				defaultCharset);
+		final File second = createFile("second.txt", "Start of user code b\nsecond\nEnd of user code\n",
+				defaultCharset);
+		final File third = createFile("third.txt", "Start of user code c\nthird\nEnd of user code\n",
+				defaultCharset);
+
+		final ProtectedAreaIndex index = ProtectedAreaIndex.build(folder, null);
+		assertEquals(3, index.size());
+		assertNotNull(index.take(first, defaultCharset));
+		assertNotNull(index.take(second, defaultCharset.toLowerCase()));
+		assertNull(index.take(third, "UTF-16"));
+
+		final ProtectedAreaIndex unsupported = ProtectedAreaIndex.build(folder, "unsupported-charset");
+		assertEquals(0, unsupported.size());
+		assertNull(unsupported.take(first, "unsupported-charset"));
+	}
+
+	/**
+	 * Creates a file with the given content.
+	 * 
+	 * @param name
+	 *            Name of the file.
+	 * @param content
+	 *            Content of the file.
+	 * @param charset
+	 *            Charset of the file.
+	 * @return The created file.
+	 * @throws IOException
+	 *             Thrown if the file cannot be created.
+	 */
+	private File createFile(String name, String content, String charset) throws IOException {
+		final File file = new File(folder, name);
+		final OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content.getBytes(charset));
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+}
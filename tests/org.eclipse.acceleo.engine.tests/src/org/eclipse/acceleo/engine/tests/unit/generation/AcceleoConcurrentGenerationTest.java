@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy;
+import org.eclipse.acceleo.engine.service.AcceleoService;
+import org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.junit.Test;
+
+/**
+ * This will run a number of generations in parallel against a single loaded module and check that they do
+ * not interfere with each other.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class AcceleoConcurrentGenerationTest extends AbstractAcceleoTest {
+	/** Number of generations that will be run concurrently. */
+	private static final int THREAD_COUNT = 8;
+
+	/** Number of generations each thread will launch. */
+	private static final int GENERATIONS_PER_THREAD = 10;
+
+	/** Name of the main template of our module. */
+	private static final String MAIN_TEMPLATE = "generate";
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest#getModuleLocation()
+	 */
+	@Override
+	public String getModuleLocation() {
+		return "data/ConcurrentGeneration/concurrent_generation.mtl";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest#getReferencePath()
+	 */
+	@Override
+	public String getReferencePath() {
+		return "ConcurrentGeneration";
+	}
+
+	/**
+	 * Runs {@link #THREAD_COUNT} generations in parallel against the same module and checks that all of them
+	 * produce the same output as a single, sequential generation. The module should not be altered by any of
+	 * these generations.
+	 * 
+	 * @throws Exception
+	 *             Thrown if one of the generations fails or times out.
+	 */
+	@Test
+	public void testConcurrentGenerationsSharingModule() throws Exception {
+		final Map<String, String> reference = new AcceleoService(new PreviewStrategy()).doGenerate(module,
+				MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+		assertFalse("The preview shouldn't be empty", reference.isEmpty());
+
+		final ModuleChangeRecorder recorder = new ModuleChangeRecorder();
+		module.eAdapters().add(recorder);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final List<Future<List<Map<String, String>>>> results;
+		results = new ArrayList<Future<List<Map<String, String>>>>(THREAD_COUNT);
+		try {
+			for (int i = 0; i < THREAD_COUNT; i++) {
+				results.add(executor.submit(new Callable<List<Map<String, String>>>() {
+					public List<Map<String, String>> call() throws Exception {
+						startSignal.await();
+						final List<Map<String, String>> previews = new ArrayList<Map<String, String>>();
+						for (int j = 0; j < GENERATIONS_PER_THREAD; j++) {
+							previews.add(new AcceleoService(new PreviewStrategy()).doGenerate(module,
+									MAIN_TEMPLATE, inputModel, null, new BasicMonitor()));
+						}
+						return previews;
+					}
+				}));
+			}
+			startSignal.countDown();
+
+			for (Future<List<Map<String, String>>> result : results) {
+				try {
+					for (Map<String, String> preview : result.get(1, TimeUnit.MINUTES)) {
+						assertEquals("Concurrent generations should not interfere with each other.",
+								reference, preview);
+					}
+				} catch (ExecutionException e) {
+					fail("A concurrent generation failed : " + e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			module.eAdapters().remove(recorder);
+		}
+
+		assertEquals("The module shouldn't have been altered by the generations.", 0, recorder
+				.getChangeCount());
+	}
+
+	/**
+	 * This will count all changes made to the module or its content.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static class ModuleChangeRecorder extends EContentAdapter {
+		/** Number of changes that have been made to the module. */
+		private final AtomicInteger changeCount = new AtomicInteger();
+
+		/**
+		 * Returns the number of changes that have been made to the module since this has been installed.
+		 * 
+		 * @return The number of changes that have been made to the module.
+		 */
+		public int getChangeCount() {
+			return changeCount.get();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.emf.ecore.util.EContentAdapter#notifyChanged(org.eclipse.emf.common.notify.Notification)
+		 */
+		@Override
+		public void notifyChanged(Notification notification) {
+			if (!notification.isTouch() && notification.getEventType() != Notification.REMOVING_ADAPTER) {
+				changeCount.incrementAndGet();
+			}
+			super.notifyChanged(notification);
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.acceleo.common.preference.AcceleoPreferences;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
+import org.eclipse.acceleo.engine.generation.cache.AbstractAcceleoQueryCache;
+import org.eclipse.acceleo.engine.generation.cache.IAcceleoQueryCache;
+import org.eclipse.acceleo.engine.generation.cache.LRUQueryCache;
+import org.eclipse.acceleo.engine.generation.cache.QueryCacheStatistics;
+import org.eclipse.acceleo.engine.generation.cache.SoftQueryCache;
+import org.eclipse.acceleo.engine.generation.cache.UnboundedQueryCache;
+import org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy;
+import org.eclipse.acceleo.engine.service.AcceleoService;
+import org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest;
+import org.eclipse.acceleo.model.mtl.MtlFactory;
+import org.eclipse.acceleo.model.mtl.Query;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.Test;
+
+/**
+ * Tests the query cache implementations and their use by the generation service.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class AcceleoQueryCacheTest extends AbstractAcceleoTest {
+	/** Name of the main template of our module. */
+	private static final String MAIN_TEMPLATE = "generate";
+
+	/** Number of threads looking up the cache concurrently. */
+	private static final int THREAD_COUNT = 4;
+
+	/** Number of lookups of each thread. */
+	private static final int LOOKUP_COUNT = 10000;
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest#getModuleLocation()
+	 */
+	@Override
+	public String getModuleLocation() {
+		return "data/ConcurrentGeneration/concurrent_generation.mtl";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest#getReferencePath()
+	 */
+	@Override
+	public String getReferencePath() {
+		return "ConcurrentGeneration";
+	}
+
+	/**
+	 * Checks that the unbounded cache keeps all results and counts hits and misses per query.
+	 */
+	@Test
+	public void testUnboundedCacheStatistics() {
+		final IAcceleoQueryCache cache = new UnboundedQueryCache();
+		final Query query1 = MtlFactory.eINSTANCE.createQuery();
+		final Query query2 = MtlFactory.eINSTANCE.createQuery();
+
+		assertNull(cache.get(query1, "a"));
+		cache.put(query1, "a", "resultA");
+		cache.put(query2, "a", "otherA");
+		assertEquals("resultA", cache.get(query1, "a"));
+		assertEquals("resultA", cache.get(query1, "a"));
+		assertEquals("otherA", cache.get(query2, "a"));
+
+		final Map<Query, QueryCacheStatistics> statistics = cache.getStatistics();
+		assertEquals(2, statistics.get(query1).getHitCount());
+		assertEquals(1, statistics.get(query1).getMissCount());
+		assertEquals(0, statistics.get(query1).getEvictionCount());
+		assertEquals(1, statistics.get(query2).getHitCount());
+		assertEquals(0, statistics.get(query2).getMissCount());
+
+		cache.clear();
+		assertNull(cache.get(query1, "a"));
+	}
+
+	/**
+	 * Checks that the LRU cache never holds more than its maximum size and evicts the least recently used
+	 * result first.
+	 */
+	@Test
+	public void testLRUCacheEviction() {
+		final IAcceleoQueryCache cache = new LRUQueryCache(2);
+		final Query query = MtlFactory.eINSTANCE.createQuery();
+
+		cache.put(query, "a", "resultA");
+		cache.put(query, "b", "resultB");
+		// Makes "b" the least recently used
+		assertEquals("resultA", cache.get(query, "a"));
+		cache.put(query, "c", "resultC");
+
+		assertNull(cache.get(query, "b"));
+		assertEquals("resultA", cache.get(query, "a"));
+		assertEquals("resultC", cache.get(query, "c"));
+		assertEquals(1, cache.getStatistics().get(query).getEvictionCount());
+	}
+
+	/**
+	 * Checks that the soft cache returns the results it holds as long as they haven't been reclaimed.
+	 */
+	@Test
+	public void testSoftCache() {
+		final IAcceleoQueryCache cache = new SoftQueryCache();
+		final Query query = MtlFactory.eINSTANCE.createQuery();
+		final String result = "resultA";
+
+		cache.put(query, "a", result);
+		assertEquals(result, cache.get(query, "a"));
+		assertNull(cache.get(query, "b"));
+		assertEquals(1, cache.getStatistics().get(query).getHitCount());
+	}
+
+	/**
+	 * Checks that caches asked not to record statistics still cache results, but report no statistics.
+	 */
+	@Test
+	public void testStatisticsOptOut() {
+		final AbstractAcceleoQueryCache[] caches = {new UnboundedQueryCache(false),
+				new LRUQueryCache(1, false), new SoftQueryCache(false), };
+		final Query query = MtlFactory.eINSTANCE.createQuery();
+		for (AbstractAcceleoQueryCache cache : caches) {
+			assertFalse(cache.isRecordingStatistics());
+			assertNull(cache.get(query, "a"));
+			cache.put(query, "a", "resultA");
+			assertEquals("resultA", cache.get(query, "a"));
+			cache.put(query, "b", "resultB");
+			assertTrue(cache.getStatistics().isEmpty());
+		}
+		assertTrue(new UnboundedQueryCache().isRecordingStatistics());
+	}
+
+	/**
+	 * Checks that concurrent lookups of the unbounded cache return the cached results and are all counted.
+	 * 
+	 * @throws InterruptedException
+	 *             Thrown if we are interrupted while waiting for the lookups to end.
+	 */
+	@Test
+	public void testConcurrentLookups() throws InterruptedException {
+		final IAcceleoQueryCache cache = new UnboundedQueryCache();
+		final Query query = MtlFactory.eINSTANCE.createQuery();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[THREAD_COUNT];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < LOOKUP_COUNT; j++) {
+							final Integer key = Integer.valueOf(j % 100);
+							final Object result = cache.get(query, key);
+							if (result == null) {
+								cache.put(query, key, "result" + key);
+							} else {
+								assertEquals("result" + key, result);
+							}
+						}
+						// CHECKSTYLE:OFF
+					} catch (Throwable e) {
+						// CHECKSTYLE:ON
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertNull(failure.get());
+		final QueryCacheStatistics statistics = cache.getStatistics().get(query);
+		assertEquals(THREAD_COUNT * LOOKUP_COUNT, statistics.getHitCount() + statistics.getMissCount());
+		assertTrue(statistics.getMissCount() >= 100);
+	}
+
+	/**
+	 * Checks that a tiny shared cache does not alter the result of a generation, and that the cached results
+	 * are reused by subsequent generations when asked to.
+	 */
+	@Test
+	public void testServiceQueryCacheReuse() {
+		final Map<String, String> reference = new AcceleoService(new PreviewStrategy()).doGenerate(module,
+				MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+
+		final AcceleoService service = new AcceleoService(new PreviewStrategy());
+		final IAcceleoQueryCache cache = new LRUQueryCache(1);
+		service.setQueryCache(cache);
+		assertEquals(reference, service.doGenerate(module, MAIN_TEMPLATE, inputModel, null,
+				new BasicMonitor()));
+
+		final IAcceleoQueryCache sharedCache = new UnboundedQueryCache();
+		service.setQueryCache(sharedCache);
+		service.setQueryCacheReuse(true);
+		assertEquals(reference, service.doGenerate(module, MAIN_TEMPLATE, inputModel, null,
+				new BasicMonitor()));
+		final long firstRunHits = getTotalHitCount(sharedCache);
+		assertEquals(reference, service.doGenerate(module, MAIN_TEMPLATE, inputModel, null,
+				new BasicMonitor()));
+		assertTrue("Results should have been reused by the second generation.",
+				getTotalHitCount(sharedCache) > firstRunHits);
+
+		// Changes within the input model must be signaled unless its resource tracks modifications
+		final EClass newClass = EcoreFactory.eINSTANCE.createEClass();
+		newClass.setName("AddedClass");
+		final EPackage inputPackage = (EPackage)inputModel;
+		inputPackage.getEClassifiers().add(newClass);
+		try {
+			final Map<String, String> expected = new AcceleoService(new PreviewStrategy()).doGenerate(module,
+					MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+			service.invalidateQueryCache();
+			assertEquals(expected, service.doGenerate(module, MAIN_TEMPLATE, inputModel, null,
+					new BasicMonitor()));
+		} finally {
+			inputPackage.getEClassifiers().remove(newClass);
+		}
+		service.invalidateQueryCache();
+
+		final Resource inputResource = inputModel.eResource();
+		inputResource.setTrackingModification(true);
+		try {
+			service.doGenerate(module, MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+			inputPackage.getEClassifiers().add(newClass);
+			final Map<String, String> expected = new AcceleoService(new PreviewStrategy()).doGenerate(module,
+					MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+			assertEquals(expected, service.doGenerate(module, MAIN_TEMPLATE, inputModel, null,
+					new BasicMonitor()));
+		} finally {
+			inputPackage.getEClassifiers().remove(newClass);
+			inputResource.setTrackingModification(false);
+		}
+	}
+
+	/**
+	 * Checks that reused query results are invalidated by any change to the resources of the resource set of
+	 * the input model, and only by such changes, without adapting the input models.
+	 */
+	@Test
+	public void testServiceQueryCacheResourceSetChange() {
+		final AcceleoService service = new AcceleoService(new PreviewStrategy());
+		final IAcceleoQueryCache cache = new UnboundedQueryCache();
+		service.setQueryCache(cache);
+		service.setQueryCacheReuse(true);
+		final int resourceSetAdapters = resourceSet.eAdapters().size();
+		final int resourceAdapters = inputModel.eResource().eAdapters().size();
+		final int modelAdapters = inputModel.eAdapters().size();
+		service.doGenerate(module, MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+		final long firstRunMisses = getTotalMissCount(cache);
+		assertTrue(firstRunMisses > 0);
+		assertEquals(resourceSetAdapters, resourceSet.eAdapters().size());
+		assertEquals(resourceAdapters, inputModel.eResource().eAdapters().size());
+		assertEquals(modelAdapters, inputModel.eAdapters().size());
+		service.doGenerate(module, MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+		assertEquals("Nothing changed, all results should have been reused.", firstRunMisses,
+				getTotalMissCount(cache));
+
+		final Resource otherResource = resourceSet.createResource(URI.createURI("other.ecore"));
+		try {
+			service.doGenerate(module, MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+			final long addedResourceMisses = getTotalMissCount(cache);
+			assertTrue("Adding a resource should have invalidated the cache.",
+					addedResourceMisses > firstRunMisses);
+
+			otherResource.getContents().add(EcoreFactory.eINSTANCE.createEPackage());
+			service.doGenerate(module, MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+			assertTrue("Modifying another resource should have invalidated the cache.",
+					getTotalMissCount(cache) > addedResourceMisses);
+		} finally {
+			resourceSet.getResources().remove(otherResource);
+		}
+	}
+
+	/**
+	 * Checks that disabling the query cache through the generation options bypasses the cache without
+	 * altering the global preferences.
+	 */
+	@Test
+	public void testQueryCacheDisabledByOptions() {
+		final boolean queryCachePreference = AcceleoPreferences.isQueryCacheEnabled();
+		final Map<String, String> reference = new AcceleoService(new PreviewStrategy()).doGenerate(module,
+				MAIN_TEMPLATE, inputModel, null, new BasicMonitor());
+
+		final GenerationOptions options = GenerationOptions.fromPreferences().withQueryCache(false);
+		final AcceleoService service = new AcceleoService(new PreviewStrategy(), options);
+		final IAcceleoQueryCache cache = new UnboundedQueryCache();
+		service.setQueryCache(cache);
+		assertEquals(reference, service.doGenerate(module, MAIN_TEMPLATE, inputModel, null,
+				new BasicMonitor()));
+
+		assertTrue("The cache should not have been used.", cache.getStatistics().isEmpty());
+		assertEquals(queryCachePreference, AcceleoPreferences.isQueryCacheEnabled());
+	}
+
+	/**
+	 * Returns the number of hits recorded by the given cache, all queries included.
+	 * 
+	 * @param cache
+	 *            The cache which statistics are to be summed.
+	 * @return The number of hits recorded by the given cache.
+	 */
+	private static long getTotalHitCount(IAcceleoQueryCache cache) {
+		long hits = 0;
+		for (QueryCacheStatistics statistics : cache.getStatistics().values()) {
+			hits += statistics.getHitCount();
+		}
+		return hits;
+	}
+
+	/**
+	 * Returns the number of misses recorded by the given cache, all queries included.
+	 * 
+	 * @param cache
+	 *            The cache which statistics are to be summed.
+	 * @return The number of misses recorded by the given cache.
+	 */
+	private static long getTotalMissCount(IAcceleoQueryCache cache) {
+		long misses = 0;
+		for (QueryCacheStatistics statistics : cache.getStatistics().values()) {
+			misses += statistics.getMissCount();
+		}
+		return misses;
+	}
+}
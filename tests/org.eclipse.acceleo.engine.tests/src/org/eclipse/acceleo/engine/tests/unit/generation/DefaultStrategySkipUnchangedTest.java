@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy;
+import org.eclipse.acceleo.engine.generation.writers.AbstractAcceleoWriter;
+import org.eclipse.acceleo.engine.generation.writers.AcceleoBufferedFileWriter;
+import org.eclipse.acceleo.engine.generation.writers.AcceleoComparingFileWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the mode of the default generation strategy which leaves unchanged files untouched.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class DefaultStrategySkipUnchangedTest {
+	/** Time stamp we'll give to the generated file so as to detect that it's been rewritten. */
+	private static final long OLD_TIMESTAMP = 1000000000000L;
+
+	/** The file we'll generate. */
+	private File target;
+
+	/**
+	 * Creates the folder in which we'll generate.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the temporary folder cannot be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		final File folder = File.createTempFile("acceleo", "skipUnchanged");
+		if (!folder.delete() || !folder.mkdir()) {
+			fail("Could not create temporary folder.");
+		}
+		target = new File(folder, "generated.txt");
+	}
+
+	/**
+	 * Deletes the generated file and its folder.
+	 */
+	@After
+	public void tearDown() {
+		target.delete();
+		target.getParentFile().delete();
+	}
+
+	/**
+	 * Generates the same content twice, then a distinct content, and checks that the file was only written
+	 * when its content changed.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the file cannot be generated.
+	 */
+	@Test
+	public void testSkipUnchangedFile() throws IOException {
+		final DefaultStrategy strategy = new DefaultStrategy(true);
+		assertTrue(strategy.isSkippingUnchangedFiles());
+
+		generate(strategy, "first\ncontent");
+		assertEquals("first\ncontent", read(target));
+		assertEquals(1, strategy.getWrittenFileCount());
+		assertEquals(0, strategy.getSkippedFileCount());
+
+		assertTrue(target.setLastModified(OLD_TIMESTAMP));
+		generate(strategy, "first\ncontent");
+		assertEquals(OLD_TIMESTAMP, target.lastModified());
+		assertEquals(1, strategy.getWrittenFileCount());
+		assertEquals(1, strategy.getSkippedFileCount());
+
+		// Same length, distinct content
+		generate(strategy, "first\nContent");
+		assertFalse(OLD_TIMESTAMP == target.lastModified());
+		assertEquals("first\nContent", read(target));
+		assertEquals(2, strategy.getWrittenFileCount());
+		assertEquals(1, strategy.getSkippedFileCount());
+
+		generate(strategy, "");
+		assertEquals("", read(target));
+		assertEquals(3, strategy.getWrittenFileCount());
+		strategy.dispose();
+	}
+
+	/**
+	 * Checks that the default mode of the strategy still writes all files.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the file cannot be generated.
+	 */
+	@Test
+	public void testDefaultModeWritesAllFiles() throws IOException {
+		final DefaultStrategy strategy = new DefaultStrategy();
+		assertFalse(strategy.isSkippingUnchangedFiles());
+
+		generate(strategy, "content");
+		assertTrue(target.setLastModified(OLD_TIMESTAMP));
+		generate(strategy, "content");
+		assertFalse(OLD_TIMESTAMP == target.lastModified());
+		assertEquals(2, strategy.getWrittenFileCount());
+		assertEquals(0, strategy.getSkippedFileCount());
+		strategy.dispose();
+	}
+
+	/**
+	 * Checks that asynchronous writes are all done once the strategy has completed, and that a file
+	 * regenerated while its previous content is still being written ends up with the last content.
+	 * 
+	 * @throws Exception
+	 *             Thrown if the file cannot be generated.
+	 */
+	@Test
+	public void testAsynchronousWrites() throws Exception {
+		final DefaultStrategy strategy = new DefaultStrategy(true, true);
+		assertTrue(strategy.isWritingAsynchronously());
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final AbstractAcceleoWriter blockedWriter = new BlockingFileWriter(target, release);
+		blockedWriter.append("first content");
+		strategy.flushWriter(target.getAbsolutePath(), blockedWriter);
+		generate(strategy, "second content");
+		assertFalse("The second write should wait for the first one.", target.exists());
+
+		release.countDown();
+		strategy.awaitCompletion(target);
+		assertEquals("second content", read(target));
+		assertEquals(2, strategy.getWrittenFileCount());
+		assertEquals(0, strategy.getSkippedFileCount());
+
+		generate(strategy, "second content");
+		strategy.awaitCompletion();
+		assertEquals("second content", read(target));
+		assertEquals(2, strategy.getWrittenFileCount());
+		assertEquals(1, strategy.getSkippedFileCount());
+		strategy.dispose();
+	}
+
+	/**
+	 * Generates the given content in our target file through the given strategy.
+	 * 
+	 * @param strategy
+	 *            The strategy to use.
+	 * @param content
+	 *            Content of the file.
+	 * @throws IOException
+	 *             Thrown if the file cannot be generated.
+	 */
+	private void generate(DefaultStrategy strategy, String content) throws IOException {
+		final AbstractAcceleoWriter writer = strategy.createWriterFor(target, null, false, false, "UTF-8");
+		assertEquals(strategy.isSkippingUnchangedFiles(), writer instanceof AcceleoComparingFileWriter);
+		writer.append(content);
+		strategy.flushWriter(target.getAbsolutePath(), writer);
+	}
+
+	/**
+	 * Reads the content of the given file.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @return Content of the file.
+	 * @throws IOException
+	 *             Thrown if the file cannot be read.
+	 */
+	private static String read(File file) throws IOException {
+		final InputStream input = new FileInputStream(file);
+		try {
+			final byte[] content = new byte[(int)file.length()];
+			int offset = 0;
+			while (offset < content.length) {
+				offset += input.read(content, offset, content.length - offset);
+			}
+			return new String(content, "UTF-8");
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * A writer which waits for the test to release it before writing its file.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class BlockingFileWriter extends AcceleoBufferedFileWriter {
+		/** Released by the test once this writer can write its file. */
+		private final CountDownLatch release;
+
+		/**
+		 * Creates a writer for the given file that will wait for <code>release</code>.
+		 * 
+		 * @param target
+		 *            File in which this writer will write its content.
+		 * @param release
+		 *            Released by the test once this writer can write its file.
+		 */
+		BlockingFileWriter(File target, CountDownLatch release) {
+			super(target, "UTF-8");
+			this.release = release;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.engine.generation.writers.AcceleoBufferedFileWriter#shouldWrite(java.nio.ByteBuffer)
+		 */
+		@Override
+		protected boolean shouldWrite(ByteBuffer content) throws IOException {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e.getMessage());
+			}
+			return true;
+		}
+	}
+}
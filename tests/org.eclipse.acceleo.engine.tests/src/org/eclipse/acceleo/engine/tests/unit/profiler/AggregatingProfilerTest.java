@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.acceleo.profiler.AggregatingProfiler;
+import org.eclipse.acceleo.profiler.LoopProfileEntry;
+import org.eclipse.acceleo.profiler.ProfileEntry;
+import org.eclipse.acceleo.profiler.ProfileResource;
+import org.eclipse.acceleo.profiler.Profiler;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the call tree and the loop entries built by the {@link AggregatingProfiler}.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class AggregatingProfilerTest {
+	/** Monitored by the root node of the call tree. */
+	private EClass root;
+
+	/** Monitored by the first level callees. */
+	private EClass callee;
+
+	/** Monitored by the nested callees. */
+	private EClass nested;
+
+	/**
+	 * Creates the monitored objects.
+	 */
+	@Before
+	public void setUp() {
+		root = createEClass("root");
+		callee = createEClass("callee");
+		nested = createEClass("nested");
+	}
+
+	/**
+	 * Repeated calls of a given object from a given caller must be aggregated in a single node, while calls
+	 * of that same object from distinct callers must have distinct nodes.
+	 */
+	@Test
+	public void testCallTreeAggregation() {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		for (int generation = 0; generation < 2; generation++) {
+			profiler.start(root);
+			for (int i = 0; i < 3; i++) {
+				profiler.start(callee);
+				profiler.start(nested);
+				profiler.stop();
+				profiler.stop();
+			}
+			profiler.start(nested);
+			profiler.stop();
+			profiler.stop();
+		}
+
+		assertEquals(4, profiler.getNodeCount());
+		final int rootNode = findNode(profiler, AggregatingProfiler.NO_NODE, root);
+		final int calleeNode = findNode(profiler, rootNode, callee);
+		final int deepNestedNode = findNode(profiler, calleeNode, nested);
+		final int nestedNode = findNode(profiler, rootNode, nested);
+		assertTrue(deepNestedNode != nestedNode);
+		assertEquals(2, profiler.getCallCount(rootNode));
+		assertEquals(6, profiler.getCallCount(calleeNode));
+		assertEquals(6, profiler.getCallCount(deepNestedNode));
+		assertEquals(2, profiler.getCallCount(nestedNode));
+		assertTrue(profiler.getTotalTime(rootNode) >= profiler.getTotalTime(calleeNode)
+				+ profiler.getTotalTime(nestedNode));
+		assertTrue(profiler.getTotalTime(calleeNode) >= profiler.getTotalTime(deepNestedNode));
+		assertTrue(profiler.getSelfTime(rootNode) >= 0);
+
+		final ProfileResource profile = profiler.getProfileResource();
+		assertNotNull(profile);
+		final List<ProfileEntry> roots = getEntries(profile.getEntries());
+		assertEquals(1, roots.size());
+		final ProfileEntry rootEntry = roots.get(0);
+		assertSame(root, rootEntry.getMonitored());
+		assertEquals(2, rootEntry.getCount());
+
+		final List<ProfileEntry> callees = getEntries(rootEntry.getCallees());
+		assertEquals(2, callees.size());
+		assertSame(callee, callees.get(0).getMonitored());
+		assertEquals(6, callees.get(0).getCount());
+		assertSame(nested, callees.get(1).getMonitored());
+		assertEquals(2, callees.get(1).getCount());
+
+		final List<ProfileEntry> nestedCallees = getEntries(callees.get(0).getCallees());
+		assertEquals(1, nestedCallees.size());
+		assertSame(nested, nestedCallees.get(0).getMonitored());
+		assertEquals(6, nestedCallees.get(0).getCount());
+		assertTrue(getEntries(callees.get(1).getCallees()).isEmpty());
+	}
+
+	/**
+	 * Loop iterations must be aggregated by EClass of the iterated elements, <code>null</code> elements
+	 * having their own entry.
+	 */
+	@Test
+	public void testLoopKeying() {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		profiler.start(root);
+		profiler.loop(callee);
+		profiler.start(nested);
+		profiler.stop();
+		profiler.loop(nested);
+		profiler.loop(EcoreFactory.eINSTANCE.createEAttribute());
+		profiler.loop(null);
+		profiler.stop();
+
+		final List<ProfileEntry> loops = getRootEntry(profiler).getLoopElements();
+		assertEquals(3, loops.size());
+		assertSame(EcorePackage.Literals.ECLASS, loops.get(0).getMonitored());
+		assertEquals(2, loops.get(0).getCount());
+		assertSame(EcorePackage.Literals.EATTRIBUTE, loops.get(1).getMonitored());
+		assertEquals(1, loops.get(1).getCount());
+		assertNull(loops.get(2).getMonitored());
+		assertEquals(1, loops.get(2).getCount());
+	}
+
+	/**
+	 * Loop iterations must be aggregated by the key returned by
+	 * {@link AggregatingProfiler#getLoopKey(EObject)}.
+	 */
+	@Test
+	public void testLoopKeyOverride() {
+		final AggregatingProfiler profiler = new AggregatingProfiler() {
+			@Override
+			protected EObject getLoopKey(EObject loopElement) {
+				return loopElement;
+			}
+		};
+		profiler.start(root);
+		profiler.loop(callee);
+		profiler.loop(nested);
+		profiler.loop(callee);
+		profiler.stop();
+
+		final List<ProfileEntry> loops = getRootEntry(profiler).getLoopElements();
+		assertEquals(2, loops.size());
+		assertSame(callee, loops.get(0).getMonitored());
+		assertEquals(2, loops.get(0).getCount());
+		assertSame(nested, loops.get(1).getMonitored());
+		assertEquals(1, loops.get(1).getCount());
+	}
+
+	/**
+	 * Resetting the profiler must discard all of its counters.
+	 */
+	@Test
+	public void testReset() {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		profiler.start(root);
+		profiler.loop(callee);
+		profiler.stop();
+		assertEquals(1, profiler.getNodeCount());
+
+		profiler.reset();
+		assertEquals(0, profiler.getNodeCount());
+		assertNull(profiler.getProfileResource());
+
+		profiler.start(callee);
+		profiler.stop();
+		assertEquals(1, profiler.getNodeCount());
+		assertSame(callee, profiler.getMonitored(0));
+		assertEquals(AggregatingProfiler.NO_NODE, profiler.getParent(0));
+		assertTrue(getRootEntry(profiler).getLoopElements().isEmpty());
+	}
+
+	/**
+	 * Returns the single root entry of the profile built by the given profiler.
+	 * 
+	 * @param profiler
+	 *            The profiler.
+	 * @return The single root entry of the profile built by <code>profiler</code>.
+	 */
+	private static LoopProfileEntry getRootEntry(AggregatingProfiler profiler) {
+		final List<ProfileEntry> roots = getEntries(profiler.getProfileResource().getEntries());
+		assertEquals(1, roots.size());
+		return (LoopProfileEntry)roots.get(0);
+	}
+
+	/**
+	 * Returns the given entries, {@link Profiler#INTERNAL} entries excluded.
+	 * 
+	 * @param entries
+	 *            The entries to filter.
+	 * @return The given entries, {@link Profiler#INTERNAL} entries excluded.
+	 */
+	private static List<ProfileEntry> getEntries(List<ProfileEntry> entries) {
+		final List<ProfileEntry> result = new ArrayList<ProfileEntry>();
+		for (ProfileEntry entry : entries) {
+			if (entry.getMonitored() != Profiler.INTERNAL) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the node of the given profiler monitoring the given object under the given parent.
+	 * 
+	 * @param profiler
+	 *            The profiler.
+	 * @param parent
+	 *            The parent node, {@link AggregatingProfiler#NO_NODE} for roots.
+	 * @param monitored
+	 *            The monitored object.
+	 * @return The node monitoring <code>monitored</code> under <code>parent</code>.
+	 */
+	private static int findNode(AggregatingProfiler profiler, int parent, EObject monitored) {
+		int found = AggregatingProfiler.NO_NODE;
+		for (int node = 0; node < profiler.getNodeCount(); node++) {
+			if (profiler.getParent(node) == parent && profiler.getMonitored(node) == monitored) {
+				assertEquals(AggregatingProfiler.NO_NODE, found);
+				found = node;
+			}
+		}
+		assertTrue(found != AggregatingProfiler.NO_NODE);
+		return found;
+	}
+
+	/**
+	 * Creates an EClass with the given name.
+	 * 
+	 * @param name
+	 *            Name of the EClass.
+	 * @return The created EClass.
+	 */
+	private static EClass createEClass(String name) {
+		final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName(name);
+		return eClass;
+	}
+}
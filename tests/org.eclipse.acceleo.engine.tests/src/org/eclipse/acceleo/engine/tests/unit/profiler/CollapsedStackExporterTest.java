@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.engine.tests.unit.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.acceleo.profiler.AggregatingProfiler;
+import org.eclipse.acceleo.profiler.CollapsedStackExporter;
+import org.eclipse.acceleo.profiler.IProfilerListener;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the stacks written by the {@link CollapsedStackExporter} and the notifications of the
+ * {@link IProfilerListener}s.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class CollapsedStackExporterTest {
+	/** Stands for a recursive template. */
+	private EClass generate;
+
+	/** Stands for an expression of {@link #generate}. */
+	private EAttribute expression;
+
+	/** Stands for a query called by {@link #generate}. */
+	private EClass helper;
+
+	/**
+	 * Creates a module containing the monitored objects.
+	 */
+	@Before
+	public void setUp() {
+		final EPackage module = EcoreFactory.eINSTANCE.createEPackage();
+		module.setName("module");
+		generate = EcoreFactory.eINSTANCE.createEClass();
+		generate.setName("generate");
+		helper = EcoreFactory.eINSTANCE.createEClass();
+		helper.setName("helper");
+		module.getEClassifiers().add(generate);
+		module.getEClassifiers().add(helper);
+		expression = EcoreFactory.eINSTANCE.createEAttribute();
+		expression.setName("expression");
+		generate.getEStructuralFeatures().add(expression);
+	}
+
+	/**
+	 * The expressions of a module element and its recursive calls must be merged in the frame of this module
+	 * element, while its callees must have frames of their own.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the stacks cannot be written.
+	 */
+	@Test
+	public void testRecursiveCallTree() throws IOException {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		profileRecursiveCalls(profiler);
+
+		final StringBuilder output = new StringBuilder();
+		new CollapsedStackExporter(profiler, TimeUnit.NANOSECONDS).write(output);
+		final String[] lines = output.toString().split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("module::generate", getStack(lines[0]));
+		assertEquals("module::generate;module::helper", getStack(lines[1]));
+		assertTrue(getTime(lines[0]) > 0);
+		assertTrue(getTime(lines[1]) > 0);
+		assertEquals(profiler.getTotalTime(0), getTime(lines[0]) + getTime(lines[1]));
+	}
+
+	/**
+	 * Mutually recursive module elements must each have a frame per call.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the stacks cannot be written.
+	 */
+	@Test
+	public void testMutualRecursion() throws IOException {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		profiler.start(generate);
+		spin();
+		profiler.start(helper);
+		spin();
+		profiler.start(generate);
+		spin();
+		profiler.stop();
+		profiler.stop();
+		profiler.stop();
+
+		final StringBuilder output = new StringBuilder();
+		new CollapsedStackExporter(profiler, TimeUnit.NANOSECONDS).write(output);
+		final String[] lines = output.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("module::generate", getStack(lines[0]));
+		assertEquals("module::generate;module::helper", getStack(lines[1]));
+		assertEquals("module::generate;module::helper;module::generate", getStack(lines[2]));
+	}
+
+	/**
+	 * Stacks in which no time has been spent in the exported unit must not be written.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the stacks cannot be written.
+	 */
+	@Test
+	public void testEmptyStacksSkipped() throws IOException {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		profileRecursiveCalls(profiler);
+
+		final StringBuilder output = new StringBuilder();
+		new CollapsedStackExporter(profiler, TimeUnit.DAYS).write(output);
+		assertEquals("", output.toString());
+	}
+
+	/**
+	 * Listeners must be notified of each stopped call with the node it has been aggregated in, and must no
+	 * longer be once removed.
+	 */
+	@Test
+	public void testListenerNotifications() {
+		final AggregatingProfiler profiler = new AggregatingProfiler();
+		final RecordingListener listener = new RecordingListener();
+		profiler.addListener(listener);
+		profileRecursiveCalls(profiler);
+
+		final EObject[] expected = {helper, generate, expression, generate, };
+		assertEquals(expected.length, listener.calls.size());
+		for (int i = 0; i < expected.length; i++) {
+			final Call call = listener.calls.get(i);
+			assertSame(profiler, call.profiler);
+			assertSame(expected[i], call.monitored);
+			assertSame(expected[i], profiler.getMonitored(call.node));
+			assertTrue(call.duration >= 0);
+		}
+		// The outermost call is stopped last and spans all the others
+		final Call outermost = listener.calls.get(expected.length - 1);
+		assertEquals(AggregatingProfiler.NO_NODE, profiler.getParent(outermost.node));
+		for (Call call : listener.calls) {
+			assertTrue(call.startTime >= outermost.startTime);
+			assertTrue(call.duration <= outermost.duration);
+		}
+		// Distinct call paths of the same object have distinct nodes
+		assertTrue(listener.calls.get(1).node != outermost.node);
+
+		profiler.removeListener(listener);
+		profiler.start(generate);
+		profiler.stop();
+		assertEquals(expected.length, listener.calls.size());
+	}
+
+	/**
+	 * Profiles a call of {@link #generate}, which evaluates {@link #expression} to call itself, the nested
+	 * call then calling {@link #helper}.
+	 * 
+	 * @param profiler
+	 *            The profiler.
+	 */
+	private void profileRecursiveCalls(AggregatingProfiler profiler) {
+		profiler.start(generate);
+		spin();
+		profiler.start(expression);
+		spin();
+		profiler.start(generate);
+		spin();
+		profiler.start(helper);
+		spin();
+		profiler.stop();
+		profiler.stop();
+		profiler.stop();
+		profiler.stop();
+	}
+
+	/**
+	 * Waits until {@link System#nanoTime()} has moved forward so that each profiled call lasts.
+	 */
+	private static void spin() {
+		final long start = System.nanoTime();
+		while (System.nanoTime() == start) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Returns the stack of the given collapsed stack line.
+	 * 
+	 * @param line
+	 *            The line.
+	 * @return The stack of <code>line</code>.
+	 */
+	private static String getStack(String line) {
+		return line.substring(0, line.lastIndexOf(' '));
+	}
+
+	/**
+	 * Returns the time of the given collapsed stack line.
+	 * 
+	 * @param line
+	 *            The line.
+	 * @return The time of <code>line</code>.
+	 */
+	private static long getTime(String line) {
+		return Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+	}
+
+	/**
+	 * A call notified to a {@link RecordingListener}.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class Call {
+		/** The profiler that timed the call. */
+		final AggregatingProfiler profiler;
+
+		/** The node of the call. */
+		final int node;
+
+		/** The monitored object. */
+		final EObject monitored;
+
+		/** Start of the call. */
+		final long startTime;
+
+		/** Duration of the call. */
+		final long duration;
+
+		/**
+		 * Records a call.
+		 * 
+		 * @param profiler
+		 *            The profiler that timed the call.
+		 * @param node
+		 *            The node of the call.
+		 * @param monitored
+		 *            The monitored object.
+		 * @param startTime
+		 *            Start of the call.
+		 * @param duration
+		 *            Duration of the call.
+		 */
+		Call(AggregatingProfiler profiler, int node, EObject monitored, long startTime, long duration) {
+			this.profiler = profiler;
+			this.node = node;
+			this.monitored = monitored;
+			this.startTime = startTime;
+			this.duration = duration;
+		}
+	}
+
+	/**
+	 * Records the calls it is notified of.
+	 * 
+	 * @author <a href="mailto:agent@local">agent</a>
+	 */
+	private static final class RecordingListener implements IProfilerListener {
+		/** The notified calls, in notification order. */
+		final List<Call> calls = new ArrayList<Call>();
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see org.eclipse.acceleo.profiler.IProfilerListener#callStopped(org.eclipse.acceleo.profiler.AggregatingProfiler,
+		 *      int, org.eclipse.emf.ecore.EObject, long, long)
+		 */
+		public void callStopped(AggregatingProfiler profiler, int node, EObject monitored, long startTime,
+				long duration) {
+			calls.add(new Call(profiler, node, monitored, startTime, duration));
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,9 +14,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -24,6 +33,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.acceleo.engine.AcceleoEvaluationException;
+import org.eclipse.acceleo.engine.generation.GenerationOptions;
 import org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy;
 import org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy;
 import org.eclipse.acceleo.engine.service.AcceleoService;
@@ -45,6 +55,9 @@ import org.junit.Test;
  */
 @SuppressWarnings("nls")
 public class AcceleoServiceTest extends AbstractAcceleoTest {
+	/** Time stamp we'll give to a generated file so as to detect that it's been rewritten. */
+	private static final long OLD_TIMESTAMP = 1000000000000L;
+
 	/** This will be used as the arguments of the tested templates. */
 	private List<Object> arguments;
 
@@ -177,6 +190,118 @@ public class AcceleoServiceTest extends AbstractAcceleoTest {
 		assertSame("Unexpected number of templates evaluated.", 3, templateCount);
 	}
 
+	/**
+	 * Tests that the behavior of the method
+	 * {@link AcceleoService#doGenerate(java.util.Map, EObject, java.io.File, org.eclipse.emf.common.util.Monitor)}
+	 * in preview mode is the same whether the generation is sequential or parallel.
+	 */
+	@Test
+	public void testDoGenerateModuleMapPreviewParallel() {
+		final Map<Module, Set<String>> templates = getTemplateMap();
+		final Map<String, String> sequentialPreview = new AcceleoService(new PreviewStrategy()).doGenerate(
+				templates, inputModel, null, null);
+
+		final AcceleoService service = new AcceleoService(previewStrategy);
+		service.setGenerationParallelism(4);
+		final Map<String, String> parallelPreview = service.doGenerate(templates, inputModel, null,
+				new BasicMonitor());
+		assertFalse("The preview shouldn't be empty", parallelPreview.isEmpty());
+		assertEquals("A parallel generation should generate the same files as a sequential one.",
+				sequentialPreview, parallelPreview);
+	}
+
+	/**
+	 * Generates a module which templates read the same parts of the model and write to the same files, some
+	 * of which contain protected areas, both sequentially and in parallel. Checks that the previews and the
+	 * generated files are identical, and that the user code has been preserved.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the generated files cannot be created or read.
+	 */
+	@Test
+	public void testDoGenerateModuleMapParallelOverlappingFiles() throws IOException {
+		final Module module = (Module)parse("data/Service/Facade/service_parallel.mtl").getContents().get(0);
+		final Map<Module, Set<String>> templates = new HashMap<Module, Set<String>>(1);
+		templates.put(module, new HashSet<String>(Arrays.asList("generateClass", "generateFeatures",
+				"generatePackage")));
+
+		final Map<String, String> sequentialPreview = new AcceleoService(new PreviewStrategy()).doGenerate(
+				templates, inputModel, null, null);
+		final AcceleoService previewService = new AcceleoService(new PreviewStrategy());
+		previewService.setGenerationParallelism(4);
+		final Map<String, String> parallelPreview = previewService.doGenerate(templates, inputModel, null,
+				new BasicMonitor());
+		assertEquals(6, sequentialPreview.size());
+		assertEquals("A parallel generation should preview the same files as a sequential one.",
+				sequentialPreview, parallelPreview);
+
+		final File sequentialRoot = createGenerationRoot();
+		final File parallelRoot = createGenerationRoot();
+		try {
+			new AcceleoService(new DefaultStrategy()).doGenerate(templates, inputModel, sequentialRoot,
+					new BasicMonitor());
+			final AcceleoService service = new AcceleoService(new DefaultStrategy());
+			service.setGenerationParallelism(4);
+			service.doGenerate(templates, inputModel, parallelRoot, new BasicMonitor());
+
+			final String[] sequentialFiles = sequentialRoot.list();
+			final String[] parallelFiles = parallelRoot.list();
+			Arrays.sort(sequentialFiles);
+			Arrays.sort(parallelFiles);
+			assertEquals(Arrays.asList(sequentialFiles), Arrays.asList(parallelFiles));
+			for (String fileName : sequentialFiles) {
+				assertEquals("A parallel generation should generate the same content in " + fileName,
+						read(new File(sequentialRoot, fileName)), read(new File(parallelRoot, fileName)));
+			}
+
+			assertTrue(read(new File(parallelRoot, "ClasseA.java")).contains("user code of ClasseA"));
+			assertTrue(read(new File(parallelRoot, "package.txt")).contains("user code of target"));
+			final String summary = read(new File(parallelRoot, "summary.txt"));
+			assertTrue(summary.startsWith("package target (3 classes)"));
+			assertTrue(summary.contains("class ClasseA"));
+			assertTrue(summary.contains("class ClasseB"));
+			assertTrue(summary.contains("class AbstractClass (0 features, 2 subtypes)"));
+		} finally {
+			delete(sequentialRoot);
+			delete(parallelRoot);
+		}
+	}
+
+	/**
+	 * Checks that the default strategy created by the service leaves unchanged files untouched when the
+	 * generation options tell it to.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the generated files cannot be created or read.
+	 */
+	@Test
+	public void testDoGenerateSkipUnchangedFilesOption() throws IOException {
+		final Module module = (Module)parse("data/Service/Facade/service_parallel.mtl").getContents().get(0);
+		final Map<Module, Set<String>> templates = new HashMap<Module, Set<String>>(1);
+		templates.put(module, new HashSet<String>(Arrays.asList("generateClass")));
+		final GenerationOptions options = GenerationOptions.fromPreferences().withSkipUnchangedFiles(true)
+				.withAsynchronousWrites(true);
+		assertFalse(GenerationOptions.fromPreferences().isSkipUnchangedFilesEnabled());
+		assertFalse(GenerationOptions.fromPreferences().isAsynchronousWritesEnabled());
+
+		final File root = createGenerationRoot();
+		try {
+			final AcceleoService service = new AcceleoService(null, options);
+			service.doGenerate(templates, inputModel, root, new BasicMonitor());
+			final File generated = new File(root, "ClasseA.java");
+			final String content = read(generated);
+			assertTrue(content.contains("user code of ClasseA"));
+			assertTrue(generated.setLastModified(OLD_TIMESTAMP));
+
+			service.doGenerate(templates, inputModel, root, new BasicMonitor());
+			assertEquals(content, read(generated));
+			assertEquals("An unchanged file should not have been written.", OLD_TIMESTAMP, generated
+					.lastModified());
+		} finally {
+			delete(root);
+		}
+	}
+
 	/**
 	 * Checks that trying to call a template which name doesn't match with any of the templates in the given
 	 * module fails.
@@ -513,4 +638,79 @@ public class AcceleoServiceTest extends AbstractAcceleoTest {
 		templates.put(module2, module2Templates);
 		return templates;
 	}
+
+	/**
+	 * Creates a temporary folder to generate in, containing files with user code for the protected areas of
+	 * the "service_parallel" module.
+	 * 
+	 * @return The created folder.
+	 * @throws IOException
+	 *             Thrown if the folder cannot be created.
+	 */
+	private File createGenerationRoot() throws IOException {
+		final File folder = File.createTempFile("acceleo", "parallel");
+		if (!folder.delete() || !folder.mkdir()) {
+			fail("Could not create temporary folder.");
+		}
+		write(new File(folder, "ClasseA.java"),
+				"// Start of user code body of ClasseA\nuser code of ClasseA\n// End of user code\n");
+		write(new File(folder, "package.txt"),
+				"// Start of user code package target\nuser code of target\n// End of user code\n");
+		return folder;
+	}
+
+	/**
+	 * Deletes the given folder along with the files it contains.
+	 * 
+	 * @param folder
+	 *            The folder to delete.
+	 */
+	private static void delete(File folder) {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	/**
+	 * Writes the given content in the given file.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param content
+	 *            Content of the file.
+	 * @throws IOException
+	 *             Thrown if the file cannot be written.
+	 */
+	private static void write(File file, String content) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Reads the content of the given file.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @return Content of the file.
+	 * @throws IOException
+	 *             Thrown if the file cannot be read.
+	 */
+	private static String read(File file) throws IOException {
+		final InputStream input = new FileInputStream(file);
+		try {
+			final byte[] content = new byte[(int)file.length()];
+			int offset = 0;
+			while (offset < content.length) {
+				offset += input.read(content, offset, content.length - offset);
+			}
+			return new String(content, "UTF-8");
+		} finally {
+			input.close();
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 Obeo.
+ * Copyright (c) 2009, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,15 +10,21 @@
  *******************************************************************************/
 package org.eclipse.acceleo.engine.tests.unit.service.java;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.eclipse.acceleo.common.internal.utils.compatibility.AcceleoCompatibilityEclipseHelper;
 import org.eclipse.acceleo.common.internal.utils.compatibility.OCLVersion;
 import org.eclipse.acceleo.common.utils.ModelUtils;
+import org.eclipse.acceleo.engine.generation.strategy.PreviewStrategy;
+import org.eclipse.acceleo.engine.service.AcceleoService;
 import org.eclipse.acceleo.engine.tests.AcceleoEngineTestPlugin;
 import org.eclipse.acceleo.engine.tests.unit.AbstractAcceleoTest;
+import org.eclipse.emf.common.util.BasicMonitor;
 import org.eclipse.emf.common.util.URI;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -96,6 +102,21 @@ public class AcceleoJavaServicesTest extends AbstractAcceleoTest {
 		this.compareDirectories();
 	}
 
+	/**
+	 * Tests that the services resolved by a first generation are properly reused by subsequent generations of
+	 * the same service.
+	 */
+	@Test
+	public void testRepeatedServiceInvocation() {
+		final AcceleoService service = new AcceleoService(new PreviewStrategy());
+		final Map<String, String> firstGeneration = service.doGenerate(module, "test_call_no_argument",
+				inputModel, null, new BasicMonitor());
+		assertFalse(firstGeneration.isEmpty());
+		final Map<String, String> secondGeneration = service.doGenerate(module, "test_call_no_argument",
+				inputModel, null, new BasicMonitor());
+		assertEquals(firstGeneration, secondGeneration);
+	}
+
 	/**
 	 * Test invocation of java methods which define a single argument.
 	 * 
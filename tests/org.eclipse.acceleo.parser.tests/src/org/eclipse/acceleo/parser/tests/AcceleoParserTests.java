@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -47,6 +47,12 @@ import org.osgi.framework.Bundle;
 
 public class AcceleoParserTests {
 
+	private static final String PARALLEL_FOLDER = "/data/template/parallel/"; //$NON-NLS-1$
+
+	private static final String MTL_EXTENSION = ".mtl"; //$NON-NLS-1$
+
+	private static final String EMTL_EXTENSION = ".emtl"; //$NON-NLS-1$
+
 	private static Bundle bundle;
 
 	@BeforeClass
@@ -245,4 +251,61 @@ public class AcceleoParserTests {
 		}
 	}
 
+	@Test
+	public void testParallelCompilationMatchesSequentialCompilation() throws IOException {
+		// parallelMain is resolved before the modules it depends on in both compilations
+		String[] moduleNames = {"parallelMain", "parallelCommon", //$NON-NLS-1$ //$NON-NLS-2$
+				"parallelClasses", "parallelDataTypes", "parallelStandalone", }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		File sequentialFolder = createTempFolder("sequential"); //$NON-NLS-1$
+		File parallelFolder = createTempFolder("parallel"); //$NON-NLS-1$
+		try {
+			AcceleoParser sequentialParser = compile(moduleNames, sequentialFolder, false);
+			AcceleoParser parallelParser = compile(moduleNames, parallelFolder, true);
+			for (String moduleName : moduleNames) {
+				File file = createFile(PARALLEL_FOLDER + moduleName + MTL_EXTENSION);
+				assertEquals(sequentialParser.getProblems(file).getMessage(), parallelParser.getProblems(file)
+						.getMessage());
+				assertEquals(sequentialParser.getWarnings(file).getMessage(), parallelParser.getWarnings(file)
+						.getMessage());
+				String emtlName = moduleName + EMTL_EXTENSION;
+				assertEquals(FileContent.getFileContent(new File(sequentialFolder, emtlName)).toString(),
+						FileContent.getFileContent(new File(parallelFolder, emtlName)).toString());
+			}
+			File mainFile = createFile(PARALLEL_FOLDER + moduleNames[0] + MTL_EXTENSION);
+			assertEquals(1, parallelParser.getProblems(mainFile).getList().size());
+		} finally {
+			delete(sequentialFolder);
+			delete(parallelFolder);
+		}
+	}
+
+	private AcceleoParser compile(String[] moduleNames, File outputFolder, boolean parallel) {
+		List<AcceleoFile> acceleoFiles = new ArrayList<AcceleoFile>();
+		List<URI> outputURIs = new ArrayList<URI>();
+		for (String moduleName : moduleNames) {
+			File file = createFile(PARALLEL_FOLDER + moduleName + MTL_EXTENSION);
+			acceleoFiles.add(new AcceleoFile(file, moduleName));
+			File emtlFile = new File(outputFolder, moduleName + EMTL_EXTENSION);
+			outputURIs.add(URI.createFileURI(emtlFile.getAbsolutePath()));
+		}
+		AcceleoParser parser = new AcceleoParser(false, false, parallel);
+		parser.parse(acceleoFiles, outputURIs, new ArrayList<URI>(), null, new BasicMonitor());
+		return parser;
+	}
+
+	private File createTempFolder(String prefix) throws IOException {
+		File folder = File.createTempFile(prefix, ""); //$NON-NLS-1$
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		return folder;
+	}
+
+	private void delete(File folder) {
+		if (folder.exists()) {
+			for (File file : folder.listFiles()) {
+				file.delete();
+			}
+			folder.delete();
+		}
+	}
 }
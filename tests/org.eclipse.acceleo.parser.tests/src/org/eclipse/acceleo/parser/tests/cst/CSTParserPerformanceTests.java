@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.acceleo.parser.tests.cst;
 
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -23,6 +24,8 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Enumeration;
 
+import org.eclipse.acceleo.internal.parser.cst.CSTParser;
+import org.eclipse.acceleo.parser.AcceleoSourceBuffer;
 import org.eclipse.core.runtime.Platform;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -33,6 +36,8 @@ public class CSTParserPerformanceTests extends AbstractCSTParserTests {
 
 	private static Bundle bundle;
 
+	private static Bundle benchmarkBundle;
+
 	private StringBuffer result;
 
 	private int numberOfTests = 100;
@@ -42,14 +47,15 @@ public class CSTParserPerformanceTests extends AbstractCSTParserTests {
 	@BeforeClass
 	public static void setUp() throws Exception {
 		bundle = Platform.getBundle("org.eclipse.emf.eef.codegen"); //$NON-NLS-1$
+		benchmarkBundle = Platform.getBundle("org.eclipse.acceleo.benchmark.ecore2unittests.acceleo3"); //$NON-NLS-1$
 	}
 
 	@AfterClass
 	public static void tearDown() throws Exception {
 		bundle = null;
+		benchmarkBundle = null;
 	}
 
-	@SuppressWarnings("rawtypes")
 	@Test
 	public void testEEFParsing() {
 		result = new StringBuffer();
@@ -60,7 +66,26 @@ public class CSTParserPerformanceTests extends AbstractCSTParserTests {
 		result.append("# CST Parsing test on EEF - " + dateFormat.format(date) + '\n'); //$NON-NLS-1$
 		result.append("###############################################\n"); //$NON-NLS-1$
 
-		Enumeration entries = bundle.findEntries("/", "*.mtl", true); //$NON-NLS-1$ //$NON-NLS-2$
+		parseEntries(bundle, true);
+	}
+
+	@Test
+	public void testBenchmarkParsing() {
+		result = new StringBuffer();
+
+		DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss"); //$NON-NLS-1$
+		Date date = new Date();
+		result.append("###############################################\n"); //$NON-NLS-1$
+		result.append("# CST Parsing test on the benchmark - " + dateFormat.format(date) + '\n'); //$NON-NLS-1$
+		result.append("###############################################\n"); //$NON-NLS-1$
+
+		// The modules of the benchmark are not checked as they use unqualified imports
+		parseEntries(benchmarkBundle, false);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private void parseEntries(Bundle modulesBundle, boolean checkIssues) {
+		Enumeration entries = modulesBundle.findEntries("/", "*.mtl", true); //$NON-NLS-1$ //$NON-NLS-2$
 		if (entries != null) {
 			while (entries.hasMoreElements()) {
 				Object element = entries.nextElement();
@@ -77,7 +102,7 @@ public class CSTParserPerformanceTests extends AbstractCSTParserTests {
 							sb.append(line).append("\n"); //$NON-NLS-1$
 						}
 
-						testParsingPerformance(sb);
+						testParsingPerformance(sb, checkIssues);
 					} catch (IOException e) {
 						fail();
 					}
@@ -90,12 +115,16 @@ public class CSTParserPerformanceTests extends AbstractCSTParserTests {
 		}
 	}
 
-	private void testParsingPerformance(StringBuffer file) {
+	private void testParsingPerformance(StringBuffer file, boolean checkIssues) {
 		long endTime = 0;
 
 		for (int i = 0; i < numberOfTests; i++) {
 			long beginTime = System.currentTimeMillis();
-			checkCSTParsing(file, 0, 0, 0);
+			if (checkIssues) {
+				checkCSTParsing(file, 0, 0, 0);
+			} else {
+				assertNotNull(new CSTParser(new AcceleoSourceBuffer(file)).parse());
+			}
 			endTime += System.currentTimeMillis() - beginTime;
 		}
 
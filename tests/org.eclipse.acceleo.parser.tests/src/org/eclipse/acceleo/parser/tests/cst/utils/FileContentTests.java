@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,7 @@ import java.io.UnsupportedEncodingException;
 import junit.framework.AssertionFailedError;
 
 import org.eclipse.acceleo.internal.parser.cst.utils.FileContent;
+import org.eclipse.acceleo.parser.AcceleoSourceBuffer;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Platform;
 import org.junit.AfterClass;
@@ -54,6 +55,30 @@ public class FileContentTests {
 		assertEquals(FileContent.lineNumber(buffer, 6), 4);
 	}
 
+	@Test
+	public void testSourceBufferLineNumber() {
+		StringBuffer buffer = new StringBuffer("1\n2\r\n3\r4\n\n5"); //$NON-NLS-1$
+		AcceleoSourceBuffer source = new AcceleoSourceBuffer(buffer);
+		for (int i = 0; i < buffer.length(); i++) {
+			source.logProblem("problem", i, i + 1); //$NON-NLS-1$
+		}
+		for (int i = 0; i < buffer.length(); i++) {
+			int offset = source.getProblems().getList().get(i).getPosBegin();
+			assertEquals(FileContent.lineNumber(buffer, offset), source.getProblems().getList().get(i)
+					.getLine());
+		}
+		assertEquals(0, source.getLineOfOffset(0));
+		assertEquals(2, source.getLineOfOffset(2));
+		assertEquals(3, source.getLineOfOffset(5));
+		assertEquals(4, source.getLineOfOffset(7));
+		assertEquals(6, source.getLineOfOffset(buffer.length()));
+
+		// The line information follows the modifications of the buffer
+		buffer.replace(0, 1, "\n"); //$NON-NLS-1$
+		source.refreshLines();
+		assertEquals(3, source.getLineOfOffset(2));
+	}
+
 	@Test
 	public void testColumnNumber() {
 		StringBuffer buffer = new StringBuffer("1\n2\n3\n4\n5"); //$NON-NLS-1$
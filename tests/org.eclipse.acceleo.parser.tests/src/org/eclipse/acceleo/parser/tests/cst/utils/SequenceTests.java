@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,10 @@
 package org.eclipse.acceleo.parser.tests.cst.utils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import org.eclipse.acceleo.internal.parser.cst.utils.CharArraySequence;
 import org.eclipse.acceleo.internal.parser.cst.utils.Region;
 import org.eclipse.acceleo.internal.parser.cst.utils.Sequence;
 import org.eclipse.acceleo.internal.parser.cst.utils.SequenceBlock;
@@ -43,4 +46,28 @@ public class SequenceTests {
 				new SequenceBlock[] {parenthesis }).b(), 7);
 	}
 
+	@Test
+	public void testCharArraySequence() {
+		StringBuffer buffer = new StringBuffer("a((h)g)h 'x\\'y' "); //$NON-NLS-1$
+		CharArraySequence content = new CharArraySequence(buffer);
+		assertEquals(buffer.toString(), content.toString());
+		assertEquals(buffer.length(), content.length());
+		SequenceBlock parenthesis = new SequenceBlock(new Sequence("("), new Sequence(")"), null, true, null); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(new Sequence("h").search(content, 0, content.length(), null, //$NON-NLS-1$
+				new SequenceBlock[] {parenthesis }).b(), 7);
+		assertEquals(new Sequence("'").search(content, 13, content.length()).b(), 14); //$NON-NLS-1$
+
+		assertEquals(1, content.indexOf("(", 0)); //$NON-NLS-1$
+		assertEquals(-1, content.indexOf("(h)", 0, 4)); //$NON-NLS-1$
+		assertEquals(2, content.indexOf("(h)", 0, 5)); //$NON-NLS-1$
+		assertEquals("(h)", content.subSequence(2, 5).toString()); //$NON-NLS-1$
+		assertEquals('h', content.subSequence(2, 5).charAt(1));
+		assertEquals("h 'x", content.trimmedSubstring(7, 11)); //$NON-NLS-1$
+		assertEquals(9, content.skipWhitespaces(8, 10));
+		assertTrue(content.isBlank(8, 9));
+		assertFalse(content.isBlank(7, 9));
+
+		buffer.append("z"); //$NON-NLS-1$
+		assertEquals(buffer.length() - 1, content.length());
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2011 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -1240,6 +1244,65 @@ public class AcceleoParserTests {
 		assertThat(parser.getInfos(third).toString(), is(Collections.emptyList().toString()));
 	}
 
+	@Test
+	public void testBuildAfterBodyChangeDoesNotBuildDependingModules() throws IOException {
+		File projectRoot = File.createTempFile("acceleo", "");
+		assertTrue(projectRoot.delete());
+		File inputDirectory = new File(projectRoot, "src");
+		File outputDirectory = new File(projectRoot, "bin");
+		assertTrue(new File(inputDirectory, "pkg").mkdirs());
+		assertTrue(outputDirectory.mkdirs());
+		try {
+			String ecore = "('http://www.eclipse.org/emf/2002/Ecore')]\n";
+			File common = new File(inputDirectory, "pkg/common.mtl");
+			File main = new File(inputDirectory, "pkg/main.mtl");
+			write(common, "[module common" + ecore
+					+ "[template public gen(c : EClass)]first[/template]\n");
+			write(main, "[module main" + ecore + "[import pkg::common /]\n"
+					+ "[template public main(c : EClass)][c.gen()/][/template]\n");
+
+			AcceleoProjectClasspathEntry entry = new AcceleoProjectClasspathEntry(inputDirectory,
+					outputDirectory);
+			Set<AcceleoProjectClasspathEntry> entries = new LinkedHashSet<AcceleoProjectClasspathEntry>();
+			entries.add(entry);
+			AcceleoProject project = new AcceleoProject(projectRoot, entries);
+			new AcceleoParser(project, false, true, false).buildAll(new BasicMonitor());
+
+			// The depending modules are only built when the signatures change
+			write(common, "[module common" + ecore
+					+ "[template public gen(c : EClass)]second[/template]\n");
+			ParserListener parserListener = new ParserListener();
+			AcceleoParser parser = new AcceleoParser(new AcceleoProject(projectRoot, entries), false, true,
+					false);
+			parser.addListeners(parserListener);
+			parser.buildFile(common, new BasicMonitor());
+			List<File> expectedFilesBuilt = Lists.newArrayList(common);
+			assertThat(parserListener.getFilesBuilt(), equalTo(expectedFilesBuilt));
+
+			write(common, "[module common" + ecore
+					+ "[template public gen(c : EClass, s : String)]second[/template]\n");
+			parserListener = new ParserListener();
+			parser = new AcceleoParser(new AcceleoProject(projectRoot, entries), false, true, false);
+			parser.addListeners(parserListener);
+			parser.buildFile(common, new BasicMonitor());
+			expectedFilesBuilt = Lists.newArrayList(common, main);
+			assertThat(parserListener.getFilesBuilt(), equalTo(expectedFilesBuilt));
+		} finally {
+			AcceleoParserUtils.removeDirectory(projectRoot);
+		}
+	}
+
+	private void write(File file, String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		// Makes sure the module is seen as modified since the last build
+		assertTrue(file.setLastModified(System.currentTimeMillis() + 2000));
+	}
+
 	public class ParserListener implements IParserListener {
 
 		private List<File> filesBuilt = new ArrayList<File>();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2011 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,14 +13,17 @@ package org.eclipse.acceleo.standalone.tests.compiler;
 import com.google.common.collect.Sets;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.eclipse.acceleo.common.IAcceleoConstants;
+import org.eclipse.acceleo.internal.parser.compiler.AcceleoDependencyIndex;
 import org.eclipse.acceleo.internal.parser.compiler.AcceleoParser;
 import org.eclipse.acceleo.internal.parser.compiler.AcceleoParserUtils;
 import org.eclipse.acceleo.internal.parser.compiler.AcceleoProject;
 import org.eclipse.acceleo.internal.parser.compiler.AcceleoProjectClasspathEntry;
+import org.eclipse.acceleo.internal.parser.compiler.AcceleoSignatureIndex;
 import org.eclipse.emf.common.util.BasicMonitor;
 import org.eclipse.emf.common.util.URI;
 import org.junit.BeforeClass;
@@ -29,6 +32,8 @@ import org.junit.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class AcceleoProjectTests {
@@ -461,6 +466,75 @@ public class AcceleoProjectTests {
 		assertThat(filesDependingOnValidator.size(), is(0));
 	}
 	
+	@Test
+	public void testDependencyIndexIsPersisted() throws IOException {
+		File outputRoot = File.createTempFile("acceleo", "");
+		assertTrue(outputRoot.delete());
+		assertTrue(outputRoot.mkdir());
+		try {
+			AcceleoProjectClasspathEntry entry = new AcceleoProjectClasspathEntry(new File(firstProjectRoot,
+					"src"), new File(outputRoot, "bin"));
+			Set<AcceleoProjectClasspathEntry> entries = new LinkedHashSet<AcceleoProjectClasspathEntry>();
+			entries.add(entry);
+			AcceleoProject project = new AcceleoProject(firstProjectRoot, entries);
+
+			File services = new File(firstProjectRoot, "src/o/e/a/p/first/common/services.mtl");
+			Set<File> filesDependingOnServices = project.getFilesDependingOn(services);
+			assertThat(filesDependingOnServices.size(), is(1));
+
+			AcceleoDependencyIndex index = new AcceleoDependencyIndex(entry);
+			assertTrue(index.getIndexFile().isFile());
+			assertThat(index.getFilesDependingOn("services"), equalTo(filesDependingOnServices));
+		} finally {
+			for (File file : outputRoot.listFiles()) {
+				file.delete();
+			}
+			outputRoot.delete();
+		}
+	}
+
+	@Test
+	public void testSignatureIndexOfSiblingOutputDirectories() throws IOException {
+		File outputRoot = File.createTempFile("acceleo", "");
+		assertTrue(outputRoot.delete());
+		assertTrue(outputRoot.mkdir());
+		try {
+			File bin = new File(outputRoot, "bin");
+			File bin2 = new File(outputRoot, "bin2");
+			assertTrue(bin.mkdir());
+			assertTrue(bin2.mkdir());
+			AcceleoProjectClasspathEntry entry = new AcceleoProjectClasspathEntry(new File(firstProjectRoot,
+					"src"), bin);
+			AcceleoProjectClasspathEntry entry2 = new AcceleoProjectClasspathEntry(new File(
+					firstProjectRoot, "src2"), bin2);
+			Set<AcceleoProjectClasspathEntry> entries = new LinkedHashSet<AcceleoProjectClasspathEntry>();
+			entries.add(entry);
+			entries.add(entry2);
+			AcceleoProject project = new AcceleoProject(firstProjectRoot, entries);
+
+			File outputFile = new File(bin2, "module.emtl");
+			assertTrue(outputFile.createNewFile());
+			project.setSignatureFingerprint(outputFile, "fingerprint");
+			project.saveSignatureFingerprints();
+
+			assertThat(project.getSignatureFingerprint(outputFile), equalTo("fingerprint"));
+			assertThat(new AcceleoSignatureIndex(entry2).getFingerprint(outputFile), equalTo("fingerprint"));
+			AcceleoSignatureIndex index = new AcceleoSignatureIndex(entry);
+			assertFalse(index.getIndexFile().exists());
+			assertNull(index.getFingerprint(outputFile));
+		} finally {
+			for (File file : outputRoot.listFiles()) {
+				if (file.isDirectory()) {
+					for (File child : file.listFiles()) {
+						child.delete();
+					}
+				}
+				file.delete();
+			}
+			outputRoot.delete();
+		}
+	}
+
 	private void testContainsItems(Set<File> collection, File... files) {
 		for (File file : files) {
 			assertTrue(collection.contains(file));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 Obeo.
+ * Copyright (c) 2008, 2013 Obeo.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,9 +15,12 @@ import junit.framework.Test;
 import junit.textui.TestRunner;
 
 import org.eclipse.acceleo.traceability.tests.unit.block.AcceleoTraceabilityBlockTests;
+import org.eclipse.acceleo.traceability.tests.unit.incremental.AcceleoTraceabilityIncrementalTests;
 import org.eclipse.acceleo.traceability.tests.unit.library.AcceleoTraceabilityLibraryOclTests;
 import org.eclipse.acceleo.traceability.tests.unit.library.AcceleoTraceabilityLibraryStringTests;
 import org.eclipse.acceleo.traceability.tests.unit.model.AcceleoTraceabilityModelTests;
+import org.eclipse.acceleo.traceability.tests.unit.model.GeneratedRegionStoreTests;
+import org.eclipse.acceleo.traceability.tests.unit.model.TraceabilityModelIndexTests;
 import org.eclipse.acceleo.traceability.tests.unit.query.AcceleoTraceabilityQueryTests;
 import org.eclipse.acceleo.traceability.tests.unit.template.AcceleoTraceabilityTemplateTests;
 import org.eclipse.acceleo.traceability.tests.unit.text.AcceleoTraceabilityTextTests;
@@ -34,7 +37,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({AcceleoTraceabilityTextTests.class, AcceleoTraceabilityTemplateTests.class,
 		AcceleoTraceabilityQueryTests.class, AcceleoTraceabilityModelTests.class,
 		AcceleoTraceabilityBlockTests.class, AcceleoTraceabilityLibraryStringTests.class,
-		AcceleoTraceabilityLibraryOclTests.class })
+		AcceleoTraceabilityLibraryOclTests.class, TraceabilityModelIndexTests.class,
+		GeneratedRegionStoreTests.class, AcceleoTraceabilityIncrementalTests.class })
 public class AllTraceabilityTests {
 	/**
 	 * Launches the test with the given arguments.
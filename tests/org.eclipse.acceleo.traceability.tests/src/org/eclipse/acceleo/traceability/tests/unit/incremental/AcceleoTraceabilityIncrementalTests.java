@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.traceability.tests.unit.incremental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.acceleo.engine.generation.AcceleoEngine;
+import org.eclipse.acceleo.engine.generation.strategy.DefaultStrategy;
+import org.eclipse.acceleo.internal.traceability.engine.AcceleoTraceabilityEngine;
+import org.eclipse.acceleo.internal.traceability.engine.ModelChangeRecorder;
+import org.eclipse.acceleo.model.mtl.Module;
+import org.eclipse.acceleo.model.mtl.ModuleElement;
+import org.eclipse.acceleo.model.mtl.Template;
+import org.eclipse.acceleo.traceability.TraceabilityModel;
+import org.eclipse.acceleo.traceability.tests.unit.AbstractTraceabilityTest;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that incremental generations only regenerate the files affected by model changes, and produce the
+ * same files as a full generation.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class AcceleoTraceabilityIncrementalTests extends AbstractTraceabilityTest {
+	/** Last modification stamp given to all files before an incremental generation. */
+	private static final long OLD_STAMP = 1000000L;
+
+	/** Number of classes in the input model. */
+	private static final int CLASS_COUNT = 3;
+
+	/** The classes of the input model. */
+	private final List<EClass> classes = new ArrayList<EClass>();
+
+	/** Records the changes made to the input model. */
+	private final ModelChangeRecorder recorder = new ModelChangeRecorder();
+
+	/** The main template of the incremental module. */
+	private Template main;
+
+	/** Folder in which files are incrementally generated. */
+	private File incrementalRoot;
+
+	/** Folder in which all files are generated from scratch. */
+	private File fullRoot;
+
+	/** Trace of the last incremental generation. */
+	private TraceabilityModel trace;
+
+	@Before
+	public void setUp() throws IOException {
+		module = (Module)parse("data/incremental/incremental.mtl").getContents().get(0);
+		for (ModuleElement element : module.getOwnedModuleElement()) {
+			if ("main".equals(element.getName())) {
+				main = (Template)element;
+			}
+		}
+		assertNotNull(main);
+
+		final Resource modelResource = resourceSet.createResource(URI.createURI("incremental.ecore"));
+		final EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		ePackage.setName("incremental");
+		modelResource.getContents().add(ePackage);
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+			eClass.setName("Class" + i);
+			final EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+			attribute.setName("attribute" + i);
+			eClass.getEStructuralFeatures().add(attribute);
+			ePackage.getEClassifiers().add(eClass);
+			classes.add(eClass);
+		}
+		classes.get(2).getESuperTypes().add(classes.get(1));
+		inputModel = ePackage;
+		resourceSet.eAdapters().add(recorder);
+
+		incrementalRoot = createTempFolder("incremental");
+		fullRoot = createTempFolder("full");
+		final AcceleoTraceabilityEngine engine = new AcceleoTraceabilityEngine(null, Collections
+				.<EClass> emptySet());
+		engine.evaluate(main, Collections.singletonList(inputModel), incrementalRoot, new DefaultStrategy(),
+				new BasicMonitor());
+		trace = engine.getEvaluationTrace();
+	}
+
+	@After
+	public void deleteFolders() {
+		resourceSet.eAdapters().remove(recorder);
+		delete(incrementalRoot);
+		delete(fullRoot);
+	}
+
+	@Test
+	public void testFirstGeneration() throws IOException {
+		assertEquals(CLASS_COUNT + 2, trace.getGeneratedFiles().size());
+		assertSameAsFullGeneration();
+	}
+
+	@Test
+	public void testNoChange() throws IOException {
+		assertEquals(Collections.emptySet(), generateIncrementally());
+		assertSameAsFullGeneration();
+	}
+
+	@Test
+	public void testRenamedAttribute() throws IOException {
+		classes.get(0).getEStructuralFeatures().get(0).setName("renamed");
+		assertEquals(names("Class0.txt", "count.txt", "summary.txt"), generateIncrementally());
+		assertSameAsFullGeneration();
+	}
+
+	@Test
+	public void testRenamedSuperType() throws IOException {
+		classes.get(1).setName("Renamed");
+		// Class2 extends Class1
+		assertEquals(names("Renamed.txt", "Class2.txt", "count.txt", "summary.txt"), generateIncrementally());
+		assertSameAsFullGeneration();
+	}
+
+	@Test
+	public void testRenamedPackage() throws IOException {
+		((EPackage)inputModel).setName("renamed");
+		assertEquals(names("count.txt", "summary.txt"), generateIncrementally());
+		assertSameAsFullGeneration();
+	}
+
+	@Test
+	public void testAddedClass() throws IOException {
+		final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName("Added");
+		((EPackage)inputModel).getEClassifiers().add(eClass);
+		assertEquals(names("Added.txt", "count.txt", "summary.txt"), generateIncrementally());
+		assertSameAsFullGeneration();
+	}
+
+	@Test
+	public void testSuccessiveGenerations() throws IOException {
+		classes.get(0).setName("Renamed");
+		assertEquals(names("Renamed.txt", "count.txt", "summary.txt"), generateIncrementally());
+		assertEquals(Collections.emptySet(), generateIncrementally());
+		classes.get(1).getEStructuralFeatures().get(0).setName("renamed");
+		assertEquals(names("Class1.txt", "count.txt", "summary.txt"), generateIncrementally());
+		assertSameAsFullGeneration();
+		assertEquals(CLASS_COUNT + 3, trace.getGeneratedFiles().size());
+	}
+
+	/**
+	 * Generates the recorded changes incrementally.
+	 * 
+	 * @return Names of the files that have been written by this generation.
+	 */
+	private Set<String> generateIncrementally() {
+		for (File file : incrementalRoot.listFiles()) {
+			assertTrue(file.setLastModified(OLD_STAMP));
+		}
+		final AcceleoTraceabilityEngine engine = new AcceleoTraceabilityEngine(trace, recorder
+				.getChangedObjects());
+		engine.evaluate(main, Collections.singletonList(inputModel), incrementalRoot, new DefaultStrategy(),
+				new BasicMonitor());
+		recorder.reset();
+
+		final Set<String> written = new TreeSet<String>();
+		for (File file : incrementalRoot.listFiles()) {
+			if (file.lastModified() != OLD_STAMP) {
+				written.add(file.getName());
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Checks that a full generation of the current model produces the same files as the incremental one.
+	 * Files that are no longer generated are left on disk by both kinds of generations.
+	 * 
+	 * @throws IOException
+	 *             Thrown if we cannot read the generated files.
+	 */
+	private void assertSameAsFullGeneration() throws IOException {
+		new AcceleoEngine().evaluate(main, Collections.singletonList(inputModel), fullRoot,
+				new DefaultStrategy(), new BasicMonitor());
+		final Map<String, String> incrementalFiles = read(incrementalRoot);
+		for (Map.Entry<String, String> file : read(fullRoot).entrySet()) {
+			assertEquals(file.getKey(), file.getValue(), incrementalFiles.get(file.getKey()));
+		}
+	}
+
+	/**
+	 * Returns a sorted set of the given file names.
+	 * 
+	 * @param fileNames
+	 *            The file names.
+	 * @return A sorted set of the given file names.
+	 */
+	private static Set<String> names(String... fileNames) {
+		final Set<String> names = new TreeSet<String>();
+		Collections.addAll(names, fileNames);
+		return names;
+	}
+
+	/**
+	 * Reads all files of the given folder.
+	 * 
+	 * @param folder
+	 *            The folder which files are to be read.
+	 * @return The content of all files of the given folder, mapped to their name.
+	 * @throws IOException
+	 *             Thrown if we cannot read one of the files.
+	 */
+	private static Map<String, String> read(File folder) throws IOException {
+		final Map<String, String> contents = new HashMap<String, String>();
+		for (File file : folder.listFiles()) {
+			final StringBuilder content = new StringBuilder();
+			final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				final char[] buffer = new char[1024];
+				int read = reader.read(buffer);
+				while (read != -1) {
+					content.append(buffer, 0, read);
+					read = reader.read(buffer);
+				}
+			} finally {
+				reader.close();
+			}
+			contents.put(file.getName(), content.toString());
+		}
+		return contents;
+	}
+
+	/**
+	 * Creates an empty temporary folder.
+	 * 
+	 * @param prefix
+	 *            Prefix of the folder's name.
+	 * @return The created folder.
+	 * @throws IOException
+	 *             Thrown if the folder cannot be created.
+	 */
+	private static File createTempFolder(String prefix) throws IOException {
+		final File folder = File.createTempFile(prefix, "");
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		return folder;
+	}
+
+	/**
+	 * Deletes the given folder along with its files.
+	 * 
+	 * @param folder
+	 *            The folder to delete.
+	 */
+	private static void delete(File folder) {
+		if (folder != null && folder.exists()) {
+			for (File file : folder.listFiles()) {
+				file.delete();
+			}
+			folder.delete();
+		}
+	}
+}
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.traceability.tests.unit.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.acceleo.traceability.GeneratedFile;
+import org.eclipse.acceleo.traceability.GeneratedText;
+import org.eclipse.acceleo.traceability.InputElement;
+import org.eclipse.acceleo.traceability.ModuleElement;
+import org.eclipse.acceleo.traceability.TraceabilityFactory;
+import org.eclipse.acceleo.traceability.TraceabilityPackage;
+import org.eclipse.acceleo.traceability.spec.GeneratedRegionStore;
+import org.eclipse.acceleo.traceability.spec.TraceabilityModelSpec;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the compact storage of generated regions.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class GeneratedRegionStoreTests {
+	/** The model under test. */
+	private TraceabilityModelSpec model;
+
+	/** Input element referred to by the generated regions. */
+	private InputElement input;
+
+	/** Module element referred to by the generated regions. */
+	private ModuleElement block;
+
+	/** The file in which regions are streamed, if any. */
+	private File storeFile;
+
+	@Before
+	public void setUp() throws IOException {
+		model = (TraceabilityModelSpec)TraceabilityFactory.eINSTANCE.createTraceabilityModel();
+		input = TraceabilityFactory.eINSTANCE.createInputElement();
+		block = TraceabilityFactory.eINSTANCE.createModuleElement();
+		storeFile = File.createTempFile("acceleo", ".trace");
+	}
+
+	@After
+	public void tearDown() {
+		if (model.getRegionStore() != null) {
+			model.getRegionStore().dispose();
+		}
+		storeFile.delete();
+	}
+
+	@Test
+	public void testInMemoryRoundTrip() throws IOException {
+		model.setRegionStore(new GeneratedRegionStore());
+		checkRoundTrip();
+	}
+
+	@Test
+	public void testFileRoundTrip() throws IOException {
+		model.setRegionStore(new GeneratedRegionStore(storeFile));
+		checkRoundTrip();
+		// All regions have been loaded back, the store released its file
+		assertFalse(storeFile.exists());
+	}
+
+	@Test
+	public void testDisposeDeletesFile() throws IOException {
+		GeneratedRegionStore store = new GeneratedRegionStore(storeFile);
+		model.setRegionStore(store);
+		GeneratedFile file = createGeneratedFile("file.txt", 3);
+		model.storeRegions(file);
+		assertTrue(storeFile.exists());
+
+		store.dispose();
+		assertFalse(storeFile.exists());
+		assertEquals(0, store.getRegionCount());
+	}
+
+	@Test
+	public void testRepeatedRuns() throws IOException {
+		GeneratedRegionStore store = new GeneratedRegionStore(storeFile);
+		model.setRegionStore(store);
+		GeneratedFile file = createGeneratedFile("file.txt", 2);
+		model.storeRegions(file);
+
+		// Generating the same file again loads its regions back before new ones are added
+		addRegions(file, 2, 3);
+		assertEquals(0, store.getRegionCount());
+		assertEquals(5, file.getGeneratedRegions().size());
+		model.storeRegions(file);
+		assertEquals(5, store.getRegionCount());
+
+		List<GeneratedText> regions = file.getGeneratedRegions();
+		assertEquals(5, regions.size());
+		for (int i = 0; i < regions.size(); i++) {
+			assertEquals(i * 10, regions.get(i).getStartOffset());
+		}
+	}
+
+	@Test
+	public void testStoredRegionsAreSet() throws IOException {
+		model.setRegionStore(new GeneratedRegionStore(storeFile));
+		GeneratedFile file = createGeneratedFile("file.txt", 3);
+		model.storeRegions(file);
+		assertTrue(model.getRegionStore().hasRegions(file));
+		assertTrue(file.eIsSet(TraceabilityPackage.Literals.GENERATED_FILE__GENERATED_REGIONS));
+
+		// Copies skip unset features, they must see the stored regions
+		GeneratedFile copy = EcoreUtil.copy(file);
+		assertEquals(3, copy.getGeneratedRegions().size());
+		assertEquals(20, copy.getGeneratedRegions().get(2).getStartOffset());
+		assertEquals(3, file.getGeneratedRegions().size());
+	}
+
+	@Test
+	public void testStoreOutlivesLoads() throws IOException {
+		GeneratedRegionStore store = new GeneratedRegionStore(storeFile);
+		model.setRegionStore(store);
+		GeneratedFile first = createGeneratedFile("first.txt", 3);
+		GeneratedFile second = createGeneratedFile("second.txt", 4);
+		model.storeRegions(first);
+		model.storeRegions(second);
+
+		assertEquals(3, first.getGeneratedRegions().size());
+		assertTrue(storeFile.exists());
+		// Once drained, the store releases its file but stays with the model
+		assertEquals(4, second.getGeneratedRegions().size());
+		assertSame(store, model.getRegionStore());
+		assertFalse(storeFile.exists());
+
+		model.storeRegions(first);
+		assertTrue(storeFile.exists());
+		assertEquals(3, store.getRegionCount());
+		assertEquals(3, first.getGeneratedRegions().size());
+		assertSame(input, first.getGeneratedRegions().get(2).getSourceElement());
+	}
+
+	@Test
+	public void testSaveLoadsStoredRegions() throws IOException {
+		Resource resource = new XMIResourceImpl(URI.createURI("trace.xmi"));
+		resource.getContents().add(model);
+		GeneratedRegionStore store = new GeneratedRegionStore(storeFile);
+		model.setRegionStore(store);
+		GeneratedFile first = createGeneratedFile("first.txt", 3);
+		GeneratedFile second = createGeneratedFile("second.txt", 4);
+		model.storeRegions(first);
+		model.storeRegions(second);
+
+		Map<String, Object> options = new HashMap<String, Object>();
+		// The input and module elements of this test are not contained by the model
+		options.put(XMLResource.OPTION_PROCESS_DANGLING_HREF,
+				XMLResource.OPTION_PROCESS_DANGLING_HREF_DISCARD);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		resource.save(output, options);
+
+		assertEquals(7, output.toString("UTF-8").split("<generatedRegions").length - 1);
+		assertSame(store, model.getRegionStore());
+		assertEquals(0, store.getRegionCount());
+		assertFalse(storeFile.exists());
+		assertEquals(3, first.getGeneratedRegions().size());
+		assertEquals(4, second.getGeneratedRegions().size());
+	}
+
+	@Test
+	public void testUnloadDisposesStore() throws IOException {
+		Resource resource = new XMIResourceImpl(URI.createURI("trace.xmi"));
+		resource.getContents().add(model);
+		GeneratedRegionStore store = new GeneratedRegionStore(storeFile);
+		model.setRegionStore(store);
+		model.storeRegions(createGeneratedFile("file.txt", 3));
+		assertTrue(storeFile.exists());
+
+		resource.unload();
+		assertNull(model.getRegionStore());
+		assertEquals(0, store.getRegionCount());
+		assertFalse(storeFile.exists());
+	}
+
+	@Test
+	public void testRemovalKeepsStore() throws IOException {
+		Resource resource = new XMIResourceImpl(URI.createURI("trace.xmi"));
+		resource.getContents().add(model);
+		GeneratedRegionStore store = new GeneratedRegionStore(storeFile);
+		model.setRegionStore(store);
+		GeneratedFile file = createGeneratedFile("file.txt", 3);
+		model.storeRegions(file);
+
+		resource.getContents().remove(model);
+		assertSame(store, model.getRegionStore());
+		assertEquals(3, file.getGeneratedRegions().size());
+	}
+
+	@Test
+	public void testWithoutStore() throws IOException {
+		GeneratedFile file = createGeneratedFile("file.txt", 3);
+		model.storeRegions(file);
+		assertEquals(3, file.getGeneratedRegions().size());
+	}
+
+	@Test
+	public void testNullReferences() throws IOException {
+		model.setRegionStore(new GeneratedRegionStore());
+		GeneratedFile file = createGeneratedFile("file.txt", 0);
+		file.getGeneratedRegions().add(TraceabilityFactory.eINSTANCE.createGeneratedText());
+		model.storeRegions(file);
+
+		GeneratedText region = file.getGeneratedRegions().get(0);
+		assertNull(region.getSourceElement());
+		assertNull(region.getModuleElement());
+	}
+
+	/**
+	 * Stores the regions of a few files, then checks they are loaded back as they were.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the regions cannot be stored.
+	 */
+	private void checkRoundTrip() throws IOException {
+		GeneratedRegionStore store = model.getRegionStore();
+		GeneratedFile first = createGeneratedFile("first.txt", 3);
+		GeneratedFile second = createGeneratedFile("second.txt", 4);
+		model.storeRegions(first);
+		model.storeRegions(second);
+		assertEquals(7, store.getRegionCount());
+		assertTrue(store.hasRegions(first));
+
+		List<GeneratedText> regions = second.getGeneratedRegions();
+		assertEquals(4, regions.size());
+		assertFalse(store.hasRegions(second));
+		assertEquals(3, store.getRegionCount());
+		for (int i = 0; i < regions.size(); i++) {
+			GeneratedText region = regions.get(i);
+			assertSame(second, region.getOutputFile());
+			assertEquals(i * 10, region.getStartOffset());
+			assertEquals(i * 10 + 10, region.getEndOffset());
+			assertSame(input, region.getSourceElement());
+			assertSame(block, region.getModuleElement());
+		}
+		assertEquals(3, first.getGeneratedRegions().size());
+		assertEquals(0, store.getRegionCount());
+	}
+
+	/**
+	 * Creates a generated file contained by the model under test, along with a few regions.
+	 * 
+	 * @param path
+	 *            Path of the generated file.
+	 * @param regionCount
+	 *            Number of regions to create.
+	 * @return The created generated file.
+	 */
+	private GeneratedFile createGeneratedFile(String path, int regionCount) {
+		GeneratedFile file = TraceabilityFactory.eINSTANCE.createGeneratedFile();
+		file.setPath(path);
+		model.getGeneratedFiles().add(file);
+		addRegions(file, 0, regionCount);
+		return file;
+	}
+
+	/**
+	 * Adds regions of ten characters to the given file.
+	 * 
+	 * @param file
+	 *            The file to which regions are to be added.
+	 * @param first
+	 *            Index of the first region to add.
+	 * @param count
+	 *            Number of regions to add.
+	 */
+	private void addRegions(GeneratedFile file, int first, int count) {
+		for (int i = first; i < first + count; i++) {
+			GeneratedText region = TraceabilityFactory.eINSTANCE.createGeneratedText();
+			region.setStartOffset(i * 10);
+			region.setEndOffset(i * 10 + 10);
+			region.setSourceElement(input);
+			region.setModuleElement(block);
+			file.getGeneratedRegions().add(region);
+		}
+	}
+}
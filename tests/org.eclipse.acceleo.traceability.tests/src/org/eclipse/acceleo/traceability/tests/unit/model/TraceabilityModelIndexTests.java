@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.acceleo.traceability.tests.unit.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.acceleo.traceability.GeneratedFile;
+import org.eclipse.acceleo.traceability.ModelFile;
+import org.eclipse.acceleo.traceability.ModuleElement;
+import org.eclipse.acceleo.traceability.ModuleFile;
+import org.eclipse.acceleo.traceability.TraceabilityFactory;
+import org.eclipse.acceleo.traceability.TraceabilityModel;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the indices through which the traceability model looks up its files.
+ * 
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@SuppressWarnings("nls")
+public class TraceabilityModelIndexTests {
+	/** Number of generated files of the trace recorded by {@link #testLargeTraceLookups()}. */
+	private static final int TRACE_SIZE = 2000;
+
+	/** The model under test. */
+	private TraceabilityModel model;
+
+	@Before
+	public void setUp() {
+		model = TraceabilityFactory.eINSTANCE.createTraceabilityModel();
+	}
+
+	@Test
+	public void testGeneratedFileLookup() {
+		GeneratedFile first = createGeneratedFile("first.txt");
+		GeneratedFile second = createGeneratedFile("second.txt");
+		model.getGeneratedFiles().add(first);
+		model.getGeneratedFiles().add(second);
+
+		assertSame(first, model.getGeneratedFile("first.txt"));
+		assertSame(second, model.getGeneratedFile("second.txt"));
+		assertNull(model.getGeneratedFile("third.txt"));
+	}
+
+	@Test
+	public void testGeneratedFilePathChange() {
+		GeneratedFile file = TraceabilityFactory.eINSTANCE.createGeneratedFile();
+		model.getGeneratedFiles().add(file);
+		assertNull(model.getGeneratedFile("file.txt"));
+
+		file.setPath("file.txt");
+		assertSame(file, model.getGeneratedFile("file.txt"));
+
+		file.setPath("renamed.txt");
+		assertNull(model.getGeneratedFile("file.txt"));
+		assertSame(file, model.getGeneratedFile("renamed.txt"));
+	}
+
+	@Test
+	public void testGeneratedFileBlockLookup() {
+		ModuleElement block = TraceabilityFactory.eINSTANCE.createModuleElement();
+		GeneratedFile file = createGeneratedFile("file.txt");
+		model.getGeneratedFiles().add(file);
+		assertNull(model.getGeneratedFile(block));
+
+		// The traceability visitor sets the file block once the file is in the model
+		file.setFileBlock(block);
+		assertSame(file, model.getGeneratedFile(block));
+
+		file.setFileBlock(null);
+		assertNull(model.getGeneratedFile(block));
+	}
+
+	@Test
+	public void testGeneratedFileRemoval() {
+		GeneratedFile first = createGeneratedFile("file.txt");
+		GeneratedFile duplicate = createGeneratedFile("file.txt");
+		model.getGeneratedFiles().add(first);
+		model.getGeneratedFiles().add(duplicate);
+		assertSame(first, model.getGeneratedFile("file.txt"));
+
+		model.getGeneratedFiles().remove(first);
+		assertSame(duplicate, model.getGeneratedFile("file.txt"));
+
+		model.getGeneratedFiles().clear();
+		assertNull(model.getGeneratedFile("file.txt"));
+
+		// Files that are no longer contained must not update the index
+		first.setPath("other.txt");
+		assertNull(model.getGeneratedFile("other.txt"));
+	}
+
+	@Test
+	public void testGeneratedFileReplacement() {
+		GeneratedFile first = createGeneratedFile("first.txt");
+		GeneratedFile second = createGeneratedFile("second.txt");
+		model.getGeneratedFiles().add(first);
+		model.getGeneratedFiles().set(0, second);
+
+		assertNull(model.getGeneratedFile("first.txt"));
+		assertSame(second, model.getGeneratedFile("second.txt"));
+	}
+
+	@Test
+	public void testModuleAndModelFileLookup() {
+		ModuleFile module = TraceabilityFactory.eINSTANCE.createModuleFile();
+		module.setPath("platform:/plugin/module.emtl");
+		ModelFile modelFile = TraceabilityFactory.eINSTANCE.createModelFile();
+		model.getModules().add(module);
+		model.getModelFiles().add(modelFile);
+		modelFile.setPath("platform:/resource/model.ecore");
+
+		assertSame(module, model.getGenerationModule("platform:/plugin/module.emtl"));
+		assertSame(modelFile, model.getInputModel("platform:/resource/model.ecore"));
+		assertNull(model.getGenerationModule("platform:/resource/model.ecore"));
+		assertNull(model.getInputModel("platform:/plugin/module.emtl"));
+
+		model.getModules().remove(module);
+		model.getModelFiles().remove(modelFile);
+		assertNull(model.getGenerationModule("platform:/plugin/module.emtl"));
+		assertNull(model.getInputModel("platform:/resource/model.ecore"));
+	}
+
+	/**
+	 * Records the trace of a generation the way the traceability visitor does, each file being generated by
+	 * its own file block, then checks that every file, block and module can be looked up.
+	 */
+	@Test
+	public void testLargeTraceLookups() {
+		final ModuleElement[] blocks = new ModuleElement[TRACE_SIZE];
+		for (int i = 0; i < TRACE_SIZE; i++) {
+			final String modulePath = "platform:/plugin/module" + i % 10 + ".emtl";
+			ModuleFile module = model.getGenerationModule(modulePath);
+			if (module == null) {
+				module = TraceabilityFactory.eINSTANCE.createModuleFile();
+				module.setPath(modulePath);
+				model.getModules().add(module);
+			}
+			blocks[i] = TraceabilityFactory.eINSTANCE.createModuleElement();
+			module.getModuleElements().add(blocks[i]);
+
+			final String path = getPath(i);
+			assertNull(model.getGeneratedFile(path));
+			final GeneratedFile file = createGeneratedFile(path);
+			model.getGeneratedFiles().add(file);
+			file.setFileBlock(blocks[i]);
+		}
+
+		assertEquals(10, model.getModules().size());
+		assertEquals(TRACE_SIZE, model.getGeneratedFiles().size());
+		for (int i = 0; i < TRACE_SIZE; i++) {
+			final GeneratedFile file = model.getGeneratedFiles().get(i);
+			assertSame(file, model.getGeneratedFile(getPath(i)));
+			assertSame(file, model.getGeneratedFile(blocks[i]));
+			assertSame(blocks[i].eContainer(), model.getGenerationModule("platform:/plugin/module" + i % 10
+					+ ".emtl"));
+		}
+		assertNull(model.getGeneratedFile(getPath(TRACE_SIZE)));
+		assertNull(model.getGenerationModule("platform:/plugin/module10.emtl"));
+
+		// Moving a file to another block must be reflected by the lookups of both blocks
+		final GeneratedFile first = model.getGeneratedFile(blocks[0]);
+		final ModuleElement newBlock = TraceabilityFactory.eINSTANCE.createModuleElement();
+		first.setFileBlock(newBlock);
+		assertNull(model.getGeneratedFile(blocks[0]));
+		assertSame(first, model.getGeneratedFile(newBlock));
+	}
+
+	/**
+	 * Returns the path of the i<sup>th</sup> file of the trace recorded by {@link #testLargeTraceLookups()}.
+	 * 
+	 * @param i
+	 *            Index of the file.
+	 * @return The path of this file.
+	 */
+	private static String getPath(int i) {
+		return "src/pkg" + i % 100 + "/File" + i + ".java";
+	}
+
+	/**
+	 * Creates a generated file with the given path.
+	 * 
+	 * @param path
+	 *            Path of the file.
+	 * @return The created file.
+	 */
+	private GeneratedFile createGeneratedFile(String path) {
+		GeneratedFile file = TraceabilityFactory.eINSTANCE.createGeneratedFile();
+		file.setPath(path);
+		return file;
+	}
+}